@@ -0,0 +1,77 @@
+package com.upgrad.ImageHoster.benchmarks;
+
+import com.upgrad.ImageHoster.common.SessionManager;
+import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.ImageCard;
+import com.upgrad.ImageHoster.model.Tag;
+import com.upgrad.ImageHoster.model.UserCredentials;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The database calls made by the home page, the image page, uploads and
+ * sign in, measured against the in-memory database of DatabaseState
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataAccessBenchmark {
+    private final SessionManager sessionManager = new SessionManager();
+    // gives every upload in tagsOfNewUpload a tag that does not exist yet
+    private final AtomicLong newTagCounter = new AtomicLong();
+
+    @Benchmark
+    public void openAndCommitSession(DatabaseState database) {
+        Session session = sessionManager.openSession();
+        sessionManager.commitSession(session);
+    }
+
+    @Benchmark
+    public List<Image> getAllImages(DatabaseState database) {
+        return database.imageManager.getAllImages();
+    }
+
+    @Benchmark
+    public List<ImageCard> getFirstPageOfImages(DatabaseState database) {
+        return database.imageManager.getImageCardsBefore(null, 24);
+    }
+
+    @Benchmark
+    public Image getImageByIdWithJoins(DatabaseState database) {
+        int[] ids = database.imageIds;
+
+        return database.imageManager.getImageByIdWithJoins(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public List<Tag> tagsOfUploadWithExistingTags(DatabaseState database) {
+        return database.tagManager.findOrCreateTags(DatabaseState.TAG_NAMES);
+    }
+
+    @Benchmark
+    public List<Tag> tagsOfUploadWithNewTag(DatabaseState database) {
+        return database.tagManager.findOrCreateTags(Arrays.asList("cat", "dog", "new tag " + newTagCounter.incrementAndGet()));
+    }
+
+    @Benchmark
+    public UserCredentials getCredentials(DatabaseState database) {
+        return database.userManager.getCredentials(DatabaseState.USERNAME);
+    }
+}
@@ -0,0 +1,76 @@
+package com.upgrad.ImageHoster.benchmarks;
+
+import com.google.common.hash.Hashing;
+import com.upgrad.ImageHoster.common.ImageManager;
+import com.upgrad.ImageHoster.common.ProfilePhotoManager;
+import com.upgrad.ImageHoster.common.SessionManager;
+import com.upgrad.ImageHoster.common.TagManager;
+import com.upgrad.ImageHoster.common.UserManager;
+import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.ProfilePhoto;
+import com.upgrad.ImageHoster.model.Tag;
+import com.upgrad.ImageHoster.model.User;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An in-memory H2 database filled with images, tags and users. Every
+ * benchmark runs in its own forked JVM, so every benchmark gets a fresh
+ * database
+ */
+@State(Scope.Benchmark)
+public class DatabaseState {
+    static final String USERNAME = "benchmark";
+    static final String PASSWORD = "password";
+    static final List<String> TAG_NAMES = Arrays.asList("cat", "dog", "kitty", "landscape", "night");
+
+    @Param({"1000"})
+    public int images;
+
+    public ImageManager imageManager;
+    public TagManager tagManager;
+    public UserManager userManager;
+
+    // the ids of the stored images
+    public int[] imageIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty(SessionManager.CONFIG_PROPERTY, "benchmark-hibernate.cfg.xml");
+
+        imageManager = new ImageManager();
+        tagManager = new TagManager();
+        userManager = new UserManager();
+
+        ProfilePhoto photo = new ProfilePhoto(null, 0, null);
+        new ProfilePhotoManager().saveProfilePhoto(photo);
+
+        String passwordHash = Hashing.sha256().hashString(PASSWORD).toString();
+        User user = userManager.registerUser(new User(USERNAME, passwordHash, photo));
+
+        List<Tag> tags = tagManager.findOrCreateTags(TAG_NAMES);
+        imageIds = new int[images];
+
+        for (int i = 0; i < images; i++) {
+            // fake 64 character hashes, the benchmarks never read the blobs
+            String hash = String.format("%064x", i);
+            Image image = new Image("image " + i, "description of image " + i, hash, 100000, "image/jpeg",
+                    user, new ArrayList<Tag>(tags.subList(0, 1 + i % tags.size())));
+            imageManager.saveImage(image);
+            imageIds[i] = image.getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SessionManager.shutdown();
+    }
+}
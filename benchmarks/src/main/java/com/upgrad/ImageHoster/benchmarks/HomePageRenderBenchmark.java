@@ -0,0 +1,86 @@
+package com.upgrad.ImageHoster.benchmarks;
+
+import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering home.html with the Thymeleaf setup that Spring Boot uses
+ * (SpringTemplateEngine with SpEL expressions and cached templates)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HomePageRenderBenchmark {
+
+    @Param({"24", "100"})
+    public int images;
+
+    private SpringTemplateEngine templateEngine;
+    private MockServletContext servletContext;
+    private List<Image> imageList;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ClassLoaderTemplateResolver templateResolver = new ClassLoaderTemplateResolver();
+        templateResolver.setPrefix("templates/");
+        templateResolver.setSuffix(".html");
+        templateResolver.setTemplateMode(TemplateMode.HTML);
+        templateResolver.setCharacterEncoding("UTF-8");
+        templateResolver.setCacheable(true);
+
+        templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(templateResolver);
+        servletContext = new MockServletContext();
+
+        imageList = new ArrayList<Image>();
+
+        for (int i = 0; i < images; i++) {
+            Image image = new Image();
+            ReflectionTestUtils.setField(image, "id", i + 1);
+            image.setTitle("image " + i);
+            image.setImageHash(String.format("%064x", i));
+            image.setUploadDate(LocalDate.now());
+            imageList.add(image);
+        }
+    }
+
+    @Benchmark
+    public String renderHomePage() {
+        MockHttpServletRequest request = new MockHttpServletRequest(servletContext);
+        request.getSession().setAttribute("currUser", new User());
+
+        WebContext context = new WebContext(request, new MockHttpServletResponse(), servletContext);
+        context.setVariable("images", imageList);
+        context.setVariable("nextCursor", "djE6MTAw");
+
+        return templateEngine.process("home", context);
+    }
+}
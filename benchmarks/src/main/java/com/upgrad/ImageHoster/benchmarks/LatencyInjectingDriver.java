@@ -0,0 +1,113 @@
+package com.upgrad.ImageHoster.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * A JDBC driver for URLs like jdbc:latency:h2:mem:imagehoster that wraps
+ * the driver of the rest of the URL, and waits before every statement is
+ * executed. It gives the in-memory database of the load test the round trip
+ * time of a database server on the network, set in milliseconds with the
+ * system property loadtest.db-latency-ms
+ */
+public class LatencyInjectingDriver implements Driver {
+    static final String PREFIX = "jdbc:latency:";
+    static final String LATENCY_PROPERTY = "loadtest.db-latency-ms";
+
+    static {
+        try {
+            DriverManager.registerDriver(new LatencyInjectingDriver());
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+
+        Connection connection = DriverManager.getConnection("jdbc:" + url.substring(PREFIX.length()), info);
+        long latencyMillis = Long.getLong(LATENCY_PROPERTY, 0);
+
+        return wrap(Connection.class, connection, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+
+            if (result instanceof CallableStatement) {
+                return wrap(CallableStatement.class, result, delayExecution(latencyMillis));
+            } else if (result instanceof PreparedStatement) {
+                return wrap(PreparedStatement.class, result, delayExecution(latencyMillis));
+            } else if (result instanceof Statement) {
+                return wrap(Statement.class, result, delayExecution(latencyMillis));
+            }
+
+            return result;
+        });
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(PREFIX);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() { return 1; }
+
+    @Override
+    public int getMinorVersion() { return 0; }
+
+    @Override
+    public boolean jdbcCompliant() { return false; }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    private static Handler delayExecution(long latencyMillis) {
+        return (target, method, args) -> {
+            if (method.getName().startsWith("execute") && latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+
+            return invoke(target, method, args);
+        };
+    }
+
+    private static <T> T wrap(Class<T> type, Object target, Handler handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> handler.handle(target, method, args);
+
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private interface Handler {
+        Object handle(Object target, Method method, Object[] args) throws Throwable;
+    }
+}
@@ -0,0 +1,272 @@
+package com.upgrad.ImageHoster.benchmarks;
+
+import com.upgrad.ImageHoster.ImageHosterApplication;
+import com.upgrad.ImageHoster.common.BlobStore;
+import com.upgrad.ImageHoster.common.ImageManager;
+import com.upgrad.ImageHoster.common.ProfilePhotoManager;
+import com.upgrad.ImageHoster.common.SessionManager;
+import com.upgrad.ImageHoster.common.StoredBlob;
+import com.upgrad.ImageHoster.common.TagManager;
+import com.upgrad.ImageHoster.common.UserManager;
+import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.ProfilePhoto;
+import com.upgrad.ImageHoster.model.Tag;
+import com.upgrad.ImageHoster.model.User;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A closed-loop load test of the HTTP endpoints. For each concurrency level
+ * it runs that many clients, each sending its next request as soon as the
+ * previous one has been answered, and prints the throughput and latency
+ * percentiles of every path. The capacity is the highest concurrency at
+ * which the 99th percentile latency of every path stays under the target.
+ *
+ * Without --url the application is started in this JVM, with the in-memory
+ * database of loadtest-hibernate.cfg.xml and --db-latency-ms added to every
+ * SQL statement. See README.md for comparing two versions of the application
+ */
+public class LoadTest {
+    // a JPEG header followed by random bytes
+    private static final byte[] JPEG_HEADER = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0};
+    private static final int REQUEST_TIMEOUT_MS = 10000;
+
+    private final Map<String, String> options;
+    private final int[] imageIds;
+    private final String baseUrl;
+
+    private LoadTest(Map<String, String> options, String baseUrl, int[] imageIds) {
+        this.options = options;
+        this.baseUrl = baseUrl;
+        this.imageIds = imageIds;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<String, String>();
+        options.put("concurrency", "8,16,32,64,128,256");
+        options.put("seconds", "10");
+        options.put("target-p99-ms", "250");
+        options.put("paths", "/,/images/{id}/raw,/css/tachyons.min.css");
+        options.put("images", "1000");
+        options.put("image-bytes", "65536");
+        options.put("db-latency-ms", "5");
+        options.put("tomcat-threads", "50");
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+
+        // keeps one connection per client open between requests
+        System.setProperty("http.maxConnections", "1000");
+
+        if (options.containsKey("url")) {
+            int[] imageIds = new int[Integer.parseInt(options.get("images"))];
+            Arrays.setAll(imageIds, i -> i + 1);
+            new LoadTest(options, options.get("url"), imageIds).run();
+            return;
+        }
+
+        Path root = Files.createTempDirectory("imagehoster-loadtest");
+        ConfigurableApplicationContext context = startApplication(options, root);
+
+        try {
+            int[] imageIds = seed(context.getBean(BlobStore.class), Integer.parseInt(options.get("images")),
+                    Integer.parseInt(options.get("image-bytes")));
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+            new LoadTest(options, baseUrl, imageIds).run();
+        } finally {
+            context.close();
+            SessionManager.shutdown();
+            FileSystemUtils.deleteRecursively(root.toFile());
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(Map<String, String> options, Path root) {
+        System.setProperty(SessionManager.CONFIG_PROPERTY, "loadtest-hibernate.cfg.xml");
+        System.setProperty(LatencyInjectingDriver.LATENCY_PROPERTY, options.get("db-latency-ms"));
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        return SpringApplication.run(ImageHosterApplication.class,
+                "--server.port=0",
+                "--server.tomcat.max-threads=" + options.get("tomcat-threads"),
+                "--logging.level.root=WARN",
+                "--imagehoster.blobstore.root=" + root.resolve("blobs"),
+                "--imagehoster.search.index-dir=" + root.resolve("search"),
+                "--imagehoster.session.store-dir=" + root.resolve("sessions"),
+                "--imagehoster.events.position-file=" + root.resolve("events.position"));
+    }
+
+    private static int[] seed(BlobStore blobStore, int images, int imageBytes) throws IOException {
+        byte[] content = new byte[imageBytes];
+        ThreadLocalRandom.current().nextBytes(content);
+        System.arraycopy(JPEG_HEADER, 0, content, 0, JPEG_HEADER.length);
+        StoredBlob blob = blobStore.put(new ByteArrayInputStream(content));
+
+        ProfilePhoto photo = new ProfilePhoto(null, 0, null);
+        new ProfilePhotoManager().saveProfilePhoto(photo);
+        User user = new UserManager().registerUser(new User("loadtest", "hash", photo));
+        List<Tag> tags = new TagManager().findOrCreateTags(Arrays.asList("cat", "dog", "night"));
+
+        ImageManager imageManager = new ImageManager();
+        int[] imageIds = new int[images];
+
+        for (int i = 0; i < images; i++) {
+            Image image = new Image("image " + i, "description of image " + i, blob.getHash(), blob.getSize(),
+                    "image/jpeg", user, new ArrayList<Tag>(tags));
+            imageManager.saveImage(image);
+            imageIds[i] = image.getId();
+        }
+
+        return imageIds;
+    }
+
+    private void run() throws InterruptedException {
+        List<String> paths = Arrays.asList(options.get("paths").split(","));
+        long seconds = Long.parseLong(options.get("seconds"));
+        long targetNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(options.get("target-p99-ms")));
+        int capacity = 0;
+
+        System.out.printf("%-11s %-22s %10s %9s %9s %9s %8s%n",
+                "clients", "path", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+
+        for (String level : options.get("concurrency").split(",")) {
+            int clients = Integer.parseInt(level.trim());
+
+            // a short warm up at every level, which is not measured
+            runLevel(clients, paths, Math.min(2, seconds));
+            Map<String, Recorder> results = runLevel(clients, paths, seconds);
+            boolean withinTarget = true;
+
+            for (String path : paths) {
+                Recorder recorder = results.get(path);
+                System.out.printf("%-11d %-22s %10.0f %9.1f %9.1f %9.1f %8d%n", clients, path,
+                        recorder.count() / (double) seconds, millis(recorder.percentile(0.50)),
+                        millis(recorder.percentile(0.99)), millis(recorder.percentile(1.0)), recorder.errors.get());
+
+                withinTarget &= recorder.errors.get() == 0 && recorder.percentile(0.99) <= targetNanos;
+            }
+
+            if (withinTarget) {
+                capacity = clients;
+            }
+        }
+
+        System.out.println("capacity: " + capacity + " concurrent clients with p99 under "
+                + options.get("target-p99-ms") + " ms and no errors");
+    }
+
+    private Map<String, Recorder> runLevel(int clients, List<String> paths, long seconds) throws InterruptedException {
+        Map<String, Recorder> results = new HashMap<String, Recorder>();
+
+        for (String path : paths) {
+            results.put(path, new Recorder());
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int client = 0; client < clients; client++) {
+            int firstPath = client;
+
+            Thread thread = new Thread(() -> {
+                for (int i = firstPath; System.nanoTime() < deadline; i++) {
+                    String path = paths.get(i % paths.size());
+                    String url = baseUrl + path.replace("{id}",
+                            Integer.toString(imageIds[ThreadLocalRandom.current().nextInt(imageIds.length)]));
+
+                    long start = System.nanoTime();
+                    boolean ok = get(url);
+                    results.get(path).record(System.nanoTime() - start, ok);
+                }
+            }, "loadtest-client-" + client);
+
+            thread.start();
+            threads.add(thread);
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        return results;
+    }
+
+    private static boolean get(String url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setInstanceFollowRedirects(false);
+            // a response that never completes counts as an error instead of
+            // stopping the client
+            connection.setConnectTimeout(REQUEST_TIMEOUT_MS);
+            connection.setReadTimeout(REQUEST_TIMEOUT_MS);
+            int status = connection.getResponseCode();
+
+            // the body is read to the end, so the connection can be reused
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (in != null) {
+                    byte[] buffer = new byte[8192];
+                    while (in.read(buffer) != -1) {
+                        // discard
+                    }
+                }
+            }
+
+            return status < 400;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * The latencies of the requests to one path
+     */
+    private static class Recorder {
+        private final List<Long> latencies = new ArrayList<Long>();
+        final AtomicLong errors = new AtomicLong();
+
+        synchronized void record(long nanos, boolean ok) {
+            latencies.add(nanos);
+
+            if (!ok) {
+                errors.incrementAndGet();
+            }
+        }
+
+        synchronized int count() {
+            return latencies.size();
+        }
+
+        synchronized long percentile(double percentile) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+
+            List<Long> sorted = new ArrayList<Long>(latencies);
+            sorted.sort(null);
+
+            return sorted.get((int) Math.min(sorted.size() - 1, Math.ceil(percentile * sorted.size()) - 1));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.upgrad.ImageHoster.benchmarks;
+
+import com.upgrad.ImageHoster.common.ImageSearchIndex;
+import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.Tag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The full-text search index. indexImage measures indexing throughput,
+ * search measures the latency of a query against an index of indexedImages
+ * images
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx512m"})
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+    private static final String[] WORDS = {
+            "sunset", "beach", "mountain", "dog", "cat", "kitten", "city", "night", "river", "forest",
+            "snow", "winter", "summer", "garden", "flower", "portrait", "street", "car", "bridge", "sky",
+            "cloud", "rain", "lake", "boat", "bird", "tree", "road", "house", "light", "shadow"};
+    private static final String[] QUERIES = {"sunset", "dog beach", "winter forest", "\"city night\"", "fl*"};
+
+    @Param({"10000", "100000"})
+    public int indexedImages;
+
+    private Path root;
+    private ImageSearchIndex index;
+    private Random random;
+    private int nextId;
+    private int nextQuery;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("imagehoster-search-benchmark");
+        index = new ImageSearchIndex(root);
+        random = new Random(42);
+
+        for (int id = 1; id <= indexedImages; id++) {
+            index.index(randomImage(id));
+        }
+
+        index.commit();
+        index.refresh();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        index.close();
+        FileSystemUtils.deleteRecursively(root.toFile());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void indexImage() throws IOException {
+        // replaces existing images, so the size of the index stays the same
+        index.index(randomImage(nextId++ % indexedImages + 1));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Integer> search() throws IOException {
+        return index.search(QUERIES[nextQuery++ % QUERIES.length], 0, 25);
+    }
+
+    private Image randomImage(int id) {
+        List<Tag> tags = new ArrayList<Tag>();
+
+        for (int i = 0; i < 3; i++) {
+            tags.add(new Tag(randomWord()));
+        }
+
+        Image image = new Image(randomWord() + " " + randomWord(),
+                "a photo of a " + randomWord() + " and a " + randomWord() + " in the " + randomWord(),
+                null, 0, "image/jpeg", null, tags);
+        image.setId(id);
+
+        return image;
+    }
+
+    private String randomWord() {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+}
@@ -0,0 +1,93 @@
+package com.upgrad.ImageHoster.benchmarks;
+
+import com.upgrad.ImageHoster.common.SessionManager;
+import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.OutboxEvent;
+import com.upgrad.ImageHoster.model.ProfilePhoto;
+import com.upgrad.ImageHoster.model.Tag;
+import com.upgrad.ImageHoster.model.User;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.Environment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latency of one database call of a request, before and after the
+ * SessionFactory was shared. Before, every openSession() built a new
+ * Configuration and SessionFactory, with hibernate's own connection pool of
+ * one connection. Both benchmarks count the images of the database of
+ * DatabaseState
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionFactoryBenchmark {
+    private static final String COUNT_IMAGES = "select count(image) from Image image";
+
+    private final SessionManager sessionManager = new SessionManager();
+
+    @Benchmark
+    public Object factoryPerSession(DatabaseState database) {
+        Configuration configuration = new Configuration();
+        configuration.addAnnotatedClass(Image.class);
+        configuration.addAnnotatedClass(Tag.class);
+        configuration.addAnnotatedClass(User.class);
+        configuration.addAnnotatedClass(ProfilePhoto.class);
+        configuration.addAnnotatedClass(OutboxEvent.class);
+        configuration.configure(System.getProperty(SessionManager.CONFIG_PROPERTY));
+        // the tables of DatabaseState are kept, and the pool size of the
+        // old hibernate.cfg.xml is used
+        configuration.getProperties().remove(Environment.HBM2DDL_AUTO);
+        configuration.getProperties().remove("hbm2ddl.auto");
+        configuration.setProperty(Environment.POOL_SIZE, "1");
+
+        SessionFactory factory = configuration.buildSessionFactory(new StandardServiceRegistryBuilder()
+                .applySettings(configuration.getProperties())
+                .build());
+
+        try {
+            Session session = factory.openSession();
+
+            try {
+                session.beginTransaction();
+                Object count = session.createQuery(COUNT_IMAGES).uniqueResult();
+                session.getTransaction().commit();
+
+                return count;
+            } finally {
+                session.close();
+            }
+        } finally {
+            factory.close();
+        }
+    }
+
+    @Benchmark
+    public Object sharedFactory(DatabaseState database) {
+        Session session = sessionManager.openReadOnlySession();
+
+        try {
+            Object count = session.createQuery(COUNT_IMAGES).uniqueResult();
+            sessionManager.commitSession(session);
+
+            return count;
+        } finally {
+            sessionManager.closeSession(session);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.upgrad.ImageHoster.benchmarks;
+
+import com.upgrad.ImageHoster.common.LocalBlobStore;
+import com.upgrad.ImageHoster.common.StoredBlob;
+import com.upgrad.ImageHoster.service.BlobServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Storing an uploaded image. base64EncodeUpload measures how uploads were
+ * stored before the blob store, for comparison with saveImage
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx512m"})
+@State(Scope.Benchmark)
+public class UploadBenchmark {
+    // a JPEG header followed by random bytes, which do not compress
+    private static final byte[] JPEG_HEADER = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0};
+
+    @Param({"1048576", "8388608"})
+    public int uploadBytes;
+
+    private byte[] upload;
+    private Path root;
+    private BlobServiceImpl blobService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        upload = new byte[uploadBytes];
+        ThreadLocalRandom.current().nextBytes(upload);
+        System.arraycopy(JPEG_HEADER, 0, upload, 0, JPEG_HEADER.length);
+
+        root = Files.createTempDirectory("imagehoster-benchmark");
+        blobService = new BlobServiceImpl(new LocalBlobStore(root), Long.MAX_VALUE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileSystemUtils.deleteRecursively(root.toFile());
+    }
+
+    @Benchmark
+    public StoredBlob saveImage() throws IOException {
+        return blobService.saveImage(new ByteArrayInputStream(upload));
+    }
+
+    @Benchmark
+    public String base64EncodeUpload() {
+        return Base64.getEncoder().encodeToString(upload);
+    }
+}
@@ -0,0 +1,67 @@
+package com.upgrad.ImageHoster.common;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Helpers for the CompletableFutures returned by asynchronous controller
+ * methods. Spring MVC hands the exception of a failed future to the
+ * exception handlers as it is, so these keep the exception thrown by a task
+ * instead of wrapping it in a CompletionException
+ */
+public final class AsyncTasks {
+
+    private AsyncTasks() { }
+
+    /**
+     * This method runs a task on an executor, with the RequestMetrics and
+     * the ReadRouting of a request. The context is passed in rather than
+     * read from the calling thread, as a task that is started from a
+     * dependent stage is started on an executor thread
+     *
+     * @param context  the context captured on the thread of the request
+     * @param executor the executor that runs the task
+     * @param task     the task, which may throw checked exceptions
+     * @return a future completed with the result or the exception of the task
+     * @throws java.util.concurrent.RejectedExecutionException if the
+     *         executor is saturated, before the task is started
+     */
+    public static <T> CompletableFuture<T> supply(RequestContext context, Executor executor, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<T>();
+
+        executor.execute(() -> {
+            try {
+                future.complete(context.call(task));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * This method removes the CompletionException that a dependent stage
+     * wraps the exception of an earlier stage in
+     *
+     * @param future a future built with thenApply, thenCompose, etc.
+     * @return a future completed with the result or the original exception
+     */
+    public static <T> CompletableFuture<T> unwrapped(CompletableFuture<T> future) {
+        CompletableFuture<T> result = new CompletableFuture<T>();
+
+        future.whenComplete((value, e) -> {
+            if (e == null) {
+                result.complete(value);
+            } else if (e instanceof CompletionException && e.getCause() != null) {
+                result.completeExceptionally(e.getCause());
+            } else {
+                result.completeExceptionally(e);
+            }
+        });
+
+        return result;
+    }
+}
@@ -0,0 +1,155 @@
+package com.upgrad.ImageHoster.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A BK-tree of 64-bit perceptual hashes, which finds the images whose hash
+ * is within a Hamming distance of a given hash without comparing it with
+ * every hash. Each child of a node is stored under its distance to the node,
+ * and by the triangle inequality a search for distance d from a node at
+ * distance k only has to visit the children between k - d and k + d.
+ *
+ * Images with the same hash share a node. Removing an image leaves its node
+ * in place to route searches, until the tree is built again. This class is
+ * not thread-safe
+ */
+public class BKTree {
+
+    private static class Node {
+        final long hash;
+        final List<Integer> ids = new ArrayList<Integer>(1);
+        Map<Integer, Node> children;
+
+        Node(long hash) {
+            this.hash = hash;
+        }
+    }
+
+    private Node root;
+    private int size;
+
+    /**
+     * This method adds an image to the tree
+     *
+     * @param hash the perceptual hash of the image
+     * @param id   the id of the image
+     */
+    public void add(long hash, int id) {
+        if (root == null) {
+            root = new Node(hash);
+        }
+
+        Node node = root;
+        int distance = PerceptualHash.distance(hash, node.hash);
+
+        while (distance != 0) {
+            if (node.children == null) {
+                node.children = new HashMap<Integer, Node>();
+            }
+
+            Node child = node.children.get(distance);
+
+            if (child == null) {
+                child = new Node(hash);
+                node.children.put(distance, child);
+            }
+
+            node = child;
+            distance = PerceptualHash.distance(hash, node.hash);
+        }
+
+        node.ids.add(id);
+        size++;
+    }
+
+    /**
+     * This method removes an image from the tree
+     *
+     * @param hash the perceptual hash that the image was added with
+     * @param id   the id of the image
+     * @return true if the image was in the tree
+     */
+    public boolean remove(long hash, int id) {
+        Node node = root;
+
+        while (node != null) {
+            int distance = PerceptualHash.distance(hash, node.hash);
+
+            if (distance == 0) {
+                if (node.ids.remove(Integer.valueOf(id))) {
+                    size--;
+                    return true;
+                }
+
+                return false;
+            }
+
+            node = node.children == null ? null : node.children.get(distance);
+        }
+
+        return false;
+    }
+
+    /**
+     * This method returns the images whose hash is within a distance of a
+     * hash, nearest first. Images at the same distance are returned newest
+     * (highest id) first
+     *
+     * @param hash        the perceptual hash to compare with
+     * @param maxDistance the largest number of different bits
+     * @return the ids of the images
+     */
+    public List<Integer> search(long hash, int maxDistance) {
+        List<long[]> matches = new ArrayList<long[]>();
+        List<Node> pending = new ArrayList<Node>();
+
+        if (root != null) {
+            pending.add(root);
+        }
+
+        while (!pending.isEmpty()) {
+            Node node = pending.remove(pending.size() - 1);
+            int distance = PerceptualHash.distance(hash, node.hash);
+
+            if (distance <= maxDistance) {
+                for (Integer id : node.ids) {
+                    matches.add(new long[]{distance, id});
+                }
+            }
+
+            if (node.children != null) {
+                for (int childDistance = Math.max(1, distance - maxDistance);
+                     childDistance <= distance + maxDistance; childDistance++) {
+                    Node child = node.children.get(childDistance);
+
+                    if (child != null) {
+                        pending.add(child);
+                    }
+                }
+            }
+        }
+
+        Collections.sort(matches, (match, other) -> match[0] != other[0]
+                ? Long.compare(match[0], other[0])
+                : Long.compare(other[1], match[1]));
+
+        List<Integer> ids = new ArrayList<Integer>(matches.size());
+
+        for (long[] match : matches) {
+            ids.add((int) match[1]);
+        }
+
+        return ids;
+    }
+
+    /**
+     * @return the number of images in the tree
+     */
+    public int size() {
+        return size;
+    }
+}
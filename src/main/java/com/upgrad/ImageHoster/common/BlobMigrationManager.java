@@ -0,0 +1,172 @@
+package com.upgrad.ImageHoster.common;
+
+import org.hibernate.Session;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Moves the base64 image data that older versions stored in TEXT columns
+ * into a BlobStore, and replaces it with the hash of the stored blob
+ */
+public class BlobMigrationManager extends SessionManager {
+
+    // older versions always rendered the stored images as jpeg
+    private static final String LEGACY_MIME_TYPE = "image/jpeg";
+
+    /**
+     * This method migrates the Image.imageFile column
+     *
+     * @param blobStore the BlobStore that the images are moved to
+     * @param batchSize the number of rows migrated per transaction
+     * @return the number of migrated images
+     */
+    public int migrateImages(final BlobStore blobStore, final int batchSize) {
+        return migrate(blobStore, batchSize, "Image", "imageFile", "imageHash", "imageSize");
+    }
+
+    /**
+     * This method migrates the ProfilePhoto.profileImageData column
+     *
+     * @param blobStore the BlobStore that the photos are moved to
+     * @param batchSize the number of rows migrated per transaction
+     * @return the number of migrated profile photos
+     */
+    public int migrateProfilePhotos(final BlobStore blobStore, final int batchSize) {
+        return migrate(blobStore, batchSize, "Photo", "profileImageData", "photoHash", "photoSize");
+    }
+
+    private int migrate(final BlobStore blobStore, final int batchSize, final String table,
+                        final String dataColumn, final String hashColumn, final String sizeColumn) {
+        Session session = openSession();
+
+        try {
+            session.doWork(connection -> addBlobColumns(connection, table, hashColumn, sizeColumn));
+            commitSession(session);
+        } finally {
+            closeSession(session);
+        }
+
+        int migrated = 0;
+        int lastId = 0;
+
+        while (true) {
+            final int afterId = lastId;
+            List<Integer> ids;
+            session = openSession();
+
+            try {
+                ids = session.doReturningWork(connection -> migrateBatch(connection, blobStore, batchSize,
+                        afterId, table, dataColumn, hashColumn, sizeColumn));
+                commitSession(session);
+            } finally {
+                closeSession(session);
+            }
+
+            if (ids.isEmpty()) {
+                return migrated;
+            }
+
+            migrated += ids.size();
+            lastId = ids.get(ids.size() - 1);
+        }
+    }
+
+    private static void addBlobColumns(final Connection connection, final String table,
+                                       final String hashColumn, final String sizeColumn) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("alter table " + table + " add column if not exists " + hashColumn + " varchar(64)");
+            statement.execute("alter table " + table + " add column if not exists " + sizeColumn + " bigint not null default 0");
+            statement.execute("alter table " + table + " add column if not exists mimeType varchar(255)");
+        }
+    }
+
+    private static List<Integer> migrateBatch(final Connection connection, final BlobStore blobStore,
+                                              final int batchSize, final int afterId, final String table,
+                                              final String dataColumn, final String hashColumn,
+                                              final String sizeColumn) throws SQLException {
+        List<Integer> ids = new ArrayList<Integer>();
+
+        try (PreparedStatement select = connection.prepareStatement("select id, " + dataColumn + " from " + table
+                + " where " + dataColumn + " is not null and id > ? order by id limit ?");
+             PreparedStatement update = connection.prepareStatement("update " + table + " set " + hashColumn
+                     + " = ?, " + sizeColumn + " = ?, mimeType = ?, " + dataColumn + " = null where id = ?")) {
+            select.setInt(1, afterId);
+            select.setInt(2, batchSize);
+            select.setFetchSize(1); // rows are decoded one at a time
+
+            try (ResultSet rows = select.executeQuery()) {
+                while (rows.next()) {
+                    int id = rows.getInt(1);
+                    StoredBlob blob;
+
+                    // the base64 text is decoded while it is written to the blob store
+                    try (InputStream decoded = Base64.getMimeDecoder()
+                            .wrap(new AsciiInputStream(rows.getCharacterStream(2)))) {
+                        blob = blobStore.put(decoded);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("unable to migrate " + table + " " + id, e);
+                    }
+
+                    update.setString(1, blob.getHash());
+                    update.setLong(2, blob.getSize());
+                    update.setString(3, LEGACY_MIME_TYPE);
+                    update.setInt(4, id);
+                    update.addBatch();
+                    ids.add(id);
+                }
+            }
+
+            if (!ids.isEmpty()) {
+                update.executeBatch();
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Adapts the Reader over a base64 column into the InputStream expected
+     * by the base64 decoder. Base64 text is plain ASCII, so every char maps
+     * to one byte
+     */
+    private static class AsciiInputStream extends InputStream {
+        private final Reader reader;
+
+        AsciiInputStream(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return reader.read();
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            char[] chars = new char[length];
+            int read = reader.read(chars, 0, length);
+
+            for (int i = 0; i < read; i++) {
+                bytes[offset + i] = (byte) chars[i];
+            }
+
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
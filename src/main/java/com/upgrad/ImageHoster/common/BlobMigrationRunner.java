@@ -0,0 +1,38 @@
+package com.upgrad.ImageHoster.common;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.logging.Logger;
+
+/**
+ * Runs the BlobMigrationManager on startup when the application is started
+ * with imagehoster.blobstore.migrate=true
+ */
+@Component
+@ConditionalOnProperty(name = "imagehoster.blobstore.migrate", havingValue = "true")
+public class BlobMigrationRunner implements ApplicationRunner {
+
+    Logger log = Logger.getLogger(this.getClass().getName());
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Value("${imagehoster.blobstore.migrate-batch-size}")
+    private int batchSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        BlobMigrationManager migrationManager = new BlobMigrationManager();
+
+        int images = migrationManager.migrateImages(blobStore, batchSize);
+        log.info("moved " + images + " images into the blob store");
+
+        int photos = migrationManager.migrateProfilePhotos(blobStore, batchSize);
+        log.info("moved " + photos + " profile photos into the blob store");
+    }
+}
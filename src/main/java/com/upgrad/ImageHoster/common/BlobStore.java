@@ -0,0 +1,89 @@
+package com.upgrad.ImageHoster.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Storage for the bytes of uploaded images. Blobs are content addressed:
+ * the key of a blob is the hex encoded SHA-256 hash of its content, so
+ * storing the same bytes twice only keeps one copy
+ */
+public interface BlobStore {
+
+    /**
+     * This method stores the content read from the stream
+     *
+     * @param content the bytes to store, read until the end of the stream
+     * @return the hash and the size of the stored content
+     * @throws IOException
+     */
+    StoredBlob put(InputStream content) throws IOException;
+
+    /**
+     * This method opens a stored blob for reading
+     *
+     * @param hash the hash of the blob
+     * @return a stream over the blob's content
+     * @throws IOException if the blob does not exist or cannot be read
+     */
+    InputStream open(String hash) throws IOException;
+
+    /**
+     * This method checks if a blob has been stored
+     *
+     * @param hash the hash of the blob
+     * @return true if the blob exists
+     */
+    boolean exists(String hash);
+
+    /**
+     * This method returns the local file that holds a blob, so that it can
+     * be sent to a client without copying it through the heap
+     *
+     * @param hash the hash of the blob
+     * @return the path of the blob's file, or null if this store does not
+     * keep its blobs on the local file system
+     */
+    Path getLocalPath(String hash);
+
+    /**
+     * This method stores a blob derived from another one, i.e. a resized
+     * copy of an image. Derived blobs are keyed by the hash of their source
+     * and the name of the variant, and replace any previous version
+     *
+     * @param hash    the hash of the source blob
+     * @param variant the name of the variant, i.e. "w256.jpg"
+     * @param content the bytes of the derived blob
+     * @throws IOException
+     */
+    void putDerived(String hash, String variant, InputStream content) throws IOException;
+
+    /**
+     * This method checks if a derived blob has been stored
+     *
+     * @param hash    the hash of the source blob
+     * @param variant the name of the variant
+     * @return true if the derived blob exists
+     */
+    boolean existsDerived(String hash, String variant);
+
+    /**
+     * This method returns the local file that holds a derived blob
+     *
+     * @param hash    the hash of the source blob
+     * @param variant the name of the variant
+     * @return the path of the derived blob's file, or null if this store
+     * does not keep its blobs on the local file system
+     */
+    Path getDerivedLocalPath(String hash, String variant);
+
+    /**
+     * This method removes a blob. Callers must make sure that no image
+     * still references the hash
+     *
+     * @param hash the hash of the blob
+     * @throws IOException
+     */
+    void delete(String hash) throws IOException;
+}
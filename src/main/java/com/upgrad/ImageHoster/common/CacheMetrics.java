@@ -0,0 +1,36 @@
+package com.upgrad.ImageHoster.common;
+
+/**
+ * The hit, miss and eviction counts of an EntityCache
+ */
+public final class CacheMetrics {
+    private final String name;
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long size;
+
+    public CacheMetrics(String name, long hitCount, long missCount, long evictionCount, long size) {
+        this.name = name;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+    }
+
+    public String getName() { return name; }
+
+    public long getHitCount() { return hitCount; }
+
+    public long getMissCount() { return missCount; }
+
+    public long getEvictionCount() { return evictionCount; }
+
+    public long getSize() { return size; }
+
+    @Override
+    public String toString() {
+        return name + "[hits=" + hitCount + ", misses=" + missCount
+                + ", evictions=" + evictionCount + ", size=" + size + "]";
+    }
+}
@@ -0,0 +1,37 @@
+package com.upgrad.ImageHoster.common;
+
+import java.util.function.Function;
+
+/**
+ * A read-through cache of entities that were loaded from the database
+ *
+ * @param <K> the type of the key that the entities are looked up by
+ * @param <V> the type of the cached entities
+ */
+public interface EntityCache<K, V> {
+
+    /**
+     * This method returns the cached entity for a key, loading it with the
+     * loader if it is not cached. Entities that are not found (null) are
+     * not cached
+     *
+     * @param key    the key of the entity
+     * @param loader loads the entity from the database
+     * @return the entity or null if the loader did not find it
+     */
+    V get(K key, Function<? super K, ? extends V> loader);
+
+    /**
+     * @param key the key of the entity
+     * @return the cached entity or null if it is not cached
+     */
+    V getIfPresent(K key);
+
+    void put(K key, V value);
+
+    void invalidate(K key);
+
+    void invalidateAll();
+
+    CacheMetrics getMetrics();
+}
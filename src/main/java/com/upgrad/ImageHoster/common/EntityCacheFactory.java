@@ -0,0 +1,14 @@
+package com.upgrad.ImageHoster.common;
+
+/**
+ * Creates the entity caches used by the services. Declaring another
+ * EntityCacheFactory bean moves the caches to another backend
+ */
+public interface EntityCacheFactory {
+
+    /**
+     * @param name the name of the cache, reported in its metrics
+     * @return a new empty cache
+     */
+    <K, V> EntityCache<K, V> create(String name);
+}
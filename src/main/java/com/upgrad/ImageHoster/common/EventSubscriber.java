@@ -0,0 +1,29 @@
+package com.upgrad.ImageHoster.common;
+
+import com.upgrad.ImageHoster.model.OutboxEvent;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Something that keeps derived data up to date with the images, tags and
+ * users, i.e. the search index, and is handed their events by the
+ * OutboxRelay. An event may be handed over more than once, i.e. after a
+ * restart, so handling it twice must do no harm
+ */
+public interface EventSubscriber {
+
+    /**
+     * @return the types of the events that the subscriber is handed
+     */
+    Set<OutboxEvent.Type> getEventTypes();
+
+    /**
+     * This method handles a batch of events, in the order they were written
+     *
+     * @param events the events, of the types the subscriber asked for
+     * @throws RuntimeException if the events could not be handled. The
+     *                          batch is handed over again a few times
+     */
+    void handle(List<OutboxEvent> events);
+}
@@ -0,0 +1,53 @@
+package com.upgrad.ImageHoster.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes the position in a feed into the opaque token handed to clients.
+ * The token only carries the id of the last image of the previous page,
+ * so it stays valid however many images are uploaded in the meantime
+ */
+public final class FeedCursor {
+    private static final String VERSION = "v1:";
+
+    private FeedCursor() { }
+
+    /**
+     * This method creates the cursor that the page after an image starts at
+     *
+     * @param lastId the id of the last image of a page
+     * @return the opaque cursor
+     */
+    public static String encode(int lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((VERSION + lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * This method reads the id back from a cursor
+     *
+     * @param cursor a cursor created by encode()
+     * @return the id of the last image of the previous page
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    public static int decode(String cursor) {
+        String decoded;
+
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid feed cursor: " + cursor, e);
+        }
+
+        if (!decoded.startsWith(VERSION)) {
+            throw new IllegalArgumentException("invalid feed cursor: " + cursor);
+        }
+
+        try {
+            return Integer.parseInt(decoded.substring(VERSION.length()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid feed cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.upgrad.ImageHoster.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative values, i.e. latencies in nanoseconds, that
+ * many threads can record into without locks or allocation.
+ *
+ * The buckets are log-linear, like those of HdrHistogram: every power of two
+ * is split into 16 buckets of equal width, so a percentile is off by at
+ * most 1/16 (6.25%) of its value, whatever the range of the values. All the
+ * buckets are allocated up front (960 counters, about 8 KB)
+ */
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * This method adds a value to the histogram. Negative values are
+     * recorded as 0
+     *
+     * @param value the value, i.e. a duration in nanoseconds
+     */
+    public void record(long value) {
+        long recorded = Math.max(0, value);
+
+        counts.incrementAndGet(bucketOf(recorded));
+        count.increment();
+        sum.add(recorded);
+
+        long currentMax = max.get();
+
+        while (recorded > currentMax && !max.compareAndSet(currentMax, recorded)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * This method copies the counts of the histogram. Values recorded while
+     * the copy is made may be partly included
+     *
+     * @return the copy
+     */
+    public Snapshot snapshot() {
+        long[] bucketCounts = new long[BUCKETS];
+
+        for (int i = 0; i < BUCKETS; i++) {
+            bucketCounts[i] = counts.get(i);
+        }
+
+        return new Snapshot(bucketCounts, count.sum(), sum.sum(), max.get());
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        // the position of the highest bit picks the power of two, and the
+        // next SUB_BUCKET_BITS bits the bucket within it
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * The counts of a histogram at one point in time
+     */
+    public static final class Snapshot {
+        private final long[] bucketCounts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] bucketCounts, long count, long sum, long max) {
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() { return count; }
+
+        public long getSum() { return sum; }
+
+        public long getMax() { return max; }
+
+        /**
+         * @param quantile the quantile, from 0 to 1, i.e. 0.99
+         * @return the highest value of the bucket that the quantile falls
+         * in, but at most the largest value recorded, or 0 if the histogram
+         * is empty
+         */
+        public long getValueAtQuantile(double quantile) {
+            long total = 0;
+
+            for (long bucketCount : bucketCounts) {
+                total += bucketCount;
+            }
+
+            if (total == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+
+            for (int i = 0; i < bucketCounts.length; i++) {
+                seen += bucketCounts[i];
+
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(i), max);
+                }
+            }
+
+            return max;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.upgrad.ImageHoster.common;
+
+import com.upgrad.ImageHoster.model.OutboxEvent;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The images that a batch of image events is about. The subscribers read
+ * the images as they are now instead of what the events say, so an image
+ * with several events in a batch is handled once, by its last event
+ */
+public class ImageEventBatch {
+    // the event types of the subscribers of image events
+    public static final Set<OutboxEvent.Type> IMAGE_EVENTS = Collections.unmodifiableSet(EnumSet.of(
+            OutboxEvent.Type.IMAGE_CREATED, OutboxEvent.Type.IMAGE_UPDATED, OutboxEvent.Type.IMAGE_DELETED));
+
+    private final Set<Integer> writtenIds = new LinkedHashSet<Integer>();
+    private final Set<Integer> deletedIds = new LinkedHashSet<Integer>();
+    private final Set<Integer> createdIds = new HashSet<Integer>();
+
+    public ImageEventBatch(List<OutboxEvent> events) {
+        for (OutboxEvent event : events) {
+            Integer id = event.getEntityId();
+
+            switch (event.getType()) {
+                case IMAGE_CREATED:
+                    createdIds.add(id);
+                    deletedIds.remove(id);
+                    writtenIds.add(id);
+                    break;
+                case IMAGE_UPDATED:
+                    deletedIds.remove(id);
+                    writtenIds.add(id);
+                    break;
+                case IMAGE_DELETED:
+                    writtenIds.remove(id);
+                    deletedIds.add(id);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return the ids of the images that were created or updated, and not
+     * deleted afterwards. Some may have been deleted since the batch was read
+     */
+    public Set<Integer> getWrittenIds() {
+        return writtenIds;
+    }
+
+    /**
+     * @return the ids of the images whose last event is their deletion
+     */
+    public Set<Integer> getDeletedIds() {
+        return deletedIds;
+    }
+
+    /**
+     * @param foundIds the written ids of the images that still exist
+     * @return the ids of the images that no longer exist: the deleted ones
+     * and the written ones that were not found
+     */
+    public Set<Integer> getGoneIds(Collection<Integer> foundIds) {
+        Set<Integer> goneIds = new LinkedHashSet<Integer>(writtenIds);
+        goneIds.removeAll(foundIds);
+        goneIds.addAll(deletedIds);
+
+        return goneIds;
+    }
+
+    public boolean isCreated(int imageId) {
+        return createdIds.contains(imageId);
+    }
+}
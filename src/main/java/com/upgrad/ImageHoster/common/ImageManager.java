@@ -1,28 +1,402 @@
 package com.upgrad.ImageHoster.common;
 
 import com.upgrad.ImageHoster.model.Image;
-import org.hibernate.Hibernate;
+import com.upgrad.ImageHoster.model.ImageCard;
+import com.upgrad.ImageHoster.model.OutboxEvent;
+import com.upgrad.ImageHoster.model.Tag;
+import com.upgrad.ImageHoster.model.TagQuery;
 import org.hibernate.HibernateException;
 import org.hibernate.Query;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
-
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.type.Type;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 @SuppressWarnings("unchecked")
 public class ImageManager extends SessionManager {
+
+    Logger log = Logger.getLogger(this.getClass().getName());
+
+    // builds the image grid projections straight from the selected columns
+    private static final String IMAGE_CARD_SELECT = "select new " + ImageCard.class.getName()
+            + "(image.id, image.title, image.uploadDate, image.imageHash, image.numView)"
+            + " from Image image";
+    // the tags of the image of the outer query, for the subqueries of a tag query
+    private static final String TAGS_OF_IMAGE = " from Image tagged join tagged.tags tag where tagged.id = image.id";
+    // the most images written by one multi-row insert, which keeps the
+    // number of parameters of the statement well under the limit of the
+    // postgres protocol (32767)
+    private static final int ROWS_PER_INSERT = 500;
+    private static final String INSERT_IMAGE = "insert into Image (title, description, imageHash, imageSize,"
+            + " mimeType, perceptualHash, numView, uploadDate, user_id) values ";
+    private static final String IMAGE_ROW = "(?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
     /**
      * This method retrieves all of the images saved in the database
      *
      * @return a List of Image objects
      */
     public List<Image> getAllImages() {
+        Session session = openReadOnlySession();
+
+        try {
+            List<Image> images = session.createCriteria(Image.class).list();
+            commitSession(session);
+
+            return images;
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method retrieves a page of the newest images. Only the columns
+     * shown in the image grid are loaded, and the page is found through the
+     * primary key index (keyset pagination), so the cost of a page does not
+     * depend on how many images there are or how deep the page is.
+     * Ids are assigned in upload order, so ordering by id orders the images
+     * by upload date
+     *
+     * @param beforeId only images with a smaller id are returned, or null
+     *                 for the first page
+     * @param pageSize the maximum number of images returned
+     * @return a List of ImageCard objects, newest first
+     */
+    public List<ImageCard> getImageCardsBefore(final Integer beforeId, final int pageSize) {
+        StatelessSession session = openReadOnlyStatelessSession();
+
+        try {
+            Query query = session.createQuery(IMAGE_CARD_SELECT
+                    + (beforeId == null ? "" : " where image.id < :beforeId")
+                    + " order by image.id desc")
+                    .setMaxResults(pageSize);
+
+            if (beforeId != null) {
+                query.setParameter("beforeId", beforeId);
+            }
+
+            List<ImageCard> images = query.list();
+            closeStatelessSession(session);
+
+            return images;
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method retrieves a page of the images that match a tag query,
+     * newest first. Each condition of the query is a subquery on the
+     * Image_Tag join table, and the pages are found by id like the feed
+     *
+     * @param query    the tags that the images must and must not have
+     * @param beforeId only images with a smaller id are returned, or null
+     *                 for the first page
+     * @param pageSize the maximum number of images returned
+     * @return a List of ImageCard objects, newest first
+     */
+    public List<ImageCard> getImageCardsByTags(final TagQuery query, final Integer beforeId, final int pageSize) {
+        List<String> conditions = new ArrayList<String>();
+
+        if (beforeId != null) {
+            conditions.add("image.id < :beforeId");
+        }
+        if (!query.getAllOf().isEmpty()) {
+            conditions.add("(select count(distinct tag.id)" + TAGS_OF_IMAGE + " and tag.name in (:allOf)) = :allOfCount");
+        }
+        if (!query.getAnyOf().isEmpty()) {
+            conditions.add("exists (select tag.id" + TAGS_OF_IMAGE + " and tag.name in (:anyOf))");
+        }
+        if (!query.getNoneOf().isEmpty()) {
+            conditions.add("not exists (select tag.id" + TAGS_OF_IMAGE + " and tag.name in (:noneOf))");
+        }
+
+        StatelessSession session = openReadOnlyStatelessSession();
+
+        try {
+            Query hqlQuery = session.createQuery(IMAGE_CARD_SELECT
+                    + (conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions))
+                    + " order by image.id desc")
+                    .setMaxResults(pageSize);
+
+            if (beforeId != null) {
+                hqlQuery.setParameter("beforeId", beforeId);
+            }
+            if (!query.getAllOf().isEmpty()) {
+                hqlQuery.setParameterList("allOf", query.getAllOf());
+                hqlQuery.setParameter("allOfCount", (long) query.getAllOf().size());
+            }
+            if (!query.getAnyOf().isEmpty()) {
+                hqlQuery.setParameterList("anyOf", query.getAnyOf());
+            }
+            if (!query.getNoneOf().isEmpty()) {
+                hqlQuery.setParameterList("noneOf", query.getNoneOf());
+            }
+
+            List<ImageCard> images = hqlQuery.list();
+            closeStatelessSession(session);
+
+            return images;
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method retrieves the images with the given ids. Only the columns
+     * shown in the image grid are loaded
+     *
+     * @param ids the ids of the images
+     * @return a List of ImageCard objects, in no particular order. Ids of
+     * images that do not exist are skipped
+     */
+    public List<ImageCard> getImageCardsByIds(final Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<ImageCard>();
+        }
+
+        StatelessSession session = openReadOnlyStatelessSession();
+
+        try {
+            List<ImageCard> images = session.createQuery(IMAGE_CARD_SELECT + " where image.id in (:ids)")
+                    .setParameterList("ids", ids)
+                    .list();
+            closeStatelessSession(session);
+
+            return images;
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method retrieves the images of a range of ids with their tags,
+     * for the search index. The ranges can be loaded in parallel
+     *
+     * @param afterId the id before the range, it is not included
+     * @param lastId  the last id of the range
+     * @return a List of Image objects with their tags loaded
+     */
+    public List<Image> getImagesWithTagsBetween(final int afterId, final int lastId) {
+        Session session = openReadOnlySession();
+
+        try {
+            List<Image> images = session.createQuery("select distinct image from Image image"
+                    + " left join fetch image.tags"
+                    + " where image.id > :afterId and image.id <= :lastId")
+                    .setParameter("afterId", afterId)
+                    .setParameter("lastId", lastId)
+                    .list();
+            commitSession(session);
+
+            return images;
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method retrieves the images with the given ids with their tags,
+     * for the subscribers of image events
+     *
+     * @param ids the ids of the images
+     * @return a List of Image objects with their tags loaded, in no
+     * particular order. Ids of images that do not exist are skipped
+     */
+    public List<Image> getImagesWithTagsByIds(final Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<Image>();
+        }
+
+        Session session = openReadOnlySession();
+
+        try {
+            List<Image> images = session.createQuery("select distinct image from Image image"
+                    + " left join fetch image.tags"
+                    + " where image.id in (:ids)")
+                    .setParameterList("ids", ids)
+                    .list();
+            commitSession(session);
+
+            return images;
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method retrieves the largest image id
+     *
+     * @return the largest id or 0 if there are no images
+     */
+    public int getMaxImageId() {
+        StatelessSession session = openReadOnlyStatelessSession();
+
+        try {
+            Integer maxId = (Integer) session.createQuery("select max(image.id) from Image image").uniqueResult();
+            closeStatelessSession(session);
+
+            return maxId == null ? 0 : maxId;
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method adds the perceptualHash column to an Image table created
+     * before the column existed
+     */
+    public void createPerceptualHashColumn() {
         Session session = openSession();
-        List<Image> images = session.createCriteria(Image.class).list();
-        commitSession(session);
 
-        return images;
+        try {
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("alter table Image add column if not exists perceptualHash bigint");
+                }
+            });
+            commitSession(session);
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method retrieves the perceptual hashes of all the images that
+     * have one, without loading the Image entities
+     *
+     * @return the perceptual hashes by image id
+     */
+    public Map<Integer, Long> getPerceptualHashes() {
+        StatelessSession session = openReadOnlyStatelessSession();
+
+        try {
+            List<Object[]> rows = session.createQuery("select image.id, image.perceptualHash from Image image"
+                    + " where image.perceptualHash is not null")
+                    .list();
+            closeStatelessSession(session);
+
+            Map<Integer, Long> hashes = new HashMap<Integer, Long>(rows.size() * 2);
+
+            for (Object[] row : rows) {
+                hashes.put((Integer) row[0], (Long) row[1]);
+            }
+
+            return hashes;
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method retrieves the perceptual hashes of some images
+     *
+     * @param ids the ids of the images
+     * @return the perceptual hashes by image id. Images that do not exist
+     * or have no perceptual hash are left out
+     */
+    public Map<Integer, Long> getPerceptualHashes(final Collection<Integer> ids) {
+        Map<Integer, Long> hashes = new HashMap<Integer, Long>();
+
+        if (ids.isEmpty()) {
+            return hashes;
+        }
+
+        StatelessSession session = openReadOnlyStatelessSession();
+
+        try {
+            List<Object[]> rows = session.createQuery("select image.id, image.perceptualHash from Image image"
+                    + " where image.perceptualHash is not null and image.id in (:ids)")
+                    .setParameterList("ids", ids)
+                    .list();
+            closeStatelessSession(session);
+
+            for (Object[] row : rows) {
+                hashes.put((Integer) row[0], (Long) row[1]);
+            }
+
+            return hashes;
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method retrieves a batch of the images that have no perceptual
+     * hash yet, in id order
+     *
+     * @param afterId   only images with a larger id are returned
+     * @param batchSize the maximum number of images returned
+     * @return the blob hashes of the images by image id
+     */
+    public Map<Integer, String> getImagesWithoutPerceptualHash(final int afterId, final int batchSize) {
+        StatelessSession session = openReadOnlyStatelessSession();
+
+        try {
+            List<Object[]> rows = session.createQuery("select image.id, image.imageHash from Image image"
+                    + " where image.perceptualHash is null and image.imageHash is not null and image.id > :afterId"
+                    + " order by image.id")
+                    .setParameter("afterId", afterId)
+                    .setMaxResults(batchSize)
+                    .list();
+            closeStatelessSession(session);
+
+            Map<Integer, String> images = new LinkedHashMap<Integer, String>();
+
+            for (Object[] row : rows) {
+                images.put((Integer) row[0], (String) row[1]);
+            }
+
+            return images;
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method saves the perceptual hashes of images with one batch
+     * of updates
+     *
+     * @param hashes the perceptual hashes by image id
+     */
+    public void updatePerceptualHashes(final Map<Integer, Long> hashes) {
+        Session session = openSession();
+
+        try {
+            session.doWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "update Image set perceptualHash = ? where id = ?")) {
+                    for (Map.Entry<Integer, Long> entry : hashes.entrySet()) {
+                        statement.setLong(1, entry.getValue());
+                        statement.setInt(2, entry.getKey());
+                        statement.addBatch();
+                    }
+
+                    statement.executeBatch();
+                }
+            });
+            commitSession(session);
+        } finally {
+            closeSession(session);
+        }
     }
 
     /**
@@ -32,7 +406,7 @@ public class ImageManager extends SessionManager {
      * @return an Image object that we retrieved by its title
      */
     public Image getImageByTitle(final String title) {
-        Session session = openSession();
+        Session session = openReadOnlySession();
 
         try {
             Image image = (Image) session.createCriteria(Image.class)
@@ -42,10 +416,12 @@ public class ImageManager extends SessionManager {
 
             return image;
         } catch (HibernateException e) {
-            System.out.println("unable to retrieve an image from database by its title");
-        }
+            log.log(Level.WARNING, "unable to retrieve an image from database by its title", e);
 
-        return null;
+            return null;
+        } finally {
+            closeSession(session);
+        }
     }
 
     /**
@@ -56,49 +432,42 @@ public class ImageManager extends SessionManager {
      * @return an Image object that we retrieved by its title
      */
     public Image getImageByTitleWithJoins(final String title) {
-        Session session = openSession();
-
-        try {
-            Image image = (Image) session.createCriteria(Image.class)
-                    .add(Restrictions.eq("title", title))
-                    .uniqueResult();
-            Hibernate.initialize(image.getTags()); // doing a join on tags table
-            Hibernate.initialize(image.getUser()); // doing a join on user table
-            Hibernate.initialize(image.getUser().getProfilePhoto()); // doing a join on profile photo table
-            commitSession(session);
-
-            return image;
-        } catch (HibernateException e) {
-            System.out.println("unable to retrieve an image from database by its title");
-        }
-
-        return null;
+        return getImageWithJoins("title", title);
     }
 
     /**
-     * This method retrieves an image by a specific tag.
+     * This method retrieves a page of the images that have a specific tag,
+     * newest first. Only the columns shown in the image grid are loaded, and
+     * the pages are found by id like the feed
      *
-     * @param tagName the tag that we want to retrieve images by
-     * @return a list of Image objects that we retrieved by its tag
+     * @param tagName  the tag that we want to retrieve images by
+     * @param beforeId only images with a smaller id are returned, or null
+     *                 for the first page
+     * @param pageSize the maximum number of images returned
+     * @return a list of ImageCard objects of the images with the tag
      */
-    public List<Image> getImagesByTag(final String tagName) {
-        Session session = openSession();
+    public List<ImageCard> getImageCardsByTag(final String tagName, final Integer beforeId, final int pageSize) {
+        StatelessSession session = openReadOnlyStatelessSession();
 
         try {
-            List<Image> images = session
-                    .createCriteria(Image.class)
-                    .createAlias("tags", "tags")
-                    .add(Restrictions.eq("tags.name", tagName))
-                    .list();
+            Query query = session.createQuery(IMAGE_CARD_SELECT
+                    + " join image.tags tag where tag.name = :tagName"
+                    + (beforeId == null ? "" : " and image.id < :beforeId")
+                    + " order by image.id desc")
+                    .setParameter("tagName", tagName)
+                    .setMaxResults(pageSize);
 
-            commitSession(session);
+            if (beforeId != null) {
+                query.setParameter("beforeId", beforeId);
+            }
+
+            List<ImageCard> images = query.list();
+            closeStatelessSession(session);
 
             return images;
-        } catch (HibernateException e) {
-            System.out.println("unable to retrieve an image from database by its title");
+        } finally {
+            closeSession(session);
         }
-
-        return null;
     }
 
     /**
@@ -107,117 +476,314 @@ public class ImageManager extends SessionManager {
      * @return the number of images stored in the database
      */
     public long getNumberOfImages() {
-        Session session = openSession();
+        Session session = openReadOnlySession();
 
-        // to learn more about Hibernate Projection:
-        // https://stackoverflow.com/questions/7498205/when-to-use-hibernate-projections
-        Long numImages = (Long) session.createCriteria(Image.class).setProjection(Projections.rowCount()).uniqueResult();
-        commitSession(session);
+        try {
+            // to learn more about Hibernate Projection:
+            // https://stackoverflow.com/questions/7498205/when-to-use-hibernate-projections
+            Long numImages = (Long) session.createCriteria(Image.class).setProjection(Projections.rowCount()).uniqueResult();
+            commitSession(session);
 
-        return numImages;
+            return numImages;
+        } finally {
+            closeSession(session);
+        }
     }
 
     /**
-     * This method deletes an image data from the database
+     * This method deletes an image data from the database, and writes an
+     * ImageDeleted event for every deleted image in the same transaction
      *
      * @param title the title of the image that we want to delete
      */
     public void deleteImage(final String title) {
         Session session = openSession();
-        Query query = session.createQuery("Delete from " + Image.class.getName() + " where title=:imageTitle");
-        query.setParameter("imageTitle", title);
-        query.executeUpdate();
-        commitSession(session);
+
+        try {
+            List<Integer> ids = session.createQuery("select image.id from Image image where image.title = :imageTitle")
+                    .setParameter("imageTitle", title)
+                    .list();
+            Query query = session.createQuery("Delete from " + Image.class.getName() + " where title=:imageTitle");
+            query.setParameter("imageTitle", title);
+            query.executeUpdate();
+
+            for (Integer id : ids) {
+                session.save(new OutboxEvent(OutboxEvent.Type.IMAGE_DELETED, id));
+            }
+
+            commitSession(session);
+        } finally {
+            closeSession(session);
+        }
     }
 
     /**
-     * This method saves an image's data to the database
+     * This method saves an image's data to the database, and writes an
+     * ImageCreated event in the same transaction
      *
      * @param image the Image who's data that we want to save to the database
      */
     public void saveImage(final Image image) {
         Session session = openSession();
-        session.save(image);
-        commitSession(session);
+
+        try {
+            session.save(image);
+            session.save(new OutboxEvent(OutboxEvent.Type.IMAGE_CREATED, image.getId()));
+            commitSession(session);
+        } finally {
+            closeSession(session);
+        }
     }
 
     /**
-     * This method updates an image's data in the database
+     * This method saves many new images and their tags in one transaction.
+     * The images are written with multi-row inserts, which return the ids
+     * of the images, and the tags with one batch of inserts into the
+     * Image_Tag table. This takes a few statements for the whole list,
+     * where saveImage() takes a statement for every image and every tag.
+     * The ImageCreated events of the images are written with one more
+     * batch of inserts
      *
-     * @param updatedImage an Image object with the updated data
+     * @param images the images to save. Their users and tags must have been
+     *               saved already. The ids of the saved images are set
      */
-    public void updateImage(final Image updatedImage) {
+    public void insertImages(final List<Image> images) {
+        if (images.isEmpty()) {
+            return;
+        }
+
         Session session = openSession();
-        session.update(updatedImage);
-        commitSession(session);
+
+        try {
+            // the upload date is read and written the way hibernate maps it
+            ClassMetadata imageMetadata = getSessionFactory().getClassMetadata(Image.class);
+
+            session.doWork(connection -> {
+                for (int start = 0; start < images.size(); start += ROWS_PER_INSERT) {
+                    insertImageRows(connection, (SessionImplementor) session, imageMetadata,
+                            images.subList(start, Math.min(images.size(), start + ROWS_PER_INSERT)));
+                }
+
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "insert into Image_Tag (image_id, tag_id) values (?, ?)")) {
+                    for (Image image : images) {
+                        for (Tag tag : image.getTags()) {
+                            statement.setInt(1, image.getId());
+                            statement.setInt(2, tag.getId());
+                            statement.addBatch();
+                        }
+                    }
+
+                    statement.executeBatch();
+                }
+
+                List<OutboxEvent> events = new ArrayList<OutboxEvent>();
+
+                for (Image image : images) {
+                    events.add(new OutboxEvent(OutboxEvent.Type.IMAGE_CREATED, image.getId()));
+                }
+
+                OutboxManager.insertEvents(connection, events);
+            });
+            commitSession(session);
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    private static void insertImageRows(final Connection connection, final SessionImplementor session,
+                                        final ClassMetadata imageMetadata, final List<Image> images)
+            throws SQLException {
+        Type uploadDateType = imageMetadata.getPropertyType("uploadDate");
+
+        StringBuilder sql = new StringBuilder(INSERT_IMAGE);
+
+        for (int i = 0; i < images.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(IMAGE_ROW);
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(sql.toString(),
+                Statement.RETURN_GENERATED_KEYS)) {
+            int index = 1;
+
+            for (Image image : images) {
+                statement.setString(index++, image.getTitle());
+                statement.setString(index++, image.getDescription());
+                statement.setString(index++, image.getImageHash());
+                statement.setLong(index++, image.getImageSize());
+                statement.setString(index++, image.getMimeType());
+
+                if (image.getPerceptualHash() != null) {
+                    statement.setLong(index++, image.getPerceptualHash());
+                } else {
+                    statement.setNull(index++, Types.BIGINT);
+                }
+
+                statement.setInt(index++, image.getNumView());
+                uploadDateType.nullSafeSet(statement, imageMetadata.getPropertyValue(image, "uploadDate"), index++,
+                        session);
+                statement.setInt(index++, image.getUser().getId());
+            }
+
+            statement.executeUpdate();
+
+            // the keys come back in the order of the rows
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                for (Image image : images) {
+                    if (!keys.next()) {
+                        throw new SQLException("the database did not return the ids of the inserted images");
+                    }
+
+                    image.setId(keys.getInt("id"));
+                }
+            }
+        }
     }
 
     /**
-     * This method retrieves an image by its Id
+     * This method updates an image's data in the database, and writes an
+     * ImageUpdated event in the same transaction
      *
-     * @param id the id of the image that we are looking for
-     * @return an Image object that we retrieved by its title
+     * @param updatedImage an Image object with the updated data
      */
-    public Image getImageById(final int id) {
+    public void updateImage(final Image updatedImage) {
         Session session = openSession();
 
         try {
-            Image image = (Image) session.createCriteria(Image.class)
-                    .add(Restrictions.eq("id", id))
-                    .uniqueResult(); // retrieves only 1 image
-
-            Hibernate.initialize(image.getTags()); // doing a join on tags table
-            Hibernate.initialize(image.getUser()); // doing a join on user table
-            Hibernate.initialize(image.getUser().getProfilePhoto()); // doing a join on profile photo table
+            session.update(updatedImage);
+            // the event takes its id after the row is locked, so the ids of the
+            // events of an image follow the order of its updates
+            session.flush();
+            session.save(new OutboxEvent(OutboxEvent.Type.IMAGE_UPDATED, updatedImage.getId()));
             commitSession(session);
+        } finally {
+            closeSession(session);
+        }
+    }
 
-            return image;
+    /**
+     * This method adds views to the view counts of images. All the counts
+     * are updated with one batch of atomic increments, so views recorded
+     * by other application instances are never overwritten
+     *
+     * @param views the number of views to add, by image id
+     */
+    public void incrementViewCounts(final Map<Integer, Long> views) {
+        Session session = openSession();
 
-        } catch (HibernateException e) {
-            System.out.println(e.getMessage());
+        try {
+            session.doWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "update Image set numView = numView + ? where id = ?")) {
+                    for (Map.Entry<Integer, Long> entry : views.entrySet()) {
+                        statement.setLong(1, entry.getValue());
+                        statement.setInt(2, entry.getKey());
+                        statement.addBatch();
+                    }
+
+                    statement.executeBatch();
+                }
+            });
+            commitSession(session);
+        } finally {
+            closeSession(session);
         }
-
-        return null;
     }
 
+    /**
+     * This method retrieves an image by its Id, with its tags, user
+     * and user's profile photo
+     *
+     * @param id the id of the image that we are looking for
+     * @return an Image object that we retrieved by its id
+     */
+    public Image getImageById(final int id) {
+        return getImageWithJoins("id", id);
+    }
 
     /**
      * This method retrieves an image by its id, as well as the data
      * related to its tags, user, and user's profile photo
      *
      * @param id the id of the image that we are looking for
-     * @return an Image object that we retrieved by its title
+     * @return an Image object that we retrieved by its id
      */
     public Image getImageByIdWithJoins(final Integer id) {
-        Session session = openSession();
+        return getImageWithJoins("id", id);
+    }
+
+    /**
+     * This helper function retrieves an image together with its tags, its
+     * user and the user's profile photo in a single query, by fetch joining
+     * them instead of initializing each of them with its own query
+     *
+     * @param property the property that the image is looked up by
+     * @param value    the value of the property
+     * @return the Image or null if it does not exist
+     */
+    private Image getImageWithJoins(final String property, final Object value) {
+        Session session = openReadOnlySession();
 
         try {
-            Image image = (Image) session.createCriteria(Image.class)
-                    .add(Restrictions.eq("id", id))
+            Image image = (Image) session.createQuery("select distinct image from Image image"
+                    + " left join fetch image.tags"
+                    + " left join fetch image.user user"
+                    + " left join fetch user.profilePhoto"
+                    + " where image." + property + " = :value")
+                    .setParameter("value", value)
                     .uniqueResult();
-            Hibernate.initialize(image.getTags()); // doing a join on tags table
-            Hibernate.initialize(image.getUser()); // doing a join on user table
-            Hibernate.initialize(image.getUser().getProfilePhoto()); // doing a join on profile photo table
             commitSession(session);
 
             return image;
         } catch (HibernateException e) {
-            System.out.println(e.getMessage());
+            log.log(Level.WARNING, "unable to retrieve an image from database by its " + property, e);
+
+            return null;
+        } finally {
+            closeSession(session);
         }
+    }
+
+    /**
+     * This method retrieves an image by its id without loading its tags,
+     * user or user's profile photo
+     *
+     * @param id the id of the image that we are looking for
+     * @return an Image object or null if the image does not exist
+     */
+    public Image getImageWithoutJoins(final Integer id) {
+        Session session = openReadOnlySession();
 
-        return null;
+        try {
+            Image image = (Image) session.get(Image.class, id);
+            commitSession(session);
+
+            return image;
+        } finally {
+            closeSession(session);
+        }
     }
 
     /**
-     * This method delete an image data from the database
+     * This method delete an image data from the database, and writes an
+     * ImageDeleted event in the same transaction
      *
      * @param id the id of the image that we want to delete
      */
     public void deleteImageById(final Integer id) {
         Session session = openSession();
-        Query query = session.createQuery("Delete from " + Image.class.getName() + " where id=:imageId");
-        query.setParameter("imageId", id);
-        query.executeUpdate();
-        commitSession(session);
+
+        try {
+            Query query = session.createQuery("Delete from " + Image.class.getName() + " where id=:imageId");
+            query.setParameter("imageId", id);
+
+            if (query.executeUpdate() > 0) {
+                session.save(new OutboxEvent(OutboxEvent.Type.IMAGE_DELETED, id));
+            }
+
+            commitSession(session);
+        } finally {
+            closeSession(session);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package com.upgrad.ImageHoster.common;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * Helper functions to resize and re-encode images with the JDK's ImageIO
+ */
+public final class ImageScaler {
+
+    private ImageScaler() { }
+
+    /**
+     * This method scales an image down so that neither of its sides is
+     * longer than maxSize. Images that already fit are only converted to RGB
+     *
+     * @param source  the image to scale
+     * @param maxSize the maximum width and height of the scaled image
+     * @return the scaled RGB image
+     */
+    public static BufferedImage scaleToFit(BufferedImage source, int maxSize) {
+        double scale = Math.min(1.0, (double) maxSize / Math.max(source.getWidth(), source.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+
+        // bilinear scaling only samples 4 pixels, so large reductions are done
+        // in steps of at most one half to avoid aliasing
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = draw(current, width, height);
+        } while (width != targetWidth || height != targetHeight);
+
+        return current;
+    }
+
+    /**
+     * This method decodes an image at a reduced resolution, reading only
+     * every n-th pixel of every n-th row, so that only a small image is held
+     * in memory however large the original is. The dimensions are read from
+     * the header first, and images with too many pixels are not decoded
+     *
+     * @param in        the encoded image
+     * @param minSize   the longest side of the decoded image is at least this
+     *                  long, unless the original is smaller
+     * @param maxPixels the largest number of pixels of the original image
+     * @return the decoded image, or null if ImageIO cannot read the format
+     * @throws ImageTooLargeException if the image has more than maxPixels pixels
+     * @throws IOException if the image cannot be read
+     */
+    public static BufferedImage readSubsampled(InputStream in, int minSize, long maxPixels) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+
+            try {
+                reader.setInput(stream, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                if ((long) width * height > maxPixels) {
+                    throw new ImageTooLargeException(maxPixels);
+                }
+
+                int step = Math.max(1, Math.max(width, height) / minSize);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * This method encodes an image as a JPEG without any metadata
+     *
+     * @param image   the image to encode
+     * @param quality the JPEG quality between 0 and 1
+     * @param out     the stream that the JPEG is written to
+     * @throws IOException
+     */
+    public static void writeJpeg(BufferedImage image, float quality, OutputStream out) throws IOException {
+        write(image, "image/jpeg", quality, out);
+    }
+
+    /**
+     * This method encodes an image without any metadata, in any format that
+     * an ImageIO plugin can write. Formats with a lossy compression mode are
+     * written in that mode at the given quality
+     *
+     * @param image    the image to encode
+     * @param mimeType the MIME type of the format, i.e. image/webp
+     * @param quality  the quality between 0 and 1
+     * @param out      the stream that the image is written to
+     * @throws IOException if no plugin can write the format
+     */
+    public static void write(BufferedImage image, String mimeType, float quality, OutputStream out)
+            throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType(mimeType);
+
+        if (!writers.hasNext()) {
+            throw new IOException("no ImageIO writer for " + mimeType);
+        }
+
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+
+        if (param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+
+            // i.e. WebP has a "Lossy" and a "Lossless" type, lossy first
+            if (param.getCompressionTypes() != null) {
+                param.setCompressionType(param.getCompressionTypes()[0]);
+            }
+
+            param.setCompressionQuality(quality);
+        }
+
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * @param mimeType the MIME type of an image format
+     * @return true if an ImageIO plugin can write images in that format
+     */
+    public static boolean canWrite(String mimeType) {
+        return ImageIO.getImageWritersByMIMEType(mimeType).hasNext();
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        // JPEG has no alpha channel, so transparent pixels are drawn on white
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        return target;
+    }
+}
@@ -0,0 +1,216 @@
+package com.upgrad.ImageHoster.common;
+
+import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.Tag;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An inverted index of the titles, descriptions and tag names of the images,
+ * stored in segment files in a local directory. Searches rank the images by
+ * BM25, with a match in the title counting more than a match in the tags,
+ * and a match in the tags more than one in the description.
+ *
+ * Writes are visible to searches after refresh() and survive a restart after
+ * commit(). All the methods can be called from several threads
+ */
+public class ImageSearchIndex implements Closeable {
+    private static final String ID = "id";
+    private static final String TITLE = "title";
+    private static final String DESCRIPTION = "description";
+    private static final String TAGS = "tags";
+
+    // how much a match in each field counts
+    private static final Map<String, Float> FIELD_WEIGHTS;
+
+    static {
+        Map<String, Float> weights = new HashMap<String, Float>();
+        weights.put(TITLE, 3f);
+        weights.put(TAGS, 2f);
+        weights.put(DESCRIPTION, 1f);
+        FIELD_WEIGHTS = Collections.unmodifiableMap(weights);
+    }
+
+    private final Similarity similarity = new BM25Similarity();
+    // lowercases, drops stop words and stems, so "Kittens" matches "kitten"
+    private final Analyzer analyzer = new EnglishAnalyzer();
+    private final FSDirectory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+
+    public ImageSearchIndex(Path root) throws IOException {
+        directory = FSDirectory.open(root);
+        writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setSimilarity(similarity)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        // searchers read the writer's unflushed segments too (near real time)
+        searcherManager = new SearcherManager(writer, new SearcherFactory() {
+            @Override
+            public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                searcher.setSimilarity(similarity);
+                return searcher;
+            }
+        });
+    }
+
+    /**
+     * This method adds an image to the index, replacing the previous version
+     * of the image if it was indexed before. The tags of the image must have
+     * been loaded
+     *
+     * @param image the image to index
+     * @throws IOException if the index cannot be written
+     */
+    public void index(Image image) throws IOException {
+        Document document = new Document();
+        document.add(new StringField(ID, Integer.toString(image.getId()), Field.Store.YES));
+        addText(document, TITLE, image.getTitle());
+        addText(document, DESCRIPTION, image.getDescription());
+
+        if (image.getTags() != null) {
+            for (Tag tag : image.getTags()) {
+                addText(document, TAGS, tag.getName());
+            }
+        }
+
+        writer.updateDocument(new Term(ID, Integer.toString(image.getId())), document);
+    }
+
+    /**
+     * This method removes an image from the index
+     *
+     * @param imageId the id of the image
+     * @throws IOException if the index cannot be written
+     */
+    public void delete(int imageId) throws IOException {
+        writer.deleteDocuments(new Term(ID, Integer.toString(imageId)));
+    }
+
+    /**
+     * This method removes every image from the index
+     *
+     * @throws IOException if the index cannot be written
+     */
+    public void deleteAll() throws IOException {
+        writer.deleteAll();
+    }
+
+    /**
+     * This method makes the changes written so far visible to searches
+     *
+     * @throws IOException if the index cannot be read
+     */
+    public void refresh() throws IOException {
+        searcherManager.maybeRefresh();
+    }
+
+    /**
+     * This method writes the changes to disk, so they survive a restart
+     *
+     * @throws IOException if the index cannot be written
+     */
+    public void commit() throws IOException {
+        writer.commit();
+    }
+
+    /**
+     * This method returns the ids of the images that match a query, most
+     * relevant first. All the words of the query must match, and the query
+     * may use quotes for phrases, a trailing * for prefixes and - to exclude
+     * a word. Syntax errors are ignored rather than reported
+     *
+     * @param queryText the words that the user searched for
+     * @param offset    the number of matches to skip
+     * @param limit     the maximum number of ids returned
+     * @return the ids of the matching images
+     * @throws IOException if the index cannot be read
+     */
+    public List<Integer> search(String queryText, int offset, int limit) throws IOException {
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, FIELD_WEIGHTS);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query query = parser.parse(queryText);
+
+        List<Integer> ids = new ArrayList<Integer>();
+
+        // a query of stop words only is parsed to nothing
+        if (query == null || limit <= 0) {
+            return ids;
+        }
+
+        IndexSearcher searcher = searcherManager.acquire();
+
+        try {
+            TopDocs topDocs = searcher.search(query, offset + limit);
+            ScoreDoc[] hits = topDocs.scoreDocs;
+
+            for (int i = offset; i < hits.length; i++) {
+                ids.add(Integer.valueOf(searcher.doc(hits[i].doc).get(ID)));
+            }
+        } finally {
+            searcherManager.release(searcher);
+        }
+
+        return ids;
+    }
+
+    /**
+     * @return the number of images in the index, as of the last refresh()
+     * @throws IOException if the index cannot be read
+     */
+    public int getDocumentCount() throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+
+        try {
+            return searcher.getIndexReader().numDocs();
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * This method commits the pending changes and closes the index
+     *
+     * @throws IOException if the index cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    private static void addText(Document document, String field, String text) {
+        if (text != null) {
+            document.add(new TextField(field, text, Field.Store.NO));
+        }
+    }
+}
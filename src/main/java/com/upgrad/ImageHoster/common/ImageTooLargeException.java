@@ -0,0 +1,18 @@
+package com.upgrad.ImageHoster.common;
+
+/**
+ * Thrown when an uploaded image has more pixels than the configured limit.
+ * A small, highly compressed file can decode to gigabytes of pixels
+ */
+public class ImageTooLargeException extends InvalidUploadException {
+    private static final long serialVersionUID = 1L;
+
+    private final long maxPixels;
+
+    public ImageTooLargeException(long maxPixels) {
+        super("the uploaded image has more than " + maxPixels + " pixels");
+        this.maxPixels = maxPixels;
+    }
+
+    public long getMaxPixels() { return maxPixels; }
+}
@@ -0,0 +1,56 @@
+package com.upgrad.ImageHoster.common;
+
+/**
+ * Recognizes the format of an image from its first bytes (its "magic
+ * number"), so the type of an upload does not depend on the file name or
+ * the Content-Type sent by the browser
+ */
+public final class ImageTypeSniffer {
+
+    // the number of bytes needed to recognize every supported format
+    public static final int HEADER_LENGTH = 12;
+
+    private ImageTypeSniffer() {}
+
+    /**
+     * @param header the first bytes of the file
+     * @param length the number of bytes in header, which is less than
+     *               HEADER_LENGTH for very small files
+     * @return the MIME type of the image or null if it is not recognized
+     */
+    public static String sniff(byte[] header, int length) {
+        if (startsWith(header, length, 0, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(header, length, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "image/png";
+        }
+        if (startsWith(header, length, 0, 'G', 'I', 'F', '8', '7', 'a')
+                || startsWith(header, length, 0, 'G', 'I', 'F', '8', '9', 'a')) {
+            return "image/gif";
+        }
+        if (startsWith(header, length, 0, 'R', 'I', 'F', 'F')
+                && startsWith(header, length, 8, 'W', 'E', 'B', 'P')) {
+            return "image/webp";
+        }
+        if (startsWith(header, length, 0, 'B', 'M')) {
+            return "image/bmp";
+        }
+
+        return null;
+    }
+
+    private static boolean startsWith(byte[] header, int length, int offset, int... magic) {
+        if (length < offset + magic.length) {
+            return false;
+        }
+
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[offset + i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,57 @@
+package com.upgrad.ImageHoster.common;
+
+import com.upgrad.ImageHoster.model.ImportResult;
+import com.upgrad.ImageHoster.service.ImportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Logger;
+
+/**
+ * Imports a directory or ZIP file of images on startup when the application
+ * is started with imagehoster.import.source, i.e.
+ *
+ * java -jar imagehoster.jar --imagehoster.import.source=customer.zip --imagehoster.import.username=customer
+ *
+ * Starting it again with the same source continues an import that stopped
+ */
+@Component
+@ConditionalOnProperty(name = "imagehoster.import.source")
+public class ImportRunner implements ApplicationRunner {
+
+    Logger log = Logger.getLogger(this.getClass().getName());
+
+    @Autowired
+    private ImportService importService;
+
+    @Value("${imagehoster.import.source}")
+    private String source;
+
+    @Value("${imagehoster.import.username}")
+    private String username;
+
+    // by default the checkpoint is kept next to the source
+    @Value("${imagehoster.import.checkpoint:}")
+    private String checkpoint;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        Path sourcePath = Paths.get(source);
+        Path checkpointPath = checkpoint.isEmpty()
+                ? sourcePath.toAbsolutePath().resolveSibling(sourcePath.getFileName() + ".checkpoint")
+                : Paths.get(checkpoint);
+
+        ImportResult result = importService.importImages(sourcePath, username, checkpointPath);
+
+        log.info(String.format("imported %d images from %s in %.1f s (%.1f images/s), %d failed,"
+                        + " %d imported by earlier runs", result.getImported(), source, result.getElapsedSeconds(),
+                result.getImagesPerSecond(), result.getFailed(), result.getSkipped()));
+    }
+}
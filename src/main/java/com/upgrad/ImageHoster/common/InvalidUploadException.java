@@ -0,0 +1,14 @@
+package com.upgrad.ImageHoster.common;
+
+import java.io.IOException;
+
+/**
+ * Thrown when an uploaded file is rejected before it is stored
+ */
+public class InvalidUploadException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public InvalidUploadException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,185 @@
+package com.upgrad.ImageHoster.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Pattern;
+
+/**
+ * A BlobStore that keeps every blob in its own file under a root directory.
+ * Files are sharded by the first two bytes of their hash, i.e. the blob
+ * "ab12..." is stored as root/ab/12/ab12..., so no directory grows too large.
+ * Blobs derived from it are stored as root/derived/ab/12/ab12.../variant
+ */
+public class LocalBlobStore implements BlobStore {
+
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern VARIANT_PATTERN = Pattern.compile("[a-z0-9][a-z0-9.-]*");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+    private final Path derivedRoot;
+    private final Path tempDirectory;
+
+    public LocalBlobStore(Path root) throws IOException {
+        this.root = root;
+        this.derivedRoot = root.resolve("derived");
+        this.tempDirectory = root.resolve("tmp");
+        Files.createDirectories(tempDirectory);
+    }
+
+    @Override
+    public StoredBlob put(InputStream content) throws IOException {
+        // the content is written to a temp file while it is hashed, and only
+        // renamed to its final location once it is complete, so readers never
+        // see a partially written blob
+        Path tempFile = Files.createTempFile(tempDirectory, "upload-", ".tmp");
+
+        try {
+            MessageDigest digest = newDigest();
+            long size = 0;
+
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+
+                while ((read = content.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                    size += read;
+                }
+            }
+
+            String hash = toHex(digest.digest());
+            Path target = resolve(root, hash);
+
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                moveAtomically(tempFile, target);
+            }
+
+            return new StoredBlob(hash, size);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @Override
+    public void putDerived(String hash, String variant, InputStream content) throws IOException {
+        Path target = resolveDerived(hash, variant);
+        Path tempFile = Files.createTempFile(tempDirectory, "derived-", ".tmp");
+
+        try {
+            Files.copy(content, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            Files.createDirectories(target.getParent());
+
+            try {
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @Override
+    public boolean existsDerived(String hash, String variant) {
+        return Files.exists(resolveDerived(hash, variant));
+    }
+
+    @Override
+    public Path getDerivedLocalPath(String hash, String variant) {
+        return resolveDerived(hash, variant);
+    }
+
+    @Override
+    public InputStream open(String hash) throws IOException {
+        return Files.newInputStream(resolve(hash));
+    }
+
+    @Override
+    public boolean exists(String hash) {
+        return Files.exists(resolve(hash));
+    }
+
+    @Override
+    public Path getLocalPath(String hash) {
+        return resolve(hash);
+    }
+
+    @Override
+    public void delete(String hash) throws IOException {
+        Files.deleteIfExists(resolve(hash));
+    }
+
+    /**
+     * This method returns the file that holds a blob
+     *
+     * @param hash the hash of the blob
+     * @return the path of the blob's file, which may not exist
+     */
+    public Path resolve(String hash) {
+        return resolve(root, hash);
+    }
+
+    private Path resolveDerived(String hash, String variant) {
+        if (variant == null || !VARIANT_PATTERN.matcher(variant).matches()) {
+            throw new IllegalArgumentException("invalid blob variant: " + variant);
+        }
+
+        return resolve(derivedRoot, hash).resolve(variant);
+    }
+
+    private static Path resolve(Path directory, String hash) {
+        if (hash == null || !HASH_PATTERN.matcher(hash).matches()) {
+            throw new IllegalArgumentException("invalid blob hash: " + hash);
+        }
+
+        return directory.resolve(hash.substring(0, 2))
+                .resolve(hash.substring(2, 4))
+                .resolve(hash);
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // another upload stored the same content first
+        } catch (AtomicMoveNotSupportedException e) {
+            try {
+                Files.move(source, target);
+            } catch (FileAlreadyExistsException | NoSuchFileException alreadyMoved) {
+                // another upload stored the same content first
+            }
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+
+        return new String(hex);
+    }
+}
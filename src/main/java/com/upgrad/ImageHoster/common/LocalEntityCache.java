@@ -0,0 +1,74 @@
+package com.upgrad.ImageHoster.common;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * An EntityCache kept in the memory of this JVM. The least recently used
+ * entities are evicted once the cache is full, and every entity is
+ * evicted a fixed time after it was loaded
+ */
+public class LocalEntityCache<K, V> implements EntityCache<K, V> {
+    private final String name;
+    private final Cache<K, V> cache;
+
+    public LocalEntityCache(String name, long maximumSize, long timeToLive, TimeUnit unit) {
+        this(name, maximumSize, timeToLive, unit, Ticker.systemTicker());
+    }
+
+    LocalEntityCache(String name, long maximumSize, long timeToLive, TimeUnit unit, Ticker ticker) {
+        this.name = name;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive, unit)
+                .ticker(ticker)
+                .build();
+    }
+
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = cache.getIfPresent(key);
+
+        if (value == null) {
+            value = loader.apply(key);
+
+            if (value != null) {
+                cache.put(key, value);
+            }
+        }
+
+        return value;
+    }
+
+    @Override
+    public V getIfPresent(K key) {
+        return cache.getIfPresent(key);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        cache.put(key, value);
+    }
+
+    @Override
+    public void invalidate(K key) {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public CacheMetrics getMetrics() {
+        CacheStats stats = cache.stats();
+
+        return new CacheMetrics(name, stats.hitCount(), stats.missCount(), stats.evictionCount(), cache.size());
+    }
+}
@@ -0,0 +1,149 @@
+package com.upgrad.ImageHoster.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Pattern;
+
+/**
+ * A SessionStore that keeps every session in its own file under a root
+ * directory, sharded by the first two characters of the session id, i.e.
+ * root/ab/ab12.... A file holds the expiry time of the session followed by
+ * the serialized session. Several instances of the application on one host,
+ * or on hosts that share the directory, see the same sessions
+ */
+public class LocalSessionStore implements SessionStore {
+
+    private static final Pattern ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]{8,128}");
+    private static final String TEMP_DIRECTORY = "tmp";
+
+    private final Path root;
+    private final Path tempDirectory;
+
+    public LocalSessionStore(Path root) throws IOException {
+        this.root = root;
+        this.tempDirectory = root.resolve(TEMP_DIRECTORY);
+        Files.createDirectories(tempDirectory);
+    }
+
+    @Override
+    public byte[] load(String id, long now) throws IOException {
+        // an id that could not have been created is a forged cookie
+        if (!ID_PATTERN.matcher(id).matches()) {
+            return null;
+        }
+
+        byte[] data;
+
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(resolve(id)))) {
+            if (in.readLong() <= now) {
+                return null;
+            }
+
+            data = readRemaining(in);
+        } catch (NoSuchFileException | EOFException e) {
+            return null;
+        }
+
+        return data;
+    }
+
+    @Override
+    public void save(String id, byte[] data, long expiresAt) throws IOException {
+        Path target = resolve(checkId(id));
+        Path tempFile = Files.createTempFile(tempDirectory, "session-", ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tempFile))) {
+                out.writeLong(expiresAt);
+                out.write(data);
+            }
+
+            // readers see the previous or the new version, never a partial one
+            Files.createDirectories(target.getParent());
+
+            try {
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @Override
+    public void delete(String id) throws IOException {
+        if (ID_PATTERN.matcher(id).matches()) {
+            Files.deleteIfExists(resolve(id));
+        }
+    }
+
+    @Override
+    public int deleteExpired(long now) throws IOException {
+        int deleted = 0;
+
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(root)) {
+            for (Path shard : shards) {
+                if (shard.equals(tempDirectory) || !Files.isDirectory(shard)) {
+                    continue;
+                }
+
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(shard)) {
+                    for (Path file : files) {
+                        if (isExpired(file, now) && Files.deleteIfExists(file)) {
+                            deleted++;
+                        }
+                    }
+                }
+            }
+        }
+
+        return deleted;
+    }
+
+    private static boolean isExpired(Path file, long now) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readLong() <= now;
+        } catch (NoSuchFileException e) {
+            // deleted since the directory was listed
+            return false;
+        } catch (EOFException e) {
+            // a truncated file can never be read
+            return true;
+        }
+    }
+
+    private static byte[] readRemaining(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+
+        return out.toByteArray();
+    }
+
+    private static String checkId(String id) {
+        if (!ID_PATTERN.matcher(id).matches()) {
+            throw new IllegalArgumentException("not a valid session id: " + id);
+        }
+
+        return id;
+    }
+
+    private Path resolve(String id) {
+        return root.resolve(id.substring(0, 2)).resolve(id);
+    }
+}
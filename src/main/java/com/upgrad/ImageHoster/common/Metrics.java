@@ -0,0 +1,129 @@
+package com.upgrad.ImageHoster.common;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The histograms and counters of the application, shown by the /metrics
+ * endpoint. A histogram belongs to a family, i.e. "dao_call_seconds", and
+ * is named within it, i.e. "ImageManager.getImageById". The registry is
+ * static like SqlStatementCounter, since the managers are not Spring beans.
+ *
+ * Looking up an existing histogram or counter does not allocate, and
+ * recording into one does not lock, so the metrics can stay on in
+ * production. Families whose name ends with "_seconds" hold nanoseconds
+ */
+public final class Metrics {
+    public static final String HTTP_REQUEST_SECONDS = "http_request_seconds";
+    public static final String TEMPLATE_RENDER_SECONDS = "template_render_seconds";
+    public static final String DAO_CALL_SECONDS = "dao_call_seconds";
+    public static final String REQUEST_SQL_STATEMENTS = "request_sql_statements";
+    public static final String REQUEST_DB_SESSIONS = "request_db_sessions";
+
+    public static final String IMAGE_BYTES_READ = "image_bytes_read_total";
+    public static final String IMAGE_BYTES_WRITTEN = "image_bytes_written_total";
+    public static final String IMAGE_BYTES_SENT = "image_bytes_sent_total";
+
+    private static final ConcurrentMap<String, ConcurrentMap<String, Histogram>> HISTOGRAMS =
+            new ConcurrentHashMap<String, ConcurrentMap<String, Histogram>>();
+    private static final ConcurrentMap<String, LongAdder> COUNTERS = new ConcurrentHashMap<String, LongAdder>();
+
+    private Metrics() { }
+
+    /**
+     * @param family the family of the histogram
+     * @param name   the name of the histogram within the family
+     * @return the histogram, created the first time it is asked for
+     */
+    public static Histogram histogram(String family, String name) {
+        ConcurrentMap<String, Histogram> histograms = HISTOGRAMS.get(family);
+
+        if (histograms == null) {
+            histograms = HISTOGRAMS.computeIfAbsent(family, key -> new ConcurrentHashMap<String, Histogram>());
+        }
+
+        Histogram histogram = histograms.get(name);
+
+        return histogram != null ? histogram : histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * @param name the name of the counter
+     * @return the counter, created the first time it is asked for
+     */
+    public static LongAdder counter(String name) {
+        LongAdder counter = COUNTERS.get(name);
+
+        return counter != null ? counter : COUNTERS.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * @return the histograms by family and name, sorted by both
+     */
+    public static Map<String, Map<String, Histogram>> getHistograms() {
+        Map<String, Map<String, Histogram>> copy = new TreeMap<String, Map<String, Histogram>>();
+
+        for (Map.Entry<String, ConcurrentMap<String, Histogram>> family : HISTOGRAMS.entrySet()) {
+            copy.put(family.getKey(), new TreeMap<String, Histogram>(family.getValue()));
+        }
+
+        return copy;
+    }
+
+    /**
+     * @return the current values of the counters, sorted by name
+     */
+    public static Map<String, Long> getCounters() {
+        Map<String, Long> values = new TreeMap<String, Long>();
+
+        for (Map.Entry<String, LongAdder> counter : COUNTERS.entrySet()) {
+            values.put(counter.getKey(), counter.getValue().sum());
+        }
+
+        return values;
+    }
+
+    /**
+     * This method wraps a manager in a proxy that records how long each of
+     * its public methods takes in the "dao_call_seconds" histograms, named
+     * after the class and the method, i.e. "ImageManager.getImageById".
+     * Calls from the manager to its own methods are not recorded separately
+     *
+     * @param manager the manager
+     * @return the proxy, a subclass of the manager's class
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends SessionManager> T timed(T manager) {
+        String prefix = manager.getClass().getSimpleName() + ".";
+        ConcurrentMap<Method, Histogram> histograms = new ConcurrentHashMap<Method, Histogram>();
+
+        ProxyFactory proxyFactory = new ProxyFactory(manager);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+            Method method = invocation.getMethod();
+            Histogram histogram = histograms.get(method);
+
+            if (histogram == null) {
+                histogram = histograms.computeIfAbsent(method,
+                        key -> histogram(DAO_CALL_SECONDS, prefix + key.getName()));
+            }
+
+            long start = System.nanoTime();
+
+            try {
+                return invocation.proceed();
+            } finally {
+                histogram.record(System.nanoTime() - start);
+            }
+        });
+
+        return (T) proxyFactory.getProxy(manager.getClass().getClassLoader());
+    }
+}
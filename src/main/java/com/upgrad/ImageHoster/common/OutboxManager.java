@@ -0,0 +1,148 @@
+package com.upgrad.ImageHoster.common;
+
+import com.upgrad.ImageHoster.model.OutboxEvent;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.List;
+
+@SuppressWarnings("unchecked")
+public class OutboxManager extends SessionManager {
+
+    /**
+     * This method creates the OutboxEvent table in a database created
+     * before the table existed
+     */
+    public void createTable() {
+        Session session = openSession();
+
+        try {
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("create table if not exists OutboxEvent (id bigserial primary key,"
+                            + " type varchar(32) not null, entityId integer not null, entityName varchar(255),"
+                            + " createdAt bigint not null)");
+                }
+            });
+            commitSession(session);
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method retrieves the events written after an event, oldest
+     * first
+     *
+     * @param afterId   only events with a larger id are returned
+     * @param batchSize the maximum number of events returned
+     * @return a List of OutboxEvent objects in id order
+     */
+    public List<OutboxEvent> getEventsAfter(final long afterId, final int batchSize) {
+        StatelessSession session = openStatelessSession();
+
+        try {
+            List<OutboxEvent> events = session.createQuery("from OutboxEvent event where event.id > :afterId"
+                    + " order by event.id")
+                    .setParameter("afterId", afterId)
+                    .setMaxResults(batchSize)
+                    .list();
+            closeStatelessSession(session);
+
+            return events;
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method retrieves the events with the given ids that exist
+     *
+     * @param ids the ids of the events
+     * @return a List of OutboxEvent objects in id order
+     */
+    public List<OutboxEvent> getEventsByIds(final Collection<Long> ids) {
+        StatelessSession session = openStatelessSession();
+
+        try {
+            List<OutboxEvent> events = session.createQuery("from OutboxEvent event where event.id in (:ids)"
+                    + " order by event.id")
+                    .setParameterList("ids", ids)
+                    .list();
+            closeStatelessSession(session);
+
+            return events;
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method retrieves the largest event id
+     *
+     * @return the largest id or 0 if there are no events
+     */
+    public long getMaxEventId() {
+        StatelessSession session = openStatelessSession();
+
+        try {
+            Long maxId = (Long) session.createQuery("select max(event.id) from OutboxEvent event").uniqueResult();
+            closeStatelessSession(session);
+
+            return maxId == null ? 0 : maxId;
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method deletes the events written before a point in time. Every
+     * application instance reads every event, so events are only deleted
+     * once they are old enough for all the instances to have read them
+     *
+     * @param createdBefore milliseconds since the epoch
+     * @return the number of events deleted
+     */
+    public int deleteEventsCreatedBefore(final long createdBefore) {
+        Session session = openSession();
+
+        try {
+            int deleted = session.createQuery("delete from OutboxEvent where createdAt < :createdBefore")
+                    .setParameter("createdBefore", createdBefore)
+                    .executeUpdate();
+            commitSession(session);
+
+            return deleted;
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This helper function writes events with one batch of inserts, on the
+     * connection of a session that writes the entities the events are about
+     *
+     * @param connection the connection of the session
+     * @param events     the events to write. Their ids are not set
+     */
+    static void insertEvents(final Connection connection, final Collection<OutboxEvent> events)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "insert into OutboxEvent (type, entityId, entityName, createdAt) values (?, ?, ?, ?)")) {
+            for (OutboxEvent event : events) {
+                statement.setString(1, event.getType().name());
+                statement.setInt(2, event.getEntityId());
+                statement.setString(3, event.getEntityName());
+                statement.setLong(4, event.getCreatedAt());
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+        }
+    }
+}
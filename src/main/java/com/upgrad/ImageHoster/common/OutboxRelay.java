@@ -0,0 +1,398 @@
+package com.upgrad.ImageHoster.common;
+
+import com.upgrad.ImageHoster.model.OutboxEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands the events written to the OutboxEvent table to the subscribers, on
+ * a background thread. An event is written in the transaction of the change
+ * it is about, so it exists if and only if the change was committed, and
+ * the request that made the change does not wait for the subscribers.
+ *
+ * The events are read in id order, in batches, and every subscriber is
+ * handed the events of a batch in that order, so the events of an image
+ * reach a subscriber in the order they were written. A subscriber that
+ * fails is handed the batch again after a backoff, a few times, before the
+ * events are given up on. The id of the last event handed over is kept in
+ * a file, and the next start continues after it.
+ *
+ * Ids are assigned when an event is inserted, not when it is committed, so
+ * an event may become visible after events with larger ids. The relay stops
+ * at a missing id until it shows up, or until gapTimeout has passed since it
+ * was first found missing. The ids found missing by the same read are waited
+ * for together, so ids burned by rolled back transactions hold the relay up
+ * for one gapTimeout, not one each. The skipped ids are kept in the position
+ * file and looked for again, once every gapTimeout, until the events are
+ * deleted after the retention: an event that is committed late is handed
+ * over then, after events with larger ids
+ */
+public class OutboxRelay implements Closeable {
+    private static final String RELAYED_EVENTS = "outbox_events_relayed_total";
+    private static final String FAILED_EVENTS = "outbox_events_failed_total";
+    private static final long PRUNE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    // the most skipped ids that are looked for again, the oldest are given
+    // up on first
+    private static final int MAX_SKIPPED_IDS = 10000;
+
+    Logger log = Logger.getLogger(this.getClass().getName());
+
+    private final OutboxManager outboxManager;
+    private final List<EventSubscriber> subscribers;
+    private final Path positionFile;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration gapTimeout;
+    private final Duration retention;
+    private final ScheduledExecutorService relay;
+    private final LongAdder relayedEvents = Metrics.counter(RELAYED_EVENTS);
+    private final LongAdder failedEvents = Metrics.counter(FAILED_EVENTS);
+
+    // the id of the last event handed over, -1 until it has been read
+    private long position = -1;
+    // the ids after the position that are missing, and when (System.nanoTime())
+    // the relay started waiting for them
+    private final Map<Long, Long> missingSince = new HashMap<Long, Long>();
+    // the ids that were skipped, oldest first, and when (milliseconds since
+    // the epoch) they were skipped
+    private final LinkedHashMap<Long, Long> skippedIds = new LinkedHashMap<Long, Long>();
+    private long lastRecheckedAt;
+    private long lastPrunedAt;
+
+    /**
+     * @param outboxManager the manager of the OutboxEvent table
+     * @param subscribers   the subscribers that the events are handed to
+     * @param positionFile  the file that the id of the last event handed
+     *                      over is kept in. If it does not exist the relay
+     *                      starts after the newest event
+     * @param batchSize     the maximum number of events read at a time
+     * @param maxAttempts   how many times a subscriber is handed a batch
+     *                      before its events are given up on
+     * @param retryBackoff  the wait before the second attempt, which doubles
+     *                      with every attempt after that
+     * @param gapTimeout    how long the relay waits for a missing id
+     * @param retention     how long the events are kept in the table
+     */
+    public OutboxRelay(OutboxManager outboxManager, List<EventSubscriber> subscribers, Path positionFile,
+                       int batchSize, int maxAttempts, Duration retryBackoff, Duration gapTimeout,
+                       Duration retention) {
+        this.outboxManager = outboxManager;
+        this.subscribers = new ArrayList<EventSubscriber>(subscribers);
+        this.positionFile = positionFile;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        this.gapTimeout = gapTimeout;
+        this.retention = retention;
+        this.relay = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * This method starts handing the events over in the background
+     *
+     * @param pollInterval how often the table is read for new events
+     */
+    public void start(Duration pollInterval) {
+        relay.scheduleWithFixedDelay(this::relayEventsQuietly, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * This method hands the events written since the last call to the
+     * subscribers, a batch at a time
+     *
+     * @return the number of events handed over
+     * @throws IOException if the position file cannot be read or written
+     */
+    public synchronized int relayEvents() throws IOException {
+        if (position < 0) {
+            readPosition();
+        }
+
+        int relayed = relaySkippedEvents();
+        List<OutboxEvent> events;
+        List<OutboxEvent> readyEvents;
+
+        do {
+            events = outboxManager.getEventsAfter(position, batchSize);
+            readyEvents = readyEvents(events);
+
+            if (!readyEvents.isEmpty()) {
+                dispatch(readyEvents);
+                position = readyEvents.get(readyEvents.size() - 1).getId();
+                missingSince.keySet().removeIf(id -> id <= position);
+                writePosition();
+                relayed += readyEvents.size();
+                relayedEvents.add(readyEvents.size());
+            }
+            // a full batch that was handed over may be followed by more events
+        } while (events.size() == batchSize && readyEvents.size() == events.size());
+
+        pruneIfDue();
+
+        return relayed;
+    }
+
+    /**
+     * @return the id of the last event handed over
+     */
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    /**
+     * This method stops handing the events over. The events that have not
+     * been handed over are handed over by the next start
+     */
+    @Override
+    public void close() {
+        relay.shutdownNow();
+    }
+
+    private void relayEventsQuietly() {
+        try {
+            relayEvents();
+        } catch (IOException | RuntimeException e) {
+            // the events are read again by the next poll
+            log.log(Level.WARNING, "unable to relay the outbox events", e);
+        }
+    }
+
+    /**
+     * This helper function returns the events that can be handed over: the
+     * events up to the first missing id, or past it if the relay has waited
+     * for the ids of that gap for gapTimeout. The ids that are skipped are
+     * recorded to be looked for again
+     */
+    private List<OutboxEvent> readyEvents(List<OutboxEvent> events) {
+        long now = System.nanoTime();
+        long expectedId = position + 1;
+
+        for (OutboxEvent event : events) {
+            for (long id = expectedId; id < event.getId(); id++) {
+                missingSince.putIfAbsent(id, now);
+            }
+
+            expectedId = event.getId() + 1;
+        }
+
+        expectedId = position + 1;
+        int ready = 0;
+
+        for (OutboxEvent event : events) {
+            if (event.getId() != expectedId) {
+                // the last id of the gap was found missing last
+                if (now - missingSince.get(event.getId() - 1) < gapTimeout.toNanos()) {
+                    break;
+                }
+
+                skip(expectedId, event.getId() - 1);
+            }
+
+            expectedId = event.getId() + 1;
+            ready++;
+        }
+
+        return events.subList(0, ready);
+    }
+
+    private void skip(long fromId, long toId) {
+        long now = System.currentTimeMillis();
+
+        for (long id = fromId; id <= toId; id++) {
+            skippedIds.put(id, now);
+        }
+
+        log.warning("skipped the outbox events " + fromId + " to " + toId + ", which were not committed within "
+                + gapTimeout + ". They are handed over if they are committed later");
+
+        int givenUp = 0;
+
+        for (Iterator<Long> oldest = skippedIds.keySet().iterator(); skippedIds.size() > MAX_SKIPPED_IDS; givenUp++) {
+            oldest.next();
+            oldest.remove();
+        }
+
+        if (givenUp > 0) {
+            log.warning("gave up on " + givenUp + " skipped outbox events, more than " + MAX_SKIPPED_IDS
+                    + " were skipped");
+        }
+    }
+
+    /**
+     * This helper function hands over the skipped events that have been
+     * committed since they were skipped. The skipped ids are looked for once
+     * every gapTimeout, until the events would have been deleted
+     *
+     * @return the number of events handed over
+     */
+    private int relaySkippedEvents() throws IOException {
+        long now = System.currentTimeMillis();
+
+        if (skippedIds.isEmpty() || now - lastRecheckedAt < gapTimeout.toMillis()) {
+            return 0;
+        }
+
+        lastRecheckedAt = now;
+        long deletedBefore = now - retention.toMillis();
+        boolean changed = skippedIds.values().removeIf(skippedAt -> skippedAt < deletedBefore);
+        List<Long> ids = new ArrayList<Long>(skippedIds.keySet());
+        int relayed = 0;
+
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<OutboxEvent> lateEvents = outboxManager.getEventsByIds(
+                    ids.subList(from, Math.min(from + batchSize, ids.size())));
+
+            if (!lateEvents.isEmpty()) {
+                log.info("handing over " + lateEvents.size() + " outbox events that were committed after they"
+                        + " were skipped");
+                dispatch(lateEvents);
+
+                for (OutboxEvent event : lateEvents) {
+                    skippedIds.remove(event.getId());
+                }
+
+                changed = true;
+                relayed += lateEvents.size();
+                relayedEvents.add(lateEvents.size());
+            }
+        }
+
+        if (changed) {
+            writePosition();
+        }
+
+        return relayed;
+    }
+
+    /**
+     * This helper function hands a batch to every subscriber that asked
+     * for some of its events, retrying the subscribers that fail
+     */
+    private void dispatch(List<OutboxEvent> events) throws InterruptedIOException {
+        for (EventSubscriber subscriber : subscribers) {
+            List<OutboxEvent> subscribedEvents = new ArrayList<OutboxEvent>();
+
+            for (OutboxEvent event : events) {
+                if (subscriber.getEventTypes().contains(event.getType())) {
+                    subscribedEvents.add(event);
+                }
+            }
+
+            if (!subscribedEvents.isEmpty()) {
+                dispatch(subscriber, subscribedEvents);
+            }
+        }
+    }
+
+    private void dispatch(EventSubscriber subscriber, List<OutboxEvent> events) throws InterruptedIOException {
+        String name = subscriber.getClass().getSimpleName();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                subscriber.handle(events);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts) {
+                    failedEvents.add(events.size());
+                    log.log(Level.SEVERE, name + " gave up on the outbox events " + events.get(0).getId()
+                            + " to " + events.get(events.size() - 1).getId(), e);
+                    return;
+                }
+
+                log.log(Level.WARNING, name + " failed to handle the outbox events, attempt " + attempt, e);
+            }
+
+            try {
+                Thread.sleep(retryBackoff.toMillis() << (attempt - 1));
+            } catch (InterruptedException e) {
+                // the batch is handed over again after the next start
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("the relay was stopped");
+            }
+        }
+    }
+
+    private void pruneIfDue() {
+        long now = System.currentTimeMillis();
+
+        if (now - lastPrunedAt >= PRUNE_INTERVAL_MILLIS) {
+            lastPrunedAt = now;
+            int deleted = outboxManager.deleteEventsCreatedBefore(now - retention.toMillis());
+
+            if (deleted > 0) {
+                log.fine("deleted " + deleted + " old outbox events");
+            }
+        }
+    }
+
+    /**
+     * This helper function reads the position file, which holds the id of
+     * the last event handed over followed by the skipped ids, i.e.
+     * "42 17:1700000000000", where 1700000000000 is when 17 was skipped
+     */
+    private void readPosition() throws IOException {
+        if (positionFile == null || !Files.exists(positionFile)) {
+            // the derived data of a new instance is built from the database
+            position = outboxManager.getMaxEventId();
+            return;
+        }
+
+        String[] fields = new String(Files.readAllBytes(positionFile), StandardCharsets.US_ASCII).trim()
+                .split("\\s+");
+
+        for (int i = 1; i < fields.length; i++) {
+            int separator = fields[i].indexOf(':');
+            skippedIds.put(Long.parseLong(fields[i].substring(0, separator)),
+                    Long.parseLong(fields[i].substring(separator + 1)));
+        }
+
+        position = Long.parseLong(fields[0]);
+    }
+
+    private void writePosition() throws IOException {
+        if (positionFile == null) {
+            return;
+        }
+
+        // the position is replaced at once, so it is never half written
+        Path tempFile = positionFile.resolveSibling(positionFile.getFileName() + ".tmp");
+        StringBuilder content = new StringBuilder(Long.toString(position));
+
+        for (Map.Entry<Long, Long> skipped : skippedIds.entrySet()) {
+            content.append(' ').append(skipped.getKey()).append(':').append(skipped.getValue());
+        }
+
+        Files.write(tempFile, content.toString().getBytes(StandardCharsets.US_ASCII));
+
+        try {
+            Files.move(tempFile, positionFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, positionFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.upgrad.ImageHoster.common;
+
+import org.thymeleaf.context.Context;
+import org.thymeleaf.context.IExpressionContext;
+import org.thymeleaf.linkbuilder.StandardLinkBuilder;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ITemplateResolver;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Renders Thymeleaf templates to strings outside of an HTTP request, so a
+ * page can be rendered once and served to many requests, or rendered again
+ * in the background. The templates see a "session" variable that only
+ * tells whether the user is signed in, since the page is shared by every
+ * user in the same state
+ */
+public class PageRenderer {
+    // the session attribute that the templates test for a signed in user
+    private static final String SESSION_USER = "currUser";
+
+    private final SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+
+    /**
+     * @param templateResolver the resolver that finds the templates of the
+     *                         application
+     * @param contextPath      the path that the application is served
+     *                         under, which context relative links (@{/...})
+     *                         start with
+     */
+    public PageRenderer(ITemplateResolver templateResolver, String contextPath) {
+        templateEngine.setTemplateResolver(templateResolver);
+        // without a request the link builder does not know the context path
+        templateEngine.setLinkBuilder(new StandardLinkBuilder() {
+            @Override
+            protected String computeContextPath(IExpressionContext context, String base,
+                                                Map<String, Object> parameters) {
+                return contextPath;
+            }
+        });
+    }
+
+    /**
+     * This method renders a template
+     *
+     * @param template  the name of the template, i.e. "home"
+     * @param variables the model of the page
+     * @param signedIn  true if the page is for a signed in user
+     * @return the HTML of the page
+     */
+    public String render(String template, Map<String, Object> variables, boolean signedIn) {
+        long start = System.nanoTime();
+
+        Context context = new Context();
+        context.setVariables(variables);
+        context.setVariable("session", Collections.singletonMap(SESSION_USER, signedIn));
+        String html = templateEngine.process(template, context);
+
+        Metrics.histogram(Metrics.TEMPLATE_RENDER_SECONDS, template).record(System.nanoTime() - start);
+
+        return html;
+    }
+}
@@ -0,0 +1,121 @@
+package com.upgrad.ImageHoster.common;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Hashes passwords with PBKDF2-HMAC-SHA256, a random salt per password and
+ * a tunable number of iterations. A hash is stored as
+ * "pbkdf2_sha256$iterations$salt$hash", so hashes made with fewer
+ * iterations can still be verified after the number is raised.
+ *
+ * Hashes of the first version of the application, unsalted hex SHA-256,
+ * are verified too, and reported by needsRehash() so they are replaced
+ * the next time the user signs in
+ */
+public class PasswordHasher {
+    private static final String ALGORITHM = "pbkdf2_sha256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final SecureRandom random = new SecureRandom();
+    private final int iterations;
+
+    public PasswordHasher(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * This method hashes a password with a new random salt
+     *
+     * @param password the plain text password
+     * @return the hash to store
+     */
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+
+        return ALGORITHM + "$" + iterations + "$" + encoder.encodeToString(salt)
+                + "$" + encoder.encodeToString(pbkdf2(password, salt, iterations));
+    }
+
+    /**
+     * This method checks a password against a stored hash. The hashes are
+     * compared in constant time, so the time taken does not tell how much
+     * of a guessed hash was right
+     *
+     * @param password   the password that was entered
+     * @param storedHash the hash made by hash(), or a legacy SHA-256 hash
+     * @return true if the password matches the hash
+     */
+    public boolean verify(String password, String storedHash) {
+        if (storedHash == null) {
+            return false;
+        }
+
+        String[] parts = storedHash.split("\\$");
+
+        if (parts.length == 4 && ALGORITHM.equals(parts[0])) {
+            try {
+                Base64.Decoder decoder = Base64.getDecoder();
+                byte[] expected = decoder.decode(parts[3]);
+
+                return MessageDigest.isEqual(expected,
+                        pbkdf2(password, decoder.decode(parts[2]), Integer.parseInt(parts[1])));
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+
+        return MessageDigest.isEqual(storedHash.getBytes(StandardCharsets.US_ASCII),
+                legacyHash(password).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @param storedHash a hash that verify() has accepted
+     * @return true if the hash is a legacy hash, or was made with fewer
+     * iterations than this hasher uses
+     */
+    public boolean needsRehash(String storedHash) {
+        String[] parts = storedHash.split("\\$");
+
+        return parts.length != 4 || !ALGORITHM.equals(parts[0]) || Integer.parseInt(parts[1]) < iterations;
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            // every Java 8 runtime has PBKDF2WithHmacSHA256
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    // the legacy hashes were made with Guava's Hashing.sha256().hashString(password),
+    // which hashes the UTF-16LE code units of the password
+    private static String legacyHash(String password) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_16LE));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+
+            return hex.toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
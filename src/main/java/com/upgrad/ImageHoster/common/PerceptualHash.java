@@ -0,0 +1,62 @@
+package com.upgrad.ImageHoster.common;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * Computes 64-bit difference hashes (dHash) of images. Two images that look
+ * alike, i.e. the same photo resized, recompressed or slightly edited, have
+ * hashes that differ in a few bits only, so the number of different bits
+ * (the Hamming distance) measures how different they look
+ */
+public final class PerceptualHash {
+    private static final int WIDTH = 9;
+    private static final int HEIGHT = 8;
+
+    private PerceptualHash() { }
+
+    /**
+     * This method shrinks an image to 9x8 gray pixels and sets one bit for
+     * every pixel that is brighter than its right neighbour
+     *
+     * @param image the image to hash
+     * @return the 64-bit hash of the image
+     */
+    public static long dHash(BufferedImage image) {
+        // the halving steps of scaleToFit average out the details that a
+        // direct bilinear scaling to 9x8 would pick at random
+        BufferedImage small = ImageScaler.scaleToFit(image, 64);
+        BufferedImage gray = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = gray.createGraphics();
+
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(small, 0, 0, WIDTH, HEIGHT, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        long hash = 0;
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH - 1; x++) {
+                hash <<= 1;
+
+                if (gray.getRaster().getSample(x, y, 0) > gray.getRaster().getSample(x + 1, y, 0)) {
+                    hash |= 1;
+                }
+            }
+        }
+
+        return hash;
+    }
+
+    /**
+     * @return the number of bits that differ between two hashes, from 0 for
+     * images that look the same to 64
+     */
+    public static int distance(long hash, long otherHash) {
+        return Long.bitCount(hash ^ otherHash);
+    }
+}
@@ -12,8 +12,32 @@ public class ProfilePhotoManager extends SessionManager {
      */
     public void saveProfilePhoto(final ProfilePhoto photo) {
         Session session = openSession();
-        session.save(photo);
-        commitSession(session);
+
+        try {
+            session.save(photo);
+            commitSession(session);
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method retrieves a ProfilePhoto by its id
+     *
+     * @param id the id of the ProfilePhoto that we are looking for
+     * @return the ProfilePhoto or null if it does not exist
+     */
+    public ProfilePhoto getProfilePhotoById(final int id) {
+        Session session = openReadOnlySession();
+
+        try {
+            ProfilePhoto photo = (ProfilePhoto) session.get(ProfilePhoto.class, id);
+            commitSession(session);
+
+            return photo;
+        } finally {
+            closeSession(session);
+        }
     }
 
     /**
@@ -23,7 +47,12 @@ public class ProfilePhotoManager extends SessionManager {
      */
     public void updateProfilePhoto(final ProfilePhoto updatedphoto) {
         Session session = openSession();
-        session.update(updatedphoto);
-        commitSession(session);
+
+        try {
+            session.update(updatedphoto);
+            commitSession(session);
+        } finally {
+            closeSession(session);
+        }
     }
 }
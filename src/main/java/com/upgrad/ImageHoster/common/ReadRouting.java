@@ -0,0 +1,75 @@
+package com.upgrad.ImageHoster.common;
+
+/**
+ * Whether the read-only sessions of one HTTP request may read from a
+ * replica of the database. A replica may lag behind the primary, so a
+ * request reads from the primary once it has written, and for a while after
+ * an earlier request of its HTTP session wrote, so users see their own
+ * changes. Like RequestMetrics it is bound to the thread that handles the
+ * request and to the executor threads that run the request's tasks. Threads
+ * without a request, i.e. the ones that handle the events of a write, read
+ * from the primary
+ */
+public final class ReadRouting {
+    private static final ThreadLocal<ReadRouting> CURRENT = new ThreadLocal<ReadRouting>();
+
+    // reads go to the primary until then, in milliseconds since the epoch
+    private final long primaryUntilMillis;
+    // when the request last opened a session that may write, or 0
+    private volatile long lastWriteMillis;
+
+    public ReadRouting(long primaryUntilMillis) {
+        this.primaryUntilMillis = primaryUntilMillis;
+    }
+
+    /**
+     * @return the routing bound to this thread, or null if the thread is
+     * not handling a request
+     */
+    public static ReadRouting current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * This method binds a routing to this thread
+     *
+     * @param routing the routing, or null to unbind it
+     * @return the routing that was bound before
+     */
+    public static ReadRouting bind(ReadRouting routing) {
+        ReadRouting previous = CURRENT.get();
+
+        if (routing == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(routing);
+        }
+
+        return previous;
+    }
+
+    /**
+     * @return true if a read-only session opened on this thread may read
+     * from a replica
+     */
+    static boolean mayReadFromReplica() {
+        ReadRouting routing = CURRENT.get();
+
+        return routing != null && routing.lastWriteMillis == 0
+                && System.currentTimeMillis() >= routing.primaryUntilMillis;
+    }
+
+    static void recordWrite() {
+        ReadRouting routing = CURRENT.get();
+
+        if (routing != null) {
+            routing.lastWriteMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * @return when the request last opened a session that may write, or 0
+     * if it has not
+     */
+    public long getLastWriteMillis() { return lastWriteMillis; }
+}
@@ -0,0 +1,247 @@
+package com.upgrad.ImageHoster.common;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A cache of rendered HTML pages. Every page lists the keys of the data it
+ * was rendered from, i.e. "image:12" for every image it shows, and a write
+ * invalidates the pages that depend on the keys it changed.
+ *
+ * An invalidated page, or a page older than the time to live, is stale. A
+ * stale page is still served while it is rendered again in the background
+ * (stale-while-revalidate), and only one render of a page runs at a time,
+ * so a popular page never sends a burst of queries to the database. A page
+ * that is not cached at all is rendered by the first request that asks for
+ * it, and the requests that ask in the meantime wait for that render
+ */
+public class RenderedPageCache {
+    // the key of the first page of the feed, the only page that changes
+    // when an image is uploaded
+    public static final String FIRST_FEED_PAGE = "feed:first";
+
+    public static final String HITS = "page_cache_hits_total";
+    public static final String STALE_HITS = "page_cache_stale_hits_total";
+    public static final String MISSES = "page_cache_misses_total";
+
+    private final Logger log = Logger.getLogger(this.getClass().getName());
+
+    private final Cache<String, CachedPage> pages;
+    // the renders of pages that were not cached, by the key of the page
+    private final ConcurrentMap<String, CompletableFuture<CachedPage>> loading =
+            new ConcurrentHashMap<String, CompletableFuture<CachedPage>>();
+    private final Executor refreshExecutor;
+    private final long timeToLiveNanos;
+    private final Ticker ticker;
+    // counts the invalidations, to find renders that overlapped one
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public RenderedPageCache(Executor refreshExecutor, long maximumSize, long timeToLive, TimeUnit unit) {
+        this(refreshExecutor, maximumSize, timeToLive, unit, Ticker.systemTicker());
+    }
+
+    RenderedPageCache(Executor refreshExecutor, long maximumSize, long timeToLive, TimeUnit unit, Ticker ticker) {
+        this.pages = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+        this.refreshExecutor = refreshExecutor;
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+        this.ticker = ticker;
+    }
+
+    /**
+     * @param imageId the id of an image
+     * @return the key that the pages which show the image depend on
+     */
+    public static String imageKey(int imageId) {
+        return "image:" + imageId;
+    }
+
+    /**
+     * @param tagName the name of a tag
+     * @return the key that the pages of the images with the tag depend on
+     */
+    public static String tagKey(String tagName) {
+        return "tag:" + tagName;
+    }
+
+    /**
+     * This method returns a cached page, rendering it first if it is not
+     * cached. Exceptions thrown by the renderer are thrown to every request
+     * that waited for the render, and nothing is cached
+     *
+     * @param key      the key of the page
+     * @param renderer renders the page
+     * @return the HTML of the page
+     */
+    public String get(String key, Supplier<RenderedPage> renderer) {
+        String html = getIfPresent(key, renderer);
+
+        return html != null ? html : load(key, renderer).page.getHtml();
+    }
+
+    /**
+     * This method returns a cached page without rendering it. If the page
+     * is stale it is rendered again in the background
+     *
+     * @param key      the key of the page
+     * @param renderer renders the page again if it is stale
+     * @return the HTML of the page or null if the page is not cached
+     */
+    public String getIfPresent(String key, Supplier<RenderedPage> renderer) {
+        CachedPage entry = pages.getIfPresent(key);
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.isStale(ticker.read())) {
+            Metrics.counter(STALE_HITS).increment();
+            refreshInBackground(key, entry, renderer);
+        } else {
+            Metrics.counter(HITS).increment();
+        }
+
+        return entry.page.getHtml();
+    }
+
+    /**
+     * This method marks the pages that depend on any of the keys as stale,
+     * and starts rendering them again in the background, so the next
+     * request is likely to find the new version
+     *
+     * @param keys the keys of the data that has changed
+     */
+    public void invalidate(Collection<String> keys) {
+        invalidations.incrementAndGet();
+
+        for (Map.Entry<String, CachedPage> cached : pages.asMap().entrySet()) {
+            CachedPage entry = cached.getValue();
+
+            if (!Collections.disjoint(entry.page.getDependencies(), keys)) {
+                entry.stale = true;
+                refreshInBackground(cached.getKey(), entry, entry.renderer);
+            }
+        }
+    }
+
+    /**
+     * This method removes every page from the cache
+     */
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        pages.invalidateAll();
+    }
+
+    private CachedPage load(String key, Supplier<RenderedPage> renderer) {
+        CompletableFuture<CachedPage> future = new CompletableFuture<CachedPage>();
+        CompletableFuture<CachedPage> inFlight = loading.putIfAbsent(key, future);
+
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        Metrics.counter(MISSES).increment();
+
+        try {
+            CachedPage entry = render(key, renderer);
+            future.complete(entry);
+            return entry;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    private void refreshInBackground(String key, CachedPage entry, Supplier<RenderedPage> renderer) {
+        // a render of the page is already running
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    render(key, renderer);
+                } catch (RuntimeException e) {
+                    log.log(Level.WARNING, "Could not render page " + key + " again", e);
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the executor is busy, the next request tries again
+            entry.refreshing.set(false);
+        }
+    }
+
+    private CachedPage render(String key, Supplier<RenderedPage> renderer) {
+        long invalidationsBefore = invalidations.get();
+        CachedPage entry = new CachedPage(renderer.get(), renderer, ticker.read());
+        pages.put(key, entry);
+
+        // an invalidation during the render may have been missed by the
+        // queries of the render, and has not seen the new entry
+        if (invalidations.get() != invalidationsBefore) {
+            entry.stale = true;
+        }
+
+        return entry;
+    }
+
+    /**
+     * The HTML of a page and the keys of the data it shows
+     */
+    public static final class RenderedPage {
+        private final String html;
+        private final Set<String> dependencies;
+
+        public RenderedPage(String html, Set<String> dependencies) {
+            this.html = html;
+            this.dependencies = dependencies;
+        }
+
+        public String getHtml() { return html; }
+
+        public Set<String> getDependencies() { return dependencies; }
+    }
+
+    private final class CachedPage {
+        final RenderedPage page;
+        final Supplier<RenderedPage> renderer;
+        final long renderedAt;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+        volatile boolean stale;
+
+        CachedPage(RenderedPage page, Supplier<RenderedPage> renderer, long renderedAt) {
+            this.page = page;
+            this.renderer = renderer;
+            this.renderedAt = renderedAt;
+        }
+
+        boolean isStale(long now) {
+            return stale || now - renderedAt >= timeToLiveNanos;
+        }
+    }
+}
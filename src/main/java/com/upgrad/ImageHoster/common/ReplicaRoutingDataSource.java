@@ -0,0 +1,296 @@
+package com.upgrad.ImageHoster.common;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands out the connections of the primary database, or of one of its read
+ * replicas for the read-only sessions of requests (see ReadRouting and
+ * SessionManager.openReadOnlySession()). A read goes to the healthy replica
+ * that has the fewest connections out, and to the primary if no replica is
+ * healthy. The replicas are checked in the background, and a replica that
+ * fails to hand out a connection is left out until it passes a check again
+ */
+public class ReplicaRoutingDataSource implements DataSource, Closeable {
+    private static final String PRIMARY_READS = "replica_routing_primary_reads_total";
+    private static final String REPLICA_READS = "replica_routing_replica_reads_total";
+    private static final String REPLICA_FAILURES = "replica_routing_replica_failures_total";
+    // the connections of sessions opened while this is set may be replica connections
+    private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<Boolean>();
+
+    Logger log = Logger.getLogger(this.getClass().getName());
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<Replica>();
+    private final int healthCheckTimeoutSeconds;
+    private final ScheduledExecutorService healthChecker;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final LongAdder primaryReads = Metrics.counter(PRIMARY_READS);
+    private final LongAdder replicaReads = Metrics.counter(REPLICA_READS);
+    private final LongAdder replicaFailures = Metrics.counter(REPLICA_FAILURES);
+
+    /**
+     * @param primary             the primary database, which takes every write
+     * @param replicas            the read replicas of the primary
+     * @param healthCheckInterval how often the replicas are checked
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicas,
+                                    Duration healthCheckInterval) {
+        this.primary = primary;
+        this.healthCheckTimeoutSeconds = (int) Math.max(1, healthCheckInterval.getSeconds());
+
+        for (int i = 0; i < replicas.size(); i++) {
+            this.replicas.add(new Replica("replica " + (i + 1), replicas.get(i)));
+        }
+
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (!this.replicas.isEmpty()) {
+            this.healthChecker.scheduleWithFixedDelay(this::checkReplicas,
+                    healthCheckInterval.toMillis(), healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * This method runs a task, i.e. the start of a transaction, with the
+     * connections that it takes routed like those of a read-only session
+     *
+     * @param task the task
+     */
+    static void runReadOnly(Runnable task) {
+        Boolean previous = READ_ONLY.get();
+        READ_ONLY.set(Boolean.TRUE);
+
+        try {
+            task.run();
+        } finally {
+            if (previous == null) {
+                READ_ONLY.remove();
+            } else {
+                READ_ONLY.set(previous);
+            }
+        }
+    }
+
+    /**
+     * This method returns a connection of a replica to a read-only session
+     * of a request that may read from one, and a connection of the primary
+     * otherwise
+     *
+     * @return the connection
+     * @throws SQLException if the primary cannot hand out a connection
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (Boolean.TRUE.equals(READ_ONLY.get()) && ReadRouting.mayReadFromReplica()) {
+            Replica replica = leastBusyReplica();
+
+            if (replica != null) {
+                try {
+                    Connection connection = replica.borrow();
+                    replicaReads.increment();
+
+                    return connection;
+                } catch (SQLException e) {
+                    replicaFailures.increment();
+                    replica.markDown(e);
+                }
+            }
+
+            primaryReads.increment();
+        }
+
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("the credentials are those of the pools");
+    }
+
+    /**
+     * @return the number of replicas that passed their last check
+     */
+    public int getHealthyReplicaCount() {
+        int healthy = 0;
+
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                healthy++;
+            }
+        }
+
+        return healthy;
+    }
+
+    /**
+     * This method checks every replica now, instead of waiting for the
+     * next check
+     */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            replica.check();
+        }
+    }
+
+    /**
+     * This method stops the health checks. The pools are closed by their
+     * owner
+     */
+    @Override
+    public void close() {
+        healthChecker.shutdownNow();
+    }
+
+    /**
+     * This helper function returns the healthy replica with the fewest
+     * connections out. Ties are broken in turn, so idle replicas share
+     * the reads
+     *
+     * @return the replica or null if none is healthy
+     */
+    private Replica leastBusyReplica() {
+        int size = replicas.size();
+        int start = size == 0 ? 0 : Math.floorMod(nextReplica.getAndIncrement(), size);
+        Replica best = null;
+
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+
+            if (replica.healthy && (best == null || replica.outstanding.get() < best.outstanding.get())) {
+                best = replica;
+            }
+        }
+
+        return best;
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primary.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primary.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primary.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return primary.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    /**
+     * A replica, with the number of its connections that have not been
+     * closed yet
+     */
+    private final class Replica {
+        final String name;
+        final DataSource dataSource;
+        final AtomicInteger outstanding = new AtomicInteger();
+        volatile boolean healthy = true;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        /**
+         * This method returns a connection of the replica, which counts as
+         * outstanding until it is closed
+         */
+        Connection borrow() throws SQLException {
+            outstanding.incrementAndGet();
+            Connection connection;
+
+            try {
+                connection = dataSource.getConnection();
+            } catch (SQLException | RuntimeException e) {
+                outstanding.decrementAndGet();
+                throw e;
+            }
+
+            AtomicBoolean closed = new AtomicBoolean();
+
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        if (method.getName().equals("close") && closed.compareAndSet(false, true)) {
+                            outstanding.decrementAndGet();
+                        }
+
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+
+        void markDown(Exception e) {
+            if (healthy) {
+                healthy = false;
+                log.log(Level.WARNING, name + " is down, its reads go to the other replicas or the primary", e);
+            }
+        }
+
+        void check() {
+            try (Connection connection = dataSource.getConnection()) {
+                if (!connection.isValid(healthCheckTimeoutSeconds)) {
+                    throw new SQLException("the connection is not valid");
+                }
+
+                if (!healthy) {
+                    healthy = true;
+                    log.info(name + " is up again");
+                }
+            } catch (SQLException | RuntimeException e) {
+                markDown(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.upgrad.ImageHoster.common;
+
+import java.util.concurrent.Callable;
+
+/**
+ * The RequestMetrics and the ReadRouting of one HTTP request, captured on
+ * the thread that handles it. An asynchronous controller method captures
+ * them once and hands them to every task it starts with AsyncTasks. A task
+ * that is started from a dependent stage (thenCompose) runs on the thread
+ * that completed the stage before, which has neither bound, so the context
+ * cannot be captured there
+ */
+public final class RequestContext {
+    private final RequestMetrics metrics;
+    private final ReadRouting routing;
+
+    private RequestContext(RequestMetrics metrics, ReadRouting routing) {
+        this.metrics = metrics;
+        this.routing = routing;
+    }
+
+    /**
+     * @return the metrics and the routing bound to this thread, which are
+     * null if the thread is not handling a request
+     */
+    public static RequestContext capture() {
+        return new RequestContext(RequestMetrics.current(), ReadRouting.current());
+    }
+
+    /**
+     * This method runs a task with the metrics and the routing of the
+     * request bound to the current thread, and binds the ones that were
+     * bound before once it ends
+     *
+     * @param task the task
+     * @return the result of the task
+     * @throws Exception the exception thrown by the task
+     */
+    public <T> T call(Callable<T> task) throws Exception {
+        RequestMetrics previousMetrics = RequestMetrics.bind(metrics);
+        ReadRouting previousRouting = ReadRouting.bind(routing);
+
+        try {
+            return task.call();
+        } finally {
+            ReadRouting.bind(previousRouting);
+            RequestMetrics.bind(previousMetrics);
+        }
+    }
+
+    public RequestMetrics getMetrics() { return metrics; }
+
+    public ReadRouting getRouting() { return routing; }
+}
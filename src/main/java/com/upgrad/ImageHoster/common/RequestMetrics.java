@@ -0,0 +1,87 @@
+package com.upgrad.ImageHoster.common;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The SQL statements and database sessions of one HTTP request. The metrics
+ * are bound to the thread that handles the request, and AsyncTasks binds
+ * them to the executor threads that run the request's tasks (see
+ * RequestContext), so the work of an asynchronous request is counted too
+ */
+public final class RequestMetrics {
+    private static final ThreadLocal<RequestMetrics> CURRENT = new ThreadLocal<RequestMetrics>();
+
+    private final long startNanos;
+    private final AtomicInteger sqlStatements = new AtomicInteger();
+    private final AtomicInteger dbSessions = new AtomicInteger();
+    // the template that the response is rendered with, if any
+    private volatile String template;
+    private volatile long renderStartNanos;
+
+    public RequestMetrics(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * @return the metrics bound to this thread, or null if the thread is
+     * not handling a request
+     */
+    public static RequestMetrics current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * This method binds metrics to this thread
+     *
+     * @param metrics the metrics, or null to unbind them
+     * @return the metrics that were bound before
+     */
+    public static RequestMetrics bind(RequestMetrics metrics) {
+        RequestMetrics previous = CURRENT.get();
+
+        if (metrics == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(metrics);
+        }
+
+        return previous;
+    }
+
+    static void countSqlStatement() {
+        RequestMetrics metrics = CURRENT.get();
+
+        if (metrics != null) {
+            metrics.sqlStatements.incrementAndGet();
+        }
+    }
+
+    static void countDbSession() {
+        RequestMetrics metrics = CURRENT.get();
+
+        if (metrics != null) {
+            metrics.dbSessions.incrementAndGet();
+        }
+    }
+
+    public long getStartNanos() { return startNanos; }
+
+    public int getSqlStatements() { return sqlStatements.get(); }
+
+    public int getDbSessions() { return dbSessions.get(); }
+
+    public String getTemplate() { return template; }
+
+    public long getRenderStartNanos() { return renderStartNanos; }
+
+    /**
+     * This method records that the response starts being rendered
+     *
+     * @param template   the name of the template
+     * @param startNanos the time that rendering starts at
+     */
+    public void startRendering(String template, long startNanos) {
+        this.renderStartNanos = startNanos;
+        this.template = template;
+    }
+}
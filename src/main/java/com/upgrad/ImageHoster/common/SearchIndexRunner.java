@@ -0,0 +1,32 @@
+package com.upgrad.ImageHoster.common;
+
+import com.upgrad.ImageHoster.service.SearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Builds the search index on startup when it is empty, i.e. the first time
+ * the application runs, or always when the application is started with
+ * imagehoster.search.rebuild-on-startup=true
+ */
+@Component
+public class SearchIndexRunner implements ApplicationRunner {
+
+    @Autowired
+    private SearchService searchService;
+
+    @Value("${imagehoster.search.rebuild-on-startup}")
+    private boolean rebuildOnStartup;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (rebuildOnStartup || searchService.getIndexedCount() == 0) {
+            searchService.rebuild();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.upgrad.ImageHoster.common;
+
+import com.upgrad.ImageHoster.model.SessionPrincipal;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.session.MapSession;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Converts an HTTP session to bytes and back. The session principal,
+ * strings, integers and booleans are written field by field, so a signed in
+ * user's session takes about a hundred bytes and stays readable when the
+ * SessionPrincipal class changes. Other attributes, i.e. the flash
+ * attributes of a redirect, fall back to Java serialization
+ */
+public class SessionCodec {
+    // the first byte of every encoded session, changed when the format changes
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int STRING = 1;
+    private static final int INTEGER = 2;
+    private static final int BOOLEAN = 3;
+    private static final int PRINCIPAL = 4;
+    private static final int SERIALIZED = 5;
+
+    /**
+     * @param session the session to encode
+     * @return the session as bytes
+     * @throws IOException if an attribute cannot be serialized
+     */
+    public byte[] encode(MapSession session) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeByte(FORMAT_VERSION);
+        out.writeUTF(session.getId());
+        out.writeLong(session.getCreationTime().toEpochMilli());
+        out.writeLong(session.getLastAccessedTime().toEpochMilli());
+        out.writeLong(session.getMaxInactiveInterval().getSeconds());
+        out.writeInt(session.getAttributeNames().size());
+
+        for (String name : session.getAttributeNames()) {
+            out.writeUTF(name);
+            writeValue(out, session.getAttribute(name));
+        }
+
+        out.flush();
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param data a session encoded by encode()
+     * @return the session
+     * @throws IOException if the bytes are not a session of the current
+     *                     format, or an attribute cannot be deserialized
+     */
+    public MapSession decode(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+        int version = in.readUnsignedByte();
+
+        if (version != FORMAT_VERSION) {
+            throw new IOException("unknown session format " + version);
+        }
+
+        MapSession session = new MapSession(in.readUTF());
+        session.setCreationTime(Instant.ofEpochMilli(in.readLong()));
+        session.setLastAccessedTime(Instant.ofEpochMilli(in.readLong()));
+        session.setMaxInactiveInterval(Duration.ofSeconds(in.readLong()));
+
+        for (int attributes = in.readInt(); attributes > 0; attributes--) {
+            String name = in.readUTF();
+            session.setAttribute(name, readValue(in));
+        }
+
+        return session;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof SessionPrincipal) {
+            SessionPrincipal principal = (SessionPrincipal) value;
+            out.writeByte(PRINCIPAL);
+            out.writeInt(principal.getUserId());
+            out.writeUTF(principal.getUsername());
+            out.writeInt(principal.getVersion());
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Serializable) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+            try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+                objectOut.writeObject(value);
+            }
+
+            out.writeByte(SERIALIZED);
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        } else {
+            throw new IOException("session attribute of type " + value.getClass().getName()
+                    + " is not serializable");
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        int type = in.readUnsignedByte();
+
+        switch (type) {
+            case PRINCIPAL:
+                return new SessionPrincipal(in.readInt(), in.readUTF(), in.readInt());
+            case STRING:
+                return in.readUTF();
+            case INTEGER:
+                return in.readInt();
+            case BOOLEAN:
+                return in.readBoolean();
+            case SERIALIZED:
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+
+                // the classes are loaded by the application's class loader,
+                // which devtools replaces on every restart
+                try (ConfigurableObjectInputStream objectIn = new ConfigurableObjectInputStream(
+                        new ByteArrayInputStream(bytes), SessionCodec.class.getClassLoader())) {
+                    return objectIn.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("session attribute of an unknown class", e);
+                }
+            default:
+                throw new IOException("unknown session attribute type " + type);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.upgrad.ImageHoster.common;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Closes the SessionFactory shared by the managers, and with it the
+ * connection pool, when the Spring context shuts down
+ */
+@Component
+public class SessionFactoryLifecycle implements DisposableBean {
+
+    @Override
+    public void destroy() {
+        SessionManager.shutdown();
+    }
+}
@@ -1,37 +1,85 @@
 package com.upgrad.ImageHoster.common;
 
 import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.OutboxEvent;
 import com.upgrad.ImageHoster.model.ProfilePhoto;
 import com.upgrad.ImageHoster.model.Tag;
 import com.upgrad.ImageHoster.model.User;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.hibernate.FlushMode;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.Environment;
 import org.hibernate.context.internal.ManagedSessionContext;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
 
 public class SessionManager {
 
+    // system property that names another hibernate configuration on the
+    // classpath, i.e. the in-memory database used by the benchmarks
+    public static final String CONFIG_PROPERTY = "imagehoster.hibernate.config";
+    private static final String DEFAULT_CONFIG = "hibernate.cfg.xml";
+
+    // prefix of the connection pool settings in hibernate.cfg.xml,
+    // i.e. hibernate.hikari.maximumPoolSize
+    private static final String POOL_PROPERTY_PREFIX = "hibernate.hikari.";
+    // the JDBC URLs of the read replicas of the database, comma separated,
+    // and how often they are checked
+    private static final String REPLICA_URLS_PROPERTY = "hibernate.replica.urls";
+    private static final String REPLICA_HEALTH_CHECK_PROPERTY = "hibernate.replica.healthCheckIntervalMs";
+    private static final String REPLICA_CONNECTION_TIMEOUT_PROPERTY = "hibernate.replica.connectionTimeout";
+
+    // Building a SessionFactory scans every entity and opens new JDBC
+    // connections, so it is done once per JVM and shared by all the managers
+    private static volatile SessionFactory sessionFactory;
+    private static HikariDataSource dataSource;
+    private static List<HikariDataSource> replicaDataSources = new ArrayList<HikariDataSource>();
+    private static ReplicaRoutingDataSource routingDataSource;
+
     /**
-     * This method creates a database session
+     * This method creates a database session on the primary database. The
+     * request that opens it reads from the primary from then on, as the
+     * session may write
      *
      * @return Database session
      */
     public Session openSession() {
+        Session session = getSessionFactory().openSession();
+        RequestMetrics.countDbSession();
+        ReadRouting.recordWrite();
+        session.setFlushMode(FlushMode.MANUAL);
+        ManagedSessionContext.bind(session);
+        session.beginTransaction();
 
-        Configuration configuration = new Configuration();
-        configuration.addAnnotatedClass(Image.class);
-        configuration.addAnnotatedClass(Tag.class);
-        configuration.addAnnotatedClass(User.class);
-        configuration.addAnnotatedClass(ProfilePhoto.class);
-
-        configuration.configure("hibernate.cfg.xml");
+        return session;
+    }
 
-        SessionFactory sessionFactory = configuration.buildSessionFactory();
-        Session session = sessionFactory.openSession();
+    /**
+     * This method creates a database session for read-only queries, which
+     * reads from a replica of the database if the request may (see
+     * ReadRouting). The entities it loads are read-only. It is committed
+     * with commitSession() like the other sessions
+     *
+     * @return Read-only database session
+     */
+    public Session openReadOnlySession() {
+        Session session = getSessionFactory().openSession();
+        RequestMetrics.countDbSession();
         session.setFlushMode(FlushMode.MANUAL);
+        session.setDefaultReadOnly(true);
         ManagedSessionContext.bind(session);
-        session.beginTransaction();
+        // the transaction takes the connection, so it picks the database
+        ReplicaRoutingDataSource.runReadOnly(session::beginTransaction);
 
         return session;
     }
@@ -46,4 +94,231 @@ public class SessionManager {
         session.getTransaction().commit();
         session.close();
     }
-}
\ No newline at end of file
+
+    /**
+     * This method rolls back the transaction of a session that has not been
+     * committed and closes it, so that its connection goes back to the pool.
+     * It does nothing to a session that commitSession() already closed
+     *
+     * @param session the session opened with openSession() or
+     *                openReadOnlySession()
+     */
+    public void closeSession(final Session session) {
+        if (!session.isOpen()) {
+            return;
+        }
+
+        try {
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * This method creates a stateless database session on the primary
+     * database, for statements that bypass the persistence context. A
+     * stateless session has no persistence context, so the entities and
+     * values it returns are not tracked or copied. Its statements are not
+     * counted by SqlStatementCounter
+     *
+     * @return Stateless database session
+     */
+    public StatelessSession openStatelessSession() {
+        StatelessSession session = getSessionFactory().openStatelessSession();
+        RequestMetrics.countDbSession();
+        ReadRouting.recordWrite();
+        session.beginTransaction();
+
+        return session;
+    }
+
+    /**
+     * This method creates a stateless database session for read-only
+     * queries, which reads from a replica of the database if the request
+     * may (see ReadRouting)
+     *
+     * @return Stateless database session
+     */
+    public StatelessSession openReadOnlyStatelessSession() {
+        StatelessSession session = getSessionFactory().openStatelessSession();
+        RequestMetrics.countDbSession();
+        ReplicaRoutingDataSource.runReadOnly(session::beginTransaction);
+
+        return session;
+    }
+
+    /**
+     * This method ends a stateless session and returns its connection
+     * to the pool
+     *
+     * @param session the session opened with openStatelessSession()
+     */
+    public void closeStatelessSession(final StatelessSession session) {
+        session.getTransaction().commit();
+        session.close();
+    }
+
+    /**
+     * This method rolls back the transaction of a stateless session that
+     * has not been closed with closeStatelessSession() and closes it, so
+     * that its connection goes back to the pool. It does nothing to a
+     * session that is already closed
+     *
+     * @param session the session opened with openStatelessSession() or
+     *                openReadOnlyStatelessSession()
+     */
+    public void closeSession(final StatelessSession session) {
+        if (((SessionImplementor) session).isClosed()) {
+            return;
+        }
+
+        try {
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * This method returns the SessionFactory shared by all the managers,
+     * building it (and its connection pool) the first time it is needed
+     *
+     * @return the process-wide SessionFactory
+     */
+    protected static SessionFactory getSessionFactory() {
+        SessionFactory factory = sessionFactory;
+
+        if (factory == null) {
+            synchronized (SessionManager.class) {
+                factory = sessionFactory;
+
+                if (factory == null) {
+                    factory = buildSessionFactory();
+                    sessionFactory = factory;
+                }
+            }
+        }
+
+        return factory;
+    }
+
+    /**
+     * This method returns the connection pool statistics (active, idle and
+     * total connections, and threads waiting for a connection)
+     *
+     * @return the pool statistics or null if the pool has not been started
+     */
+    public static HikariPoolMXBean getPoolMetrics() {
+        HikariDataSource pool = dataSource;
+
+        return pool == null ? null : pool.getHikariPoolMXBean();
+    }
+
+    /**
+     * This method closes the shared SessionFactory and its connection pools.
+     * The next call to openSession() will build a new one
+     */
+    public static synchronized void shutdown() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+            sessionFactory = null;
+        }
+
+        if (routingDataSource != null) {
+            routingDataSource.close();
+            routingDataSource = null;
+        }
+
+        for (HikariDataSource replica : replicaDataSources) {
+            replica.close();
+        }
+
+        replicaDataSources = new ArrayList<HikariDataSource>();
+
+        if (dataSource != null) {
+            dataSource.close();
+            dataSource = null;
+        }
+    }
+
+    private static SessionFactory buildSessionFactory() {
+        Configuration configuration = new Configuration();
+        configuration.addAnnotatedClass(Image.class);
+        configuration.addAnnotatedClass(Tag.class);
+        configuration.addAnnotatedClass(User.class);
+        configuration.addAnnotatedClass(ProfilePhoto.class);
+        configuration.addAnnotatedClass(OutboxEvent.class);
+
+        configuration.configure(System.getProperty(CONFIG_PROPERTY, DEFAULT_CONFIG));
+        configuration.setInterceptor(new SqlStatementCounter());
+
+        // hand the pools to hibernate as its DataSource instead of letting
+        // hibernate manage the connections itself
+        dataSource = new HikariDataSource(buildPoolConfig(configuration, "ImageHosterPool",
+                configuration.getProperty(Environment.URL)));
+        String replicaUrls = configuration.getProperty(REPLICA_URLS_PROPERTY);
+
+        if (replicaUrls != null) {
+            for (String url : replicaUrls.split(",")) {
+                if (!url.trim().isEmpty()) {
+                    replicaDataSources.add(new HikariDataSource(buildReplicaPoolConfig(configuration,
+                            "ImageHosterReplicaPool" + (replicaDataSources.size() + 1), url.trim())));
+                }
+            }
+        }
+
+        routingDataSource = new ReplicaRoutingDataSource(dataSource, replicaDataSources,
+                Duration.ofMillis(Long.parseLong(
+                        configuration.getProperties().getProperty(REPLICA_HEALTH_CHECK_PROPERTY, "5000"))));
+        configuration.getProperties().put(Environment.DATASOURCE, routingDataSource);
+        // the pool already has the credentials. If they are left in the
+        // settings hibernate calls getConnection(user, password), which
+        // HikariDataSource does not support
+        configuration.getProperties().remove(Environment.USER);
+        configuration.getProperties().remove(Environment.PASS);
+
+        return configuration.buildSessionFactory(new StandardServiceRegistryBuilder()
+                .applySettings(configuration.getProperties())
+                .build());
+    }
+
+    private static HikariConfig buildReplicaPoolConfig(final Configuration configuration, final String poolName,
+                                                       final String url) {
+        HikariConfig config = buildPoolConfig(configuration, poolName, url);
+        // a replica that is down is found out quickly, its reads go elsewhere
+        config.setConnectionTimeout(Long.parseLong(
+                configuration.getProperties().getProperty(REPLICA_CONNECTION_TIMEOUT_PROPERTY, "2000")));
+        // and it does not keep the application from starting
+        config.setInitializationFailTimeout(-1);
+
+        return config;
+    }
+
+    private static HikariConfig buildPoolConfig(final Configuration configuration, final String poolName,
+                                                final String url) {
+        Properties poolProperties = new Properties();
+
+        for (String name : configuration.getProperties().stringPropertyNames()) {
+            if (name.startsWith(POOL_PROPERTY_PREFIX)) {
+                poolProperties.setProperty(name.substring(POOL_PROPERTY_PREFIX.length()),
+                        configuration.getProperty(name));
+            }
+        }
+
+        HikariConfig config = new HikariConfig(poolProperties);
+        config.setPoolName(poolName);
+        config.setDriverClassName(configuration.getProperty(Environment.DRIVER));
+        config.setJdbcUrl(url);
+        config.setUsername(configuration.getProperty(Environment.USER));
+        config.setPassword(configuration.getProperty(Environment.PASS));
+        // hibernate begins every transaction itself
+        config.setAutoCommit(false);
+
+        return config;
+    }
+}
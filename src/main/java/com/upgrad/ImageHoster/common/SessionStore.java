@@ -0,0 +1,54 @@
+package com.upgrad.ImageHoster.common;
+
+import java.io.IOException;
+
+/**
+ * Storage for the serialized HTTP sessions, shared by every instance of the
+ * application, so a user stays signed in whichever instance answers and
+ * after a restart. A session is stored with the time it expires at, after
+ * which the store no longer returns it. See StoredSessionRepository for the
+ * serialization and expiry of the sessions
+ */
+public interface SessionStore {
+
+    /**
+     * This method reads a session
+     *
+     * @param id  the id of the session
+     * @param now the current time in milliseconds since the epoch
+     * @return the serialized session or null if it does not exist or expired
+     * @throws IOException if the store cannot be read
+     */
+    byte[] load(String id, long now) throws IOException;
+
+    /**
+     * This method stores a session, replacing the previous version of it
+     *
+     * @param id        the id of the session
+     * @param data      the serialized session
+     * @param expiresAt the time that the session expires at, in milliseconds
+     *                  since the epoch
+     * @throws IOException if the store cannot be written
+     */
+    void save(String id, byte[] data, long expiresAt) throws IOException;
+
+    /**
+     * This method removes a session. Removing a session that does not
+     * exist does nothing
+     *
+     * @param id the id of the session
+     * @throws IOException if the store cannot be written
+     */
+    void delete(String id) throws IOException;
+
+    /**
+     * This method removes the sessions that expired. A store that expires
+     * sessions by itself, i.e. a key-value store with a TTL per key, can
+     * leave it empty
+     *
+     * @param now the current time in milliseconds since the epoch
+     * @return the number of sessions removed
+     * @throws IOException if the store cannot be written
+     */
+    int deleteExpired(long now) throws IOException;
+}
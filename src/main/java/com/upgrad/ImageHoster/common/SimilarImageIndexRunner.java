@@ -0,0 +1,23 @@
+package com.upgrad.ImageHoster.common;
+
+import com.upgrad.ImageHoster.service.SimilarImageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads the perceptual hashes of the images into memory on startup,
+ * computing the hashes of the images uploaded before they were stored
+ */
+@Component
+public class SimilarImageIndexRunner implements ApplicationRunner {
+
+    @Autowired
+    private SimilarImageService similarImageService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        similarImageService.load();
+    }
+}
@@ -0,0 +1,35 @@
+package com.upgrad.ImageHoster.common;
+
+import org.hibernate.EmptyInterceptor;
+
+/**
+ * A hibernate Interceptor that counts the SQL statements prepared by the
+ * current thread, and by the current request in its RequestMetrics. A page
+ * that runs one query per item (N+1 queries) shows up as a count that grows
+ * with the number of items. Statements run directly on a JDBC connection
+ * with Session.doWork are not counted
+ */
+public class SqlStatementCounter extends EmptyInterceptor {
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String onPrepareStatement(String sql) {
+        COUNT.get()[0]++;
+        RequestMetrics.countSqlStatement();
+
+        return super.onPrepareStatement(sql);
+    }
+
+    /**
+     * @return the number of statements prepared by this thread since the
+     * last reset
+     */
+    public static int getCount() {
+        return COUNT.get()[0];
+    }
+
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+}
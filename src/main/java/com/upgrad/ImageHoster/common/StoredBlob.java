@@ -0,0 +1,27 @@
+package com.upgrad.ImageHoster.common;
+
+/**
+ * The key and size of a blob written to a BlobStore, and the MIME type of
+ * its content if it was recognized
+ */
+public final class StoredBlob {
+    private final String hash;
+    private final long size;
+    private final String mimeType;
+
+    public StoredBlob(String hash, long size) {
+        this(hash, size, null);
+    }
+
+    public StoredBlob(String hash, long size, String mimeType) {
+        this.hash = hash;
+        this.size = size;
+        this.mimeType = mimeType;
+    }
+
+    public String getHash() { return hash; }
+
+    public long getSize() { return size; }
+
+    public String getMimeType() { return mimeType; }
+}
@@ -0,0 +1,245 @@
+package com.upgrad.ImageHoster.common;
+
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the HTTP sessions in a SessionStore instead of the memory of the
+ * servlet container, encoded by SessionCodec.
+ *
+ * A session is only written back when an attribute or its timeout changed,
+ * or when it was last written more than the touch interval ago. A request
+ * that only reads the session does not write it, at the cost of the session
+ * expiring up to the touch interval earlier than it would otherwise. A
+ * background thread removes the expired sessions from the store
+ */
+public class StoredSessionRepository implements SessionRepository<StoredSessionRepository.StoredSession>, Closeable {
+
+    Logger log = Logger.getLogger(this.getClass().getName());
+
+    private final SessionStore store;
+    private final SessionCodec codec = new SessionCodec();
+    private final Duration maxInactiveInterval;
+    private final Duration touchInterval;
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * @param store               the store that the sessions are kept in
+     * @param maxInactiveInterval how long a session is kept after its last use
+     * @param touchInterval       how often a session that is only read is
+     *                            written back, to move its expiry
+     * @param sweepInterval       how often the expired sessions are removed
+     *                            from the store
+     */
+    public StoredSessionRepository(SessionStore store, Duration maxInactiveInterval, Duration touchInterval,
+                                   Duration sweepInterval) {
+        this.store = store;
+        this.maxInactiveInterval = maxInactiveInterval;
+        this.touchInterval = touchInterval;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sweeper.scheduleWithFixedDelay(this::deleteExpiredQuietly,
+                sweepInterval.toMillis(), sweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public StoredSession createSession() {
+        MapSession session = new MapSession();
+        session.setMaxInactiveInterval(maxInactiveInterval);
+
+        return new StoredSession(session, null);
+    }
+
+    @Override
+    public void save(StoredSession session) {
+        MapSession delegate = session.delegate;
+
+        try {
+            // the session id changed (i.e. to prevent session fixation), the
+            // session is only reachable by its new id
+            if (session.storedId != null && !session.storedId.equals(delegate.getId())) {
+                store.delete(session.storedId);
+                session.changed = true;
+            }
+
+            if (!session.changed && session.storedLastAccessedTime != null && delegate.getLastAccessedTime()
+                    .isBefore(session.storedLastAccessedTime.plus(touchInterval))) {
+                return;
+            }
+
+            store.save(delegate.getId(), codec.encode(delegate), expiresAt(delegate));
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to save session " + delegate.getId(), e);
+        }
+
+        session.storedId = delegate.getId();
+        session.storedLastAccessedTime = delegate.getLastAccessedTime();
+        session.changed = false;
+    }
+
+    @Override
+    public StoredSession findById(String id) {
+        byte[] data;
+
+        try {
+            data = store.load(id, System.currentTimeMillis());
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to load session " + id, e);
+        }
+
+        if (data == null) {
+            return null;
+        }
+
+        MapSession session;
+
+        try {
+            session = codec.decode(data);
+        } catch (IOException e) {
+            // i.e. written by an older version of the application. The user
+            // gets a new session
+            log.log(Level.FINE, "unable to read session " + id, e);
+            deleteById(id);
+            return null;
+        }
+
+        if (session.isExpired()) {
+            deleteById(id);
+            return null;
+        }
+
+        return new StoredSession(session, session.getLastAccessedTime());
+    }
+
+    @Override
+    public void deleteById(String id) {
+        try {
+            store.delete(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to delete session " + id, e);
+        }
+    }
+
+    /**
+     * This method removes the expired sessions from the store
+     *
+     * @return the number of sessions removed
+     * @throws IOException if the store cannot be written
+     */
+    public int deleteExpired() throws IOException {
+        return store.deleteExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * This method stops the background removal of expired sessions
+     */
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    private void deleteExpiredQuietly() {
+        try {
+            int deleted = deleteExpired();
+
+            if (deleted > 0) {
+                log.fine("removed " + deleted + " expired sessions");
+            }
+        } catch (IOException | RuntimeException e) {
+            // the sessions are removed by the next sweep
+            log.log(Level.WARNING, "unable to remove the expired sessions", e);
+        }
+    }
+
+    private static long expiresAt(MapSession session) {
+        if (session.getMaxInactiveInterval().isNegative()) {
+            return Long.MAX_VALUE;
+        }
+
+        return session.getLastAccessedTime().plus(session.getMaxInactiveInterval()).toEpochMilli();
+    }
+
+    /**
+     * A session that remembers if it has to be written back to the store
+     */
+    public static final class StoredSession implements Session {
+        private final MapSession delegate;
+        // the id and last access time of the session as it is in the store,
+        // null if the session has not been stored yet
+        private String storedId;
+        private Instant storedLastAccessedTime;
+        private boolean changed;
+
+        StoredSession(MapSession delegate, Instant storedLastAccessedTime) {
+            this.delegate = delegate;
+            this.storedLastAccessedTime = storedLastAccessedTime;
+            this.storedId = storedLastAccessedTime == null ? null : delegate.getId();
+            this.changed = storedLastAccessedTime == null;
+        }
+
+        @Override
+        public String getId() { return delegate.getId(); }
+
+        @Override
+        public String changeSessionId() { return delegate.changeSessionId(); }
+
+        @Override
+        public <T> T getAttribute(String attributeName) { return delegate.getAttribute(attributeName); }
+
+        @Override
+        public Set<String> getAttributeNames() { return delegate.getAttributeNames(); }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            delegate.setAttribute(attributeName, attributeValue);
+            changed = true;
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            if (delegate.getAttribute(attributeName) != null) {
+                delegate.removeAttribute(attributeName);
+                changed = true;
+            }
+        }
+
+        @Override
+        public Instant getCreationTime() { return delegate.getCreationTime(); }
+
+        @Override
+        public void setLastAccessedTime(Instant lastAccessedTime) { delegate.setLastAccessedTime(lastAccessedTime); }
+
+        @Override
+        public Instant getLastAccessedTime() { return delegate.getLastAccessedTime(); }
+
+        @Override
+        public void setMaxInactiveInterval(Duration interval) {
+            if (!interval.equals(delegate.getMaxInactiveInterval())) {
+                delegate.setMaxInactiveInterval(interval);
+                changed = true;
+            }
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() { return delegate.getMaxInactiveInterval(); }
+
+        @Override
+        public boolean isExpired() { return delegate.isExpired(); }
+    }
+}
@@ -0,0 +1,56 @@
+package com.upgrad.ImageHoster.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * An in-memory, sorted index of tag names that answers prefix searches for
+ * autocomplete. The names are kept in a skip list, so a search is a
+ * logarithmic seek to the first name with the prefix followed by a scan of
+ * at most limit names, however many tags there are. Readers never block
+ * and names can be added while searches run
+ */
+public class TagIndex {
+    // the highest char, so prefix + MAX_CHAR sorts after every name that starts with prefix
+    private static final char MAX_CHAR = Character.MAX_VALUE;
+
+    private final ConcurrentSkipListSet<String> names = new ConcurrentSkipListSet<String>();
+
+    public void add(String name) {
+        names.add(name);
+    }
+
+    public void addAll(Collection<String> names) {
+        this.names.addAll(names);
+    }
+
+    /**
+     * This method returns the names that start with a prefix, in
+     * alphabetical order
+     *
+     * @param prefix the beginning of the names
+     * @param limit  the maximum number of names returned
+     * @return at most limit names that start with prefix
+     */
+    public List<String> findByPrefix(String prefix, int limit) {
+        NavigableSet<String> matches = names.subSet(prefix, true, prefix + MAX_CHAR, false);
+        List<String> result = new ArrayList<String>(Math.min(limit, 16));
+
+        for (String name : matches) {
+            if (result.size() >= limit) {
+                break;
+            }
+
+            result.add(name);
+        }
+
+        return result;
+    }
+
+    public int size() {
+        return names.size();
+    }
+}
@@ -1,17 +1,32 @@
 package com.upgrad.ImageHoster.common;
 
+import com.upgrad.ImageHoster.model.OutboxEvent;
 import com.upgrad.ImageHoster.model.Tag;
 import org.hibernate.Criteria;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 import org.hibernate.criterion.Restrictions;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
 
 @SuppressWarnings("unchecked")
 public class TagManager extends SessionManager {
 
     /**
-     * This method saves a Tag object to the database
+     * This method saves a Tag object to the database, and writes a
+     * TagCreated event in the same transaction
      *
      * @param tag Tag object to be saved into the database
      *
@@ -19,9 +34,15 @@ public class TagManager extends SessionManager {
      */
     public Tag createTag(Tag tag) {
         Session session = openSession();
-        session.save(tag);
-        commitSession(session);
-        return tag;
+
+        try {
+            session.save(tag);
+            session.save(new OutboxEvent(OutboxEvent.Type.TAG_CREATED, tag.getId(), tag.getName()));
+            commitSession(session);
+            return tag;
+        } finally {
+            closeSession(session);
+        }
     }
 
     /**
@@ -32,14 +53,251 @@ public class TagManager extends SessionManager {
      * @return a Tag object
      */
     public Tag findTag(String tagName) {
+        Session session = openReadOnlySession();
+
+        try {
+            Criteria criteria = session.createCriteria(Tag.class);
+            Tag tag = (Tag) criteria
+                    .add(Restrictions.eq("name", tagName))
+                    .uniqueResult();
+            commitSession(session); // returns the connection to the pool
+
+            return tag;
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method returns the tags with the given names, creating the ones
+     * that do not exist yet. It uses a single session: one query for the
+     * existing tags, one batched insert for the missing ones and one query
+     * for the inserted tags. A tag inserted by a concurrent upload in the
+     * meantime is skipped by the insert and returned by the last query.
+     * TagCreated events are written for the tags that were missing; a tag
+     * created by a concurrent upload may get two, which subscribers treat
+     * like one
+     *
+     * @param names the normalized names of the tags
+     * @return the Tags, in no particular order
+     */
+    public List<Tag> findOrCreateTags(final Collection<String> names) {
+        if (names.isEmpty()) {
+            return new ArrayList<Tag>();
+        }
+
         Session session = openSession();
 
-        Criteria criteria = session.createCriteria(Tag.class);
-        Tag tag = (Tag) criteria
-                .add(Restrictions.eq("name", tagName))
-                .uniqueResult();
+        try {
+            List<Tag> tags = findTags(session, names);
+            List<String> missingNames = new ArrayList<String>(names);
+
+            for (Tag tag : tags) {
+                missingNames.remove(tag.getName());
+            }
+
+            if (!missingNames.isEmpty()) {
+                session.doWork(connection -> {
+                    try (PreparedStatement statement = connection.prepareStatement(
+                            "insert into Tag (name) values (?) on conflict do nothing")) {
+                        for (String name : missingNames) {
+                            statement.setString(1, name);
+                            statement.addBatch();
+                        }
+
+                        statement.executeBatch();
+                    }
+                });
+
+                List<Tag> createdTags = findTags(session, missingNames);
+                List<OutboxEvent> events = new ArrayList<OutboxEvent>();
+
+                for (Tag tag : createdTags) {
+                    events.add(new OutboxEvent(OutboxEvent.Type.TAG_CREATED, tag.getId(), tag.getName()));
+                }
+
+                session.doWork(connection -> OutboxManager.insertEvents(connection, events));
+                tags.addAll(createdTags);
+            }
+
+            commitSession(session);
 
-        return tag;
+            return tags;
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method stores every tag under its normalized name, for databases
+     * that have tags from before names were normalized. Tags whose names
+     * only differ in case or whitespace are merged into the oldest of them:
+     * their images get that tag instead, and they are deleted. An
+     * ImageUpdated event is written for every image whose tags changed, and
+     * a TagRenamed event for every tag that was renamed or that other tags
+     * were merged into
+     *
+     * @param normalizer the function that returns the normalized name of a tag
+     * @return the number of tags that were renamed or merged into another one
+     */
+    public int normalizeNames(final UnaryOperator<String> normalizer) {
+        Session session = openSession();
+
+        try {
+            int[] changed = new int[1];
+
+            session.doWork(connection -> {
+                // the ids and names of the tags by their normalized name, oldest first
+                Map<String, List<Integer>> idsByName = new LinkedHashMap<String, List<Integer>>();
+                Map<Integer, String> names = new LinkedHashMap<Integer, String>();
+
+                try (Statement statement = connection.createStatement();
+                     ResultSet result = statement.executeQuery("select id, name from Tag order by id")) {
+                    while (result.next()) {
+                        String name = result.getString(2);
+
+                        if (name != null) {
+                            names.put(result.getInt(1), name);
+                            idsByName.computeIfAbsent(normalizer.apply(name), key -> new ArrayList<Integer>())
+                                    .add(result.getInt(1));
+                        }
+                    }
+                }
+
+                Set<Integer> updatedImageIds = new LinkedHashSet<Integer>();
+                List<OutboxEvent> events = new ArrayList<OutboxEvent>();
+
+                for (Map.Entry<String, List<Integer>> group : idsByName.entrySet()) {
+                    List<Integer> ids = group.getValue();
+                    int keptId = ids.get(0);
+                    boolean renamed = ids.size() > 1;
+
+                    // the duplicates are deleted first, as one of them may have the normalized name
+                    for (int duplicateId : ids.subList(1, ids.size())) {
+                        updatedImageIds.addAll(getImageIds(connection, duplicateId));
+                        mergeTag(connection, duplicateId, keptId);
+                        changed[0]++;
+                    }
+
+                    if (!group.getKey().equals(names.get(keptId))) {
+                        try (PreparedStatement statement = connection.prepareStatement(
+                                "update Tag set name = ? where id = ?")) {
+                            statement.setString(1, group.getKey());
+                            statement.setInt(2, keptId);
+                            statement.executeUpdate();
+                        }
+
+                        updatedImageIds.addAll(getImageIds(connection, keptId));
+                        renamed = true;
+                        changed[0]++;
+                    }
+
+                    // a merged duplicate may have had the normalized name, and been cached under it
+                    if (renamed) {
+                        events.add(new OutboxEvent(OutboxEvent.Type.TAG_RENAMED, keptId, group.getKey()));
+                    }
+                }
+
+                for (int imageId : updatedImageIds) {
+                    events.add(new OutboxEvent(OutboxEvent.Type.IMAGE_UPDATED, imageId));
+                }
+
+                if (!events.isEmpty()) {
+                    OutboxManager.insertEvents(connection, events);
+                }
+            });
+            commitSession(session);
+
+            return changed[0];
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method adds the unique index on the tag names to a Tag table
+     * created before names were unique. The names must have been normalized
+     * with normalizeNames() first, as the index cannot be created while two
+     * tags have the same name
+     */
+    public void createNameIndex() {
+        Session session = openSession();
+
+        try {
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("create unique index if not exists tag_name_key on Tag (name)");
+                }
+            });
+            commitSession(session);
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    private static List<Integer> getImageIds(final Connection connection, final int tagId) throws SQLException {
+        List<Integer> imageIds = new ArrayList<Integer>();
+
+        try (PreparedStatement statement = connection.prepareStatement(
+                "select image_id from Image_Tag where tag_id = ?")) {
+            statement.setInt(1, tagId);
+
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    imageIds.add(result.getInt(1));
+                }
+            }
+        }
+
+        return imageIds;
+    }
+
+    /**
+     * This helper function gives the images of a tag another tag instead,
+     * unless they already have it, and deletes the tag
+     */
+    private static void mergeTag(final Connection connection, final int tagId, final int intoTagId)
+            throws SQLException {
+        try (PreparedStatement move = connection.prepareStatement("update Image_Tag set tag_id = ?"
+                + " where tag_id = ? and image_id not in (select image_id from Image_Tag where tag_id = ?)");
+             PreparedStatement deleteLinks = connection.prepareStatement("delete from Image_Tag where tag_id = ?");
+             PreparedStatement deleteTag = connection.prepareStatement("delete from Tag where id = ?")) {
+            move.setInt(1, intoTagId);
+            move.setInt(2, tagId);
+            move.setInt(3, intoTagId);
+            move.executeUpdate();
+
+            deleteLinks.setInt(1, tagId);
+            deleteLinks.executeUpdate();
+
+            deleteTag.setInt(1, tagId);
+            deleteTag.executeUpdate();
+        }
+    }
+
+    private List<Tag> findTags(final Session session, final Collection<String> names) {
+        return session.createQuery("from Tag where name in (:names)")
+                .setParameterList("names", names)
+                .list();
+    }
+
+    /**
+     * This method returns the names of all the tags, without loading the
+     * Tag entities
+     *
+     * @return the names of the tags
+     */
+    public List<String> getAllTagNames() {
+        StatelessSession session = openReadOnlyStatelessSession();
+
+        try {
+            List<String> names = session.createQuery("select tag.name from Tag tag").list();
+            closeStatelessSession(session);
+
+            return names;
+        } finally {
+            closeSession(session);
+        }
     }
 
     /**
@@ -48,10 +306,15 @@ public class TagManager extends SessionManager {
      * @return List of Tag objects
      */
     public List<Tag> getAllTags() {
-        Session session = openSession();
-        List<Tag> tags = session.createCriteria(Tag.class).list();
-        commitSession(session);
+        Session session = openReadOnlySession();
+
+        try {
+            List<Tag> tags = session.createCriteria(Tag.class).list();
+            commitSession(session);
 
-        return tags;
+            return tags;
+        } finally {
+            closeSession(session);
+        }
     }
 }
@@ -0,0 +1,41 @@
+package com.upgrad.ImageHoster.common;
+
+import com.upgrad.ImageHoster.service.TagService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Normalizes the names of the tags stored before names were normalized and
+ * adds the unique index on the names on startup, before the indexes that
+ * are built from the tags are loaded
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TagNameIndexRunner implements ApplicationRunner {
+
+    Logger log = Logger.getLogger(this.getClass().getName());
+
+    @Autowired
+    private TagService tagService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            int changed = tagService.normalizeStoredNames();
+
+            if (changed > 0) {
+                log.info("renamed or merged " + changed + " tags with names that were not normalized");
+            }
+        } catch (RuntimeException e) {
+            // uploads still work without the index, but may race to create the same tag
+            log.log(Level.WARNING, "unable to normalize the tag names and add their unique index", e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.upgrad.ImageHoster.common;
+
+/**
+ * Thrown when the content of an uploaded file is not a supported image format
+ */
+public class UnsupportedImageTypeException extends InvalidUploadException {
+    private static final long serialVersionUID = 1L;
+
+    public UnsupportedImageTypeException() {
+        super("the uploaded file is not a JPEG, PNG, GIF, WebP or BMP image");
+    }
+}
@@ -0,0 +1,17 @@
+package com.upgrad.ImageHoster.common;
+
+/**
+ * Thrown when an uploaded file is larger than the configured limit
+ */
+public class UploadTooLargeException extends InvalidUploadException {
+    private static final long serialVersionUID = 1L;
+
+    private final long maxBytes;
+
+    public UploadTooLargeException(long maxBytes) {
+        super("the uploaded file is larger than " + maxBytes + " bytes");
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() { return maxBytes; }
+}
@@ -1,16 +1,24 @@
 package com.upgrad.ImageHoster.common;
 
-import com.google.common.hash.Hashing;
+import com.upgrad.ImageHoster.model.OutboxEvent;
 import com.upgrad.ImageHoster.model.User;
+import com.upgrad.ImageHoster.model.UserCredentials;
 import org.hibernate.Hibernate;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 import org.hibernate.criterion.Restrictions;
 
+import java.sql.Statement;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 
 @SuppressWarnings("unchecked")
 public class UserManager extends SessionManager {
 
+    Logger log = Logger.getLogger(this.getClass().getName());
+
     /**
      * This method saves an User object into the database
      *
@@ -19,20 +27,32 @@ public class UserManager extends SessionManager {
      */
     public User registerUser(final User user) {
         Session session = openSession();
-        session.save(user);
-        commitSession(session);
-        return user;
+
+        try {
+            session.save(user);
+            commitSession(session);
+            return user;
+        } finally {
+            closeSession(session);
+        }
     }
 
     /**
-     * This method updates an User object into the database
+     * This method updates an User object into the database, and writes a
+     * UserUpdated event in the same transaction
      *
      * @param user the User object with the updated data
      */
     public void update(final User user) {
         Session session = openSession();
-        session.update(user);
-        commitSession(session);
+
+        try {
+            session.update(user);
+            session.save(new OutboxEvent(OutboxEvent.Type.USER_UPDATED, user.getId(), user.getUsername()));
+            commitSession(session);
+        } finally {
+            closeSession(session);
+        }
     }
 
     /**
@@ -42,8 +62,13 @@ public class UserManager extends SessionManager {
      */
     public void deleteUser(final User user) {
         Session session = openSession();
-        session.delete(user);
-        commitSession(session);
+
+        try {
+            session.delete(user);
+            commitSession(session);
+        } finally {
+            closeSession(session);
+        }
     }
 
     /**
@@ -55,7 +80,7 @@ public class UserManager extends SessionManager {
      * if the user is not found
      */
     public User getUserByName(final String username) {
-        Session session = openSession();
+        Session session = openReadOnlySession();
 
         try {
             User user = (User) session.createCriteria(User.class)
@@ -65,7 +90,9 @@ public class UserManager extends SessionManager {
 
             return user;
         } catch (HibernateException e) {
-            System.out.println("unable to retrieve an user from database by its username");
+            log.log(Level.WARNING, "unable to retrieve an user from database by its username", e);
+        } finally {
+            closeSession(session);
         }
 
         return null;
@@ -81,7 +108,7 @@ public class UserManager extends SessionManager {
      * if the user is not found
      */
     public User getUserByUsernameWithJoins(final String username) {
-        Session session = openSession();
+        Session session = openReadOnlySession();
 
         try {
             User user = (User) session.createCriteria(User.class)
@@ -92,42 +119,93 @@ public class UserManager extends SessionManager {
 
             return user;
         } catch (HibernateException e) {
-            System.out.println("unable to retrieve an image from database by its username with joins");
+            log.log(Level.WARNING, "unable to retrieve an user from database by its username with joins", e);
+        } finally {
+            closeSession(session);
         }
 
         return null;
     }
 
     /**
-     * This method retrieves an user from the database using the user's
-     * username and password
+     * This method retrieves the id, username, password hash and version of
+     * a user, without loading the User entity or its profile photo
+     *
+     * @param username the username of the user
+     * @return the credentials or null if the user is not found
+     */
+    public UserCredentials getCredentials(final String username) {
+        StatelessSession session = openReadOnlyStatelessSession();
+
+        try {
+            UserCredentials credentials = (UserCredentials) session.createQuery("select new "
+                    + UserCredentials.class.getName() + "(user.id, user.username, user.passwordHash, user.version)"
+                    + " from User user where user.username = :username")
+                    .setParameter("username", username)
+                    .uniqueResult();
+            closeStatelessSession(session);
+
+            return credentials;
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method replaces the password hash of a user
      *
-     * @param username the user's username
-     * @param password the user's password
-     * @return the User object that we want to retrieve from the database.
-     * Or null if username is not found in the database or the password doesn't
-     * match the password of the user with the username.
+     * @param userId       the id of the user
+     * @param passwordHash the new password hash
+     */
+    public void updatePasswordHash(final int userId, final String passwordHash) {
+        StatelessSession session = openStatelessSession();
+
+        try {
+            session.createQuery("update User set passwordHash = :passwordHash where id = :userId")
+                    .setParameter("passwordHash", passwordHash)
+                    .setParameter("userId", userId)
+                    .executeUpdate();
+            closeStatelessSession(session);
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * This method adds an index on the usernames to a UserAccount table
+     * created before the index was declared on the User entity
      */
-    public User loginUser(final String username, final String password) {
+    public void createUsernameIndex() {
         Session session = openSession();
-        User user = getUserByName(username);
-        commitSession(session);
 
-        // if a user cannot be found with username
-        if (user == null)
-            return null;
+        try {
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("create index if not exists UserAccount_username on UserAccount (username)");
+                }
+            });
+            commitSession(session);
+        } finally {
+            closeSession(session);
+        }
+    }
 
-        String hashOfPassword = user.getPasswordHash();
-        String hashOfEnteredPassword = Hashing.sha256()
-                .hashString(password)
-                .toString();
+    /**
+     * This method adds the version column to a UserAccount table created
+     * before the column was declared on the User entity
+     */
+    public void createVersionColumn() {
+        Session session = openSession();
 
-        // checks if the hash of the input parameter password
-        // matches the password hash of the user found with username
-        if (hashOfPassword.equals(hashOfEnteredPassword)) {
-            return user;
-        } else {
-            return null;
+        try {
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("alter table UserAccount add column if not exists version integer not null default 0");
+                }
+            });
+            commitSession(session);
+        } finally {
+            closeSession(session);
         }
     }
 }
@@ -0,0 +1,63 @@
+package com.upgrad.ImageHoster.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The executors that the asynchronous controller methods run their blocking
+ * work on, so that servlet container threads are not held while it runs.
+ * The executors have a fixed number of threads and a bounded queue. When
+ * the queue is full a task is rejected with a RejectedExecutionException,
+ * which OverloadExceptionHandler answers with 503 Service Unavailable,
+ * instead of letting requests wait for longer and longer
+ */
+@Configuration
+public class AsyncExecutorConfiguration {
+
+    /**
+     * @return the executor for database queries. More threads than
+     * connections in the pool would only wait for a connection
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor databaseExecutor(@Value("${imagehoster.async.database-threads}") int threads,
+                                               @Value("${imagehoster.async.database-queue-capacity}") int queueCapacity) {
+        return boundedExecutor("database", threads, queueCapacity);
+    }
+
+    /**
+     * @return the executor for reading and writing files of the blob store
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor storageExecutor(@Value("${imagehoster.async.storage-threads}") int threads,
+                                              @Value("${imagehoster.async.storage-queue-capacity}") int queueCapacity) {
+        return boundedExecutor("storage", threads, queueCapacity);
+    }
+
+    /**
+     * @return the executor for verifying passwords, which takes a lot of CPU
+     * on purpose. It has few threads, so a burst of sign ins cannot take the
+     * CPU from the rendering of pages
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor passwordExecutor(@Value("${imagehoster.async.password-threads}") int threads,
+                                               @Value("${imagehoster.async.password-queue-capacity}") int queueCapacity) {
+        return boundedExecutor("password", threads, queueCapacity);
+    }
+
+    private static ThreadPoolExecutor boundedExecutor(String name, int threads, int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+}
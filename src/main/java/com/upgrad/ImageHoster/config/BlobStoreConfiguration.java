@@ -0,0 +1,29 @@
+package com.upgrad.ImageHoster.config;
+
+import com.upgrad.ImageHoster.common.BlobStore;
+import com.upgrad.ImageHoster.common.LocalBlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+@Configuration
+public class BlobStoreConfiguration {
+
+    /**
+     * The default BlobStore keeps the image files on the local disk. Declaring
+     * another BlobStore bean replaces it
+     *
+     * @param root the directory that the blobs are stored in
+     * @return the BlobStore used for image and profile photo data
+     * @throws IOException if the root directory cannot be created
+     */
+    @Bean
+    @ConditionalOnMissingBean(BlobStore.class)
+    public BlobStore blobStore(@Value("${imagehoster.blobstore.root}") String root) throws IOException {
+        return new LocalBlobStore(Paths.get(root));
+    }
+}
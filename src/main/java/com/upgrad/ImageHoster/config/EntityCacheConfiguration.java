@@ -0,0 +1,35 @@
+package com.upgrad.ImageHoster.config;
+
+import com.upgrad.ImageHoster.common.EntityCache;
+import com.upgrad.ImageHoster.common.EntityCacheFactory;
+import com.upgrad.ImageHoster.common.LocalEntityCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class EntityCacheConfiguration {
+
+    /**
+     * The default EntityCacheFactory keeps the caches in memory. Declaring
+     * another EntityCacheFactory bean replaces it
+     *
+     * @param maximumSize the number of entities that each cache holds
+     * @param ttlSeconds  how long an entity is cached after it was loaded
+     * @return the EntityCacheFactory used by the services
+     */
+    @Bean
+    @ConditionalOnMissingBean(EntityCacheFactory.class)
+    public EntityCacheFactory entityCacheFactory(@Value("${imagehoster.cache.maximum-size}") long maximumSize,
+                                                 @Value("${imagehoster.cache.ttl-seconds}") long ttlSeconds) {
+        return new EntityCacheFactory() {
+            @Override
+            public <K, V> EntityCache<K, V> create(String name) {
+                return new LocalEntityCache<K, V>(name, maximumSize, ttlSeconds, TimeUnit.SECONDS);
+            }
+        };
+    }
+}
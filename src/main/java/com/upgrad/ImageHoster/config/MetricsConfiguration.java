@@ -0,0 +1,24 @@
+package com.upgrad.ImageHoster.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class MetricsConfiguration implements WebMvcConfigurer {
+
+    // requests that run more statements than this are logged as warnings
+    @Value("${imagehoster.sql.max-statements-per-request}")
+    private int maxStatementsPerRequest;
+
+    /**
+     * Measures every request, see RequestMetricsInterceptor
+     *
+     * @param registry the interceptors of Spring MVC
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new RequestMetricsInterceptor(maxStatementsPerRequest));
+    }
+}
@@ -0,0 +1,56 @@
+package com.upgrad.ImageHoster.config;
+
+import com.upgrad.ImageHoster.common.EventSubscriber;
+import com.upgrad.ImageHoster.common.Metrics;
+import com.upgrad.ImageHoster.common.OutboxManager;
+import com.upgrad.ImageHoster.common.OutboxRelay;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands the events that the managers write to the OutboxEvent table to
+ * every EventSubscriber bean, i.e. the search index, on a background thread
+ */
+@Configuration
+public class OutboxConfiguration {
+    Logger log = Logger.getLogger(this.getClass().getName());
+
+    @Bean(destroyMethod = "close")
+    public OutboxRelay outboxRelay(List<EventSubscriber> subscribers,
+                                   @Value("${imagehoster.events.position-file}") String positionFile,
+                                   @Value("${imagehoster.events.poll-interval-ms}") long pollIntervalMillis,
+                                   @Value("${imagehoster.events.batch-size}") int batchSize,
+                                   @Value("${imagehoster.events.max-attempts}") int maxAttempts,
+                                   @Value("${imagehoster.events.retry-backoff-ms}") long retryBackoffMillis,
+                                   @Value("${imagehoster.events.gap-timeout-ms}") long gapTimeoutMillis,
+                                   @Value("${imagehoster.events.retention-hours}") long retentionHours)
+            throws IOException {
+        OutboxManager outboxManager = Metrics.timed(new OutboxManager());
+
+        try {
+            outboxManager.createTable();
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "unable to create the OutboxEvent table", e);
+        }
+
+        Path position = Paths.get(positionFile);
+        Files.createDirectories(position.toAbsolutePath().getParent());
+
+        OutboxRelay relay = new OutboxRelay(outboxManager, subscribers, position, batchSize, maxAttempts,
+                Duration.ofMillis(retryBackoffMillis), Duration.ofMillis(gapTimeoutMillis),
+                Duration.ofHours(retentionHours));
+        relay.start(Duration.ofMillis(pollIntervalMillis));
+
+        return relay;
+    }
+}
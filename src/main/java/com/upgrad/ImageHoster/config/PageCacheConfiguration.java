@@ -0,0 +1,44 @@
+package com.upgrad.ImageHoster.config;
+
+import com.upgrad.ImageHoster.common.PageRenderer;
+import com.upgrad.ImageHoster.common.RenderedPageCache;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.thymeleaf.templateresolver.ITemplateResolver;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class PageCacheConfiguration {
+
+    /**
+     * @param templateResolver the resolver of the Thymeleaf views
+     * @param contextPath      the path that the application is served under
+     * @return the renderer of the cached pages
+     */
+    @Bean
+    public PageRenderer pageRenderer(ITemplateResolver templateResolver,
+                                     @Value("${server.servlet.context-path:}") String contextPath) {
+        return new PageRenderer(templateResolver, contextPath);
+    }
+
+    /**
+     * Stale pages are rendered again on the database executor, which
+     * their queries run on anyway
+     *
+     * @param databaseExecutor the executor for database queries
+     * @param maximumSize      the number of pages that the cache holds
+     * @param ttlSeconds       how long a page is served before it is
+     *                         rendered again, if no write invalidates it
+     * @return the cache of the home and tag pages
+     */
+    @Bean
+    public RenderedPageCache renderedPageCache(@Qualifier("databaseExecutor") Executor databaseExecutor,
+                                               @Value("${imagehoster.page-cache.maximum-size}") long maximumSize,
+                                               @Value("${imagehoster.page-cache.ttl-seconds}") long ttlSeconds) {
+        return new RenderedPageCache(databaseExecutor, maximumSize, ttlSeconds, TimeUnit.SECONDS);
+    }
+}
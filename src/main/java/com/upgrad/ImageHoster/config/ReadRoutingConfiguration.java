@@ -0,0 +1,25 @@
+package com.upgrad.ImageHoster.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class ReadRoutingConfiguration implements WebMvcConfigurer {
+
+    // how long the requests of an HTTP session read from the primary after it wrote
+    @Value("${imagehoster.replica.read-your-writes-ms}")
+    private long readYourWritesMillis;
+
+    /**
+     * Lets the read-only queries of requests go to the replicas of the
+     * database, see ReadRoutingInterceptor
+     *
+     * @param registry the interceptors of Spring MVC
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ReadRoutingInterceptor(readYourWritesMillis));
+    }
+}
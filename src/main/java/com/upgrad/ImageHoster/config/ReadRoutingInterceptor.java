@@ -0,0 +1,85 @@
+package com.upgrad.ImageHoster.config;
+
+import com.upgrad.ImageHoster.common.ReadRouting;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Binds a ReadRouting to every request, so its read-only queries may go to
+ * a replica of the database. When a request writes, the time is kept in
+ * its HTTP session, and the requests of that session read from the primary
+ * for a while, until the replicas have caught up with the write. The HTTP
+ * sessions are shared by the instances of the application, so this holds
+ * whichever instance answers the next request
+ */
+public class ReadRoutingInterceptor implements AsyncHandlerInterceptor {
+    // the time of the last write of an HTTP session, in milliseconds since the epoch
+    static final String LAST_WRITE_ATTRIBUTE = "lastWriteMillis";
+    private static final String ROUTING_ATTRIBUTE = ReadRouting.class.getName();
+
+    private final long readYourWritesMillis;
+
+    /**
+     * @param readYourWritesMillis how long the requests of an HTTP session
+     *                             read from the primary after it wrote
+     */
+    public ReadRoutingInterceptor(long readYourWritesMillis) {
+        this.readYourWritesMillis = readYourWritesMillis;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ReadRouting routing = (ReadRouting) request.getAttribute(ROUTING_ATTRIBUTE);
+
+        // the dispatch that resumes an asynchronous request continues its routing
+        if (routing == null) {
+            HttpSession session = request.getSession(false);
+            Long lastWrite = session == null ? null : (Long) session.getAttribute(LAST_WRITE_ATTRIBUTE);
+
+            routing = new ReadRouting(lastWrite == null ? 0 : lastWrite + readYourWritesMillis);
+            request.setAttribute(ROUTING_ATTRIBUTE, routing);
+        }
+
+        ReadRouting.bind(routing);
+
+        return true;
+    }
+
+    /**
+     * This method keeps the time of the request's write in its HTTP session
+     * before the response is written, i.e. the redirect to the uploaded
+     * image, so the session is saved with it
+     */
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+                           ModelAndView modelAndView) {
+        ReadRouting routing = (ReadRouting) request.getAttribute(ROUTING_ATTRIBUTE);
+
+        if (routing == null || routing.getLastWriteMillis() == 0) {
+            return;
+        }
+
+        HttpSession session = request.getSession(false);
+
+        if (session != null) {
+            session.setAttribute(LAST_WRITE_ATTRIBUTE, routing.getLastWriteMillis());
+        }
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        // the servlet thread is released until the request is resumed
+        ReadRouting.bind(null);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        ReadRouting.bind(null);
+    }
+}
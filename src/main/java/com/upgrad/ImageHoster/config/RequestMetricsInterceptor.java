@@ -0,0 +1,122 @@
+package com.upgrad.ImageHoster.config;
+
+import com.upgrad.ImageHoster.common.Metrics;
+import com.upgrad.ImageHoster.common.RequestMetrics;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the latency, SQL statements and database sessions of every
+ * request by controller method, i.e. "ImageController.listImages", and how
+ * long its template takes to render. An asynchronous request is measured
+ * from its first dispatch to the end of the dispatch that resumes it.
+ * Requests that run more statements than expected are logged as warnings
+ */
+public class RequestMetricsInterceptor implements AsyncHandlerInterceptor {
+
+    Logger log = Logger.getLogger(this.getClass().getName());
+
+    private static final String METRICS_ATTRIBUTE = RequestMetrics.class.getName();
+
+    private final int maxStatementsPerRequest;
+    private final ConcurrentMap<Method, String> handlerNames = new ConcurrentHashMap<Method, String>();
+
+    public RequestMetricsInterceptor(int maxStatementsPerRequest) {
+        this.maxStatementsPerRequest = maxStatementsPerRequest;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        RequestMetrics metrics = (RequestMetrics) request.getAttribute(METRICS_ATTRIBUTE);
+
+        // the dispatch that resumes an asynchronous request continues its metrics
+        if (metrics == null) {
+            metrics = new RequestMetrics(System.nanoTime());
+            request.setAttribute(METRICS_ATTRIBUTE, metrics);
+        }
+
+        RequestMetrics.bind(metrics);
+
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+                           ModelAndView modelAndView) {
+        RequestMetrics metrics = (RequestMetrics) request.getAttribute(METRICS_ATTRIBUTE);
+
+        if (metrics == null || modelAndView == null || modelAndView.getViewName() == null) {
+            return;
+        }
+
+        String viewName = modelAndView.getViewName();
+
+        if (!viewName.startsWith("redirect:") && !viewName.startsWith("forward:")) {
+            metrics.startRendering(viewName, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        // the servlet thread is released until the request is resumed
+        RequestMetrics.bind(null);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        RequestMetrics metrics = (RequestMetrics) request.getAttribute(METRICS_ATTRIBUTE);
+        RequestMetrics.bind(null);
+
+        if (metrics == null) {
+            return;
+        }
+
+        long end = System.nanoTime();
+        String handlerName = handlerName(handler);
+
+        if (metrics.getTemplate() != null) {
+            Metrics.histogram(Metrics.TEMPLATE_RENDER_SECONDS, metrics.getTemplate())
+                    .record(end - metrics.getRenderStartNanos());
+        }
+
+        Metrics.histogram(Metrics.HTTP_REQUEST_SECONDS, handlerName).record(end - metrics.getStartNanos());
+        Metrics.histogram(Metrics.REQUEST_SQL_STATEMENTS, handlerName).record(metrics.getSqlStatements());
+        Metrics.histogram(Metrics.REQUEST_DB_SESSIONS, handlerName).record(metrics.getDbSessions());
+
+        int count = metrics.getSqlStatements();
+        Level level = count > maxStatementsPerRequest ? Level.WARNING : Level.FINE;
+
+        if (log.isLoggable(level)) {
+            log.log(level, request.getMethod() + " " + request.getRequestURI()
+                    + " ran " + count + " SQL statements");
+        }
+    }
+
+    private String handlerName(Object handler) {
+        if (!(handler instanceof HandlerMethod)) {
+            // i.e. the handler of the static resources
+            return handler.getClass().getSimpleName();
+        }
+
+        HandlerMethod handlerMethod = (HandlerMethod) handler;
+        String name = handlerNames.get(handlerMethod.getMethod());
+
+        if (name == null) {
+            name = handlerNames.computeIfAbsent(handlerMethod.getMethod(),
+                    method -> handlerMethod.getBeanType().getSimpleName() + "." + method.getName());
+        }
+
+        return name;
+    }
+}
@@ -0,0 +1,47 @@
+package com.upgrad.ImageHoster.config;
+
+import com.upgrad.ImageHoster.common.LocalSessionStore;
+import com.upgrad.ImageHoster.common.SessionStore;
+import com.upgrad.ImageHoster.common.StoredSessionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Replaces the HTTP sessions of the servlet container with sessions kept in
+ * a SessionStore, so any instance of the application can answer a signed in
+ * user, and a restart does not sign the users out
+ */
+@Configuration
+@EnableSpringHttpSession
+public class SessionConfiguration {
+
+    /**
+     * The default SessionStore keeps the sessions in files on the local disk.
+     * Declaring another SessionStore bean replaces it
+     *
+     * @param directory the directory that the sessions are stored in
+     * @return the SessionStore that the HTTP sessions are kept in
+     * @throws IOException if the directory cannot be created
+     */
+    @Bean
+    @ConditionalOnMissingBean(SessionStore.class)
+    public SessionStore sessionStore(@Value("${imagehoster.session.store-dir}") String directory) throws IOException {
+        return new LocalSessionStore(Paths.get(directory));
+    }
+
+    @Bean(destroyMethod = "close")
+    public StoredSessionRepository sessionRepository(SessionStore sessionStore,
+                                                     @Value("${imagehoster.session.timeout-seconds}") long timeoutSeconds,
+                                                     @Value("${imagehoster.session.touch-interval-seconds}") long touchIntervalSeconds,
+                                                     @Value("${imagehoster.session.sweep-interval-seconds}") long sweepIntervalSeconds) {
+        return new StoredSessionRepository(sessionStore, Duration.ofSeconds(timeoutSeconds),
+                Duration.ofSeconds(touchIntervalSeconds), Duration.ofSeconds(sweepIntervalSeconds));
+    }
+}
@@ -0,0 +1,26 @@
+package com.upgrad.ImageHoster.config;
+
+import com.upgrad.ImageHoster.controller.CurrentUserArgumentResolver;
+import com.upgrad.ImageHoster.service.UserService;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebMvcConfiguration implements WebMvcConfigurer {
+    private final UserService userService;
+
+    // the UserService is only looked up when a controller asks for the
+    // current User, so controller slice tests without one still start
+    public WebMvcConfiguration(@Lazy UserService userService) {
+        this.userService = userService;
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new CurrentUserArgumentResolver(userService));
+    }
+}
@@ -0,0 +1,68 @@
+package com.upgrad.ImageHoster.controller;
+
+import com.upgrad.ImageHoster.model.SessionPrincipal;
+import com.upgrad.ImageHoster.model.User;
+import com.upgrad.ImageHoster.service.UserService;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Resolves the SessionPrincipal parameters of controller methods from the
+ * HTTP session, and the @CurrentUser User parameters from the cached users
+ * of UserService. The User is only loaded for the controller methods that
+ * ask for it, and at most once per request.
+ *
+ * A principal whose user has been deleted, or whose username now belongs
+ * to another user, is removed from the session, which signs the user out
+ */
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+    static final String PRINCIPAL_ATTRIBUTE = "currUser";
+    // the User loaded for the current request
+    private static final String USER_ATTRIBUTE = CurrentUserArgumentResolver.class.getName() + ".user";
+
+    private final UserService userService;
+
+    public CurrentUserArgumentResolver(UserService userService) {
+        this.userService = userService;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.getParameterType() == SessionPrincipal.class
+                || (parameter.getParameterType() == User.class && parameter.hasParameterAnnotation(CurrentUser.class));
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        SessionPrincipal principal = (SessionPrincipal) webRequest.getAttribute(PRINCIPAL_ATTRIBUTE,
+                RequestAttributes.SCOPE_SESSION);
+
+        if (principal == null) {
+            return null;
+        }
+
+        if (parameter.getParameterType() == SessionPrincipal.class) {
+            return principal;
+        }
+
+        User user = (User) webRequest.getAttribute(USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+
+        if (user == null) {
+            user = userService.getCurrentUser(principal);
+
+            if (user == null) {
+                webRequest.removeAttribute(PRINCIPAL_ATTRIBUTE, RequestAttributes.SCOPE_SESSION);
+                return null;
+            }
+
+            webRequest.setAttribute(USER_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+        }
+
+        return user;
+    }
+}
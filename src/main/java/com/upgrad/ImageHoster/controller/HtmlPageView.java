@@ -0,0 +1,37 @@
+package com.upgrad.ImageHoster.controller;
+
+import org.springframework.web.servlet.View;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * A view that writes a page which has already been rendered, i.e. one
+ * taken from the RenderedPageCache
+ */
+final class HtmlPageView implements View {
+    private static final String CONTENT_TYPE = "text/html;charset=UTF-8";
+
+    private final String html;
+
+    HtmlPageView(String html) {
+        this.html = html;
+    }
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response)
+            throws Exception {
+        byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
+
+        response.setContentType(CONTENT_TYPE);
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
+}
@@ -1,28 +1,52 @@
 package com.upgrad.ImageHoster.controller;
 
+import com.upgrad.ImageHoster.common.AsyncTasks;
+import com.upgrad.ImageHoster.common.PageRenderer;
+import com.upgrad.ImageHoster.common.RenderedPageCache;
+import com.upgrad.ImageHoster.common.RenderedPageCache.RenderedPage;
+import com.upgrad.ImageHoster.common.RequestContext;
+import com.upgrad.ImageHoster.common.StoredBlob;
+import com.upgrad.ImageHoster.model.FeedPage;
 import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.ImageCard;
+import com.upgrad.ImageHoster.model.SessionPrincipal;
 import com.upgrad.ImageHoster.model.Tag;
 import com.upgrad.ImageHoster.model.User;
 
+import com.upgrad.ImageHoster.service.BlobService;
 import com.upgrad.ImageHoster.service.ImageService;
+import com.upgrad.ImageHoster.service.SimilarImageService;
 import com.upgrad.ImageHoster.service.TagService;
 import com.upgrad.ImageHoster.service.UserService;
+import com.upgrad.ImageHoster.service.ViewCountService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.view.RedirectView;
 
-import javax.servlet.http.HttpSession;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 
 @Controller
 public class ImageController {
+    // the largest number of similar images that are shown or returned at once
+    private static final int MAX_SIMILAR_IMAGES = 50;
+    private static final int SIMILAR_IMAGES_SHOWN_ON_UPLOAD = 6;
+
     @Autowired
     private ImageService imageService;
 
@@ -32,38 +56,105 @@ public class ImageController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private BlobService blobService;
+
+    @Autowired
+    private ViewCountService viewCountService;
+
+    @Autowired
+    private SimilarImageService similarImageService;
+
+    @Autowired
+    private RenderedPageCache pageCache;
+
+    @Autowired
+    private PageRenderer pageRenderer;
+
+    @Autowired
+    @Qualifier("databaseExecutor")
+    private Executor databaseExecutor;
+
+    @Autowired
+    @Qualifier("storageExecutor")
+    private Executor storageExecutor;
+
+    @Value("${imagehoster.feed.page-size}")
+    private int feedPageSize;
+
 
 
     /**
-     * This controller method returns all the images that have been
-     * uploaded to the website
+     * This controller method returns a page of the images that have been
+     * uploaded to the website, newest first. Pages are served from the
+     * page cache, which is kept up to date by ImageService. A page that is
+     * not cached is loaded and rendered on the database executor, which
+     * frees the servlet thread in the meantime
      *
-     * @param model used to pass data to the view for rendering
-     * @return the homepage view
+     * @param cursor    the position of the page in the feed, or null for the
+     *                  first page
+     * @param principal the principal stored in the HTTP session, null if
+     *                  the current user is not logged in
+     * @return the view of the homepage, once the page has been rendered
      */
     @RequestMapping("/")
-    public String listImages(Model model) {
-        List<Image> images = imageService.getAll();
-        model.addAttribute("images", images);
+    public CompletableFuture<View> listImages(@RequestParam(value = "cursor", required = false) String cursor,
+                                              SessionPrincipal principal) {
+        boolean signedIn = principal != null;
+        String key = "home?cursor=" + (cursor == null ? "" : cursor) + "&signedIn=" + signedIn;
+        Supplier<RenderedPage> renderer = () -> renderFeedPage(cursor, signedIn);
+
+        String html = pageCache.getIfPresent(key, renderer);
+
+        if (html != null) {
+            return CompletableFuture.completedFuture(new HtmlPageView(html));
+        }
+
+        return AsyncTasks.supply(RequestContext.capture(), databaseExecutor, () -> {
+            try {
+                return new HtmlPageView(pageCache.get(key, renderer));
+            } catch (IllegalArgumentException e) {
+                // the cursor has been tampered with, start from the first page
+                return new RedirectView("/", true);
+            }
+        });
+    }
+
+    /**
+     * This helper function renders a page of the feed. The page depends on
+     * the images it shows, and the first page also on every new image
+     */
+    private RenderedPage renderFeedPage(String cursor, boolean signedIn) {
+        FeedPage<ImageCard> page = imageService.getFeed(cursor, feedPageSize);
+        Set<String> dependencies = new HashSet<String>();
+
+        if (cursor == null) {
+            dependencies.add(RenderedPageCache.FIRST_FEED_PAGE);
+        }
 
-        return "home";
+        for (ImageCard image : page.getItems()) {
+            dependencies.add(RenderedPageCache.imageKey(image.getId()));
+        }
+
+        Map<String, Object> model = new HashMap<String, Object>();
+        model.put("images", page.getItems());
+        model.put("nextCursor", page.getNextCursor());
+
+        return new RenderedPage(pageRenderer.render("home", model, signedIn), dependencies);
     }
 
     /**
      * This controller method renders an image upload form
      *
-     * @param session a HTTP session that tells us if the current user
-     *                is logged in
+     * @param principal the principal stored in the HTTP session, null if
+     *                  the current user is not logged in
      * @return the image upload form view
      */
     @RequestMapping("/images/upload")
-    public String uploadImage(HttpSession session) {
-        // retrieves the current user from the HTTP session
-        User currUser = (User) session.getAttribute("currUser");
-
-        // currUser is null means that the user is not logged in
+    public String uploadImage(SessionPrincipal principal) {
+        // principal is null means that the user is not logged in
         // therefore redirect the user back to the home page
-        if (currUser == null) {
+        if (principal == null) {
             return "redirect:/";
         } else {
             return "images/upload";
@@ -72,36 +163,88 @@ public class ImageController {
 
     /**
      * This controller method retrieves the data that the user entered
-     * into the image uploader form, and creates an image
+     * into the image uploader form, and creates an image. The perceptual
+     * hash of the file is computed on the storage executor and looked up on
+     * the database executor. If images that look like the upload exist, the
+     * form is shown again with those images, and the image is only stored
+     * and saved once the user confirms the upload. Otherwise the file is
+     * streamed into the blob store on the storage executor, then the image
+     * is saved on the database executor
      *
-     * @param title       title of the uploaded image
-     * @param description description of the uploaded image
-     * @param file        the image to be uploaded
-     * @param tags        tags (i.e. categories) for the images
-     * @param session     HTTP session that tells us if the user is logged in
-     * @return view for the uploaded image
-     * @throws IOException
+     * @param title        title of the uploaded image
+     * @param description  description of the uploaded image
+     * @param file         the image to be uploaded
+     * @param tags         tags (i.e. categories) for the images
+     * @param allowSimilar true if the user wants to upload the image even
+     *                     though similar images exist
+     * @param currUser     the signed in user, or null if the user is not
+     *                     logged in
+     * @param model        used to pass the similar images to the upload form
+     * @return view for the uploaded image, once it has been saved
      */
     @RequestMapping(value = "/upload", method = RequestMethod.POST)
-    public String upload(@RequestParam("title") String title,
-                         @RequestParam("description") String description,
-                         @RequestParam("file") MultipartFile file,
-                         @RequestParam("tags") String tags,
-                         HttpSession session) throws IOException {
-        User currUser = (User) session.getAttribute("currUser");
-
+    public CompletableFuture<String> upload(@RequestParam("title") String title,
+                                            @RequestParam("description") String description,
+                                            @RequestParam("file") MultipartFile file,
+                                            @RequestParam("tags") String tags,
+                                            @RequestParam(value = "allowSimilar", defaultValue = "false")
+                                                    boolean allowSimilar,
+                                            @CurrentUser User currUser,
+                                            Model model) {
         // if the user is not logged in, redirect to the home page
         if (currUser == null) {
-            return "redirect:/";
-        } else {
-            List<Tag> imageTags = findOrCreateTags(tags);
-            String uploadedImageData = convertUploadedFileToBase64(file);
+            return CompletableFuture.completedFuture("redirect:/");
+        }
 
-            Image newImage = new Image(title, description, uploadedImageData, currUser, imageTags);
-            imageService.save(newImage);
+        // every stage writes to and reads for this request, including the
+        // ones started from a dependent stage on an executor thread
+        RequestContext context = RequestContext.capture();
+
+        // the upload is only stored once it is known not to be shown again
+        // with its similar images, so a rejected upload leaves no blob behind
+        return AsyncTasks.unwrapped(AsyncTasks.supply(context, storageExecutor, () -> computeUploadHash(file))
+                .thenCompose(perceptualHash -> AsyncTasks.supply(context, databaseExecutor, () -> {
+                    if (!allowSimilar && perceptualHash != null) {
+                        return similarImageService.findSimilar(perceptualHash, SIMILAR_IMAGES_SHOWN_ON_UPLOAD);
+                    }
+
+                    return Collections.<ImageCard>emptyList();
+                }).thenCompose(similarImages -> {
+                    if (!similarImages.isEmpty()) {
+                        model.addAttribute("similarImages", similarImages);
+                        model.addAttribute("title", title);
+                        model.addAttribute("description", description);
+                        model.addAttribute("tags", tags);
+
+                        return CompletableFuture.completedFuture("images/upload");
+                    }
+
+                    return AsyncTasks.supply(context, storageExecutor, () -> storeUploadedFile(file))
+                            .thenCompose(uploadedImage -> AsyncTasks.supply(context, databaseExecutor, () -> {
+                                Image newImage = new Image(title, description, uploadedImage.getHash(),
+                                        uploadedImage.getSize(), uploadedImage.getMimeType(), currUser,
+                                        findOrCreateTags(tags));
+                                newImage.setPerceptualHash(perceptualHash);
+                                imageService.save(newImage);
+
+                                return "redirect:/images/" + newImage.getId();
+                            }));
+                })));
+    }
 
-            return "redirect:/images/" + newImage.getId();
-        }
+    /**
+     * This controller method returns the images that look like an image,
+     * most similar first, i.e. /images/12/similar?limit=5
+     *
+     * @param id    the id of the image
+     * @param limit the maximum number of images returned
+     * @return a JSON array of the similar images
+     */
+    @RequestMapping("/images/{id}/similar")
+    @ResponseBody
+    public List<ImageCard> similarImages(@PathVariable int id,
+                                         @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return similarImageService.findSimilarTo(id, Math.max(1, Math.min(limit, MAX_SIMILAR_IMAGES)));
     }
 
     /**
@@ -114,14 +257,15 @@ public class ImageController {
     @RequestMapping("/images/{id}")
     public String showImageById(@PathVariable int id, Model model) {
         Image image = imageService.getByIdWithJoin(id);
-        image.setNumView(image.getNumView() + 1);
-        imageService.update(image);
+
+        // the view is counted in memory and written to the database later
+        viewCountService.recordView(id);
+        long numViews = image.getNumView() + viewCountService.getPendingViews(id);
 
         model.addAttribute("user", image.getUser());
         model.addAttribute("image", image);
         model.addAttribute("tags", image.getTags());
-
-        System.out.print("Look Here");
+        model.addAttribute("numViews", numViews);
 
         return "images/image";
     }
@@ -164,10 +308,14 @@ public class ImageController {
                        @RequestParam("tags") String tags) throws IOException {
         Image image = imageService.getByTitle(title);
         List<Tag> imageTags = findOrCreateTags(tags);
-        String updatedImageData = convertUploadedFileToBase64(file);
+        Long perceptualHash = computeUploadHash(file);
+        StoredBlob updatedImage = storeUploadedFile(file);
 
         image.setDescription(description);
-        image.setImageFile(updatedImageData);
+        image.setImageHash(updatedImage.getHash());
+        image.setImageSize(updatedImage.getSize());
+        image.setMimeType(updatedImage.getMimeType());
+        image.setPerceptualHash(perceptualHash);
         image.setTags(imageTags);
         imageService.update(image);
 
@@ -175,21 +323,38 @@ public class ImageController {
     }
 
     /**
-     * This help function converts an image file to base64 encoding, which
-     * makes it easier for us to store the image data in the datbase
+     * This help function computes the perceptual hash of an uploaded image
+     * before it is stored
      *
-     * @param file the file that we want to convert to base64 encoding
-     * @return base64 encoding of the file that was passed into this function
-     * @throws IOException
+     * @param file the uploaded file
+     * @return the perceptual hash, or null if the image cannot be decoded
+     * @throws IOException if the image has too many pixels or the file
+     *                     cannot be read
+     */
+    private Long computeUploadHash(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return similarImageService.computeHash(in);
+        }
+    }
+
+    /**
+     * This help function streams an uploaded image into the blob store
+     *
+     * @param file the file that we want to store
+     * @return the hash, size and MIME type of the stored file
+     * @throws IOException if the file is not an image, is too large
+     *                     or cannot be stored
      */
-    private String convertUploadedFileToBase64(MultipartFile file) throws IOException {
-        return Base64.getEncoder().encodeToString(file.getBytes());
+    private StoredBlob storeUploadedFile(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return blobService.saveImage(in);
+        }
     }
 
     /**
-     * This is a helper function that checks if a tag has been created and
-     * saved into the DB. If the tag has not saved DB, this function
-     * will create the tag
+     * This is a helper function that returns the tags of an image, creating
+     * the tags that have not been saved to the DB yet. All the tags are
+     * resolved with one call to the TagService
      *
      * @param tagNames a String that represents the tags, and tagNames
      *                 can be comma delimited to represent multiple Tags
@@ -200,26 +365,13 @@ public class ImageController {
     private List<Tag> findOrCreateTags(String tagNames) {
         // converts a comma delimited String into a String Tokenizer
         StringTokenizer st = new StringTokenizer(tagNames, ",");
-        List<Tag> tags = new ArrayList<Tag>();
+        List<String> names = new ArrayList<String>();
 
-        // for each token in the Tokenizer
         while (st.hasMoreTokens()) {
-            // trim any white spaces before or after the String token
-            String tagName = st.nextToken().trim();
-            // check if the associated Tag has been created and stored in the database
-            Tag tag = tagService.getByName(tagName);
-
-            // if the associated Tag has not been created, create the tag
-            // and store it in the database
-            if (tag == null) {
-                Tag newTag = new Tag(tagName);
-                tag = tagService.createTag(newTag);
-            }
-
-            tags.add(tag);
+            names.add(st.nextToken());
         }
 
-        return tags;
+        return tagService.getOrCreateTags(names);
     }
 
 
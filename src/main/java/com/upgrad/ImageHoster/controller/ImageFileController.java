@@ -0,0 +1,309 @@
+package com.upgrad.ImageHoster.controller;
+
+import com.upgrad.ImageHoster.common.AsyncTasks;
+import com.upgrad.ImageHoster.common.Metrics;
+import com.upgrad.ImageHoster.common.RequestContext;
+import com.upgrad.ImageHoster.service.BlobService;
+import com.upgrad.ImageHoster.service.ImageService;
+import com.upgrad.ImageHoster.service.ProfilePhotoService;
+import com.upgrad.ImageHoster.service.RenditionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.View;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+@Controller
+public class ImageFileController {
+    // the avatar shown for users who have not uploaded a profile photo
+    private static final ClassPathResource DEFAULT_AVATAR = new ClassPathResource("static/images/avatar.png");
+
+    // A stored blob never changes, so a URL that names the hash of the blob
+    // (?v=<hash>) can be cached forever. Other URLs can point to a new blob
+    // after an edit, and so can the original that is sent in place of a copy
+    // that has not been generated yet, so they are revalidated with the ETag
+    // on every use
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE_CACHE_CONTROL = "public, no-cache";
+    private static final String DEFAULT_AVATAR_CACHE_CONTROL = "public, max-age=86400";
+
+    private static final View NOT_FOUND = (model, request, response) ->
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+
+    private static final View DEFAULT_AVATAR_VIEW = (model, request, response) -> {
+        response.setContentType("image/png");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, DEFAULT_AVATAR_CACHE_CONTROL);
+
+        try (InputStream in = DEFAULT_AVATAR.getInputStream()) {
+            StreamUtils.copy(in, response.getOutputStream());
+        }
+    };
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private ProfilePhotoService profilePhotoService;
+
+    @Autowired
+    private BlobService blobService;
+
+    @Autowired
+    private RenditionService renditionService;
+
+    @Autowired
+    @Qualifier("databaseExecutor")
+    private Executor databaseExecutor;
+
+    @Autowired
+    @Qualifier("storageExecutor")
+    private Executor storageExecutor;
+
+    /**
+     * This controller method writes the bytes of an uploaded image, or of
+     * a re-encoded copy of it. The copy is the smallest one in a format that
+     * the client accepts (Accept header), resized if a size is given. It
+     * supports conditional requests (If-None-Match, If-Modified-Since) and
+     * single byte ranges. The image is looked up on the database executor
+     * and its file on the storage executor, so the servlet thread is only
+     * needed to send the file
+     *
+     * @param id       the id of the image
+     * @param version  the hash of the image that the client expects, if any
+     * @param size     the size in pixels that the image is displayed at, if
+     *                 a resized copy should be sent instead of the original
+     * @param accept   the image formats that the client can display
+     * @return the view that writes the image to the response
+     */
+    @RequestMapping("/images/{id}/raw")
+    public CompletableFuture<View> showImageFile(@PathVariable int id,
+                                                 @RequestParam(value = "v", required = false) String version,
+                                                 @RequestParam(value = "size", required = false) Integer size,
+                                                 @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        RequestContext context = RequestContext.capture();
+
+        return AsyncTasks.unwrapped(AsyncTasks.supply(context, databaseExecutor,
+                () -> imageService.getByIdWithoutJoin(id))
+                .thenCompose(image -> AsyncTasks.supply(context, storageExecutor, () -> {
+                    if (image == null || image.getImageHash() == null) {
+                        return NOT_FOUND;
+                    }
+
+                    String hash = image.getImageHash();
+                    List<MediaType> acceptedTypes = acceptedTypes(accept);
+                    boolean copyPending = false;
+
+                    for (String format : renditionService.getFormats()) {
+                        if (!isAccepted(acceptedTypes, format)) {
+                            continue;
+                        }
+
+                        Path copy = size != null
+                                ? renditionService.getRendition(hash, size, format)
+                                : renditionService.getOptimized(hash, format);
+
+                        if (copy != null) {
+                            return varyByAccept(fileView(copy, "\"" + hash + "-" + copy.getFileName() + "\"",
+                                    format, cacheControl(hash, version)));
+                        }
+
+                        // until the copy has been generated the original is sent
+                        copyPending |= renditionService.isCopyPending(hash, size, format);
+                    }
+
+                    return varyByAccept(blobView(hash, image.getMimeType(),
+                            copyPending ? REVALIDATE_CACHE_CONTROL : cacheControl(hash, version)));
+                })));
+    }
+
+    /**
+     * This controller method writes the bytes of a user's profile photo,
+     * or the default avatar if the user has not uploaded one
+     *
+     * @param id       the id of the profile photo
+     * @param version  the hash of the photo that the client expects, if any
+     * @return the view that writes the photo to the response
+     */
+    @RequestMapping("/photos/{id}/raw")
+    public CompletableFuture<View> showProfilePhoto(@PathVariable int id,
+                                                    @RequestParam(value = "v", required = false) String version) {
+        RequestContext context = RequestContext.capture();
+
+        return AsyncTasks.unwrapped(AsyncTasks.supply(context, databaseExecutor, () -> profilePhotoService.getById(id))
+                .thenCompose(photo -> AsyncTasks.supply(context, storageExecutor, () -> {
+                    if (photo == null || photo.getPhotoHash() == null) {
+                        return DEFAULT_AVATAR_VIEW;
+                    }
+
+                    return blobView(photo.getPhotoHash(), photo.getMimeType(),
+                            cacheControl(photo.getPhotoHash(), version));
+                })));
+    }
+
+    /**
+     * This helper function returns the media types in an Accept header. A
+     * missing or invalid header accepts everything
+     */
+    private static List<MediaType> acceptedTypes(String accept) {
+        if (accept == null || accept.trim().isEmpty()) {
+            return Collections.singletonList(MediaType.ALL);
+        }
+
+        try {
+            return MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return Collections.singletonList(MediaType.ALL);
+        }
+    }
+
+    private static boolean isAccepted(List<MediaType> acceptedTypes, String format) {
+        MediaType formatType = MediaType.parseMediaType(format);
+
+        for (MediaType acceptedType : acceptedTypes) {
+            if (acceptedType.getQualityValue() > 0 && acceptedType.includes(formatType)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // the format of the response depends on the Accept header, which shared
+    // caches have to take into account
+    private static View varyByAccept(View view) {
+        return (model, request, response) -> {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            view.render(model, request, response);
+        };
+    }
+
+    private static String cacheControl(String hash, String version) {
+        return hash.equals(version) ? IMMUTABLE_CACHE_CONTROL : REVALIDATE_CACHE_CONTROL;
+    }
+
+    private View blobView(String hash, String mimeType, String cacheControl) throws IOException {
+        // the content of a blob is identified by its hash, which makes a strong ETag
+        return fileView(blobService.getLocalPath(hash), "\"" + hash + "\"", mimeType, cacheControl);
+    }
+
+    /**
+     * This helper function reads the size and modification time of a file,
+     * and returns the view that sends the file
+     */
+    private View fileView(Path file, String etag, String mimeType, String cacheControl) throws IOException {
+        long length;
+        long lastModified;
+
+        try {
+            length = Files.size(file);
+            lastModified = Files.getLastModifiedTime(file).toMillis();
+        } catch (NoSuchFileException e) {
+            return NOT_FOUND;
+        }
+
+        return (model, request, response) -> writeFile(file, length, lastModified, etag, mimeType, cacheControl,
+                request, response);
+    }
+
+    private void writeFile(Path file, long length, long lastModified, String etag, String mimeType,
+                           String cacheControl, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        // sets the ETag and Last-Modified headers, and answers 304 Not Modified
+        // if the client's copy is still current
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        HttpRange range = requestedRange(request, etag);
+
+        if (range != null) {
+            if (length == 0 || range.getRangeStart(length) >= length) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+
+        long count = end - start + 1;
+        response.setContentType(mimeType);
+        response.setContentLengthLong(count);
+
+        if ("HEAD".equals(request.getMethod()) || count <= 0) {
+            return;
+        }
+
+        Metrics.counter(Metrics.IMAGE_BYTES_SENT).add(count);
+
+        // The response is written in the dispatch that resumes the async
+        // request, where Tomcat does not use sendfile, so the bytes are
+        // copied through a buffer. FileChannel.transferTo to the servlet
+        // output stream would copy through a buffer as well, as the stream
+        // is not a socket or file channel. Files are not sent zero-copy
+        try (InputStream in = Files.newInputStream(file)) {
+            StreamUtils.copyRange(in, response.getOutputStream(), start, end);
+        }
+    }
+
+    /**
+     * This helper function returns the byte range that the client asked for.
+     * Requests for several ranges, and ranges that are conditional on an
+     * older version of the blob (If-Range), are answered with the whole blob
+     *
+     * @param request the HTTP request
+     * @param etag    the ETag of the current blob
+     * @return the requested range or null if the whole blob should be sent
+     */
+    private HttpRange requestedRange(HttpServletRequest request, String etag) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+
+        if (rangeHeader == null) {
+            return null;
+        }
+
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+
+        if (ifRange != null && !ifRange.equals(etag)) {
+            return null;
+        }
+
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            // an invalid Range header is ignored
+            return null;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.upgrad.ImageHoster.controller;
+
+import com.upgrad.ImageHoster.common.Histogram;
+import com.upgrad.ImageHoster.common.Metrics;
+import com.upgrad.ImageHoster.common.SessionManager;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+
+@Controller
+public class MetricsController {
+    private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String PREFIX = "imagehoster_";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * This controller method returns the metrics of the application in the
+     * Prometheus text format: the histograms as summaries with their
+     * quantiles since startup, the counters, and the connection pool. It
+     * only answers requests from the local host, so the metrics are not
+     * published to the users
+     *
+     * @param request the HTTP request, to check where it comes from
+     * @return the metrics, or 404 Not Found for a remote client
+     */
+    @RequestMapping("/metrics")
+    public ResponseEntity<String> showMetrics(HttpServletRequest request) {
+        if (!isLoopback(request.getRemoteAddr())) {
+            return ResponseEntity.notFound().build();
+        }
+
+        StringBuilder out = new StringBuilder(16 * 1024);
+
+        for (Map.Entry<String, Map<String, Histogram>> family : Metrics.getHistograms().entrySet()) {
+            writeSummary(out, PREFIX + family.getKey(), family.getValue(),
+                    family.getKey().endsWith("_seconds") ? NANOS_PER_SECOND : 1);
+        }
+
+        for (Map.Entry<String, Long> counter : Metrics.getCounters().entrySet()) {
+            String name = PREFIX + counter.getKey();
+            out.append("# TYPE ").append(name).append(" counter\n");
+            out.append(name).append(' ').append(counter.getValue()).append('\n');
+        }
+
+        HikariPoolMXBean pool = SessionManager.getPoolMetrics();
+
+        if (pool != null) {
+            writeGauge(out, "db_pool_active_connections", pool.getActiveConnections());
+            writeGauge(out, "db_pool_idle_connections", pool.getIdleConnections());
+            writeGauge(out, "db_pool_threads_awaiting_connection", pool.getThreadsAwaitingConnection());
+        }
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, PROMETHEUS_CONTENT_TYPE)
+                .body(out.toString());
+    }
+
+    private static void writeSummary(StringBuilder out, String family, Map<String, Histogram> histograms,
+                                     double divisor) {
+        out.append("# TYPE ").append(family).append(" summary\n");
+
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            String label = "name=\"" + escape(entry.getKey()) + "\"";
+            Histogram.Snapshot snapshot = entry.getValue().snapshot();
+
+            for (double quantile : QUANTILES) {
+                out.append(family).append('{').append(label).append(",quantile=\"").append(quantile).append("\"} ")
+                        .append(snapshot.getValueAtQuantile(quantile) / divisor).append('\n');
+            }
+
+            out.append(family).append("_sum{").append(label).append("} ")
+                    .append(snapshot.getSum() / divisor).append('\n');
+            out.append(family).append("_count{").append(label).append("} ")
+                    .append(snapshot.getCount()).append('\n');
+        }
+    }
+
+    private static void writeGauge(StringBuilder out, String name, int value) {
+        out.append("# TYPE ").append(PREFIX).append(name).append(" gauge\n");
+        out.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static boolean isLoopback(String address) {
+        try {
+            // the remote address is an IP address, so this does not look up a host name
+            return InetAddress.getByName(address).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
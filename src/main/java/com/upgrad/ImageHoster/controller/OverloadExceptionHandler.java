@@ -0,0 +1,31 @@
+package com.upgrad.ImageHoster.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import java.util.concurrent.RejectedExecutionException;
+
+@ControllerAdvice
+public class OverloadExceptionHandler {
+    // seconds that a client should wait before it tries again
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    /**
+     * This method answers a request with 503 Service Unavailable when the
+     * executor that it needs is saturated, so the client can back off and
+     * retry instead of waiting in an ever longer queue
+     *
+     * @return the 503 response
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> handleRejectedExecution() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body("The server is busy, please try again");
+    }
+}
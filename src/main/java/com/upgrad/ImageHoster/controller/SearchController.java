@@ -0,0 +1,53 @@
+package com.upgrad.ImageHoster.controller;
+
+import com.upgrad.ImageHoster.model.FeedPage;
+import com.upgrad.ImageHoster.model.ImageCard;
+import com.upgrad.ImageHoster.service.SearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.util.UriComponentsBuilder;
+
+@Controller
+public class SearchController {
+    @Autowired
+    private SearchService searchService;
+
+    @Value("${imagehoster.feed.page-size}")
+    private int pageSize;
+
+    /**
+     * This controller method renders a page of the images whose title,
+     * description or tags match the words that the user searched for,
+     * most relevant first
+     *
+     * @param query  the words that the user searched for
+     * @param cursor the position of the page in the results, or null for
+     *               the first page
+     * @param model  used to pass data to the view for rendering
+     * @return the search/images view
+     */
+    @RequestMapping("/search")
+    public String search(@RequestParam(value = "q", defaultValue = "") String query,
+                         @RequestParam(value = "cursor", required = false) String cursor,
+                         Model model) {
+        FeedPage<ImageCard> page;
+
+        try {
+            page = searchService.search(query, cursor, pageSize);
+        } catch (IllegalArgumentException e) {
+            // the cursor has been tampered with, start from the first page
+            return "redirect:" + UriComponentsBuilder.fromPath("/search").queryParam("q", query)
+                    .build().encode().toUriString();
+        }
+
+        model.addAttribute("query", query);
+        model.addAttribute("images", page.getItems());
+        model.addAttribute("nextCursor", page.getNextCursor());
+
+        return "search/images";
+    }
+}
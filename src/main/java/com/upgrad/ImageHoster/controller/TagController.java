@@ -1,36 +1,178 @@
 package com.upgrad.ImageHoster.controller;
 
-import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.common.PageRenderer;
+import com.upgrad.ImageHoster.common.RenderedPageCache;
+import com.upgrad.ImageHoster.common.RenderedPageCache.RenderedPage;
+import com.upgrad.ImageHoster.model.FeedPage;
+import com.upgrad.ImageHoster.model.ImageCard;
+import com.upgrad.ImageHoster.model.SessionPrincipal;
+import com.upgrad.ImageHoster.model.Tag;
+import com.upgrad.ImageHoster.model.TagQuery;
 import com.upgrad.ImageHoster.service.ImageService;
+import com.upgrad.ImageHoster.service.TagService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.view.RedirectView;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import javax.servlet.http.HttpServletRequest;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Controller
 public class TagController {
+    // the most tag names that one autocomplete request can ask for
+    private static final int MAX_SUGGESTIONS = 50;
+
     @Autowired
     ImageService imageService;
 
+    @Autowired
+    TagService tagService;
+
+    @Autowired
+    RenderedPageCache pageCache;
+
+    @Autowired
+    PageRenderer pageRenderer;
+
+    @Value("${imagehoster.feed.page-size}")
+    private int pageSize;
+
     /**
-     * This controller method renders the view of images that are tagged by
-     * a specific "tag"
+     * This controller method renders a page of the images that are tagged
+     * by a specific "tag", newest first. The pages are served from the page
+     * cache, which is kept up to date by ImageService. The tag name is
+     * normalized first, so the names that differ only in case or whitespace
+     * share their pages
      *
-     * @param tagName the tag that we want to retrieve images by
-     * @param model Model injected by Spring
+     * @param tagName   the tag that we want to retrieve images by
+     * @param cursor    the position of the page in the images of the tag,
+     *                  or null for the first page
+     * @param principal the principal stored in the HTTP session, null if
+     *                  the current user is not logged in
      *
-     * @return the tag/images view
+     * @return the view of the tag/images page
      */
     @RequestMapping("/tags/{tagName}")
-    public String showImage(@PathVariable String tagName,
-                            Model model) {
-        List<Image> images = imageService.getByTag(tagName);
+    public View showImage(@PathVariable String tagName,
+                          @RequestParam(value = "cursor", required = false) String cursor,
+                          SessionPrincipal principal) {
+        boolean signedIn = principal != null;
+        String name = Tag.normalizeName(tagName);
+        String key = "tag?name=" + name + "&cursor=" + (cursor == null ? "" : cursor) + "&signedIn=" + signedIn;
+
+        try {
+            return new HtmlPageView(pageCache.get(key, () -> renderTagPage(name, cursor, signedIn)));
+        } catch (IllegalArgumentException e) {
+            // the cursor has been tampered with, start from the first page
+            return new RedirectView(tagPageUrl(name, null), true);
+        }
+    }
+
+    /**
+     * This helper function renders a page of a tag. The page depends on the
+     * tag, which gains an image when one is tagged with it, and on the
+     * images it shows. An image that is tagged later can be older than the
+     * images of the first page, so every page depends on the tag
+     */
+    private RenderedPage renderTagPage(String tagName, String cursor, boolean signedIn) {
+        FeedPage<ImageCard> page = imageService.getByTag(tagName, cursor, pageSize);
+        Set<String> dependencies = new HashSet<String>();
+        dependencies.add(RenderedPageCache.tagKey(tagName));
+
+        for (ImageCard image : page.getItems()) {
+            dependencies.add(RenderedPageCache.imageKey(image.getId()));
+        }
+
+        Map<String, Object> model = new HashMap<String, Object>();
+        model.put("images", page.getItems());
+        model.put("tag", tagName);
+
+        if (page.getNextCursor() != null) {
+            model.put("nextPageUrl", tagPageUrl(tagName, page.getNextCursor()));
+        }
+
+        return new RenderedPage(pageRenderer.render("tag/images", model, signedIn), dependencies);
+    }
+
+    private static String tagPageUrl(String tagName, String cursor) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromPath("/tags/{tagName}");
+
+        if (cursor != null) {
+            builder.queryParam("cursor", cursor);
+        }
+
+        return builder.buildAndExpand(tagName).encode().toUriString();
+    }
+
+    /**
+     * This controller method returns the names of the tags that start with
+     * what the user has typed, for autocomplete, i.e. /tags/suggest?q=sun
+     *
+     * @param prefix the beginning of the tag name
+     * @param limit  the maximum number of names returned
+     * @return a JSON array of tag names in alphabetical order
+     */
+    @RequestMapping("/tags/suggest")
+    @ResponseBody
+    public List<String> suggestTags(@RequestParam("q") String prefix,
+                                    @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return tagService.suggest(prefix, Math.max(1, Math.min(limit, MAX_SUGGESTIONS)));
+    }
+
+    /**
+     * This controller method renders a page of the images that match a tag
+     * query, i.e. /tags/search?all=cat&any=kitty,kitten&none=dog
+     *
+     * @param allOf   comma delimited tags that every image must have
+     * @param anyOf   comma delimited tags that an image must have one of
+     * @param noneOf  comma delimited tags that no image may have
+     * @param cursor  the position of the page in the results, or null for
+     *                the first page
+     * @param model   Model injected by Spring
+     * @param request the HTTP request, used to link to the next page
+     * @return the tag/images view
+     */
+    @RequestMapping("/tags/search")
+    public String searchImages(@RequestParam(value = "all", required = false) String allOf,
+                               @RequestParam(value = "any", required = false) String anyOf,
+                               @RequestParam(value = "none", required = false) String noneOf,
+                               @RequestParam(value = "cursor", required = false) String cursor,
+                               Model model,
+                               HttpServletRequest request) {
+        TagQuery query = TagQuery.parse(allOf, anyOf, noneOf);
+        FeedPage<ImageCard> page;
+
+        try {
+            page = imageService.searchByTags(query, cursor, pageSize);
+        } catch (IllegalArgumentException e) {
+            // the cursor has been tampered with, start from the first page
+            return "redirect:" + UriComponentsBuilder.fromPath(request.getRequestURI())
+                    .query(request.getQueryString())
+                    .replaceQueryParam("cursor")
+                    .build().toUriString();
+        }
+
+        model.addAttribute("images", page.getItems());
+        model.addAttribute("tag", query.toString());
 
-        model.addAttribute("images", images);
-        model.addAttribute("tag", tagName);
+        if (page.getNextCursor() != null) {
+            model.addAttribute("nextPageUrl", UriComponentsBuilder.fromPath(request.getRequestURI())
+                    .query(request.getQueryString())
+                    .replaceQueryParam("cursor", page.getNextCursor())
+                    .build().toUriString());
+        }
 
         return "tag/images";
     }
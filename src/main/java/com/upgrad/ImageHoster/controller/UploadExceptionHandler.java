@@ -0,0 +1,50 @@
+package com.upgrad.ImageHoster.controller;
+
+import com.upgrad.ImageHoster.common.ImageTooLargeException;
+import com.upgrad.ImageHoster.common.InvalidUploadException;
+import com.upgrad.ImageHoster.common.UploadTooLargeException;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import javax.servlet.http.HttpServletResponse;
+
+@ControllerAdvice
+public class UploadExceptionHandler {
+
+    /**
+     * This method shows an error page when an uploaded image is rejected,
+     * because it is too large, has too many pixels or is not an image
+     *
+     * @param e        the reason the upload was rejected
+     * @param model    used to pass data to the view for rendering
+     * @param response the HTTP response, whose status is set to 413 or 415
+     * @return the upload error view
+     */
+    @ExceptionHandler(InvalidUploadException.class)
+    public String handleInvalidUpload(InvalidUploadException e, Model model, HttpServletResponse response) {
+        response.setStatus(e instanceof UploadTooLargeException || e instanceof ImageTooLargeException
+                ? HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE
+                : HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+        model.addAttribute("error", e.getMessage());
+
+        return "error/upload";
+    }
+
+    /**
+     * This method shows an error page when the multipart request is larger
+     * than spring.servlet.multipart.max-file-size or max-request-size
+     *
+     * @param model    used to pass data to the view for rendering
+     * @param response the HTTP response, whose status is set to 413
+     * @return the upload error view
+     */
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public String handleMaxUploadSizeExceeded(Model model, HttpServletResponse response) {
+        response.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+        model.addAttribute("error", "the uploaded file is too large");
+
+        return "error/upload";
+    }
+}
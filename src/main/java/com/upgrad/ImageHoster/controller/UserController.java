@@ -1,12 +1,19 @@
 package com.upgrad.ImageHoster.controller;
 
 
-import com.google.common.hash.Hashing;
+import com.upgrad.ImageHoster.common.AsyncTasks;
+import com.upgrad.ImageHoster.common.RequestContext;
+import com.upgrad.ImageHoster.common.StoredBlob;
 import com.upgrad.ImageHoster.model.ProfilePhoto;
+import com.upgrad.ImageHoster.model.SessionPrincipal;
 import com.upgrad.ImageHoster.model.User;
+import com.upgrad.ImageHoster.model.UserCredentials;
+import com.upgrad.ImageHoster.service.AuthenticationService;
+import com.upgrad.ImageHoster.service.BlobService;
 import com.upgrad.ImageHoster.service.ProfilePhotoService;
 import com.upgrad.ImageHoster.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -17,7 +24,8 @@ import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpSession;
 import java.io.*;
-import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 
 
@@ -29,9 +37,19 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @Autowired
+    @Qualifier("passwordExecutor")
+    private Executor passwordExecutor;
+
     @Autowired
     private ProfilePhotoService profilePhotoService;
 
+    @Autowired
+    private BlobService blobService;
+
     /**
      * This controller method renders the user signup view
      *
@@ -66,12 +84,8 @@ public class UserController {
 
         boolean foundError = false;
 
-        log.info("Look Here ");
-
-
         User user = userService.getByName(username);
 
-       // log.info("Look Here " +user.getUsername() );
         if (user != null) {
 
             log.info("Found user " + user.getUsername());
@@ -117,15 +131,15 @@ public class UserController {
         // it is good security practice to store the hash version of the password
         // in the database. Therefore, if your a hacker gains access to your
         // database, the hacker cannot see the password for your users
-        String passwordHash = hashPassword(password);
+        String passwordHash = authenticationService.hashPassword(password);
 
         user = new User(username, passwordHash, photo);
 
         userService.register(user);
 
-        // We want to create an "currUser" attribute in the HTTP session, and store the user
-        // as the attribute's value to signify that the user has logged in
-        session.setAttribute("currUser", user);
+        // We want to create an "currUser" attribute in the HTTP session, and store the user's
+        // principal as the attribute's value to signify that the user has logged in
+        session.setAttribute("currUser", SessionPrincipal.of(user));
 
         return "redirect:/";
 
@@ -169,36 +183,39 @@ public class UserController {
     }
 
     /**
-     * The controller method logs in an user
+     * The controller method logs in an user. The password is verified on
+     * the password executor, so the servlet thread is free in the meantime
      *
      * @param username the username of the user
      * @param password the password of the user
      * @param model    used to pass data to the view for rendering. In this case,
      *                 the model is used to pass errors back to the sign in view
      *                 if there are errors
-     * @param session  HTTP session to store the signed in user
+     * @param session  HTTP session to store the principal of the signed in user
      * @return the homepage view if signed in or the sign in view otherwise
      */
     @RequestMapping(value = "/signin", method = RequestMethod.POST)
-    public String signInUser(@RequestParam("username") String username,
-                             @RequestParam("password") String password,
-                             Model model,
-                             HttpSession session) {
+    public CompletableFuture<String> signInUser(@RequestParam("username") String username,
+                                                @RequestParam("password") String password,
+                                                Model model,
+                                                HttpSession session) {
         // checks to see the a user exists with the given
         // username and password
-        User user = userService.login(username, password);
-
-        if (user != null) {
-            session.setAttribute("currUser", user);
-            return "redirect:/";
-        } else {
-            // if a user cannot be found with the given username
-            // and password, return a sign in error
-            String error = "incorrect username or password";
-            model.addAttribute("error", error);
-
-            return "users/signin";
-        }
+        return AsyncTasks.supply(RequestContext.capture(), passwordExecutor, () -> {
+            UserCredentials credentials = authenticationService.authenticate(username, password);
+
+            if (credentials != null) {
+                session.setAttribute("currUser", SessionPrincipal.of(credentials));
+                return "redirect:/";
+            } else {
+                // if a user cannot be found with the given username
+                // and password, return a sign in error
+                String error = "incorrect username or password";
+                model.addAttribute("error", error);
+
+                return "users/signin";
+            }
+        });
     }
 
     /**
@@ -218,14 +235,12 @@ public class UserController {
     /**
      * This controller method renders the user edit view
      *
-     * @param session the HTTP session that tells us if the user is signed in
-     * @param model   used to pass data to the view for rendering
+     * @param currUser the signed in user, or null if nobody is signed in
+     * @param model    used to pass data to the view for rendering
      * @return the user profile edit view
      */
     @RequestMapping(value = "/user/edit_profile")
-    public String editProfile(HttpSession session, Model model) {
-        User currUser = (User) session.getAttribute("currUser");
-
+    public String editProfile(@CurrentUser User currUser, Model model) {
         if (currUser == null) {
             return "redirect:/";
         } else {
@@ -239,55 +254,50 @@ public class UserController {
      *
      * @param description the updated description for the user
      * @param file        the user profile image
-     * @param session     HTTP session
+     * @param currUser    the signed in user, or null if nobody is signed in
+     * @param session     HTTP session that stores the principal of the user
      * @return redirect to the home page
      * @throws IOException
      */
     @RequestMapping(value = "/user/edit_profile", method = RequestMethod.POST)
     public String editUserProfile(@RequestParam("description") String description,
                                   @RequestParam("file") MultipartFile file,
+                                  @CurrentUser User currUser,
                                   HttpSession session) throws IOException {
-        User currUser = (User) session.getAttribute("currUser");
+        if (currUser == null) {
+            return "redirect:/";
+        }
 
         // update photo data
         ProfilePhoto photo = currUser.getProfilePhoto();
-        String photoDataAsBase64 = convertUploadedFileToBase64(file);
-        photo.setprofileImageData(photoDataAsBase64);
+        StoredBlob uploadedPhoto = storeUploadedFile(file);
+        photo.setPhotoHash(uploadedPhoto.getHash());
+        photo.setPhotoSize(uploadedPhoto.getSize());
+        photo.setMimeType(uploadedPhoto.getMimeType());
         profilePhotoService.update(photo);
 
         // update user data
         currUser.setDescription(description);
         currUser.setProfilePhoto(photo);
         userService.update(currUser);
+        // the principal carries the new version of the user
+        session.setAttribute("currUser", SessionPrincipal.of(currUser));
 
         return "redirect:/";
     }
 
 
     /**
-     * This help function converts an image file to base64 encoding, which
-     * makes it easier for us to store the image data in the datbase
-     *
-     * @param file the file that we want to convert to base64 encoding
-     * @return base64 encoding of the file that was passed into this function
-     * @throws IOException
-     */
-    private String convertUploadedFileToBase64(MultipartFile file) throws IOException {
-        return Base64.getEncoder().encodeToString(file.getBytes());
-    }
-
-    /**
-     * This is a helper function that encrypts a plain text password using the
-     * SHA-256 encryption
+     * This help function streams an uploaded image into the blob store
      *
-     * @param password the plain text String that we want to encrypt
-     * @return the SAH-256 encrypted version of the password
+     * @param file the file that we want to store
+     * @return the hash, size and MIME type of the stored file
+     * @throws IOException if the file is not an image, is too large
+     *                     or cannot be stored
      */
-    private String hashPassword(String password) {
-        String passwordHash = Hashing.sha256()
-                .hashString(password)
-                .toString();
-
-        return passwordHash;
+    private StoredBlob storeUploadedFile(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return blobService.saveImage(in);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,23 @@
+package com.upgrad.ImageHoster.model;
+
+import java.util.List;
+
+/**
+ * One page of a feed, and the cursor that the following page starts at
+ *
+ * @param <T> the type of the items in the page
+ */
+public class FeedPage<T> {
+    private final List<T> items;
+    private final String nextCursor;
+
+    public FeedPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() { return items; }
+
+    // null when this is the last page
+    public String getNextCursor() { return nextCursor; }
+}
@@ -24,10 +24,21 @@ public class Image implements Serializable{
     @Column
     private String description;
 
-    // Text is a Postgres specific column type that allows you to save
-    // text based data that will be longer than 256 characters
-    @Column(columnDefinition="TEXT")
-    private String imageFile; // this is a base64 encoded version of the image
+    // The image itself lives in the blob store, the database only keeps
+    // the SHA-256 hash that the blob store uses as its key
+    @Column(length = 64)
+    private String imageHash;
+
+    @Column
+    private long imageSize;
+
+    @Column
+    private String mimeType;
+
+    // the 64-bit perceptual hash of the image, which is close to the hash
+    // of images that look alike. Null until it has been computed
+    @Column
+    private Long perceptualHash;
 
     @Column
     private int numView;
@@ -48,10 +59,13 @@ public class Image implements Serializable{
 
     public Image() { }
 
-    public Image(String title, String description, String imageFile, User user, List<Tag> tags) {
+    public Image(String title, String description, String imageHash, long imageSize, String mimeType,
+                 User user, List<Tag> tags) {
         this.description = description;
         this.title = title;
-        this.imageFile = imageFile;
+        this.imageHash = imageHash;
+        this.imageSize = imageSize;
+        this.mimeType = mimeType;
         this.numView = 0;
         this.user = user;
         this.uploadDate = LocalDate.now();
@@ -62,6 +76,10 @@ public class Image implements Serializable{
         return this.id;
     }
 
+    public void setId(int id) {
+        this.id = id;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -70,14 +88,26 @@ public class Image implements Serializable{
         this.title = title;
     }
 
-    public String getImageFile() {
-        return this.imageFile;
+    public String getImageHash() {
+        return this.imageHash;
     }
 
-    public void setImageFile(String imageFile) {
-        this.imageFile = imageFile;
+    public void setImageHash(String imageHash) {
+        this.imageHash = imageHash;
     }
 
+    public long getImageSize() { return this.imageSize; }
+
+    public void setImageSize(long imageSize) { this.imageSize = imageSize; }
+
+    public String getMimeType() { return this.mimeType; }
+
+    public void setMimeType(String mimeType) { this.mimeType = mimeType; }
+
+    public Long getPerceptualHash() { return this.perceptualHash; }
+
+    public void setPerceptualHash(Long perceptualHash) { this.perceptualHash = perceptualHash; }
+
     public String getDescription() { return this.description; }
 
     public void setDescription(String description) {
@@ -0,0 +1,35 @@
+package com.upgrad.ImageHoster.model;
+
+import java.time.LocalDate;
+
+/**
+ * The columns of an image that the image grids show. Lists of images are
+ * loaded as ImageCards instead of Image entities, so a page does not hold
+ * the image's user and tags, or the snapshots hibernate keeps of entities
+ */
+public final class ImageCard {
+    private final int id;
+    private final String title;
+    private final LocalDate uploadDate;
+    // the hash of the image, which is also the key of its thumbnail
+    private final String imageHash;
+    private final int numView;
+
+    public ImageCard(int id, String title, LocalDate uploadDate, String imageHash, int numView) {
+        this.id = id;
+        this.title = title;
+        this.uploadDate = uploadDate;
+        this.imageHash = imageHash;
+        this.numView = numView;
+    }
+
+    public int getId() { return id; }
+
+    public String getTitle() { return title; }
+
+    public LocalDate getUploadDate() { return uploadDate; }
+
+    public String getImageHash() { return imageHash; }
+
+    public int getNumView() { return numView; }
+}
@@ -0,0 +1,31 @@
+package com.upgrad.ImageHoster.model;
+
+/**
+ * What a bulk import of images did
+ */
+public class ImportResult {
+    private final int imported;
+    private final int failed;
+    // the entries of the manifest that an earlier run had imported
+    private final int skipped;
+    private final long elapsedNanos;
+
+    public ImportResult(int imported, int failed, int skipped, long elapsedNanos) {
+        this.imported = imported;
+        this.failed = failed;
+        this.skipped = skipped;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getImported() { return imported; }
+
+    public int getFailed() { return failed; }
+
+    public int getSkipped() { return skipped; }
+
+    public double getElapsedSeconds() { return elapsedNanos / 1e9; }
+
+    public double getImagesPerSecond() {
+        return elapsedNanos == 0 ? 0 : imported / getElapsedSeconds();
+    }
+}
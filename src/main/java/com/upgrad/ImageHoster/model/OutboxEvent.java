@@ -0,0 +1,85 @@
+package com.upgrad.ImageHoster.model;
+
+import javax.persistence.*;
+
+/**
+ * A change to an image, a tag or a user, written to the OutboxEvent table
+ * in the transaction of the change. The events are then read in id order
+ * and handed to the subscribers by the OutboxRelay
+ */
+@Entity
+@Table(name = "OutboxEvent")
+public class OutboxEvent {
+
+    public enum Type {
+        IMAGE_CREATED,
+        IMAGE_UPDATED,
+        IMAGE_DELETED,
+        TAG_CREATED,
+        TAG_RENAMED,
+        USER_UPDATED
+    }
+
+    @Id
+    @Column(columnDefinition = "bigserial")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(nullable = false, length = 32)
+    @Enumerated(EnumType.STRING)
+    private Type type;
+
+    // the id of the image, tag or user that changed
+    @Column(nullable = false)
+    private int entityId;
+
+    // the name of the tag or the user, which their caches are keyed by
+    @Column
+    private String entityName;
+
+    // milliseconds since the epoch
+    @Column(nullable = false)
+    private long createdAt;
+
+    public OutboxEvent() {}
+
+    public OutboxEvent(Type type, int entityId) {
+        this(type, entityId, null);
+    }
+
+    public OutboxEvent(Type type, int entityId, String entityName) {
+        this.type = type;
+        this.entityId = entityId;
+        this.entityName = entityName;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return id + " " + type + " " + entityId;
+    }
+}
@@ -0,0 +1,46 @@
+package com.upgrad.ImageHoster.model;
+
+import java.io.Serializable;
+
+/**
+ * The signed in user, as stored in the HTTP session under "currUser". It
+ * only holds the id, the username and the version of the User when the
+ * principal was created, so a session stays small whatever the user's
+ * profile holds. The User itself is loaded when a controller needs it,
+ * see CurrentUserArgumentResolver
+ */
+public final class SessionPrincipal implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int userId;
+    private final String username;
+    private final int version;
+
+    public SessionPrincipal(int userId, String username, int version) {
+        this.userId = userId;
+        this.username = username;
+        this.version = version;
+    }
+
+    /**
+     * @param user the user who signed in or whose profile was updated
+     * @return the principal of the user
+     */
+    public static SessionPrincipal of(User user) {
+        return new SessionPrincipal(user.getId(), user.getUsername(), user.getVersion());
+    }
+
+    /**
+     * @param credentials the credentials that the user signed in with
+     * @return the principal of the user
+     */
+    public static SessionPrincipal of(UserCredentials credentials) {
+        return new SessionPrincipal(credentials.getUserId(), credentials.getUsername(), credentials.getVersion());
+    }
+
+    public int getUserId() { return userId; }
+
+    public String getUsername() { return username; }
+
+    public int getVersion() { return version; }
+}
@@ -2,6 +2,7 @@ package com.upgrad.ImageHoster.model;
 
 import javax.persistence.*;
 import java.util.List;
+import java.util.Locale;
 
 @Entity
 @Table(name = "Tag")
@@ -13,7 +14,10 @@ public class Tag {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int id;
 
-    @Column
+    // names are stored normalized (see normalizeName) and are unique, so
+    // concurrent uploads cannot create the same tag twice. Tables created
+    // before get the index on startup, see TagNameIndexRunner
+    @Column(unique = true)
     private String name;
 
     // this annotation completes the many-to-many declaration created
@@ -28,6 +32,17 @@ public class Tag {
         this.name = name;
     }
 
+    /**
+     * This method returns the name that a tag is stored under: trimmed,
+     * lower case and with single spaces between words
+     *
+     * @param name the name of the tag as it was entered
+     * @return the normalized name
+     */
+    public static String normalizeName(String name) {
+        return name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
     public int getId() {
         return id;
     }
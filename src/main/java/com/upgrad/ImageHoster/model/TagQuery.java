@@ -0,0 +1,86 @@
+package com.upgrad.ImageHoster.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+/**
+ * A search for images by their tags: the images that have all the tags of
+ * allOf, at least one of the tags of anyOf (if it is not empty) and none
+ * of the tags of noneOf
+ */
+public final class TagQuery {
+    private final Set<String> allOf;
+    private final Set<String> anyOf;
+    private final Set<String> noneOf;
+
+    public TagQuery(Collection<String> allOf, Collection<String> anyOf, Collection<String> noneOf) {
+        this.allOf = Collections.unmodifiableSet(new LinkedHashSet<String>(allOf));
+        this.anyOf = Collections.unmodifiableSet(new LinkedHashSet<String>(anyOf));
+        this.noneOf = Collections.unmodifiableSet(new LinkedHashSet<String>(noneOf));
+    }
+
+    /**
+     * This method creates a query from comma delimited lists of tags,
+     * i.e. "cat, kitty"
+     *
+     * @param allOf  the tags that every image must have, or null
+     * @param anyOf  the tags that an image must have at least one of, or null
+     * @param noneOf the tags that no image may have, or null
+     * @return the query
+     */
+    public static TagQuery parse(String allOf, String anyOf, String noneOf) {
+        return new TagQuery(split(allOf), split(anyOf), split(noneOf));
+    }
+
+    public Set<String> getAllOf() { return allOf; }
+
+    public Set<String> getAnyOf() { return anyOf; }
+
+    public Set<String> getNoneOf() { return noneOf; }
+
+    // a query needs a tag that images must have, excluding tags alone would match almost every image
+    public boolean isEmpty() {
+        return allOf.isEmpty() && anyOf.isEmpty();
+    }
+
+    /**
+     * @return the query as it is shown to the user, i.e. "cat and (kitty or kitten) and not dog"
+     */
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<String>(allOf);
+
+        if (!anyOf.isEmpty()) {
+            parts.add(anyOf.size() == 1 ? anyOf.iterator().next() : "(" + String.join(" or ", anyOf) + ")");
+        }
+
+        for (String tag : noneOf) {
+            parts.add("not " + tag);
+        }
+
+        return String.join(" and ", parts);
+    }
+
+    private static List<String> split(String tags) {
+        List<String> names = new ArrayList<String>();
+
+        if (tags != null) {
+            StringTokenizer st = new StringTokenizer(tags, ",");
+
+            while (st.hasMoreTokens()) {
+                String name = st.nextToken().trim();
+
+                if (!name.isEmpty()) {
+                    names.add(name);
+                }
+            }
+        }
+
+        return names;
+    }
+}
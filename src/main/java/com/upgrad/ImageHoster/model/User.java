@@ -7,7 +7,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "UserAccount") // postgres doesn't allow table named "user"
+// postgres doesn't allow table named "user". Users are looked up by username
+// on every sign in
+@Table(name = "UserAccount", indexes = @Index(name = "UserAccount_username", columnList = "username"))
 public class User implements Serializable {
 
     // These annotations auto-increments the id column for us whenever
@@ -20,12 +22,22 @@ public class User implements Serializable {
     @Column
     private String username;
 
-    @Column()
+    // profile edits save the whole User, possibly a copy loaded before the
+    // hash was upgraded at sign in, so the hash is only changed by
+    // UserManager.updatePasswordHash()
+    @Column(updatable = false)
     private String passwordHash;
 
     @Column()
     private String description;
 
+    // incremented on every update. It is the version stamp of the principal
+    // in the HTTP session, and stops a profile edit from overwriting a newer
+    // one
+    @Version
+    @Column(nullable = false)
+    private int version;
+
     @OneToOne(fetch = FetchType.EAGER)
     private ProfilePhoto profilePhoto;
 
@@ -59,6 +71,8 @@ public class User implements Serializable {
 
     public void setDescription(String description) { this.description = description; }
 
+    public int getVersion() { return version; }
+
     public ProfilePhoto getProfilePhoto() { return profilePhoto; }
 
     public void setProfilePhoto(ProfilePhoto profilePhoto) { this.profilePhoto = profilePhoto; }
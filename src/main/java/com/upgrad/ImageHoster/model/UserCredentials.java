@@ -0,0 +1,28 @@
+package com.upgrad.ImageHoster.model;
+
+/**
+ * The columns of a user that signing in needs: the password hash to check,
+ * and what the SessionPrincipal holds. They are loaded instead of the User
+ * entity, which would also load the user's profile photo
+ */
+public final class UserCredentials {
+    private final int userId;
+    private final String username;
+    private final String passwordHash;
+    private final int version;
+
+    public UserCredentials(int userId, String username, String passwordHash, int version) {
+        this.userId = userId;
+        this.username = username;
+        this.passwordHash = passwordHash;
+        this.version = version;
+    }
+
+    public int getUserId() { return userId; }
+
+    public String getUsername() { return username; }
+
+    public String getPasswordHash() { return passwordHash; }
+
+    public int getVersion() { return version; }
+}
@@ -0,0 +1,8 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.model.UserCredentials;
+
+public interface AuthenticationService {
+    UserCredentials authenticate(String username, String password);
+    String hashPassword(String password);
+}
@@ -0,0 +1,91 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.common.Metrics;
+import com.upgrad.ImageHoster.common.PasswordHasher;
+import com.upgrad.ImageHoster.common.UserManager;
+import com.upgrad.ImageHoster.model.UserCredentials;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks the passwords of users signing in. Only the id and password hash
+ * of the user are read, with one query on the indexed username column.
+ * Verifying a password is slow on purpose, so the controller runs it on
+ * the bounded password executor
+ */
+@Service
+public class AuthenticationServiceImpl implements AuthenticationService {
+
+    Logger log = Logger.getLogger(this.getClass().getName());
+
+    private final UserManager userManager;
+    private final PasswordHasher passwordHasher;
+    // verified when the username is unknown, so that an unknown username
+    // takes as long to reject as a wrong password
+    private final String unknownUserHash;
+
+    @Autowired
+    public AuthenticationServiceImpl(@Value("${imagehoster.auth.password-iterations}") int iterations) {
+        this(Metrics.timed(new UserManager()), new PasswordHasher(iterations));
+    }
+
+    AuthenticationServiceImpl(UserManager userManager, PasswordHasher passwordHasher) {
+        this.userManager = userManager;
+        this.passwordHasher = passwordHasher;
+        this.unknownUserHash = passwordHasher.hash("");
+    }
+
+    @PostConstruct
+    public void createUsernameIndex() {
+        try {
+            userManager.createUsernameIndex();
+        } catch (RuntimeException e) {
+            // signing in still works, it only scans the table
+            log.log(Level.WARNING, "unable to create the index on the usernames", e);
+        }
+    }
+
+    /**
+     * This method checks a username and password. A legacy or weaker hash
+     * of a correct password is replaced with a hash of the current strength,
+     * which does not change the version of the user
+     *
+     * @param username the username that was entered
+     * @param password the password that was entered
+     * @return the credentials of the user, which the SessionPrincipal is
+     * created from, or null if the username or password is wrong
+     */
+    @Override
+    public UserCredentials authenticate(String username, String password) {
+        UserCredentials credentials = userManager.getCredentials(username);
+
+        if (credentials == null) {
+            passwordHasher.verify(password, unknownUserHash);
+            return null;
+        }
+
+        if (!passwordHasher.verify(password, credentials.getPasswordHash())) {
+            return null;
+        }
+
+        if (passwordHasher.needsRehash(credentials.getPasswordHash())) {
+            userManager.updatePasswordHash(credentials.getUserId(), passwordHasher.hash(password));
+        }
+
+        return credentials;
+    }
+
+    /**
+     * @param password the plain text password of a new user
+     * @return the salted hash to store
+     */
+    @Override
+    public String hashPassword(String password) {
+        return passwordHasher.hash(password);
+    }
+}
@@ -0,0 +1,14 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.common.StoredBlob;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+public interface BlobService {
+    StoredBlob save(InputStream content) throws IOException;
+    StoredBlob saveImage(InputStream content) throws IOException;
+    InputStream open(String hash) throws IOException;
+    Path getLocalPath(String hash);
+}
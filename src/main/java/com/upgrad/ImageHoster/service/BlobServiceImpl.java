@@ -0,0 +1,86 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.common.BlobStore;
+import com.upgrad.ImageHoster.common.CountingInputStream;
+import com.upgrad.ImageHoster.common.ImageTypeSniffer;
+import com.upgrad.ImageHoster.common.LimitedInputStream;
+import com.upgrad.ImageHoster.common.Metrics;
+import com.upgrad.ImageHoster.common.StoredBlob;
+import com.upgrad.ImageHoster.common.UnsupportedImageTypeException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.file.Path;
+
+@Service
+public class BlobServiceImpl implements BlobService {
+    private BlobStore blobStore;
+    private long maxImageBytes;
+
+    @Autowired
+    public BlobServiceImpl(BlobStore blobStore, @Value("${imagehoster.upload.max-image-bytes}") long maxImageBytes) {
+        this.blobStore = blobStore;
+        this.maxImageBytes = maxImageBytes;
+    }
+
+    @Override
+    public StoredBlob save(InputStream content) throws IOException {
+        return blobStore.put(content);
+    }
+
+    /**
+     * This method stores an uploaded image. The content is streamed to the
+     * blob store, so only a small buffer is held in memory however large
+     * the image is. Its format is recognized from its first bytes before
+     * anything is stored, and the upload fails as soon as it is larger
+     * than the configured limit
+     *
+     * @param content the uploaded file
+     * @return the hash, size and MIME type of the stored image
+     * @throws UnsupportedImageTypeException if the file is not an image
+     * @throws com.upgrad.ImageHoster.common.UploadTooLargeException if the file is too large
+     * @throws IOException if the file cannot be read or stored
+     */
+    @Override
+    public StoredBlob saveImage(InputStream content) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(content, ImageTypeSniffer.HEADER_LENGTH);
+        byte[] header = new byte[ImageTypeSniffer.HEADER_LENGTH];
+        int length = readHeader(in, header);
+        String mimeType = ImageTypeSniffer.sniff(header, length);
+
+        if (mimeType == null) {
+            throw new UnsupportedImageTypeException();
+        }
+
+        in.unread(header, 0, length);
+        StoredBlob blob = blobStore.put(new LimitedInputStream(in, maxImageBytes));
+        Metrics.counter(Metrics.IMAGE_BYTES_WRITTEN).add(blob.getSize());
+
+        return new StoredBlob(blob.getHash(), blob.getSize(), mimeType);
+    }
+
+    @Override
+    public InputStream open(String hash) throws IOException {
+        return new CountingInputStream(blobStore.open(hash), Metrics.counter(Metrics.IMAGE_BYTES_READ));
+    }
+
+    @Override
+    public Path getLocalPath(String hash) {
+        return blobStore.getLocalPath(hash);
+    }
+
+    private static int readHeader(InputStream in, byte[] header) throws IOException {
+        int length = 0;
+        int read;
+
+        while (length < header.length && (read = in.read(header, length, header.length - length)) != -1) {
+            length += read;
+        }
+
+        return length;
+    }
+}
@@ -1,18 +1,25 @@
 package com.upgrad.ImageHoster.service;
 
+import com.upgrad.ImageHoster.model.FeedPage;
 import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.ImageCard;
+import com.upgrad.ImageHoster.model.TagQuery;
 
 import java.util.List;
 
 public interface ImageService {
     List<Image> getAll();
-    List<Image> getByTag(String tagName);
+    FeedPage<ImageCard> getFeed(String cursor, int pageSize);
+    FeedPage<ImageCard> getByTag(String tagName, String cursor, int pageSize);
+    FeedPage<ImageCard> searchByTags(TagQuery query, String cursor, int pageSize);
     Image getByTitle(String title);
     Image getByTitleWithJoin(String title);
     Image getById(Integer id);
     Image getByIdWithJoin(Integer title);
+    Image getByIdWithoutJoin(Integer id);
     void deleteById(Image image);
     void save(Image image);
+    void saveAll(List<Image> images);
     void update(Image image);
     void deleteByTitle(Image image);
 }
\ No newline at end of file
@@ -1,17 +1,43 @@
 package com.upgrad.ImageHoster.service;
 
+import com.upgrad.ImageHoster.common.EventSubscriber;
+import com.upgrad.ImageHoster.common.FeedCursor;
+import com.upgrad.ImageHoster.common.ImageEventBatch;
 import com.upgrad.ImageHoster.common.ImageManager;
+import com.upgrad.ImageHoster.common.Metrics;
+import com.upgrad.ImageHoster.common.RenderedPageCache;
+import com.upgrad.ImageHoster.model.FeedPage;
 import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.ImageCard;
+import com.upgrad.ImageHoster.model.OutboxEvent;
+import com.upgrad.ImageHoster.model.Tag;
+import com.upgrad.ImageHoster.model.TagQuery;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-
+import java.util.Set;
+
+/**
+ * Reads and writes the images. A write only changes the database: the
+ * search index, the similar image index, the cached pages and the resized
+ * copies of the images are updated by the subscribers of the image events
+ * that the write publishes, after the request has been answered
+ */
 @Service
-public class ImageServiceImpl implements ImageService {
+public class ImageServiceImpl implements ImageService, EventSubscriber {
     private ImageManager imageManager;
-
-    public ImageServiceImpl() {
-        imageManager = new ImageManager();
+    private RenderedPageCache pageCache;
+    private RenditionService renditionService;
+
+    @Autowired
+    public ImageServiceImpl(RenderedPageCache pageCache, RenditionService renditionService) {
+        imageManager = Metrics.timed(new ImageManager());
+        this.pageCache = pageCache;
+        this.renditionService = renditionService;
     }
 
     @Override
@@ -19,9 +45,89 @@ public class ImageServiceImpl implements ImageService {
         return imageManager.getAllImages();
     }
 
+    /**
+     * This method returns a page of the newest images
+     *
+     * @param cursor   the cursor returned with the previous page, or null
+     *                 for the first page
+     * @param pageSize the number of images per page
+     * @return the images of the page and the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    @Override
+    public FeedPage<ImageCard> getFeed(String cursor, int pageSize) {
+        Integer beforeId = cursor == null ? null : FeedCursor.decode(cursor);
+
+        // one extra image tells us if there is a next page
+        return toPage(imageManager.getImageCardsBefore(beforeId, pageSize + 1), pageSize);
+    }
+
+    /**
+     * This method returns a page of the newest images that match a tag
+     * query. The tag names are normalized like the names of stored tags
+     *
+     * @param query    the tags that the images must and must not have
+     * @param cursor   the cursor returned with the previous page, or null
+     *                 for the first page
+     * @param pageSize the number of images per page
+     * @return the images of the page and the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    @Override
+    public FeedPage<ImageCard> searchByTags(TagQuery query, String cursor, int pageSize) {
+        Integer beforeId = cursor == null ? null : FeedCursor.decode(cursor);
+        TagQuery normalizedQuery = new TagQuery(normalize(query.getAllOf()), normalize(query.getAnyOf()),
+                normalize(query.getNoneOf()));
+
+        if (normalizedQuery.isEmpty()) {
+            return new FeedPage<ImageCard>(new ArrayList<ImageCard>(), null);
+        }
+
+        return toPage(imageManager.getImageCardsByTags(normalizedQuery, beforeId, pageSize + 1), pageSize);
+    }
+
+    /**
+     * This helper function cuts the extra image off a list of pageSize + 1
+     * images, and creates the cursor of the next page if there was one
+     */
+    private static FeedPage<ImageCard> toPage(List<ImageCard> images, int pageSize) {
+        String nextCursor = null;
+
+        if (images.size() > pageSize) {
+            images = images.subList(0, pageSize);
+            nextCursor = FeedCursor.encode(images.get(pageSize - 1).getId());
+        }
+
+        return new FeedPage<ImageCard>(images, nextCursor);
+    }
+
+    private static List<String> normalize(Collection<String> tagNames) {
+        List<String> normalizedNames = new ArrayList<String>();
+
+        for (String tagName : tagNames) {
+            normalizedNames.add(Tag.normalizeName(tagName));
+        }
+
+        return normalizedNames;
+    }
+
+    /**
+     * This method returns a page of the newest images that have a tag. The
+     * tag name is normalized like the names of stored tags
+     *
+     * @param tagName  the name of the tag
+     * @param cursor   the cursor returned with the previous page, or null
+     *                 for the first page
+     * @param pageSize the number of images per page
+     * @return the images of the page and the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
     @Override
-    public List<Image> getByTag(String tagName) {
-        return imageManager.getImagesByTag(tagName);
+    public FeedPage<ImageCard> getByTag(String tagName, String cursor, int pageSize) {
+        Integer beforeId = cursor == null ? null : FeedCursor.decode(cursor);
+
+        return toPage(imageManager.getImageCardsByTag(Tag.normalizeName(tagName), beforeId, pageSize + 1),
+                pageSize);
     }
 
     @Override
@@ -45,6 +151,11 @@ public class ImageServiceImpl implements ImageService {
         return imageManager.getImageByIdWithJoins(id);
     }
 
+    @Override
+    public Image getByIdWithoutJoin(Integer id) {
+        return imageManager.getImageWithoutJoins(id);
+    }
+
     @Override
     public void deleteByTitle(Image image) {
         imageManager.deleteImage(image.getTitle());
@@ -60,10 +171,82 @@ public class ImageServiceImpl implements ImageService {
         imageManager.saveImage(image);
     }
 
+    /**
+     * This method saves many new images at once, i.e. the images of a bulk
+     * import, with a few statements for the whole list. Like saved images
+     * they are indexed by the subscribers of their events
+     *
+     * @param images the new images, whose users and tags have been saved
+     */
+    @Override
+    public void saveAll(List<Image> images) {
+        imageManager.insertImages(images);
+    }
+
     @Override
     public void update(Image newImage) {
         imageManager.updateImage(newImage);
     }
 
+    @Override
+    public Set<OutboxEvent.Type> getEventTypes() {
+        return ImageEventBatch.IMAGE_EVENTS;
+    }
+
+    /**
+     * This method invalidates the cached pages that a batch of image events
+     * changes, with one invalidation for the batch, and generates the
+     * resized copies of the written images
+     *
+     * @param events the image events
+     */
+    @Override
+    public void handle(List<OutboxEvent> events) {
+        ImageEventBatch batch = new ImageEventBatch(events);
+        Set<String> keys = new HashSet<String>();
+        Set<Integer> foundIds = new HashSet<Integer>();
+
+        for (Image image : imageManager.getImagesWithTagsByIds(batch.getWrittenIds())) {
+            keys.addAll(pageKeys(image, batch.isCreated(image.getId())));
+            foundIds.add(image.getId());
+
+            if (image.getImageHash() != null) {
+                renditionService.generate(image.getImageHash());
+            }
+        }
+
+        // the tags of a deleted image are unknown, and its tag pages depend
+        // on the image anyway
+        for (Integer id : batch.getGoneIds(foundIds)) {
+            keys.add(RenderedPageCache.imageKey(id));
+        }
+
+        pageCache.invalidate(keys);
+    }
+
+    /**
+     * This helper function returns the keys of the cached pages that a write
+     * to an image changes: the pages that show the image, the pages of its
+     * tags, which gain the image if it was tagged, and for a new image the
+     * first page of the feed. The other pages of the feed start before the
+     * image and do not change when an image is uploaded
+     */
+    private static Set<String> pageKeys(Image image, boolean isNew) {
+        Set<String> keys = new HashSet<String>();
+        keys.add(RenderedPageCache.imageKey(image.getId()));
+
+        if (isNew) {
+            keys.add(RenderedPageCache.FIRST_FEED_PAGE);
+        }
+
+        if (image.getTags() != null) {
+            for (Tag tag : image.getTags()) {
+                keys.add(RenderedPageCache.tagKey(tag.getName()));
+            }
+        }
+
+        return keys;
+    }
+
 
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.model.ImportResult;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface ImportService {
+    ImportResult importImages(Path source, String username, Path checkpoint) throws IOException;
+}
@@ -0,0 +1,317 @@
+package com.upgrad.ImageHoster.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.upgrad.ImageHoster.common.StoredBlob;
+import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.ImportResult;
+import com.upgrad.ImageHoster.model.Tag;
+import com.upgrad.ImageHoster.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Imports many images at once from a directory or a ZIP file, i.e. the
+ * images of a new customer. The directory or ZIP file holds the images and
+ * a manifest.jsonl file, with one JSON object per line for every image:
+ *
+ * {"file": "cats/1.jpg", "title": "A cat", "description": "...", "tags": ["cat", "pet"]}
+ *
+ * The tags of all the images are found or created at once. The images are
+ * then imported in batches: the files of a batch are stored in the blob
+ * store and hashed in parallel, and the batch is saved with a few
+ * statements. After every batch the number of manifest entries done is
+ * written to a checkpoint file, which an import that is run again starts
+ * after. An import that stops between saving a batch and writing the
+ * checkpoint imports that batch again
+ */
+@Service
+public class ImportServiceImpl implements ImportService {
+    // the manifest at the root of the directory or ZIP file
+    static final String MANIFEST = "manifest.jsonl";
+
+    Logger log = Logger.getLogger(this.getClass().getName());
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ImageService imageService;
+    private TagService tagService;
+    private UserService userService;
+    private BlobService blobService;
+    private SimilarImageService similarImageService;
+    private int batchSize;
+    private int threads;
+
+    @Autowired
+    public ImportServiceImpl(ImageService imageService, TagService tagService, UserService userService,
+                             BlobService blobService, SimilarImageService similarImageService,
+                             @Value("${imagehoster.import.batch-size}") int batchSize,
+                             @Value("${imagehoster.import.threads}") int threads) {
+        this.imageService = imageService;
+        this.tagService = tagService;
+        this.userService = userService;
+        this.blobService = blobService;
+        this.similarImageService = similarImageService;
+        this.batchSize = batchSize;
+        this.threads = threads;
+    }
+
+    /**
+     * This method imports the images of a manifest
+     *
+     * @param source     the directory or ZIP file with the manifest and the
+     *                   images
+     * @param username   the user that the images are uploaded by
+     * @param checkpoint the file that records how far the import has got
+     * @return the number of images imported, and how fast
+     * @throws IllegalArgumentException if the user does not exist or the
+     *                                  manifest is not valid
+     * @throws IOException if the manifest or the checkpoint cannot be read
+     *                     or written. Images that cannot be read or are not
+     *                     images are skipped and counted as failed
+     */
+    @Override
+    public ImportResult importImages(Path source, String username, Path checkpoint) throws IOException {
+        long start = System.nanoTime();
+        User user = userService.getByName(username);
+
+        if (user == null) {
+            throw new IllegalArgumentException("there is no user " + username);
+        }
+
+        if (Files.isDirectory(source)) {
+            return importImages(source.toAbsolutePath().normalize(), user, checkpoint, start);
+        }
+
+        try (FileSystem zipFile = FileSystems.newFileSystem(source, (ClassLoader) null)) {
+            return importImages(zipFile.getPath("/"), user, checkpoint, start);
+        }
+    }
+
+    private ImportResult importImages(Path root, User user, Path checkpoint, long start) throws IOException {
+        List<ManifestEntry> entries = readManifest(root.resolve(MANIFEST));
+        int skipped = Math.min(readCheckpoint(checkpoint), entries.size());
+        List<ManifestEntry> remaining = entries.subList(skipped, entries.size());
+
+        Map<String, Tag> tags = findOrCreateTags(remaining);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        int imported = 0;
+        int failed = 0;
+
+        try {
+            for (int from = 0; from < remaining.size(); from += batchSize) {
+                List<ManifestEntry> batch = remaining.subList(from, Math.min(remaining.size(), from + batchSize));
+                List<Image> images = storeFiles(pool, root, batch, user, tags);
+
+                imageService.saveAll(images);
+
+                imported += images.size();
+                failed += batch.size() - images.size();
+                writeCheckpoint(checkpoint, skipped + from + batch.size());
+
+                log.info(String.format("imported %d of %d images, %.1f images/s", imported, remaining.size(),
+                        imported / ((System.nanoTime() - start) / 1e9)));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        return new ImportResult(imported, failed, skipped, System.nanoTime() - start);
+    }
+
+    /**
+     * This helper function stores and hashes the files of a batch on the
+     * threads of the pool
+     *
+     * @return the new images, in the order of the manifest, without the
+     * files that could not be imported
+     */
+    private List<Image> storeFiles(ForkJoinPool pool, Path root, List<ManifestEntry> batch, User user,
+                                   Map<String, Tag> tags) throws IOException {
+        try {
+            // a parallel stream started in a pool runs on the threads of that pool
+            return pool.submit(() -> batch.parallelStream()
+                    .map(entry -> storeFile(root, entry, user, tags))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList()))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("the import was interrupted");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                    : new IllegalStateException(e.getCause());
+        }
+    }
+
+    private Image storeFile(Path root, ManifestEntry entry, User user, Map<String, Tag> tags) {
+        Path file = root.resolve(entry.file).normalize();
+
+        if (!file.startsWith(root)) {
+            log.warning("skipped " + entry.file + ", which is outside of the import");
+            return null;
+        }
+
+        try (InputStream in = Files.newInputStream(file)) {
+            StoredBlob blob = blobService.saveImage(in);
+
+            Image image = new Image(entry.title, entry.description, blob.getHash(), blob.getSize(),
+                    blob.getMimeType(), user, tagsOf(entry, tags));
+            image.setPerceptualHash(similarImageService.computeHash(blob.getHash()));
+
+            return image;
+        } catch (IOException e) {
+            log.log(Level.WARNING, "unable to import " + entry.file, e);
+            return null;
+        }
+    }
+
+    /**
+     * This helper function finds or creates the tags of all the entries,
+     * with one call for the whole import
+     *
+     * @return the tags by their normalized names
+     */
+    private Map<String, Tag> findOrCreateTags(List<ManifestEntry> entries) {
+        Set<String> names = new LinkedHashSet<String>();
+
+        for (ManifestEntry entry : entries) {
+            names.addAll(entry.tags);
+        }
+
+        Map<String, Tag> tags = new HashMap<String, Tag>();
+
+        if (!names.isEmpty()) {
+            for (Tag tag : tagService.getOrCreateTags(names)) {
+                tags.put(tag.getName(), tag);
+            }
+        }
+
+        return tags;
+    }
+
+    private static List<Tag> tagsOf(ManifestEntry entry, Map<String, Tag> tags) {
+        Set<Tag> entryTags = new LinkedHashSet<Tag>();
+
+        for (String name : entry.tags) {
+            Tag tag = tags.get(Tag.normalizeName(name));
+
+            if (tag != null) {
+                entryTags.add(tag);
+            }
+        }
+
+        return new ArrayList<Tag>(entryTags);
+    }
+
+    private List<ManifestEntry> readManifest(Path manifest) throws IOException {
+        List<ManifestEntry> entries = new ArrayList<ManifestEntry>();
+
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+
+                if (!line.trim().isEmpty()) {
+                    entries.add(parseEntry(line, lineNumber));
+                }
+            }
+        }
+
+        return entries;
+    }
+
+    private ManifestEntry parseEntry(String line, int lineNumber) {
+        JsonNode node;
+
+        try {
+            node = objectMapper.readTree(line);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("line " + lineNumber + " of the manifest is not valid JSON", e);
+        }
+
+        String file = node.path("file").asText("");
+
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("line " + lineNumber + " of the manifest has no file");
+        }
+
+        List<String> tags = new ArrayList<String>();
+
+        for (JsonNode tag : node.path("tags")) {
+            tags.add(tag.asText());
+        }
+
+        // the title defaults to the name of the file
+        String title = node.path("title").asText(file.substring(file.lastIndexOf('/') + 1));
+
+        return new ManifestEntry(file, title, node.path("description").asText(""), tags);
+    }
+
+    /**
+     * @return the number of manifest entries that earlier runs imported
+     */
+    private static int readCheckpoint(Path checkpoint) throws IOException {
+        if (!Files.exists(checkpoint)) {
+            return 0;
+        }
+
+        return Integer.parseInt(new String(Files.readAllBytes(checkpoint), StandardCharsets.US_ASCII).trim());
+    }
+
+    private static void writeCheckpoint(Path checkpoint, int entriesDone) throws IOException {
+        // the checkpoint is replaced at once, so it is never half written
+        Path tempFile = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        Files.write(tempFile, Integer.toString(entriesDone).getBytes(StandardCharsets.US_ASCII));
+
+        try {
+            Files.move(tempFile, checkpoint, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, checkpoint, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * One line of the manifest
+     */
+    private static final class ManifestEntry {
+        final String file;
+        final String title;
+        final String description;
+        final List<String> tags;
+
+        ManifestEntry(String file, String title, String description, List<String> tags) {
+            this.file = file;
+            this.title = title;
+            this.description = description;
+            this.tags = tags;
+        }
+    }
+}
@@ -5,5 +5,6 @@ import com.upgrad.ImageHoster.model.ProfilePhoto;
 public interface ProfilePhotoService {
     void save(ProfilePhoto image);
     void update(ProfilePhoto image);
+    ProfilePhoto getById(int id);
 
 }
@@ -1,20 +1,38 @@
 package com.upgrad.ImageHoster.service;
 
+import com.upgrad.ImageHoster.common.EntityCache;
+import com.upgrad.ImageHoster.common.EntityCacheFactory;
+import com.upgrad.ImageHoster.common.Metrics;
 import com.upgrad.ImageHoster.common.ProfilePhotoManager;
 import com.upgrad.ImageHoster.model.ProfilePhoto;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 @Service
 public class ProfilePhotoServiceImpl implements ProfilePhotoService  {
     private ProfilePhotoManager profilePhotoManager;
+    // profile photos by id, read for every avatar on a page
+    private EntityCache<Integer, ProfilePhoto> photosById;
 
-    public ProfilePhotoServiceImpl() {
-        profilePhotoManager = new ProfilePhotoManager();
+    @Autowired
+    public ProfilePhotoServiceImpl(EntityCacheFactory cacheFactory) {
+        this(Metrics.timed(new ProfilePhotoManager()), cacheFactory.<Integer, ProfilePhoto>create("profilePhotosById"));
+    }
+
+    ProfilePhotoServiceImpl(ProfilePhotoManager profilePhotoManager, EntityCache<Integer, ProfilePhoto> photosById) {
+        this.profilePhotoManager = profilePhotoManager;
+        this.photosById = photosById;
     }
 
     @Override
     public void save(ProfilePhoto photo){ profilePhotoManager.saveProfilePhoto(photo); }
 
     @Override
-    public void update(ProfilePhoto photo){ profilePhotoManager.updateProfilePhoto(photo); }
+    public void update(ProfilePhoto photo){
+        profilePhotoManager.updateProfilePhoto(photo);
+        photosById.invalidate(photo.getId());
+    }
+
+    @Override
+    public ProfilePhoto getById(int id){ return photosById.get(id, profilePhotoManager::getProfilePhotoById); }
 }
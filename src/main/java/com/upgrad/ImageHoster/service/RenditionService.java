@@ -0,0 +1,21 @@
+package com.upgrad.ImageHoster.service;
+
+import java.nio.file.Path;
+import java.util.List;
+
+public interface RenditionService {
+    void generate(String imageHash);
+    void regenerate(String imageHash);
+    List<String> getFormats();
+    Path getRendition(String imageHash, int size, String format);
+    Path getOptimized(String imageHash, String format);
+    boolean isCopyPending(String imageHash, Integer size, String format);
+    int getQueueDepth();
+    long getCompletedCount();
+    long getFailedCount();
+    long getRejectedCount();
+    double getAverageProcessingMillis();
+    long getOptimizedCount();
+    long getBytesSaved();
+    double getAverageEncodingMillis();
+}
@@ -0,0 +1,399 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.common.BlobStore;
+import com.upgrad.ImageHoster.common.ImageScaler;
+import com.upgrad.ImageHoster.common.ImageTypeSniffer;
+import com.upgrad.ImageHoster.common.Metrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates re-encoded copies of uploaded images in the background: a
+ * full-size copy that is usually much smaller than the upload, and resized
+ * copies (renditions) for the thumbnails. Every copy is encoded once in each
+ * configured format that ImageIO can write, without the metadata of the
+ * upload. The copies are stored next to the original in the BlobStore as
+ * derived blobs named after their size and format, i.e. "full.jpg" and
+ * "w256.webp"
+ */
+@Service
+public class RenditionServiceImpl implements RenditionService {
+
+    Logger log = Logger.getLogger(this.getClass().getName());
+
+    // the size of the full-size copy, which scaleToFit() leaves unscaled
+    private static final int FULL_SIZE = Integer.MAX_VALUE;
+
+    private final BlobStore blobStore;
+    private final int[] sizes;
+    private final float quality;
+    // the MIME types that the copies are encoded in, the preferred one first
+    private final List<String> formats = new ArrayList<String>();
+    private final ThreadPoolExecutor executor;
+
+    // images that are queued or being rendered, so the same image is never queued twice
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    // images that ImageIO cannot decode, which are served without renditions
+    private final Set<String> unreadable = ConcurrentHashMap.newKeySet();
+    // images served at full size as uploaded, because re-encoding would lose
+    // their animation or transparency
+    private final Set<String> keptOriginal = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder processingNanos = new LongAdder();
+    private final LongAdder optimized = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder encodings = new LongAdder();
+    private final LongAdder encodingNanos = new LongAdder();
+
+    @Autowired
+    public RenditionServiceImpl(BlobStore blobStore,
+                                @Value("${imagehoster.renditions.sizes}") int[] sizes,
+                                @Value("${imagehoster.renditions.quality}") float quality,
+                                @Value("${imagehoster.renditions.formats}") String[] formats,
+                                @Value("${imagehoster.renditions.threads}") int threads,
+                                @Value("${imagehoster.renditions.queue-capacity}") int queueCapacity) {
+        this.blobStore = blobStore;
+        this.sizes = sizes.clone();
+        Arrays.sort(this.sizes);
+        this.quality = quality;
+
+        for (String format : formats) {
+            // i.e. WebP needs an ImageIO plugin, which the JDK does not have
+            if (ImageScaler.canWrite(format)) {
+                this.formats.add(format);
+            } else {
+                log.info("no ImageIO writer for " + format + ", images are not encoded in that format");
+            }
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "rendition-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * This method queues the generation of the missing renditions of an image
+     *
+     * @param imageHash the hash of the original image
+     */
+    @Override
+    public void generate(String imageHash) {
+        submit(imageHash, false);
+    }
+
+    /**
+     * This method queues the generation of all the renditions of an image,
+     * replacing the ones that already exist
+     *
+     * @param imageHash the hash of the original image
+     */
+    @Override
+    public void regenerate(String imageHash) {
+        unreadable.remove(imageHash);
+        submit(imageHash, true);
+    }
+
+    /**
+     * @return the MIME types that the copies are encoded in, the preferred one first
+     */
+    @Override
+    public List<String> getFormats() {
+        return Collections.unmodifiableList(formats);
+    }
+
+    /**
+     * This method returns the smallest rendition in a format that is at
+     * least as large as the requested size. Missing renditions are queued
+     * for generation
+     *
+     * @param imageHash the hash of the original image
+     * @param size      the requested width and height in pixels
+     * @param format    the MIME type of the rendition, one of getFormats()
+     * @return the rendition's file, or null if the original should be served
+     */
+    @Override
+    public Path getRendition(String imageHash, int size, String format) {
+        return getCopy(imageHash, variantName(renditionSize(size), format), format);
+    }
+
+    /**
+     * This method returns the full-size copy of an image in a format, if it
+     * is smaller than the original. A missing copy is queued for generation
+     *
+     * @param imageHash the hash of the original image
+     * @param format    the MIME type of the copy, one of getFormats()
+     * @return the copy's file, or null if the original should be served
+     */
+    @Override
+    public Path getOptimized(String imageHash, String format) {
+        if (keptOriginal.contains(imageHash)) {
+            return null;
+        }
+
+        Path copy = getCopy(imageHash, variantName(FULL_SIZE, format), format);
+
+        try {
+            // a copy of an image that was already well compressed can be larger
+            if (copy == null || Files.size(copy) >= Files.size(blobStore.getLocalPath(imageHash))) {
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        return copy;
+    }
+
+    /**
+     * This method tells whether a copy that getRendition() or getOptimized()
+     * returned null for may still be generated. The original that is served
+     * in place of such a copy is only a stand-in for it
+     *
+     * @param imageHash the hash of the original image
+     * @param size      the requested size, or null for the full-size copy
+     * @param format    the MIME type of the copy, one of getFormats()
+     * @return true if the copy has not been generated yet
+     */
+    @Override
+    public boolean isCopyPending(String imageHash, Integer size, String format) {
+        if (!formats.contains(format) || unreadable.contains(imageHash)
+                || size == null && keptOriginal.contains(imageHash)) {
+            return false;
+        }
+
+        // a full-size copy that was larger than the original exists, but is never served
+        return !blobStore.existsDerived(imageHash,
+                variantName(size == null ? FULL_SIZE : renditionSize(size), format));
+    }
+
+    @Override
+    public int getQueueDepth() { return executor.getQueue().size(); }
+
+    @Override
+    public long getCompletedCount() { return completed.sum(); }
+
+    @Override
+    public long getFailedCount() { return failed.sum(); }
+
+    @Override
+    public long getRejectedCount() { return rejected.sum(); }
+
+    @Override
+    public double getAverageProcessingMillis() {
+        long count = completed.sum();
+        return count == 0 ? 0 : processingNanos.sum() / 1e6 / count;
+    }
+
+    /**
+     * @return the number of images that a smaller full-size copy was encoded for
+     */
+    @Override
+    public long getOptimizedCount() { return optimized.sum(); }
+
+    /**
+     * @return the bytes saved by serving the smallest full-size copy of each
+     * optimized image instead of the original
+     */
+    @Override
+    public long getBytesSaved() { return bytesSaved.sum(); }
+
+    /**
+     * @return the average time to encode one copy in one format
+     */
+    @Override
+    public double getAverageEncodingMillis() {
+        long count = encodings.sum();
+        return count == 0 ? 0 : encodingNanos.sum() / 1e6 / count;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void submit(String imageHash, boolean replace) {
+        if (imageHash == null || !pending.add(imageHash)) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    render(imageHash, replace);
+                } finally {
+                    pending.remove(imageHash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the queue is full. The original is served until a later request
+            // for a rendition queues the image again
+            pending.remove(imageHash);
+            rejected.increment();
+        }
+    }
+
+    private Path getCopy(String imageHash, String variant, String format) {
+        if (!formats.contains(format)) {
+            return null;
+        }
+
+        if (blobStore.existsDerived(imageHash, variant)) {
+            return blobStore.getDerivedLocalPath(imageHash, variant);
+        }
+
+        if (!unreadable.contains(imageHash)) {
+            generate(imageHash);
+        }
+
+        return null;
+    }
+
+    private void render(String imageHash, boolean replace) {
+        long start = System.nanoTime();
+
+        try {
+            BufferedImage current = null;
+            long originalSize = 0;
+            long smallestCopy = Long.MAX_VALUE;
+
+            // the full-size copy is encoded first, then the renditions from the
+            // largest to the smallest, each one from the previous one, which is
+            // both faster and sharper
+            for (int i = sizes.length; i >= 0; i--) {
+                int size = i == sizes.length ? FULL_SIZE : sizes[i];
+
+                if (size == FULL_SIZE && keptOriginal.contains(imageHash)
+                        || !replace && existsInEveryFormat(imageHash, size)) {
+                    continue;
+                }
+
+                if (current == null) {
+                    byte[] bytes;
+
+                    try (InputStream in = blobStore.open(imageHash)) {
+                        bytes = StreamUtils.copyToByteArray(in);
+                    }
+
+                    Metrics.counter(Metrics.IMAGE_BYTES_READ).add(bytes.length);
+                    current = ImageIO.read(new ByteArrayInputStream(bytes));
+                    originalSize = bytes.length;
+
+                    if (current == null) {
+                        unreadable.add(imageHash);
+                        failed.increment();
+                        return;
+                    }
+
+                    // ImageIO only reads the first frame of a GIF, and the copies have no alpha channel
+                    if (isGif(bytes) || current.getColorModel().hasAlpha()) {
+                        keptOriginal.add(imageHash);
+
+                        if (size == FULL_SIZE) {
+                            continue;
+                        }
+                    }
+                }
+
+                current = ImageScaler.scaleToFit(current, size);
+
+                for (String format : formats) {
+                    long encodingStart = System.nanoTime();
+                    ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+                    ImageScaler.write(current, format, quality, encoded);
+                    encodingNanos.add(System.nanoTime() - encodingStart);
+                    encodings.increment();
+
+                    blobStore.putDerived(imageHash, variantName(size, format),
+                            new ByteArrayInputStream(encoded.toByteArray()));
+                    Metrics.counter(Metrics.IMAGE_BYTES_WRITTEN).add(encoded.size());
+
+                    if (size == FULL_SIZE) {
+                        smallestCopy = Math.min(smallestCopy, encoded.size());
+                    }
+                }
+            }
+
+            if (smallestCopy < originalSize) {
+                optimized.increment();
+                bytesSaved.add(originalSize - smallestCopy);
+                log.fine("image " + imageHash + " re-encoded from " + originalSize + " to " + smallestCopy
+                        + " bytes in " + (System.nanoTime() - start) / 1000000 + " ms");
+            }
+
+            completed.increment();
+            processingNanos.add(System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            failed.increment();
+            log.log(Level.WARNING, "unable to render image " + imageHash, e);
+        }
+    }
+
+    private boolean existsInEveryFormat(String imageHash, int size) {
+        for (String format : formats) {
+            if (!blobStore.existsDerived(imageHash, variantName(size, format))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isGif(byte[] bytes) {
+        return "image/gif".equals(ImageTypeSniffer.sniff(bytes,
+                Math.min(bytes.length, ImageTypeSniffer.HEADER_LENGTH)));
+    }
+
+    /**
+     * This helper function returns the smallest rendition size that is at
+     * least as large as a requested size, or the largest one
+     */
+    private int renditionSize(int size) {
+        for (int candidate : sizes) {
+            if (candidate >= size) {
+                return candidate;
+            }
+        }
+
+        return sizes[sizes.length - 1];
+    }
+
+    private static String variantName(int size, String format) {
+        // i.e. image/jpeg is stored as .jpg and image/webp as .webp
+        String extension = "image/jpeg".equals(format) ? "jpg" : format.substring(format.indexOf('/') + 1);
+
+        return (size == FULL_SIZE ? "full" : "w" + size) + "." + extension;
+    }
+}
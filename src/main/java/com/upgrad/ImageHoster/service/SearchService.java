@@ -0,0 +1,15 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.model.FeedPage;
+import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.ImageCard;
+
+import java.io.IOException;
+
+public interface SearchService {
+    void index(Image image);
+    void remove(int imageId);
+    FeedPage<ImageCard> search(String query, String cursor, int pageSize);
+    int rebuild() throws IOException;
+    int getIndexedCount();
+}
@@ -0,0 +1,335 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.common.EventSubscriber;
+import com.upgrad.ImageHoster.common.FeedCursor;
+import com.upgrad.ImageHoster.common.ImageEventBatch;
+import com.upgrad.ImageHoster.common.ImageManager;
+import com.upgrad.ImageHoster.common.ImageSearchIndex;
+import com.upgrad.ImageHoster.common.Metrics;
+import com.upgrad.ImageHoster.model.FeedPage;
+import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.ImageCard;
+import com.upgrad.ImageHoster.model.OutboxEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Full-text search over the titles, descriptions and tags of the images.
+ * The index is updated from the events of the images that are saved, edited
+ * and deleted, and made durable every few seconds. rebuild() indexes every image in the database
+ * again, loading ranges of ids on several threads.
+ *
+ * The database stays the source of truth: a failed index update is logged
+ * rather than failing the upload, and is repaired by the next rebuild
+ */
+@Service
+public class SearchServiceImpl implements SearchService, EventSubscriber {
+
+    Logger log = Logger.getLogger(this.getClass().getName());
+
+    // Lucene collects every match before the page to find the page, so a
+    // search cannot go deeper than this many matches
+    static final int MAX_OFFSET = 10000;
+
+    private final ImageManager imageManager;
+    private final ImageSearchIndex index;
+    private final int indexingThreads;
+    private final int batchSize;
+    private final ScheduledExecutorService scheduler;
+
+    // while the index is rebuilt it is neither refreshed nor committed, so
+    // searches, and a restart during the rebuild, see the old index
+    private volatile boolean rebuilding;
+
+    @Autowired
+    public SearchServiceImpl(@Value("${imagehoster.search.index-dir}") String indexDir,
+                             @Value("${imagehoster.search.indexing-threads}") int indexingThreads,
+                             @Value("${imagehoster.search.batch-size}") int batchSize,
+                             @Value("${imagehoster.search.commit-interval-ms}") long commitIntervalMillis)
+            throws IOException {
+        this(Metrics.timed(new ImageManager()), new ImageSearchIndex(Paths.get(indexDir)), indexingThreads, batchSize,
+                commitIntervalMillis);
+    }
+
+    SearchServiceImpl(ImageManager imageManager, ImageSearchIndex index, int indexingThreads, int batchSize,
+                      long commitIntervalMillis) {
+        this.imageManager = imageManager;
+        this.index = index;
+        this.indexingThreads = indexingThreads;
+        this.batchSize = batchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search-index-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::commitQuietly,
+                commitIntervalMillis, commitIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * This method adds an image to the index, or updates it if it has been
+     * indexed before. The tags of the image must have been loaded
+     *
+     * @param image the saved image
+     */
+    @Override
+    public void index(Image image) {
+        try {
+            index.index(image);
+            refresh();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "unable to index image " + image.getId(), e);
+        }
+    }
+
+    /**
+     * This method removes a deleted image from the index
+     *
+     * @param imageId the id of the image
+     */
+    @Override
+    public void remove(int imageId) {
+        try {
+            index.delete(imageId);
+            refresh();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "unable to remove image " + imageId + " from the search index", e);
+        }
+    }
+
+    @Override
+    public Set<OutboxEvent.Type> getEventTypes() {
+        return ImageEventBatch.IMAGE_EVENTS;
+    }
+
+    /**
+     * This method updates the index with the images of a batch of image
+     * events, read with one query, and refreshes the index once
+     *
+     * @param events the image events
+     * @throws UncheckedIOException if the index cannot be written
+     */
+    @Override
+    public void handle(List<OutboxEvent> events) {
+        ImageEventBatch batch = new ImageEventBatch(events);
+        Set<Integer> indexedIds = new HashSet<Integer>();
+
+        try {
+            for (Image image : imageManager.getImagesWithTagsByIds(batch.getWrittenIds())) {
+                index.index(image);
+                indexedIds.add(image.getId());
+            }
+
+            for (Integer id : batch.getGoneIds(indexedIds)) {
+                index.delete(id);
+            }
+
+            refresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to update the search index", e);
+        }
+    }
+
+    /**
+     * This method returns a page of the images that match a full-text
+     * query, most relevant first
+     *
+     * @param query    the words that the user searched for
+     * @param cursor   the cursor returned with the previous page, or null
+     *                 for the first page
+     * @param pageSize the number of images per page
+     * @return the images of the page and the cursor of the next page, if
+     * it starts within the first MAX_OFFSET matches
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    @Override
+    public FeedPage<ImageCard> search(String query, String cursor, int pageSize) {
+        // the cursor of a search page holds the number of matches before it
+        int offset = cursor == null ? 0 : FeedCursor.decode(cursor);
+
+        if (offset < 0 || offset > MAX_OFFSET) {
+            throw new IllegalArgumentException("invalid search cursor: " + cursor);
+        }
+
+        if (query == null || query.trim().isEmpty()) {
+            return new FeedPage<ImageCard>(new ArrayList<ImageCard>(), null);
+        }
+
+        List<Integer> ids;
+
+        try {
+            // one extra match tells us if there is a next page
+            ids = index.search(query, offset, pageSize + 1);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "unable to search for " + query, e);
+            return new FeedPage<ImageCard>(new ArrayList<ImageCard>(), null);
+        }
+
+        String nextCursor = null;
+
+        if (ids.size() > pageSize) {
+            ids = ids.subList(0, pageSize);
+
+            if (offset + pageSize <= MAX_OFFSET) {
+                nextCursor = FeedCursor.encode(offset + pageSize);
+            }
+        }
+
+        Map<Integer, ImageCard> cardsById = new HashMap<Integer, ImageCard>();
+
+        for (ImageCard card : imageManager.getImageCardsByIds(ids)) {
+            cardsById.put(card.getId(), card);
+        }
+
+        // puts the images back in the order of relevance. An image that was
+        // deleted after it was found is left out
+        List<ImageCard> images = new ArrayList<ImageCard>(ids.size());
+
+        for (Integer id : ids) {
+            ImageCard card = cardsById.get(id);
+
+            if (card != null) {
+                images.add(card);
+            }
+        }
+
+        return new FeedPage<ImageCard>(images, nextCursor);
+    }
+
+    /**
+     * This method replaces the index with a new one built from the images
+     * in the database. The ids are split into ranges of batchSize ids, which
+     * are loaded and indexed in parallel. Searches keep being answered from
+     * the old index until the new one is complete
+     *
+     * @return the number of images indexed
+     * @throws IOException if the index cannot be written
+     */
+    @Override
+    public synchronized int rebuild() throws IOException {
+        long start = System.nanoTime();
+        int maxId = imageManager.getMaxImageId();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(indexingThreads, runnable -> {
+            Thread thread = new Thread(runnable, "search-indexer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        int indexed = 0;
+        rebuilding = true;
+
+        try {
+            index.deleteAll();
+
+            List<Future<Integer>> batches = new ArrayList<Future<Integer>>();
+
+            for (int afterId = 0; afterId < maxId; afterId += batchSize) {
+                int from = afterId;
+                int to = Math.min(afterId + batchSize, maxId);
+
+                batches.add(executor.submit(() -> {
+                    List<Image> images = imageManager.getImagesWithTagsBetween(from, to);
+
+                    for (Image image : images) {
+                        index.index(image);
+                    }
+
+                    return images.size();
+                }));
+            }
+
+            for (Future<Integer> batch : batches) {
+                indexed += batch.get();
+            }
+
+            // the deletion and the new documents are committed together
+            index.commit();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("search index rebuild was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("unable to rebuild the search index", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            // after a failure the index is incomplete until the next rebuild
+            rebuilding = false;
+        }
+
+        index.refresh();
+
+        log.info("indexed " + indexed + " images in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                + " ms");
+
+        return indexed;
+    }
+
+    /**
+     * @return the number of images in the index
+     */
+    @Override
+    public int getIndexedCount() {
+        try {
+            return index.getDocumentCount();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "unable to read the search index", e);
+            return 0;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+
+        try {
+            // commits the pending changes
+            index.close();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "unable to close the search index", e);
+        }
+    }
+
+    private void refresh() throws IOException {
+        if (!rebuilding) {
+            index.refresh();
+        }
+    }
+
+    private void commitQuietly() {
+        if (rebuilding) {
+            return;
+        }
+
+        try {
+            index.commit();
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.WARNING, "unable to commit the search index", e);
+        }
+    }
+}
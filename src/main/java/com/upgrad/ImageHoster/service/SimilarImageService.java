@@ -0,0 +1,18 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.common.ImageTooLargeException;
+import com.upgrad.ImageHoster.model.ImageCard;
+
+import java.io.InputStream;
+import java.util.List;
+
+public interface SimilarImageService {
+    Long computeHash(String blobHash);
+    Long computeHash(InputStream content) throws ImageTooLargeException;
+    void add(int imageId, long perceptualHash);
+    void remove(int imageId);
+    List<ImageCard> findSimilar(long perceptualHash, int limit);
+    List<ImageCard> findSimilarTo(int imageId, int limit);
+    int load();
+    int getIndexedCount();
+}
@@ -0,0 +1,347 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.common.BKTree;
+import com.upgrad.ImageHoster.common.EventSubscriber;
+import com.upgrad.ImageHoster.common.ImageEventBatch;
+import com.upgrad.ImageHoster.common.ImageManager;
+import com.upgrad.ImageHoster.common.ImageScaler;
+import com.upgrad.ImageHoster.common.ImageTooLargeException;
+import com.upgrad.ImageHoster.common.Metrics;
+import com.upgrad.ImageHoster.common.PerceptualHash;
+import com.upgrad.ImageHoster.model.ImageCard;
+import com.upgrad.ImageHoster.model.OutboxEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds the images that look like an image, by the Hamming distance between
+ * their perceptual hashes. The hashes of all the images are kept in memory
+ * in a BK-tree, which is loaded from the database on startup and updated from
+ * the events of the images that are saved, edited and deleted. Exact copies of an upload share its
+ * blob already, since the blob store is keyed by the content's SHA-256 hash,
+ * and have a distance of 0
+ */
+@Service
+public class SimilarImageServiceImpl implements SimilarImageService, EventSubscriber {
+
+    Logger log = Logger.getLogger(this.getClass().getName());
+
+    // images are decoded at about this size to be hashed, which is enough for
+    // the 64 pixel image that PerceptualHash shrinks them to
+    private static final int HASHED_IMAGE_SIZE = 256;
+
+    private final ImageManager imageManager;
+    private final BlobService blobService;
+    private final int maxDistance;
+    private final int batchSize;
+    private final long maxImagePixels;
+
+    // the tree and the map are only used with the lock held
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private BKTree tree = new BKTree();
+    private final Map<Integer, Long> hashesById = new HashMap<Integer, Long>();
+
+    @Autowired
+    public SimilarImageServiceImpl(BlobService blobService,
+                                   @Value("${imagehoster.similar.max-distance}") int maxDistance,
+                                   @Value("${imagehoster.similar.batch-size}") int batchSize,
+                                   @Value("${imagehoster.upload.max-image-pixels}") long maxImagePixels) {
+        this(Metrics.timed(new ImageManager()), blobService, maxDistance, batchSize, maxImagePixels);
+    }
+
+    SimilarImageServiceImpl(ImageManager imageManager, BlobService blobService, int maxDistance, int batchSize,
+                            long maxImagePixels) {
+        this.imageManager = imageManager;
+        this.blobService = blobService;
+        this.maxDistance = maxDistance;
+        this.batchSize = batchSize;
+        this.maxImagePixels = maxImagePixels;
+    }
+
+    /**
+     * This method computes the perceptual hash of a stored image
+     *
+     * @param blobHash the hash of the image's blob
+     * @return the perceptual hash or null if the image cannot be decoded
+     */
+    @Override
+    public Long computeHash(String blobHash) {
+        try (InputStream in = blobService.open(blobHash)) {
+            return computeHash(in);
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.WARNING, "unable to hash image " + blobHash, e);
+            return null;
+        }
+    }
+
+    /**
+     * This method computes the perceptual hash of an image, i.e. of an
+     * upload before it is stored. The hash only needs a few dozen pixels, so
+     * the image is decoded at a reduced resolution
+     *
+     * @param content the encoded image
+     * @return the perceptual hash or null if the image cannot be decoded
+     * @throws ImageTooLargeException if the image has more pixels than the
+     *         configured limit
+     */
+    @Override
+    public Long computeHash(InputStream content) throws ImageTooLargeException {
+        try {
+            BufferedImage image = ImageScaler.readSubsampled(content, HASHED_IMAGE_SIZE, maxImagePixels);
+
+            return image == null ? null : PerceptualHash.dHash(image);
+        } catch (ImageTooLargeException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.WARNING, "unable to hash an image", e);
+            return null;
+        }
+    }
+
+    /**
+     * This method adds an image to the index, or moves it if it has been
+     * added before with another hash
+     *
+     * @param imageId        the id of the saved image
+     * @param perceptualHash the perceptual hash of the image
+     */
+    @Override
+    public void add(int imageId, long perceptualHash) {
+        lock.writeLock().lock();
+
+        try {
+            Long previousHash = hashesById.put(imageId, perceptualHash);
+
+            if (previousHash != null) {
+                tree.remove(previousHash, imageId);
+            }
+
+            tree.add(perceptualHash, imageId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method removes a deleted image from the index
+     *
+     * @param imageId the id of the image
+     */
+    @Override
+    public void remove(int imageId) {
+        lock.writeLock().lock();
+
+        try {
+            Long hash = hashesById.remove(imageId);
+
+            if (hash != null) {
+                tree.remove(hash, imageId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<OutboxEvent.Type> getEventTypes() {
+        return ImageEventBatch.IMAGE_EVENTS;
+    }
+
+    /**
+     * This method updates the index with the hashes of the images of a
+     * batch of image events, read with one query. Images without a hash
+     * are removed, like deleted ones
+     *
+     * @param events the image events
+     */
+    @Override
+    public void handle(List<OutboxEvent> events) {
+        ImageEventBatch batch = new ImageEventBatch(events);
+        Map<Integer, Long> hashes = imageManager.getPerceptualHashes(batch.getWrittenIds());
+
+        for (Map.Entry<Integer, Long> entry : hashes.entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+
+        for (Integer id : batch.getGoneIds(hashes.keySet())) {
+            remove(id);
+        }
+    }
+
+    /**
+     * This method returns the images that look like an image, most similar
+     * first
+     *
+     * @param perceptualHash the perceptual hash of the image
+     * @param limit          the maximum number of images returned
+     * @return the similar images, including exact copies
+     */
+    @Override
+    public List<ImageCard> findSimilar(long perceptualHash, int limit) {
+        return toCards(search(perceptualHash), null, limit);
+    }
+
+    /**
+     * This method returns the other images that look like a saved image,
+     * most similar first
+     *
+     * @param imageId the id of the image
+     * @param limit   the maximum number of images returned
+     * @return the similar images, or an empty list if the image has no hash
+     */
+    @Override
+    public List<ImageCard> findSimilarTo(int imageId, int limit) {
+        Long hash;
+
+        lock.readLock().lock();
+
+        try {
+            hash = hashesById.get(imageId);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (hash == null) {
+            return new ArrayList<ImageCard>();
+        }
+
+        return toCards(search(hash), imageId, limit);
+    }
+
+    /**
+     * This method computes the missing perceptual hashes of the images in
+     * the database, in batches, and builds the index from all the hashes.
+     * Images that are added while the index is built are kept
+     *
+     * @return the number of images in the index
+     */
+    @Override
+    public int load() {
+        imageManager.createPerceptualHashColumn();
+
+        int hashed = 0;
+        int afterId = 0;
+        Map<Integer, String> batch;
+
+        do {
+            batch = imageManager.getImagesWithoutPerceptualHash(afterId, batchSize);
+            Map<Integer, Long> hashes = new HashMap<Integer, Long>();
+
+            for (Map.Entry<Integer, String> image : batch.entrySet()) {
+                Long hash = computeHash(image.getValue());
+
+                // images that cannot be decoded stay without a hash
+                if (hash != null) {
+                    hashes.put(image.getKey(), hash);
+                }
+
+                afterId = image.getKey();
+            }
+
+            if (!hashes.isEmpty()) {
+                imageManager.updatePerceptualHashes(hashes);
+                hashed += hashes.size();
+            }
+        } while (batch.size() == batchSize);
+
+        if (hashed > 0) {
+            log.info("computed the perceptual hashes of " + hashed + " images");
+        }
+
+        Map<Integer, Long> storedHashes = imageManager.getPerceptualHashes();
+
+        lock.writeLock().lock();
+
+        try {
+            // the images added by uploads in the meantime win over the database
+            storedHashes.putAll(hashesById);
+            hashesById.clear();
+            hashesById.putAll(storedHashes);
+
+            tree = new BKTree();
+
+            for (Map.Entry<Integer, Long> entry : hashesById.entrySet()) {
+                tree.add(entry.getValue(), entry.getKey());
+            }
+
+            return tree.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of images in the index
+     */
+    @Override
+    public int getIndexedCount() {
+        lock.readLock().lock();
+
+        try {
+            return tree.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Integer> search(long hash) {
+        lock.readLock().lock();
+
+        try {
+            return tree.search(hash, maxDistance);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This helper function loads the cards of the first images found,
+     * keeping the order of the search. An image that was deleted after it
+     * was found is left out
+     */
+    private List<ImageCard> toCards(List<Integer> ids, Integer excludedId, int limit) {
+        List<Integer> selectedIds = new ArrayList<Integer>();
+
+        for (Integer id : ids) {
+            if (selectedIds.size() == limit) {
+                break;
+            }
+
+            if (!id.equals(excludedId)) {
+                selectedIds.add(id);
+            }
+        }
+
+        Map<Integer, ImageCard> cardsById = new HashMap<Integer, ImageCard>();
+
+        for (ImageCard card : imageManager.getImageCardsByIds(selectedIds)) {
+            cardsById.put(card.getId(), card);
+        }
+
+        List<ImageCard> images = new ArrayList<ImageCard>(selectedIds.size());
+
+        for (Integer id : selectedIds) {
+            ImageCard card = cardsById.get(id);
+
+            if (card != null) {
+                images.add(card);
+            }
+        }
+
+        return images;
+    }
+}
@@ -2,10 +2,14 @@ package com.upgrad.ImageHoster.service;
 
 import com.upgrad.ImageHoster.model.Tag;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface TagService{
     List<Tag> getAll();
     Tag getByName(String title);
     Tag createTag(Tag tag);
+    List<Tag> getOrCreateTags(Collection<String> names);
+    List<String> suggest(String prefix, int limit);
+    int normalizeStoredNames();
 }
\ No newline at end of file
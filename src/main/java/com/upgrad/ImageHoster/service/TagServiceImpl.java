@@ -1,17 +1,43 @@
 package com.upgrad.ImageHoster.service;
 
+import com.upgrad.ImageHoster.common.EntityCache;
+import com.upgrad.ImageHoster.common.EntityCacheFactory;
+import com.upgrad.ImageHoster.common.EventSubscriber;
+import com.upgrad.ImageHoster.common.Metrics;
+import com.upgrad.ImageHoster.common.TagIndex;
 import com.upgrad.ImageHoster.common.TagManager;
+import com.upgrad.ImageHoster.model.OutboxEvent;
 import com.upgrad.ImageHoster.model.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
-public class TagServiceImpl implements TagService {
+public class TagServiceImpl implements TagService, EventSubscriber {
     private TagManager tagManager;
+    // tags by name, looked up for every tag of an uploaded image
+    private EntityCache<String, Tag> tagsByName;
+    // the names of all the tags, for autocomplete. It is loaded on first
+    // use, and tags created through this service or by other instances of
+    // the application are added to it
+    private volatile TagIndex tagIndex;
 
-    public TagServiceImpl() {
-        tagManager = new TagManager();
+    @Autowired
+    public TagServiceImpl(EntityCacheFactory cacheFactory) {
+        this(Metrics.timed(new TagManager()), cacheFactory.<String, Tag>create("tagsByName"));
+    }
+
+    TagServiceImpl(TagManager tagManager, EntityCache<String, Tag> tagsByName) {
+        this.tagManager = tagManager;
+        this.tagsByName = tagsByName;
     }
 
     public List<Tag> getAll() {
@@ -19,10 +45,167 @@ public class TagServiceImpl implements TagService {
     }
 
     public Tag getByName(String title) {
-        return tagManager.findTag(title);
+        return tagsByName.get(Tag.normalizeName(title), tagManager::findTag);
     }
 
     public Tag createTag(Tag tag) {
-        return tagManager.createTag(tag);
+        tag.setName(Tag.normalizeName(tag.getName()));
+        Tag createdTag = tagManager.createTag(tag);
+        tagsByName.put(createdTag.getName(), createdTag);
+        addToIndex(createdTag.getName());
+
+        return createdTag;
+    }
+
+    /**
+     * This method returns the tags with the given names, creating the ones
+     * that do not exist yet. Names that differ only in case or whitespace
+     * are the same tag, and blank names are ignored
+     *
+     * @param names the names of the tags, as they were entered
+     * @return the Tags in the order of their first occurrence in names
+     */
+    public List<Tag> getOrCreateTags(Collection<String> names) {
+        Set<String> normalizedNames = new LinkedHashSet<String>();
+
+        for (String name : names) {
+            String normalizedName = Tag.normalizeName(name);
+
+            if (!normalizedName.isEmpty()) {
+                normalizedNames.add(normalizedName);
+            }
+        }
+
+        Map<String, Tag> tags = new HashMap<String, Tag>();
+        List<String> uncachedNames = new ArrayList<String>();
+
+        for (String name : normalizedNames) {
+            Tag tag = tagsByName.getIfPresent(name);
+
+            if (tag == null) {
+                uncachedNames.add(name);
+            } else {
+                tags.put(name, tag);
+            }
+        }
+
+        if (!uncachedNames.isEmpty()) {
+            for (Tag tag : tagManager.findOrCreateTags(uncachedNames)) {
+                tagsByName.put(tag.getName(), tag);
+                tags.put(tag.getName(), tag);
+                addToIndex(tag.getName());
+            }
+        }
+
+        List<Tag> orderedTags = new ArrayList<Tag>();
+
+        for (String name : normalizedNames) {
+            orderedTags.add(tags.get(name));
+        }
+
+        return orderedTags;
+    }
+
+    /**
+     * This method returns the names of the tags that start with what the
+     * user has typed so far
+     *
+     * @param prefix the beginning of the tag name, normalized like tag names
+     * @param limit  the maximum number of names returned
+     * @return the matching tag names in alphabetical order
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String normalizedPrefix = Tag.normalizeName(prefix);
+
+        if (normalizedPrefix.isEmpty()) {
+            return new ArrayList<String>();
+        }
+
+        return getTagIndex().findByPrefix(normalizedPrefix, limit);
+    }
+
+    /**
+     * This method normalizes the names of the tags stored before names were
+     * normalized, merging the tags that then have the same name, and adds
+     * the unique index on the names
+     *
+     * @return the number of tags that were renamed or merged into another one
+     */
+    public int normalizeStoredNames() {
+        int changed = tagManager.normalizeNames(Tag::normalizeName);
+        tagManager.createNameIndex();
+
+        return changed;
+    }
+
+    private TagIndex getTagIndex() {
+        TagIndex index = tagIndex;
+
+        if (index == null) {
+            synchronized (this) {
+                index = tagIndex;
+
+                if (index == null) {
+                    index = new TagIndex();
+                    index.addAll(tagManager.getAllTagNames());
+                    tagIndex = index;
+                }
+            }
+        }
+
+        return index;
+    }
+
+    @Override
+    public Set<OutboxEvent.Type> getEventTypes() {
+        return EnumSet.of(OutboxEvent.Type.TAG_CREATED, OutboxEvent.Type.TAG_RENAMED);
+    }
+
+    /**
+     * This method adds the tags created by other instances of the
+     * application to the autocomplete index. For the tags that were renamed
+     * by normalizeStoredNames(), the cached tag under the new name is
+     * dropped, as it may be a tag that was merged into the renamed one and
+     * deleted, and the index is loaded again on next use without the old
+     * names
+     *
+     * @param events the TagCreated and TagRenamed events
+     */
+    @Override
+    public void handle(List<OutboxEvent> events) {
+        for (OutboxEvent event : events) {
+            switch (event.getType()) {
+                case TAG_CREATED:
+                    addToIndex(event.getEntityName());
+                    break;
+                case TAG_RENAMED:
+                    tagsByName.invalidate(event.getEntityName());
+                    dropIndex();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private synchronized void dropIndex() {
+        tagIndex = null;
+    }
+
+    private void addToIndex(String name) {
+        TagIndex index = tagIndex;
+
+        if (index == null) {
+            // waits for the index if it is being loaded, as the tag may
+            // have been committed after the tag names were read
+            synchronized (this) {
+                index = tagIndex;
+            }
+        }
+
+        // otherwise the tag is read with the others when the index is loaded
+        if (index != null) {
+            index.add(name);
+        }
     }
 }
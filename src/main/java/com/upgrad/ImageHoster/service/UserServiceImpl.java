@@ -1,26 +1,75 @@
 package com.upgrad.ImageHoster.service;
 
 
+import com.upgrad.ImageHoster.common.EntityCache;
+import com.upgrad.ImageHoster.common.EntityCacheFactory;
+import com.upgrad.ImageHoster.common.EventSubscriber;
+import com.upgrad.ImageHoster.common.Metrics;
 import com.upgrad.ImageHoster.common.UserManager;
+import com.upgrad.ImageHoster.model.OutboxEvent;
+import com.upgrad.ImageHoster.model.SessionPrincipal;
 import com.upgrad.ImageHoster.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 @Service
-public class UserServiceImpl implements UserService {
+public class UserServiceImpl implements UserService, EventSubscriber {
+    Logger log = Logger.getLogger(this.getClass().getName());
+
     private UserManager userManager;
+    // users by username, read on every signup and sign in
+    private EntityCache<String, User> usersByName;
 
-    public UserServiceImpl() {
-        userManager = new UserManager();
+    @Autowired
+    public UserServiceImpl(EntityCacheFactory cacheFactory) {
+        this(Metrics.timed(new UserManager()), cacheFactory.<String, User>create("usersByName"));
     }
 
-    @Override
-    public User login(String username, String password){
-        return userManager.loginUser(username, password);
+    UserServiceImpl(UserManager userManager, EntityCache<String, User> usersByName) {
+        this.userManager = userManager;
+        this.usersByName = usersByName;
+    }
+
+    @PostConstruct
+    public void createVersionColumn() {
+        try {
+            userManager.createVersionColumn();
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "unable to add the version column to the users", e);
+        }
     }
 
     @Override
     public User getByName(String username) {
-        return userManager.getUserByName(username);
+        return usersByName.get(username, userManager::getUserByName);
+    }
+
+    /**
+     * This method returns the user of a session principal. A cached copy
+     * older than the principal, i.e. cached by this instance before another
+     * instance updated the user, is read again from the database
+     *
+     * @param principal the principal stored in the HTTP session
+     * @return the user or null if the user no longer exists
+     */
+    @Override
+    public User getCurrentUser(SessionPrincipal principal) {
+        User user = getByName(principal.getUsername());
+
+        if (user != null && user.getVersion() < principal.getVersion()) {
+            usersByName.invalidate(principal.getUsername());
+            user = getByName(principal.getUsername());
+        }
+
+        // the username may have been taken by a new user since
+        return user != null && user.getId() == principal.getUserId() ? user : null;
     }
 
     @Override
@@ -31,6 +80,7 @@ public class UserServiceImpl implements UserService {
     @Override
     public boolean register(User user) {
         if (userManager.registerUser(user) != null) {
+            usersByName.invalidate(user.getUsername());
             return true;
         }
 
@@ -38,5 +88,32 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    public void update(User user) { userManager.update(user); }
+    public void update(User user) {
+        userManager.update(user);
+        usersByName.invalidate(user.getUsername());
+    }
+
+    @Override
+    public void delete(User user) {
+        userManager.deleteUser(user);
+        usersByName.invalidate(user.getUsername());
+    }
+
+    @Override
+    public Set<OutboxEvent.Type> getEventTypes() {
+        return Collections.singleton(OutboxEvent.Type.USER_UPDATED);
+    }
+
+    /**
+     * This method drops the cached copies of the users that were updated,
+     * i.e. by other instances of the application
+     *
+     * @param events the UserUpdated events
+     */
+    @Override
+    public void handle(List<OutboxEvent> events) {
+        for (OutboxEvent event : events) {
+            usersByName.invalidate(event.getEntityName());
+        }
+    }
 }
@@ -0,0 +1,7 @@
+package com.upgrad.ImageHoster.service;
+
+public interface ViewCountService {
+    void recordView(int imageId);
+    long getPendingViews(int imageId);
+    void flush();
+}
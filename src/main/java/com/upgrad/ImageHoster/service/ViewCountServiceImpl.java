@@ -0,0 +1,179 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.common.ImageManager;
+import com.upgrad.ImageHoster.common.Metrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Counts image views in memory and writes them to the database in batches.
+ * Viewing an image only increments a striped counter, and a background
+ * thread adds the views counted since the last flush to the database with
+ * one batched UPDATE ... SET numView = numView + ? statement
+ */
+@Service
+// the counts are flushed on shutdown, before the SessionFactory is closed
+@DependsOn("sessionFactoryLifecycle")
+public class ViewCountServiceImpl implements ViewCountService {
+
+    Logger log = Logger.getLogger(this.getClass().getName());
+
+    private final ImageManager imageManager;
+    private final ScheduledExecutorService scheduler;
+
+    // the counters that views are currently recorded in. A flush replaces
+    // them with empty ones, so only recently viewed images are kept in memory
+    private volatile Generation current = new Generation();
+    // the views that are being written to the database by a flush
+    private volatile Map<Integer, Long> flushing = Collections.emptyMap();
+
+    @Autowired
+    public ViewCountServiceImpl(@Value("${imagehoster.views.flush-interval-ms}") long flushIntervalMillis) {
+        this(Metrics.timed(new ImageManager()), flushIntervalMillis);
+    }
+
+    ViewCountServiceImpl(ImageManager imageManager, long flushIntervalMillis) {
+        this.imageManager = imageManager;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "view-count-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::flushQuietly,
+                flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void recordView(int imageId) {
+        addViews(imageId, 1);
+    }
+
+    /**
+     * This method returns the views of an image that have not been written
+     * to the database yet
+     *
+     * @param imageId the id of the image
+     * @return the number of views that are not included in Image.numView
+     */
+    @Override
+    public long getPendingViews(int imageId) {
+        LongAdder views = current.views.get(imageId);
+        Long beingFlushed = flushing.get(imageId);
+
+        return (views == null ? 0 : views.sum()) + (beingFlushed == null ? 0 : beingFlushed);
+    }
+
+    /**
+     * This method writes the pending views to the database. If the write
+     * fails the views stay pending and are written by the next flush
+     */
+    @Override
+    public synchronized void flush() {
+        Generation sealed = current;
+        current = new Generation();
+        sealed.sealed = true;
+
+        // waits for the views that were being added to the sealed counters,
+        // after which they can no longer change
+        while (sealed.writers.sum() != 0) {
+            Thread.yield();
+        }
+
+        // sorted by id, so concurrent flushes from several instances
+        // lock the rows in the same order
+        Map<Integer, Long> views = new TreeMap<Integer, Long>();
+
+        for (Map.Entry<Integer, LongAdder> entry : sealed.views.entrySet()) {
+            views.put(entry.getKey(), entry.getValue().sum());
+        }
+
+        if (views.isEmpty()) {
+            return;
+        }
+
+        flushing = views;
+
+        try {
+            imageManager.incrementViewCounts(views);
+            flushing = Collections.emptyMap();
+        } catch (RuntimeException e) {
+            flushing = Collections.emptyMap();
+
+            for (Map.Entry<Integer, Long> entry : views.entrySet()) {
+                addViews(entry.getKey(), entry.getValue());
+            }
+
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flushQuietly();
+    }
+
+    private void addViews(int imageId, long count) {
+        while (true) {
+            Generation generation = current;
+
+            // the flusher seals a generation before it waits for its writers,
+            // so either it sees this writer or this writer sees the seal
+            generation.writers.increment();
+
+            try {
+                if (!generation.sealed) {
+                    LongAdder views = generation.views.get(imageId);
+
+                    if (views == null) {
+                        views = generation.views.computeIfAbsent(imageId, id -> new LongAdder());
+                    }
+
+                    views.add(count);
+                    return;
+                }
+            } finally {
+                generation.writers.decrement();
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "unable to write view counts to the database", e);
+        }
+    }
+
+    /**
+     * The view counters between two flushes
+     */
+    private static class Generation {
+        final ConcurrentHashMap<Integer, LongAdder> views = new ConcurrentHashMap<Integer, LongAdder>();
+        // the number of threads that are adding views to these counters
+        final LongAdder writers = new LongAdder();
+        volatile boolean sealed;
+    }
+}
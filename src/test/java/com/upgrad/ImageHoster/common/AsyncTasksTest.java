@@ -0,0 +1,164 @@
+package com.upgrad.ImageHoster.common;
+
+import com.upgrad.ImageHoster.config.ReadRoutingInterceptor;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class AsyncTasksTest {
+    // the context of a thread that is not handling a request
+    private static final RequestContext NO_REQUEST = RequestContext.capture();
+
+    @Test
+    public void shouldCompleteWithResultOfTask() throws Exception {
+        assertEquals("done", AsyncTasks.supply(NO_REQUEST, Runnable::run, () -> "done").get());
+    }
+
+    @Test
+    public void shouldCompleteWithCheckedExceptionOfTask() {
+        CompletableFuture<String> future = AsyncTasks.supply(NO_REQUEST, Runnable::run, () -> {
+            throw new IOException("disk full");
+        });
+
+        assertSame(IOException.class, causeOf(future).getClass());
+    }
+
+    @Test
+    public void shouldRemoveCompletionExceptionOfDependentStage() {
+        CompletableFuture<String> future = AsyncTasks.unwrapped(AsyncTasks.supply(NO_REQUEST, Runnable::run, () -> "first")
+                .thenCompose(first -> AsyncTasks.supply(NO_REQUEST, Runnable::run, () -> {
+                    throw new IOException("disk full");
+                }))
+                .thenApply(second -> second + " and third"));
+
+        assertSame(IOException.class, causeOf(future).getClass());
+    }
+
+    @Test
+    public void shouldRunTaskWithRequestMetricsOfCaller() throws Exception {
+        RequestMetrics metrics = new RequestMetrics(System.nanoTime());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        RequestMetrics.bind(metrics);
+
+        try {
+            assertSame(metrics, AsyncTasks.supply(RequestContext.capture(), executor, RequestMetrics::current).get());
+            RequestMetrics.bind(null);
+
+            // the executor thread does not keep the metrics of the request
+            assertNull(AsyncTasks.supply(RequestContext.capture(), executor, RequestMetrics::current).get());
+        } finally {
+            RequestMetrics.bind(null);
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldCountWorkOfDependentStageInRequest() throws Exception {
+        RequestMetrics metrics = new RequestMetrics(System.nanoTime());
+        ReadRouting routing = new ReadRouting(0);
+        ExecutorService first = Executors.newSingleThreadExecutor();
+        ExecutorService second = Executors.newSingleThreadExecutor();
+        RequestMetrics.bind(metrics);
+        ReadRouting.bind(routing);
+
+        try {
+            RequestContext context = RequestContext.capture();
+            // the second task is started on the thread of the first one
+            CompletableFuture<RequestContext> future = AsyncTasks.supply(context, first, () -> {
+                RequestMetrics.countSqlStatement();
+                return context;
+            }).thenCompose(ignored -> AsyncTasks.supply(context, second, () -> {
+                RequestMetrics.countSqlStatement();
+                RequestMetrics.countDbSession();
+                return RequestContext.capture();
+            }));
+
+            RequestContext secondStage = future.get();
+
+            assertSame(metrics, secondStage.getMetrics());
+            assertSame(routing, secondStage.getRouting());
+            assertEquals(2, metrics.getSqlStatements());
+            assertEquals(1, metrics.getDbSessions());
+        } finally {
+            RequestMetrics.bind(null);
+            ReadRouting.bind(null);
+            first.shutdown();
+            second.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldReadFromPrimaryAfterWriteInDependentStage() throws Exception {
+        ReadRoutingInterceptor interceptor = new ReadRoutingInterceptor(60000);
+        MockHttpSession session = new MockHttpSession();
+        ExecutorService first = Executors.newSingleThreadExecutor();
+        ExecutorService second = Executors.newSingleThreadExecutor();
+
+        try {
+            MockHttpServletRequest upload = request(session);
+            interceptor.preHandle(upload, new MockHttpServletResponse(), null);
+            RequestContext context = RequestContext.capture();
+            interceptor.afterConcurrentHandlingStarted(upload, new MockHttpServletResponse(), null);
+
+            // i.e. the upload, which saves the image in its second stage
+            AsyncTasks.supply(context, first, () -> "stored")
+                    .thenCompose(stored -> AsyncTasks.supply(context, second, () -> {
+                        ReadRouting.recordWrite();
+                        return stored;
+                    }))
+                    .get();
+
+            // the dispatch that resumes the request
+            interceptor.preHandle(upload, new MockHttpServletResponse(), null);
+            interceptor.postHandle(upload, new MockHttpServletResponse(), null, null);
+            interceptor.afterCompletion(upload, new MockHttpServletResponse(), null, null);
+
+            // the redirect to the uploaded image
+            MockHttpServletRequest next = request(session);
+            interceptor.preHandle(next, new MockHttpServletResponse(), null);
+
+            assertFalse(ReadRouting.mayReadFromReplica());
+            interceptor.afterCompletion(next, new MockHttpServletResponse(), null, null);
+        } finally {
+            ReadRouting.bind(null);
+            first.shutdown();
+            second.shutdown();
+        }
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void shouldRejectTaskBeforeItStarts() {
+        AsyncTasks.supply(NO_REQUEST, task -> {
+            throw new RejectedExecutionException("saturated");
+        }, () -> "never run");
+    }
+
+    private static Throwable causeOf(CompletableFuture<?> future) {
+        try {
+            future.get();
+            fail("the future should have failed");
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static MockHttpServletRequest request(MockHttpSession session) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setSession(session);
+
+        return request;
+    }
+}
@@ -0,0 +1,73 @@
+package com.upgrad.ImageHoster.common;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BKTreeTest {
+
+    @Test
+    public void shouldFindSameImagesAsComparingEveryHash() {
+        Random random = new Random(7);
+        BKTree tree = new BKTree();
+        long[] hashes = new long[2000];
+
+        for (int id = 0; id < hashes.length; id++) {
+            // flips a few bits of earlier hashes, so there are near duplicates to find
+            hashes[id] = id > 0 && random.nextBoolean()
+                    ? hashes[random.nextInt(id)] ^ (1L << random.nextInt(64)) ^ (1L << random.nextInt(64))
+                    : random.nextLong();
+            tree.add(hashes[id], id);
+        }
+
+        for (int i = 0; i < 50; i++) {
+            long query = hashes[random.nextInt(hashes.length)] ^ (1L << random.nextInt(64));
+            List<Integer> expected = new ArrayList<Integer>();
+
+            for (int id = 0; id < hashes.length; id++) {
+                if (PerceptualHash.distance(query, hashes[id]) <= 6) {
+                    expected.add(id);
+                }
+            }
+
+            List<Integer> found = tree.search(query, 6);
+            assertEquals(new HashSet<Integer>(expected), new HashSet<Integer>(found));
+            assertEquals(expected.size(), found.size());
+        }
+
+        assertEquals(hashes.length, tree.size());
+    }
+
+    @Test
+    public void shouldReturnNearestAndNewestFirst() {
+        BKTree tree = new BKTree();
+        tree.add(0b1111L, 1);
+        tree.add(0b0111L, 2);
+        tree.add(0b1111L, 3);
+        tree.add(0L, 4);
+
+        assertEquals(Arrays.asList(3, 1, 2), tree.search(0b1111L, 1));
+    }
+
+    @Test
+    public void shouldRemoveImagesAndKeepOthersWithSameHash() {
+        BKTree tree = new BKTree();
+        tree.add(5L, 1);
+        tree.add(5L, 2);
+        tree.add(6L, 3);
+
+        assertTrue(tree.remove(5L, 1));
+        assertFalse(tree.remove(5L, 1));
+        assertFalse(tree.remove(9L, 3));
+
+        assertEquals(Arrays.asList(2), tree.search(5L, 0));
+        assertEquals(Arrays.asList(3, 2), tree.search(6L, 2));
+        assertEquals(2, tree.size());
+    }
+}
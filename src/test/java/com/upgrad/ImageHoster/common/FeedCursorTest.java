@@ -0,0 +1,18 @@
+package com.upgrad.ImageHoster.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FeedCursorTest {
+
+    @Test
+    public void shouldDecodeEncodedCursor() {
+        assertEquals(42, FeedCursor.decode(FeedCursor.encode(42)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidCursor() {
+        FeedCursor.decode("not a cursor");
+    }
+}
@@ -0,0 +1,42 @@
+package com.upgrad.ImageHoster.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+
+    @Test
+    public void shouldPutEveryValueInABucketThatContainsIt() {
+        long[] values = {0, 1, 15, 16, 17, 31, 32, 33, 1000, 123456789, Long.MAX_VALUE};
+
+        for (long value : values) {
+            int bucket = Histogram.bucketOf(value);
+
+            assertTrue(value + " is above its bucket", value <= Histogram.highestValueOf(bucket));
+            assertTrue(value + " is below its bucket", bucket == 0 || value > Histogram.highestValueOf(bucket - 1));
+        }
+    }
+
+    @Test
+    public void shouldReportQuantilesWithinOneSixteenth() {
+        Histogram histogram = new Histogram();
+
+        // 1 to 1000 milliseconds, in nanoseconds
+        for (long millis = 1; millis <= 1000; millis++) {
+            histogram.record(millis * 1000000);
+        }
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1000000000L, snapshot.getMax());
+        assertEquals(500, snapshot.getValueAtQuantile(0.5) / 1e6, 500 / 16.0);
+        assertEquals(990, snapshot.getValueAtQuantile(0.99) / 1e6, 990 / 16.0);
+        assertEquals(1000000000L, snapshot.getValueAtQuantile(1));
+    }
+
+    @Test
+    public void shouldReportZeroWhenEmpty() {
+        assertEquals(0, new Histogram().snapshot().getValueAtQuantile(0.99));
+    }
+}
@@ -0,0 +1,268 @@
+package com.upgrad.ImageHoster.common;
+
+import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.ImageCard;
+import com.upgrad.ImageHoster.model.OutboxEvent;
+import com.upgrad.ImageHoster.model.ProfilePhoto;
+import com.upgrad.ImageHoster.model.Tag;
+import com.upgrad.ImageHoster.model.TagQuery;
+import com.upgrad.ImageHoster.model.User;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs against the in-memory database of src/test/resources/hibernate.cfg.xml
+ */
+public class ImageManagerTest {
+    private static ImageManager imageManager;
+    private static Image image;
+
+    @BeforeClass
+    public static void setUp() {
+        imageManager = new ImageManager();
+
+        ProfilePhoto photo = new ProfilePhoto(String.format("%064d", 1), 10, "image/png");
+        new ProfilePhotoManager().saveProfilePhoto(photo);
+        User user = new UserManager().registerUser(new User("imagemanager", "hash", photo));
+        List<Tag> tags = new TagManager().findOrCreateTags(Arrays.asList("cat", "kitty"));
+
+        image = new Image("a kitten", "description", String.format("%064d", 2), 100, "image/jpeg", user, tags);
+        imageManager.saveImage(image);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        SessionManager.shutdown();
+    }
+
+    @Test
+    public void shouldLoadImageWithJoinsInOneStatement() {
+        SqlStatementCounter.reset();
+
+        Image loaded = imageManager.getImageByIdWithJoins(image.getId());
+
+        assertEquals(1, SqlStatementCounter.getCount());
+
+        // the session is closed, so these would fail if they were not fetched
+        assertEquals(2, loaded.getTags().size());
+        assertEquals("imagemanager", loaded.getUser().getUsername());
+        assertEquals("image/png", loaded.getUser().getProfilePhoto().getMimeType());
+    }
+
+    @Test
+    public void shouldLoadImageByTitleWithJoinsInOneStatement() {
+        SqlStatementCounter.reset();
+
+        Image loaded = imageManager.getImageByTitleWithJoins("a kitten");
+
+        assertEquals(1, SqlStatementCounter.getCount());
+        assertEquals(image.getId(), loaded.getId());
+        assertEquals(2, loaded.getTags().size());
+        assertNotNull(loaded.getUser().getProfilePhoto());
+    }
+
+    @Test
+    public void shouldReturnNullForMissingImage() {
+        assertNull(imageManager.getImageByIdWithJoins(-1));
+    }
+
+    @Test
+    public void shouldReturnConnectionToPoolWhenLookupFails() {
+        for (int i = 0; i < 2; i++) {
+            imageManager.saveImage(new Image("twins", "description", String.format("%064d", 20 + i), 100,
+                    "image/jpeg", image.getUser(), new ArrayList<Tag>()));
+        }
+
+        try {
+            // more lookups than the pool has connections
+            for (int i = 0; i < 20; i++) {
+                assertNull(imageManager.getImageByTitle("twins"));
+                assertNull(imageManager.getImageByTitleWithJoins("twins"));
+            }
+
+            assertEquals(0, SessionManager.getPoolMetrics().getActiveConnections());
+        } finally {
+            imageManager.deleteImage("twins");
+        }
+    }
+
+    @Test
+    public void shouldReturnStatelessConnectionToPoolWhenQueryFails() {
+        SessionManager sessionManager = new SessionManager();
+
+        // more failed queries than the pool has connections
+        for (int i = 0; i < 20; i++) {
+            StatelessSession session = sessionManager.openReadOnlyStatelessSession();
+
+            try {
+                session.createSQLQuery("select missingColumn from Image").list();
+                fail("the query should have failed");
+            } catch (HibernateException e) {
+                // the connection is returned below
+            } finally {
+                sessionManager.closeSession(session);
+            }
+        }
+
+        assertEquals(0, SessionManager.getPoolMetrics().getActiveConnections());
+    }
+
+    @Test
+    public void shouldLoadImageCardsOfFeed() {
+        List<ImageCard> cards = imageManager.getImageCardsBefore(null, 10);
+
+        assertEquals(1, cards.size());
+        assertEquals(image.getId(), cards.get(0).getId());
+        assertEquals("a kitten", cards.get(0).getTitle());
+        assertEquals(image.getImageHash(), cards.get(0).getImageHash());
+        assertEquals(image.getUploadDate(), cards.get(0).getUploadDate().toString());
+
+        assertTrue(imageManager.getImageCardsBefore(image.getId(), 10).isEmpty());
+    }
+
+    @Test
+    public void shouldLoadImageCardsByTag() {
+        assertEquals(1, imageManager.getImageCardsByTag("kitty", null, 10).size());
+        assertTrue(imageManager.getImageCardsByTag("dog", null, 10).isEmpty());
+    }
+
+    @Test
+    public void shouldPageImageCardsByTag() {
+        assertEquals(1, imageManager.getImageCardsByTag("kitty", null, 1).size());
+        assertTrue(imageManager.getImageCardsByTag("kitty", image.getId(), 10).isEmpty());
+    }
+
+    @Test
+    public void shouldSearchImageCardsByAllOfTheTags() {
+        assertEquals(1, search(Arrays.asList("cat", "kitty"), none(), none()).size());
+        assertTrue(search(Arrays.asList("cat", "dog"), none(), none()).isEmpty());
+    }
+
+    @Test
+    public void shouldSearchImageCardsByAnyOfTheTags() {
+        assertEquals(1, search(none(), Arrays.asList("dog", "kitty"), none()).size());
+        assertTrue(search(none(), Arrays.asList("dog", "bird"), none()).isEmpty());
+    }
+
+    @Test
+    public void shouldExcludeImageCardsWithNoneOfTheTags() {
+        assertEquals(1, search(Arrays.asList("cat"), none(), Arrays.asList("dog")).size());
+        assertTrue(search(Arrays.asList("cat"), none(), Arrays.asList("kitty")).isEmpty());
+    }
+
+    @Test
+    public void shouldPageImageCardsOfTagSearch() {
+        TagQuery query = new TagQuery(Arrays.asList("cat"), none(), none());
+
+        assertEquals(1, imageManager.getImageCardsByTags(query, null, 10).size());
+        assertTrue(imageManager.getImageCardsByTags(query, image.getId(), 10).isEmpty());
+    }
+
+    private static List<ImageCard> search(List<String> allOf, List<String> anyOf, List<String> noneOf) {
+        return imageManager.getImageCardsByTags(new TagQuery(allOf, anyOf, noneOf), null, 10);
+    }
+
+    private static List<String> none() {
+        return Collections.<String>emptyList();
+    }
+
+    @Test
+    public void shouldLoadImagesOfRangeWithTagsForIndexing() {
+        List<Image> images = imageManager.getImagesWithTagsBetween(image.getId() - 1, imageManager.getMaxImageId());
+
+        assertEquals(1, images.size());
+        // the session is closed, so this would fail if the tags were not fetched
+        assertEquals(2, images.get(0).getTags().size());
+        assertTrue(imageManager.getImagesWithTagsBetween(image.getId(), image.getId() + 100).isEmpty());
+    }
+
+    @Test
+    public void shouldLoadImageCardsByIds() {
+        List<ImageCard> cards = imageManager.getImageCardsByIds(Arrays.asList(image.getId(), -1));
+
+        assertEquals(1, cards.size());
+        assertEquals("a kitten", cards.get(0).getTitle());
+    }
+
+    @Test
+    public void shouldWriteEventsOfImagesWithTheirWrites() {
+        OutboxManager outboxManager = new OutboxManager();
+        long lastEventId = outboxManager.getMaxEventId();
+
+        Image puppy = new Image("a puppy", "description", String.format("%064d", 3), 100, "image/jpeg",
+                image.getUser(), new ArrayList<Tag>());
+        imageManager.saveImage(puppy);
+        imageManager.deleteImageById(puppy.getId());
+        // nothing was deleted, so nothing is published
+        imageManager.deleteImageById(-1);
+
+        List<OutboxEvent> events = outboxManager.getEventsAfter(lastEventId, 10);
+
+        assertEquals(2, events.size());
+        assertEquals(OutboxEvent.Type.IMAGE_CREATED, events.get(0).getType());
+        assertEquals(OutboxEvent.Type.IMAGE_DELETED, events.get(1).getType());
+        assertEquals(puppy.getId(), events.get(1).getEntityId());
+        assertTrue(events.get(0).getId() < events.get(1).getId());
+    }
+
+    @Test
+    public void shouldInsertImagesWithTheirTagsInOneTransaction() {
+        long lastEventId = new OutboxManager().getMaxEventId();
+        List<Tag> tags = new TagManager().findOrCreateTags(Arrays.asList("cat", "imported"));
+        List<Image> images = new ArrayList<Image>();
+
+        for (int i = 0; i < 3; i++) {
+            Image imported = new Image("imported " + i, "description", String.format("%064d", 10 + i), 100,
+                    "image/png", image.getUser(), tags);
+            imported.setPerceptualHash(i == 0 ? null : (long) i);
+            images.add(imported);
+        }
+
+        try {
+            imageManager.insertImages(images);
+
+            List<ImageCard> cards = imageManager.getImageCardsByTag("imported", null, 10);
+            assertEquals(3, cards.size());
+
+            for (Image imported : images) {
+                Image loaded = imageManager.getImageByIdWithJoins(imported.getId());
+
+                assertEquals(imported.getTitle(), loaded.getTitle());
+                assertEquals(imported.getPerceptualHash(), loaded.getPerceptualHash());
+                assertEquals(imported.getUploadDate(), loaded.getUploadDate());
+                assertEquals("imagemanager", loaded.getUser().getUsername());
+                assertEquals(2, loaded.getTags().size());
+            }
+
+            // the new tag and the images were published with the writes
+            List<OutboxEvent> events = new OutboxManager().getEventsAfter(lastEventId, 10);
+            assertEquals(4, events.size());
+            assertEquals(OutboxEvent.Type.TAG_CREATED, events.get(0).getType());
+            assertEquals("imported", events.get(0).getEntityName());
+
+            for (int i = 0; i < 3; i++) {
+                assertEquals(OutboxEvent.Type.IMAGE_CREATED, events.get(i + 1).getType());
+                assertEquals(images.get(i).getId(), events.get(i + 1).getEntityId());
+            }
+        } finally {
+            // the other tests expect the image of setUp() only
+            Session session = imageManager.openSession();
+            session.createSQLQuery("delete from Image_Tag where image_id <> :id").setParameter("id", image.getId())
+                    .executeUpdate();
+            session.createSQLQuery("delete from Image where id <> :id").setParameter("id", image.getId())
+                    .executeUpdate();
+            imageManager.commitSession(session);
+        }
+    }
+}
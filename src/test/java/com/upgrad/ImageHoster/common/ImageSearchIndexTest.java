@@ -0,0 +1,107 @@
+package com.upgrad.ImageHoster.common;
+
+import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.Tag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ImageSearchIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ImageSearchIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        index = new ImageSearchIndex(folder.getRoot().toPath());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        index.close();
+    }
+
+    @Test
+    public void shouldRankTitleMatchesAboveDescriptionMatches() throws Exception {
+        index.index(image(1, "Sunset at the beach", "a photo of the sea", "beach"));
+        index.index(image(2, "My garden", "the sunset behind the garden wall", "flowers"));
+        index.index(image(3, "A dog", "a dog in the park", "dog"));
+        index.refresh();
+
+        assertEquals(Arrays.asList(1, 2), index.search("sunset", 0, 10));
+        assertEquals(Arrays.asList(3), index.search("dog park", 0, 10));
+        assertEquals(Arrays.asList(2), index.search("flowers", 0, 10));
+    }
+
+    @Test
+    public void shouldMatchWordsByTheirStem() throws Exception {
+        index.index(image(1, "Kittens playing", "two kittens", "cats"));
+        index.refresh();
+
+        assertEquals(Arrays.asList(1), index.search("kitten", 0, 10));
+        assertEquals(Arrays.asList(1), index.search("Cat", 0, 10));
+        assertTrue(index.search("the", 0, 10).isEmpty());
+    }
+
+    @Test
+    public void shouldReplaceUpdatedImagesAndRemoveDeletedImages() throws Exception {
+        index.index(image(1, "Old title", "description"));
+        index.index(image(2, "Another image", "description"));
+        index.index(image(1, "New title", "description"));
+        index.delete(2);
+        index.refresh();
+
+        assertTrue(index.search("old", 0, 10).isEmpty());
+        assertEquals(Arrays.asList(1), index.search("new", 0, 10));
+        assertEquals(1, index.getDocumentCount());
+    }
+
+    @Test
+    public void shouldPageThroughMatches() throws Exception {
+        for (int id = 1; id <= 5; id++) {
+            index.index(image(id, "Mountain " + id, "description"));
+        }
+        index.refresh();
+
+        List<Integer> ids = new ArrayList<Integer>(index.search("mountain", 0, 2));
+        ids.addAll(index.search("mountain", 2, 2));
+        ids.addAll(index.search("mountain", 4, 2));
+        Collections.sort(ids);
+
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), ids);
+    }
+
+    @Test
+    public void shouldKeepCommittedImagesAfterReopening() throws Exception {
+        index.index(image(1, "Sunset", "description"));
+        index.commit();
+        index.close();
+
+        index = new ImageSearchIndex(folder.getRoot().toPath());
+
+        assertEquals(Arrays.asList(1), index.search("sunset", 0, 10));
+    }
+
+    private static Image image(int id, String title, String description, String... tagNames) {
+        List<Tag> tags = new ArrayList<Tag>();
+
+        for (String tagName : tagNames) {
+            tags.add(new Tag(tagName));
+        }
+
+        Image image = new Image(title, description, null, 0, "image/jpeg", null, tags);
+        image.setId(id);
+
+        return image;
+    }
+}
@@ -0,0 +1,58 @@
+package com.upgrad.ImageHoster.common;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class LocalBlobStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldStoreBlobUnderItsSha256Hash() throws Exception {
+        LocalBlobStore store = new LocalBlobStore(folder.getRoot().toPath());
+
+        StoredBlob blob = store.put(new ByteArrayInputStream("abc".getBytes()));
+
+        // SHA-256 of "abc"
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", blob.getHash());
+        assertEquals(3, blob.getSize());
+
+        // checks to see if the blob is sharded by the first two bytes of its hash
+        Path file = store.resolve(blob.getHash());
+        assertEquals(folder.getRoot().toPath().resolve("ba").resolve("78").resolve(blob.getHash()), file);
+
+        try (InputStream in = store.open(blob.getHash())) {
+            assertArrayEquals("abc".getBytes(), StreamUtils.copyToByteArray(in));
+        }
+    }
+
+    @Test
+    public void shouldKeepOneCopyOfDuplicateContent() throws Exception {
+        LocalBlobStore store = new LocalBlobStore(folder.getRoot().toPath());
+
+        StoredBlob first = store.put(new ByteArrayInputStream("same".getBytes()));
+        StoredBlob second = store.put(new ByteArrayInputStream("same".getBytes()));
+
+        assertEquals(first.getHash(), second.getHash());
+        assertTrue(store.exists(first.getHash()));
+
+        // checks to see if no temp files are left behind
+        assertEquals(0, Files.list(folder.getRoot().toPath().resolve("tmp")).count());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidHash() throws Exception {
+        LocalBlobStore store = new LocalBlobStore(folder.getRoot().toPath());
+
+        store.open("../../etc/passwd");
+    }
+}
@@ -0,0 +1,99 @@
+package com.upgrad.ImageHoster.common;
+
+import com.google.common.base.Ticker;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class LocalEntityCacheTest {
+
+    /**
+     * A Ticker that only moves when the test advances it
+     */
+    private static class ManualTicker extends Ticker {
+        long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+    }
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final Function<String, String> loader = key -> {
+        loads.incrementAndGet();
+        return key.startsWith("missing") ? null : key.toUpperCase();
+    };
+
+    @Test
+    public void shouldLoadEachKeyOnce() {
+        LocalEntityCache<String, String> cache = new LocalEntityCache<String, String>("test", 10, 1, TimeUnit.MINUTES);
+
+        assertEquals("TAG", cache.get("tag", loader));
+        assertEquals("TAG", cache.get("tag", loader));
+
+        assertEquals(1, loads.get());
+        CacheMetrics metrics = cache.getMetrics();
+        assertEquals(1, metrics.getHitCount());
+        assertEquals(1, metrics.getMissCount());
+        assertEquals(1, metrics.getSize());
+    }
+
+    @Test
+    public void shouldNotCacheMissingEntities() {
+        LocalEntityCache<String, String> cache = new LocalEntityCache<String, String>("test", 10, 1, TimeUnit.MINUTES);
+
+        assertNull(cache.get("missing", loader));
+        assertNull(cache.get("missing", loader));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void shouldExpireEntitiesAfterTheirTimeToLive() {
+        ManualTicker ticker = new ManualTicker();
+        LocalEntityCache<String, String> cache =
+                new LocalEntityCache<String, String>("test", 10, 1, TimeUnit.MINUTES, ticker);
+
+        cache.get("tag", loader);
+        ticker.nanos += TimeUnit.SECONDS.toNanos(59);
+        cache.get("tag", loader);
+        assertEquals(1, loads.get());
+
+        ticker.nanos += TimeUnit.SECONDS.toNanos(2);
+        cache.get("tag", loader);
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getMetrics().getEvictionCount());
+    }
+
+    @Test
+    public void shouldEvictEntitiesWhenFull() {
+        LocalEntityCache<String, String> cache = new LocalEntityCache<String, String>("test", 2, 1, TimeUnit.MINUTES);
+
+        for (int i = 0; i < 10; i++) {
+            cache.get("tag" + i, loader);
+        }
+
+        // the cache is split into segments that each evict on their own,
+        // so it may evict before it is completely full
+        CacheMetrics metrics = cache.getMetrics();
+        assertTrue(metrics.getSize() <= 2);
+        assertEquals(10, metrics.getSize() + metrics.getEvictionCount());
+    }
+
+    @Test
+    public void shouldReloadInvalidatedEntities() {
+        LocalEntityCache<String, String> cache = new LocalEntityCache<String, String>("test", 10, 1, TimeUnit.MINUTES);
+
+        cache.get("tag", loader);
+        cache.invalidate("tag");
+        cache.get("tag", loader);
+
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,48 @@
+package com.upgrad.ImageHoster.common;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class LocalSessionStoreTest {
+    private static final String ID = "0f8fad5b-d9cb-469f-a165-70867728950e";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldReturnSessionUntilItExpires() throws Exception {
+        LocalSessionStore store = new LocalSessionStore(folder.getRoot().toPath());
+
+        store.save(ID, "first".getBytes(), 1000);
+        store.save(ID, "second".getBytes(), 2000);
+
+        assertArrayEquals("second".getBytes(), store.load(ID, 1999));
+        assertNull(store.load(ID, 2000));
+
+        // a new store on the same directory, i.e. after a restart, reads the same session
+        assertArrayEquals("second".getBytes(), new LocalSessionStore(folder.getRoot().toPath()).load(ID, 1999));
+    }
+
+    @Test
+    public void shouldDeleteOnlyExpiredSessions() throws Exception {
+        LocalSessionStore store = new LocalSessionStore(folder.getRoot().toPath());
+        String otherId = "7c9e6679-7425-40de-944b-e07fc1f90ae7";
+
+        store.save(ID, "expired".getBytes(), 1000);
+        store.save(otherId, "current".getBytes(), 3000);
+
+        assertEquals(1, store.deleteExpired(2000));
+        assertNull(store.load(ID, 0));
+        assertArrayEquals("current".getBytes(), store.load(otherId, 2000));
+    }
+
+    @Test
+    public void shouldNotReadOutsideTheRootDirectory() throws Exception {
+        LocalSessionStore store = new LocalSessionStore(folder.getRoot().toPath());
+
+        assertNull(store.load("../../etc/passwd", 0));
+    }
+}
@@ -0,0 +1,33 @@
+package com.upgrad.ImageHoster.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+
+    @Test
+    public void shouldRecordCallsOfTimedManager() {
+        CountingManager manager = Metrics.timed(new CountingManager());
+
+        assertEquals(1, manager.count());
+        assertEquals(2, manager.count());
+
+        Histogram histogram = Metrics.getHistograms().get(Metrics.DAO_CALL_SECONDS).get("CountingManager.count");
+        assertEquals(2, histogram.snapshot().getCount());
+    }
+
+    @Test
+    public void shouldReturnTheSameHistogramForTheSameName() {
+        assertSame(Metrics.histogram("test_seconds", "a"), Metrics.histogram("test_seconds", "a"));
+        assertNotSame(Metrics.histogram("test_seconds", "a"), Metrics.histogram("test_seconds", "b"));
+    }
+
+    public static class CountingManager extends SessionManager {
+        private int calls;
+
+        public int count() {
+            return ++calls;
+        }
+    }
+}
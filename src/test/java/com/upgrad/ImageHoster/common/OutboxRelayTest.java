@@ -0,0 +1,278 @@
+package com.upgrad.ImageHoster.common;
+
+import com.upgrad.ImageHoster.model.OutboxEvent;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class OutboxRelayTest {
+
+    /**
+     * A subscriber that records the ids of the batches it is handed, and
+     * fails the first few times
+     */
+    private static class RecordingSubscriber implements EventSubscriber {
+        final Set<OutboxEvent.Type> types;
+        final List<List<Long>> batches = new ArrayList<List<Long>>();
+        final AtomicInteger failures;
+
+        RecordingSubscriber(Set<OutboxEvent.Type> types, int failures) {
+            this.types = types;
+            this.failures = new AtomicInteger(failures);
+        }
+
+        @Override
+        public Set<OutboxEvent.Type> getEventTypes() {
+            return types;
+        }
+
+        @Override
+        public void handle(List<OutboxEvent> events) {
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("the index is not available");
+            }
+
+            List<Long> ids = new ArrayList<Long>();
+
+            for (OutboxEvent event : events) {
+                ids.add(event.getId());
+            }
+
+            batches.add(ids);
+        }
+    }
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    // the committed rows of the OutboxEvent table
+    private final List<OutboxEvent> table = new ArrayList<OutboxEvent>();
+    private final OutboxManager outboxManager = Mockito.mock(OutboxManager.class);
+    private Path positionFile;
+
+    @Before
+    public void setUp() {
+        positionFile = temporaryFolder.getRoot().toPath().resolve("events.position");
+
+        Mockito.when(outboxManager.getEventsAfter(Mockito.anyLong(), Mockito.anyInt())).thenAnswer(invocation -> {
+            long afterId = (Long) invocation.getArguments()[0];
+            int batchSize = (Integer) invocation.getArguments()[1];
+            List<OutboxEvent> events = new ArrayList<OutboxEvent>();
+
+            for (OutboxEvent event : table) {
+                if (event.getId() > afterId && events.size() < batchSize) {
+                    events.add(event);
+                }
+            }
+
+            return events;
+        });
+        Mockito.when(outboxManager.getEventsByIds(Mockito.anyCollection())).thenAnswer(invocation -> {
+            Collection<?> ids = (Collection<?>) invocation.getArguments()[0];
+            List<OutboxEvent> events = new ArrayList<OutboxEvent>();
+
+            for (OutboxEvent event : table) {
+                if (ids.contains(event.getId())) {
+                    events.add(event);
+                }
+            }
+
+            return events;
+        });
+        Mockito.when(outboxManager.getMaxEventId()).thenAnswer(invocation ->
+                table.isEmpty() ? 0L : table.get(table.size() - 1).getId());
+    }
+
+    @Test
+    public void shouldHandEventsToSubscribersInOrderAndInBatches() throws Exception {
+        Files.write(positionFile, "0".getBytes(StandardCharsets.US_ASCII));
+        addEvent(1, OutboxEvent.Type.IMAGE_CREATED);
+        addEvent(2, OutboxEvent.Type.TAG_CREATED);
+        addEvent(3, OutboxEvent.Type.IMAGE_UPDATED);
+        addEvent(4, OutboxEvent.Type.IMAGE_DELETED);
+        addEvent(5, OutboxEvent.Type.IMAGE_CREATED);
+
+        RecordingSubscriber images = new RecordingSubscriber(ImageEventBatch.IMAGE_EVENTS, 0);
+        RecordingSubscriber tags = new RecordingSubscriber(Collections.singleton(OutboxEvent.Type.TAG_CREATED), 0);
+        OutboxRelay relay = createRelay(Arrays.asList(images, tags), 3, Duration.ofMinutes(1));
+
+        assertEquals(5, relay.relayEvents());
+
+        // the table is read two events at a time
+        assertEquals(Arrays.asList(Collections.singletonList(1L), Arrays.asList(3L, 4L),
+                Collections.singletonList(5L)), images.batches);
+        assertEquals(Collections.singletonList(Collections.singletonList(2L)), tags.batches);
+        assertEquals("5", readPosition());
+
+        assertEquals(0, relay.relayEvents());
+    }
+
+    @Test
+    public void shouldStartAfterNewestEventWithoutPosition() throws Exception {
+        addEvent(1, OutboxEvent.Type.IMAGE_CREATED);
+        RecordingSubscriber images = new RecordingSubscriber(ImageEventBatch.IMAGE_EVENTS, 0);
+        OutboxRelay relay = createRelay(Collections.singletonList(images), 3, Duration.ofMinutes(1));
+
+        assertEquals(0, relay.relayEvents());
+
+        addEvent(2, OutboxEvent.Type.IMAGE_UPDATED);
+
+        assertEquals(1, relay.relayEvents());
+        assertEquals(Collections.singletonList(Collections.singletonList(2L)), images.batches);
+    }
+
+    @Test
+    public void shouldHandBatchAgainToFailingSubscriberOnly() throws Exception {
+        Files.write(positionFile, "0".getBytes(StandardCharsets.US_ASCII));
+        addEvent(1, OutboxEvent.Type.IMAGE_CREATED);
+
+        RecordingSubscriber failing = new RecordingSubscriber(ImageEventBatch.IMAGE_EVENTS, 2);
+        RecordingSubscriber working = new RecordingSubscriber(ImageEventBatch.IMAGE_EVENTS, 0);
+        OutboxRelay relay = createRelay(Arrays.asList(failing, working), 3, Duration.ofMinutes(1));
+
+        assertEquals(1, relay.relayEvents());
+
+        assertEquals(Collections.singletonList(Collections.singletonList(1L)), failing.batches);
+        assertEquals(Collections.singletonList(Collections.singletonList(1L)), working.batches);
+    }
+
+    @Test
+    public void shouldGiveUpOnEventsAfterMaxAttempts() throws Exception {
+        Files.write(positionFile, "0".getBytes(StandardCharsets.US_ASCII));
+        addEvent(1, OutboxEvent.Type.IMAGE_CREATED);
+
+        RecordingSubscriber failing = new RecordingSubscriber(ImageEventBatch.IMAGE_EVENTS, 3);
+        OutboxRelay relay = createRelay(Collections.singletonList(failing), 3, Duration.ofMinutes(1));
+
+        assertEquals(1, relay.relayEvents());
+        assertEquals(1, relay.getPosition());
+        assertTrue(failing.batches.isEmpty());
+
+        // the next events are handed over as usual
+        addEvent(2, OutboxEvent.Type.IMAGE_UPDATED);
+        relay.relayEvents();
+        assertEquals(Collections.singletonList(Collections.singletonList(2L)), failing.batches);
+    }
+
+    @Test
+    public void shouldWaitForEventThatHasNotBeenCommitted() throws Exception {
+        Files.write(positionFile, "0".getBytes(StandardCharsets.US_ASCII));
+        addEvent(1, OutboxEvent.Type.IMAGE_CREATED);
+        addEvent(3, OutboxEvent.Type.IMAGE_CREATED);
+
+        RecordingSubscriber images = new RecordingSubscriber(ImageEventBatch.IMAGE_EVENTS, 0);
+        OutboxRelay relay = createRelay(Collections.singletonList(images), 3, Duration.ofMinutes(1));
+
+        assertEquals(1, relay.relayEvents());
+
+        // the transaction of event 2 commits
+        table.add(1, event(2, OutboxEvent.Type.IMAGE_UPDATED));
+
+        assertEquals(2, relay.relayEvents());
+        assertEquals(Arrays.asList(Collections.singletonList(1L), Arrays.asList(2L, 3L)), images.batches);
+    }
+
+    @Test
+    public void shouldSkipMissingEventAfterGapTimeout() throws Exception {
+        Files.write(positionFile, "0".getBytes(StandardCharsets.US_ASCII));
+        addEvent(1, OutboxEvent.Type.IMAGE_CREATED);
+        // event 2 was rolled back
+        addEvent(3, OutboxEvent.Type.IMAGE_CREATED);
+
+        RecordingSubscriber images = new RecordingSubscriber(ImageEventBatch.IMAGE_EVENTS, 0);
+        OutboxRelay relay = createRelay(Collections.singletonList(images), 3, Duration.ZERO);
+
+        assertEquals(2, relay.relayEvents());
+        assertEquals(3, relay.getPosition());
+    }
+
+    @Test
+    public void shouldHandOverSkippedEventThatIsCommittedLater() throws Exception {
+        Files.write(positionFile, "0".getBytes(StandardCharsets.US_ASCII));
+        addEvent(1, OutboxEvent.Type.IMAGE_CREATED);
+        addEvent(3, OutboxEvent.Type.IMAGE_CREATED);
+
+        RecordingSubscriber images = new RecordingSubscriber(ImageEventBatch.IMAGE_EVENTS, 0);
+        OutboxRelay relay = createRelay(Collections.singletonList(images), 3, Duration.ZERO);
+
+        assertEquals(2, relay.relayEvents());
+        assertTrue(readPosition().startsWith("3 2:"));
+
+        // the transaction of event 2 commits after the gap timeout
+        table.add(1, event(2, OutboxEvent.Type.IMAGE_UPDATED));
+
+        assertEquals(1, relay.relayEvents());
+        assertEquals(Arrays.asList(Arrays.asList(1L, 3L), Collections.singletonList(2L)), images.batches);
+        assertEquals("3", readPosition());
+
+        assertEquals(0, relay.relayEvents());
+    }
+
+    @Test
+    public void shouldLookForSkippedEventsAgainAfterRestart() throws Exception {
+        Files.write(positionFile, ("3 2:" + System.currentTimeMillis()).getBytes(StandardCharsets.US_ASCII));
+        addEvent(1, OutboxEvent.Type.IMAGE_CREATED);
+        addEvent(2, OutboxEvent.Type.IMAGE_UPDATED);
+        addEvent(3, OutboxEvent.Type.IMAGE_CREATED);
+
+        RecordingSubscriber images = new RecordingSubscriber(ImageEventBatch.IMAGE_EVENTS, 0);
+        OutboxRelay relay = createRelay(Collections.singletonList(images), 3, Duration.ZERO);
+
+        assertEquals(1, relay.relayEvents());
+        assertEquals(Collections.singletonList(Collections.singletonList(2L)), images.batches);
+        assertEquals(3, relay.getPosition());
+    }
+
+    @Test
+    public void shouldWaitForIdsMissingAtSameTimeTogether() throws Exception {
+        Files.write(positionFile, "0".getBytes(StandardCharsets.US_ASCII));
+        addEvent(2, OutboxEvent.Type.IMAGE_CREATED);
+        addEvent(4, OutboxEvent.Type.IMAGE_CREATED);
+
+        RecordingSubscriber images = new RecordingSubscriber(ImageEventBatch.IMAGE_EVENTS, 0);
+        OutboxRelay relay = createRelay(Collections.singletonList(images), 3, Duration.ofMillis(200));
+
+        assertEquals(0, relay.relayEvents());
+        Thread.sleep(250);
+
+        // ids 1 and 3 were both found missing by the first read
+        assertEquals(2, relay.relayEvents());
+        assertEquals(4, relay.getPosition());
+    }
+
+    private OutboxRelay createRelay(List<EventSubscriber> subscribers, int maxAttempts, Duration gapTimeout) {
+        return new OutboxRelay(outboxManager, subscribers, positionFile, 2, maxAttempts, Duration.ofMillis(1),
+                gapTimeout, Duration.ofHours(1));
+    }
+
+    private void addEvent(long id, OutboxEvent.Type type) {
+        table.add(event(id, type));
+    }
+
+    private static OutboxEvent event(long id, OutboxEvent.Type type) {
+        OutboxEvent event = new OutboxEvent(type, (int) id);
+        event.setId(id);
+
+        return event;
+    }
+
+    private String readPosition() throws Exception {
+        return new String(Files.readAllBytes(positionFile), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,48 @@
+package com.upgrad.ImageHoster.common;
+
+import com.google.common.hash.Hashing;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PasswordHasherTest {
+    private final PasswordHasher passwordHasher = new PasswordHasher(1000);
+
+    @Test
+    public void shouldVerifySaltedHash() {
+        String hash = passwordHasher.hash("password");
+
+        assertTrue(hash.startsWith("pbkdf2_sha256$1000$"));
+        assertTrue(passwordHasher.verify("password", hash));
+        assertFalse(passwordHasher.verify("Password", hash));
+
+        // the same password is hashed with a new salt every time
+        assertNotEquals(hash, passwordHasher.hash("password"));
+        assertFalse(passwordHasher.needsRehash(hash));
+    }
+
+    @Test
+    public void shouldVerifyLegacyHashAndAskForRehash() {
+        // the hashes stored by the first version of the application
+        String legacyHash = Hashing.sha256().hashString("pässword").toString();
+
+        assertTrue(passwordHasher.verify("pässword", legacyHash));
+        assertFalse(passwordHasher.verify("password", legacyHash));
+        assertTrue(passwordHasher.needsRehash(legacyHash));
+    }
+
+    @Test
+    public void shouldAskForRehashOfWeakerHash() {
+        String weakerHash = new PasswordHasher(500).hash("password");
+
+        assertTrue(passwordHasher.verify("password", weakerHash));
+        assertTrue(passwordHasher.needsRehash(weakerHash));
+    }
+
+    @Test
+    public void shouldRejectMalformedHash() {
+        assertFalse(passwordHasher.verify("password", null));
+        assertFalse(passwordHasher.verify("password", "pbkdf2_sha256$1000$!!$!!"));
+        assertFalse(passwordHasher.verify("password", ""));
+    }
+}
@@ -0,0 +1,67 @@
+package com.upgrad.ImageHoster.common;
+
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.*;
+
+public class PerceptualHashTest {
+
+    @Test
+    public void shouldHashResizedAndRecompressedCopiesAlike() throws Exception {
+        BufferedImage original = drawing(800, 600, Color.BLUE);
+
+        // a smaller copy, saved as a low quality JPEG
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageScaler.writeJpeg(ImageScaler.scaleToFit(original, 300), 0.5f, jpeg);
+        BufferedImage copy = ImageIO.read(new ByteArrayInputStream(jpeg.toByteArray()));
+
+        long hash = PerceptualHash.dHash(original);
+
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.dHash(copy)) <= 4);
+        // the same shapes mirrored look different
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.dHash(mirrored(original))) > 10);
+    }
+
+    @Test
+    public void shouldCountDifferentBits() {
+        assertEquals(0, PerceptualHash.distance(-1L, -1L));
+        assertEquals(64, PerceptualHash.distance(0L, -1L));
+        assertEquals(2, PerceptualHash.distance(0b1010L, 0b0110L));
+    }
+
+    // a picture with a gradient and a few shapes
+    private static BufferedImage drawing(int width, int height, Color color) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+
+        for (int x = 0; x < width; x++) {
+            int gray = 255 * x / width;
+            graphics.setColor(new Color(gray, gray, gray));
+            graphics.drawLine(x, 0, x, height);
+        }
+
+        graphics.setColor(color);
+        graphics.fillOval(width / 10, height / 5, width / 3, height / 2);
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(width / 2, height / 8, width / 5, height / 4);
+        graphics.dispose();
+
+        return image;
+    }
+
+    private static BufferedImage mirrored(BufferedImage image) {
+        BufferedImage mirror = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = mirror.createGraphics();
+        graphics.drawImage(image, image.getWidth(), 0, -image.getWidth(), image.getHeight(), null);
+        graphics.dispose();
+
+        return mirror;
+    }
+}
@@ -0,0 +1,174 @@
+package com.upgrad.ImageHoster.common;
+
+import com.google.common.base.Ticker;
+import com.upgrad.ImageHoster.common.RenderedPageCache.RenderedPage;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class RenderedPageCacheTest {
+
+    /**
+     * A Ticker that only moves when the test advances it
+     */
+    private static class ManualTicker extends Ticker {
+        long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+    }
+
+    /**
+     * An Executor that runs its tasks when the test asks it to
+     */
+    private static class ManualExecutor implements Executor {
+        final Queue<Runnable> tasks = new ArrayDeque<Runnable>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.poll().run();
+            }
+        }
+    }
+
+    private final ManualTicker ticker = new ManualTicker();
+    private final ManualExecutor executor = new ManualExecutor();
+    private final RenderedPageCache cache = new RenderedPageCache(executor, 10, 1, TimeUnit.MINUTES, ticker);
+    private final AtomicInteger renders = new AtomicInteger();
+
+    // renders a page that shows images 1 and 2, numbered by the render
+    private final Supplier<RenderedPage> renderer = () -> new RenderedPage("page " + renders.incrementAndGet(),
+            new HashSet<String>(Arrays.asList(RenderedPageCache.imageKey(1), RenderedPageCache.imageKey(2))));
+
+    @Test
+    public void shouldRenderEachPageOnce() {
+        assertNull(cache.getIfPresent("home", renderer));
+        assertEquals("page 1", cache.get("home", renderer));
+        assertEquals("page 1", cache.get("home", renderer));
+        assertEquals("page 1", cache.getIfPresent("home", renderer));
+
+        assertEquals(1, renders.get());
+    }
+
+    @Test
+    public void shouldServeStalePageWhileItIsRenderedAgain() {
+        cache.get("home", renderer);
+
+        cache.invalidate(Collections.singleton(RenderedPageCache.imageKey(2)));
+
+        // the page is rendered again in the background, only once
+        assertEquals("page 1", cache.get("home", renderer));
+        assertEquals("page 1", cache.get("home", renderer));
+        assertEquals(1, executor.tasks.size());
+
+        executor.runAll();
+
+        assertEquals("page 2", cache.get("home", renderer));
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    public void shouldNotInvalidatePagesThatDoNotShowTheChangedData() {
+        cache.get("home", renderer);
+
+        cache.invalidate(Arrays.asList(RenderedPageCache.imageKey(3), RenderedPageCache.tagKey("cat")));
+
+        assertEquals("page 1", cache.get("home", renderer));
+        assertTrue(executor.tasks.isEmpty());
+    }
+
+    @Test
+    public void shouldRenderPageAgainAfterTimeToLive() {
+        cache.get("home", renderer);
+
+        ticker.nanos += TimeUnit.MINUTES.toNanos(1);
+
+        assertEquals("page 1", cache.get("home", renderer));
+        executor.runAll();
+        assertEquals("page 2", cache.get("home", renderer));
+    }
+
+    @Test
+    public void shouldKeepPageStaleIfItWasInvalidatedWhileRendering() {
+        Supplier<RenderedPage> invalidatingRenderer = () -> {
+            // a write that the queries of the render did not see
+            cache.invalidate(Collections.singleton(RenderedPageCache.imageKey(1)));
+            return renderer.get();
+        };
+
+        assertEquals("page 1", cache.get("home", invalidatingRenderer));
+        assertEquals("page 1", cache.get("home", renderer));
+        executor.runAll();
+        assertEquals("page 2", cache.get("home", renderer));
+    }
+
+    @Test
+    public void shouldNotCachePagesThatFailedToRender() {
+        try {
+            cache.get("home", () -> {
+                throw new IllegalArgumentException("invalid cursor");
+            });
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        assertNull(cache.getIfPresent("home", renderer));
+    }
+
+    @Test
+    public void shouldRenderMissingPageOnceForConcurrentRequests() throws Exception {
+        CountDownLatch rendering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<RenderedPage> slowRenderer = () -> {
+            rendering.countDown();
+
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+
+            return renderer.get();
+        };
+
+        ExecutorService requests = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<String> first = requests.submit(() -> cache.get("home", slowRenderer));
+            rendering.await();
+            Future<String> second = requests.submit(() -> cache.get("home", slowRenderer));
+
+            // gives the second request time to find the render in progress
+            Thread.sleep(50);
+            release.countDown();
+
+            assertEquals("page 1", first.get(5, TimeUnit.SECONDS));
+            assertEquals("page 1", second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, renders.get());
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+}
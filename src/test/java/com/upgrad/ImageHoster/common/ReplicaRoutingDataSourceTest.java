@@ -0,0 +1,209 @@
+package com.upgrad.ImageHoster.common;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs against three in-memory databases, which stand in for the primary
+ * and two replicas. Each one has a table with its name in it
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    /**
+     * A database that can be taken down and brought back up by the test
+     */
+    private static class FlakyDataSource extends JdbcDataSource {
+        volatile boolean down;
+
+        FlakyDataSource(String name) {
+            setURL(url(name));
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (down) {
+                throw new SQLException("connection refused");
+            }
+
+            return super.getConnection();
+        }
+    }
+
+    private static final String[] DATABASES = {"primary", "replica1", "replica2"};
+
+    private final FlakyDataSource primary = new FlakyDataSource("primary");
+    private final FlakyDataSource replica1 = new FlakyDataSource("replica1");
+    private final FlakyDataSource replica2 = new FlakyDataSource("replica2");
+    private ReplicaRoutingDataSource dataSource;
+
+    @BeforeClass
+    public static void createDatabases() throws SQLException {
+        for (String name : DATABASES) {
+            JdbcDataSource database = new JdbcDataSource();
+            database.setURL(url(name));
+
+            try (Connection connection = database.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("create table if not exists DatabaseName (name varchar(16))");
+                statement.execute("delete from DatabaseName");
+                statement.execute("insert into DatabaseName values ('" + name + "')");
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        ReadRouting.bind(null);
+
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void shouldSendReadOnlySessionsOfRequestsToReplica() throws Exception {
+        dataSource = new ReplicaRoutingDataSource(primary, Collections.singletonList(replica1), Duration.ofHours(1));
+        ReadRouting.bind(new ReadRouting(0));
+
+        assertEquals("replica1", readOnlyDatabaseName());
+        // a session that may write uses the primary
+        try (Connection connection = dataSource.getConnection()) {
+            assertEquals("primary", databaseName(connection));
+        }
+    }
+
+    @Test
+    public void shouldReadFromPrimaryOutsideOfRequests() throws Exception {
+        dataSource = new ReplicaRoutingDataSource(primary, Collections.singletonList(replica1), Duration.ofHours(1));
+
+        assertEquals("primary", readOnlyDatabaseName());
+    }
+
+    @Test
+    public void shouldReadFromPrimaryAfterRequestWrote() throws Exception {
+        dataSource = new ReplicaRoutingDataSource(primary, Collections.singletonList(replica1), Duration.ofHours(1));
+        ReadRouting.bind(new ReadRouting(0));
+
+        ReadRouting.recordWrite();
+
+        assertEquals("primary", readOnlyDatabaseName());
+    }
+
+    @Test
+    public void shouldReadFromPrimaryRightAfterSessionWrote() throws Exception {
+        dataSource = new ReplicaRoutingDataSource(primary, Collections.singletonList(replica1), Duration.ofHours(1));
+        // an earlier request of the HTTP session wrote a moment ago
+        ReadRouting.bind(new ReadRouting(System.currentTimeMillis() + 60000));
+
+        assertEquals("primary", readOnlyDatabaseName());
+
+        ReadRouting.bind(new ReadRouting(System.currentTimeMillis() - 1));
+
+        assertEquals("replica1", readOnlyDatabaseName());
+    }
+
+    @Test
+    public void shouldSendReadsToReplicaWithFewestConnectionsOut() throws Exception {
+        dataSource = new ReplicaRoutingDataSource(primary, Arrays.asList(replica1, replica2), Duration.ofHours(1));
+        ReadRouting.bind(new ReadRouting(0));
+
+        try (Connection first = readOnlyConnection()) {
+            String firstName = databaseName(first);
+
+            try (Connection second = readOnlyConnection()) {
+                // the other replica has no connections out
+                assertNotEquals(firstName, databaseName(second));
+            }
+
+            // the second replica's connection was closed
+            assertNotEquals(firstName, readOnlyDatabaseName());
+        }
+    }
+
+    @Test
+    public void shouldReadFromOtherDatabasesWhileReplicaIsDown() throws Exception {
+        dataSource = new ReplicaRoutingDataSource(primary, Collections.singletonList(replica1), Duration.ofHours(1));
+        ReadRouting.bind(new ReadRouting(0));
+
+        replica1.down = true;
+
+        assertEquals("primary", readOnlyDatabaseName());
+        assertEquals(0, dataSource.getHealthyReplicaCount());
+
+        // the replica is used again once it passes a health check
+        replica1.down = false;
+        assertEquals("primary", readOnlyDatabaseName());
+        dataSource.checkReplicas();
+
+        assertEquals(1, dataSource.getHealthyReplicaCount());
+        assertEquals("replica1", readOnlyDatabaseName());
+    }
+
+    @Test
+    public void shouldFindReplicaThatIsDownWithHealthCheck() throws Exception {
+        dataSource = new ReplicaRoutingDataSource(primary, Arrays.asList(replica1, replica2), Duration.ofHours(1));
+        ReadRouting.bind(new ReadRouting(0));
+
+        replica2.down = true;
+        dataSource.checkReplicas();
+
+        assertEquals(1, dataSource.getHealthyReplicaCount());
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("replica1", readOnlyDatabaseName());
+        }
+    }
+
+    private Connection readOnlyConnection() throws SQLException {
+        AtomicReference<Connection> connection = new AtomicReference<Connection>();
+        AtomicReference<SQLException> failure = new AtomicReference<SQLException>();
+
+        ReplicaRoutingDataSource.runReadOnly(() -> {
+            try {
+                connection.set(dataSource.getConnection());
+            } catch (SQLException e) {
+                failure.set(e);
+            }
+        });
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        return connection.get();
+    }
+
+    private String readOnlyDatabaseName() throws SQLException {
+        try (Connection connection = readOnlyConnection()) {
+            return databaseName(connection);
+        }
+    }
+
+    /**
+     * This helper function reads the name of the database of a connection
+     */
+    private static String databaseName(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("select name from DatabaseName")) {
+            result.next();
+
+            return result.getString(1);
+        }
+    }
+
+    private static String url(String name) {
+        return "jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1";
+    }
+}
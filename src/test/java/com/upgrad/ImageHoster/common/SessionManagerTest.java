@@ -0,0 +1,39 @@
+package com.upgrad.ImageHoster.common;
+
+import org.hibernate.Session;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs against the in-memory database of src/test/resources/hibernate.cfg.xml,
+ * which has a username and a password like the production configuration
+ */
+public class SessionManagerTest {
+
+    @AfterClass
+    public static void tearDown() {
+        SessionManager.shutdown();
+    }
+
+    @Test
+    public void shouldConnectWithCredentialsOfConfigurationThroughPool() {
+        SessionManager sessionManager = new SessionManager();
+        Session session = sessionManager.openSession();
+
+        try {
+            // hibernate would ask the pool for getConnection(user, password)
+            // if the credentials were left in its settings, which the pool
+            // does not support
+            String user = session.doReturningWork(connection -> connection.getMetaData().getUserName());
+            sessionManager.commitSession(session);
+
+            assertEquals("SA", user);
+        } finally {
+            sessionManager.closeSession(session);
+        }
+
+        assertEquals(0, SessionManager.getPoolMetrics().getActiveConnections());
+    }
+}
@@ -0,0 +1,88 @@
+package com.upgrad.ImageHoster.common;
+
+import com.upgrad.ImageHoster.model.SessionPrincipal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class StoredSessionRepositoryTest {
+    private SessionStore store;
+    private StoredSessionRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        store = Mockito.mock(SessionStore.class);
+        repository = new StoredSessionRepository(store, Duration.ofMinutes(30), Duration.ofMinutes(1),
+                Duration.ofHours(1));
+    }
+
+    @After
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    public void shouldReadBackSavedPrincipal() throws Exception {
+        StoredSessionRepository.StoredSession session = repository.createSession();
+        session.setAttribute("currUser", new SessionPrincipal(7, "upgrad", 3));
+        repository.save(session);
+
+        byte[] data = captureSavedData(session.getId());
+        when(store.load(eq(session.getId()), anyLong())).thenReturn(data);
+
+        SessionPrincipal principal = repository.findById(session.getId()).getAttribute("currUser");
+        assertEquals(7, principal.getUserId());
+        assertEquals("upgrad", principal.getUsername());
+        assertEquals(3, principal.getVersion());
+    }
+
+    @Test
+    public void shouldOnlyWriteBackChangedOrStaleSessions() throws Exception {
+        StoredSessionRepository.StoredSession session = repository.createSession();
+        repository.save(session);
+        byte[] data = captureSavedData(session.getId());
+        when(store.load(eq(session.getId()), anyLong())).thenReturn(data);
+
+        // a request that only reads the session does not write it
+        StoredSessionRepository.StoredSession loaded = repository.findById(session.getId());
+        loaded.setLastAccessedTime(loaded.getLastAccessedTime().plusSeconds(10));
+        repository.save(loaded);
+        verify(store, times(1)).save(eq(session.getId()), any(), anyLong());
+
+        // after the touch interval it is written, to move its expiry
+        loaded.setLastAccessedTime(loaded.getLastAccessedTime().plusSeconds(60));
+        repository.save(loaded);
+        verify(store, times(2)).save(eq(session.getId()), any(), anyLong());
+
+        loaded.setAttribute("currUser", new SessionPrincipal(1, "upgrad", 0));
+        repository.save(loaded);
+        verify(store, times(3)).save(eq(session.getId()), any(), anyLong());
+    }
+
+    @Test
+    public void shouldDeleteExpiredSession() throws Exception {
+        StoredSessionRepository.StoredSession session = repository.createSession();
+        session.setLastAccessedTime(Instant.now().minus(Duration.ofHours(1)));
+        repository.save(session);
+        byte[] data = captureSavedData(session.getId());
+        when(store.load(eq(session.getId()), anyLong())).thenReturn(data);
+
+        assertNull(repository.findById(session.getId()));
+        verify(store).delete(session.getId());
+    }
+
+    private byte[] captureSavedData(String id) throws Exception {
+        ArgumentCaptor<byte[]> data = ArgumentCaptor.forClass(byte[].class);
+        verify(store, atLeastOnce()).save(eq(id), data.capture(), anyLong());
+
+        return data.getValue();
+    }
+}
@@ -0,0 +1,39 @@
+package com.upgrad.ImageHoster.common;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TagIndexTest {
+
+    @Test
+    public void shouldFindNamesByPrefixInOrder() {
+        TagIndex index = new TagIndex();
+        index.addAll(Arrays.asList("kitty", "cat", "kitten", "kit", "dog"));
+
+        assertEquals(Arrays.asList("kit", "kitten", "kitty"), index.findByPrefix("kit", 10));
+        assertEquals(Arrays.asList("cat"), index.findByPrefix("c", 10));
+        assertTrue(index.findByPrefix("z", 10).isEmpty());
+    }
+
+    @Test
+    public void shouldLimitNumberOfNames() {
+        TagIndex index = new TagIndex();
+        index.addAll(Arrays.asList("kitty", "kitten", "kit"));
+
+        assertEquals(Arrays.asList("kit", "kitten"), index.findByPrefix("ki", 2));
+    }
+
+    @Test
+    public void shouldFindNamesAddedLater() {
+        TagIndex index = new TagIndex();
+        index.add("sun");
+        index.add("sunset");
+        index.add("sun");
+
+        assertEquals(2, index.size());
+        assertEquals(Arrays.asList("sunset"), index.findByPrefix("suns", 10));
+    }
+}
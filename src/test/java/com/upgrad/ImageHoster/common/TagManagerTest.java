@@ -0,0 +1,97 @@
+package com.upgrad.ImageHoster.common;
+
+import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.OutboxEvent;
+import com.upgrad.ImageHoster.model.ProfilePhoto;
+import com.upgrad.ImageHoster.model.Tag;
+import com.upgrad.ImageHoster.model.User;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs against the in-memory database of src/test/resources/hibernate.cfg.xml
+ */
+public class TagManagerTest {
+
+    @AfterClass
+    public static void tearDown() {
+        SessionManager.shutdown();
+    }
+
+    @Test
+    public void shouldMergeTagsStoredBeforeNamesWereNormalized() {
+        TagManager tagManager = new TagManager();
+        ImageManager imageManager = new ImageManager();
+        ProfilePhoto photo = new ProfilePhoto(String.format("%064d", 1), 10, "image/png");
+        new ProfilePhotoManager().saveProfilePhoto(photo);
+        User user = new UserManager().registerUser(new User("tagmanager", "hash", photo));
+
+        // the tags of a database from before names were normalized
+        Tag upperCase = tagManager.createTag(new Tag("Cat"));
+        Tag lowerCase = tagManager.createTag(new Tag("cat"));
+        Tag padded = tagManager.createTag(new Tag(" CAT "));
+        Tag spaced = tagManager.createTag(new Tag("Black  Cat"));
+        tagManager.createTag(new Tag("dog"));
+
+        Image both = new Image("both", "description", String.format("%064d", 1), 100, "image/jpeg", user,
+                Arrays.asList(upperCase, lowerCase));
+        imageManager.saveImage(both);
+        Image other = new Image("other", "description", String.format("%064d", 2), 100, "image/jpeg", user,
+                Arrays.asList(padded, spaced));
+        imageManager.saveImage(other);
+
+        long lastEventId = new OutboxManager().getMaxEventId();
+
+        // "cat" and " CAT " are merged into "Cat", which is renamed, and "Black  Cat" is renamed
+        assertEquals(4, tagManager.normalizeNames(TagManagerTest::normalize));
+        tagManager.createNameIndex();
+
+        assertEquals(new TreeSet<String>(Arrays.asList("black cat", "cat", "dog")),
+                new TreeSet<String>(tagManager.getAllTagNames()));
+        assertEquals(upperCase.getId(), tagManager.findTag("cat").getId());
+        assertEquals(Collections.singletonList("cat"), tagNames(imageManager.getImageByIdWithJoins(both.getId())));
+        assertEquals(Arrays.asList("black cat", "cat"),
+                tagNames(imageManager.getImageByIdWithJoins(other.getId())));
+
+        List<OutboxEvent> events = new OutboxManager().getEventsAfter(lastEventId, 10);
+        Set<String> published = new TreeSet<String>();
+
+        for (OutboxEvent event : events) {
+            published.add(event.getType() + " " + (event.getType() == OutboxEvent.Type.TAG_RENAMED
+                    ? event.getEntityName() : String.valueOf(event.getEntityId())));
+        }
+
+        assertEquals(new TreeSet<String>(Arrays.asList("TAG_RENAMED cat", "TAG_RENAMED black cat",
+                "IMAGE_UPDATED " + both.getId(), "IMAGE_UPDATED " + other.getId())), published);
+
+        // the names are normalized now, and the index already exists
+        assertEquals(0, tagManager.normalizeNames(TagManagerTest::normalize));
+        tagManager.createNameIndex();
+    }
+
+    private static String normalize(String name) {
+        return name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> tagNames(Image image) {
+        List<String> names = new ArrayList<String>();
+
+        for (Tag tag : image.getTags()) {
+            names.add(tag.getName());
+        }
+
+        Collections.sort(names);
+
+        return names;
+    }
+}
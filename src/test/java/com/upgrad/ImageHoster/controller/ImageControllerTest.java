@@ -2,13 +2,25 @@ package com.upgrad.ImageHoster.controller;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
+import com.upgrad.ImageHoster.common.ImageTooLargeException;
+import com.upgrad.ImageHoster.common.RenderedPageCache;
+import com.upgrad.ImageHoster.common.StoredBlob;
+import com.upgrad.ImageHoster.config.AsyncExecutorConfiguration;
+import com.upgrad.ImageHoster.config.PageCacheConfiguration;
+import com.upgrad.ImageHoster.model.FeedPage;
 import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.ImageCard;
 import com.upgrad.ImageHoster.model.ProfilePhoto;
 import com.upgrad.ImageHoster.model.Tag;
+import com.upgrad.ImageHoster.model.SessionPrincipal;
 import com.upgrad.ImageHoster.model.User;
+import com.upgrad.ImageHoster.service.BlobService;
 import com.upgrad.ImageHoster.service.ImageService;
+import com.upgrad.ImageHoster.service.SimilarImageService;
 import com.upgrad.ImageHoster.service.TagService;
 import com.upgrad.ImageHoster.service.UserService;
+import com.upgrad.ImageHoster.service.ViewCountService;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
@@ -16,14 +28,20 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.mock.web.MockHttpSession;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.Matchers.containsString;
@@ -33,10 +51,14 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(ImageController.class)
+@Import({AsyncExecutorConfiguration.class, PageCacheConfiguration.class})
 public class ImageControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private RenderedPageCache pageCache;
+
     @MockBean
     private ImageService imageService;
 
@@ -46,12 +68,31 @@ public class ImageControllerTest {
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private BlobService blobService;
+
+    @MockBean
+    private ViewCountService viewCountService;
+
+    @MockBean
+    private SimilarImageService similarImageService;
+
     protected MockHttpSession session;
 
+    @Before
+    public void setUp() {
+        // every test renders the pages from its own mocks
+        pageCache.invalidateAll();
+
+        // setup the mock imageService to return an empty feed by default
+        Mockito.when(imageService.getFeed(Mockito.any(), Mockito.anyInt()))
+                .thenReturn(new FeedPage<ImageCard>(Collections.<ImageCard>emptyList(), null));
+    }
+
     @Test
     public void shouldRenderHomePageAsVisitor() throws Exception {
         // checks to see if the returned view contains the string "Sign in"
-        this.mockMvc.perform(get("/"))
+        performAsync(get("/"))
                 .andExpect(content().string(containsString("Sign in")));
     }
 
@@ -60,26 +101,76 @@ public class ImageControllerTest {
         // adds a user to the mock session to simulate that the user has signed in
         User user = new User();
         session = new MockHttpSession();
-        session.setAttribute("currUser", user);
+        signIn(session, user);
 
         // checks to see if the returned view contains the string "Sign out"
-        this.mockMvc.perform(get("/").session(session))
+        performAsync(get("/").session(session))
                 .andExpect(content().string(containsString("Sign out")));
     }
 
     @Test
     public void shouldRenderHomePageWithOneImage() throws Exception {
         // create a mock image
-        Image image = new Image();
-        image.setTitle("This is an image");
-        image.setUploadDate(LocalDate.now());
+        ImageCard image = new ImageCard(1, "This is an image", LocalDate.now(), null, 0);
 
-        // setup the mock imageService to return the mock image as a List<Image>;
-        Mockito.when(imageService.getAll()).thenReturn(Arrays.asList(image));
+        // setup the mock imageService to return the mock image as the first page of the feed
+        Mockito.when(imageService.getFeed(Mockito.isNull(), Mockito.anyInt()))
+                .thenReturn(new FeedPage<ImageCard>(Arrays.asList(image), null));
 
         // checks to see if the returned view contains the title of the image
-        this.mockMvc.perform(get("/"))
+        performAsync(get("/"))
+                .andExpect(content().string(containsString("This is an image")));
+    }
+
+    @Test
+    public void shouldLinkToNextPageOfHomePage() throws Exception {
+        ImageCard image = new ImageCard(1, "This is an image", LocalDate.now(), null, 0);
+
+        // setup the mock imageService to return a page that is followed by another one
+        Mockito.when(imageService.getFeed(Mockito.eq("abc"), Mockito.anyInt()))
+                .thenReturn(new FeedPage<ImageCard>(Arrays.asList(image), "def"));
+
+        // checks to see if the returned view links to the next page
+        performAsync(get("/").param("cursor", "abc"))
+                .andExpect(content().string(containsString("This is an image")))
+                .andExpect(content().string(containsString("/?cursor=def")));
+    }
+
+    @Test
+    public void shouldServeHomePageFromCacheUntilItIsRenderedAgain() throws Exception {
+        ImageCard image = new ImageCard(1, "This is an image", LocalDate.now(), null, 0);
+
+        Mockito.when(imageService.getFeed(Mockito.isNull(), Mockito.anyInt()))
+                .thenReturn(new FeedPage<ImageCard>(Arrays.asList(image), null));
+
+        performAsync(get("/"))
+                .andExpect(content().string(containsString("This is an image")));
+        performAsync(get("/"))
                 .andExpect(content().string(containsString("This is an image")));
+
+        // the second request is answered with the page rendered by the first
+        Mockito.verify(imageService, Mockito.times(1)).getFeed(Mockito.isNull(), Mockito.anyInt());
+    }
+
+    @Test
+    public void shouldCacheHomePageSeparatelyForSignedInUsers() throws Exception {
+        session = new MockHttpSession();
+        signIn(session, new User());
+
+        performAsync(get("/"))
+                .andExpect(content().string(containsString("Sign in")));
+        performAsync(get("/").session(session))
+                .andExpect(content().string(containsString("Sign out")));
+    }
+
+    @Test
+    public void shouldRedirectInvalidCursorToFirstPage() throws Exception {
+        Mockito.when(imageService.getFeed(Mockito.eq("invalid"), Mockito.anyInt()))
+                .thenThrow(new IllegalArgumentException());
+
+        performAsync(get("/").param("cursor", "invalid"))
+                .andExpect(status().is(302))
+                .andExpect(redirectedUrl("/"));
     }
 
     @Test
@@ -108,12 +199,37 @@ public class ImageControllerTest {
     }
 
 
+    @Test
+    public void shouldCountViewWithoutUpdatingImage() throws Exception {
+        User user = new User();
+        user.setProfilePhoto(new ProfilePhoto());
+        user.setUsername("My Username");
+
+        Image image = new Image();
+        image.setUser(user);
+        image.setTitle("This is an image");
+        image.setUploadDate(LocalDate.now());
+        image.setNumView(5);
+
+        Mockito.when(imageService.getByIdWithJoin(1)).thenReturn(image);
+        Mockito.when(viewCountService.getPendingViews(1)).thenReturn(2L);
+
+        // checks to see if the view count includes the views that are not written yet
+        this.mockMvc.perform(get("/images/1"))
+                .andExpect(content().string(containsString("This is an image")))
+                .andExpect(content().string(containsString("7 views")));
+
+        // checks to see if the view was counted without writing the image
+        Mockito.verify(viewCountService).recordView(1);
+        Mockito.verify(imageService, Mockito.never()).update(Mockito.any());
+    }
+
     @Test
     public void shouldRenderUploadPage() throws Exception {
         // adds a user to the mock session to simulate that the user has signed in
         User user = new User();
         session = new MockHttpSession();
-        session.setAttribute("currUser", user);
+        signIn(session, user);
 
         // checks to see if the returned view contains the string "Upload a new image"
         this.mockMvc.perform(get("/images/upload").session(session))
@@ -125,16 +241,19 @@ public class ImageControllerTest {
         // adds a user to the mock session to simulate that the user has signed in
         User user = new User();
         session = new MockHttpSession();
-        session.setAttribute("currUser", user);
+        signIn(session, user);
 
         // creates a mock file to simulate an uploaded file
         MockMultipartFile mockImage = new MockMultipartFile("file", "image.jpg", "image/jpeg", "some image".getBytes());
 
+        // setup the mock blobService to return the stored file
+        Mockito.when(blobService.saveImage(Mockito.any())).thenReturn(new StoredBlob("hash", 10, "image/jpeg"));
+
         // create a mock tag string
         String tags = "tag1, tag2";
 
         // checks to see if we redirect to the correct URL once the image has been uploaded
-        this.mockMvc.perform(multipart("/upload")
+        performAsync(multipart("/upload")
                 .file(mockImage)
                 .session(session)
                 .param("title", "someImageTitle")
@@ -144,12 +263,77 @@ public class ImageControllerTest {
                 .andExpect(redirectedUrl("/images/someImageTitle"));
     }
 
+    @Test
+    public void shouldShowSimilarImagesBeforeUploading() throws Exception {
+        User user = new User();
+        session = new MockHttpSession();
+        signIn(session, user);
+
+        MockMultipartFile mockImage = new MockMultipartFile("file", "image.jpg", "image/jpeg", "some image".getBytes());
+        Mockito.when(blobService.saveImage(Mockito.any())).thenReturn(new StoredBlob("hash", 10, "image/jpeg"));
+
+        // setup the mock similarImageService to find an image that looks like the upload
+        Mockito.when(similarImageService.computeHash(Mockito.any(InputStream.class))).thenReturn(42L);
+        Mockito.when(similarImageService.findSimilar(Mockito.eq(42L), Mockito.anyInt()))
+                .thenReturn(Collections.singletonList(new ImageCard(7, "Older copy", LocalDate.now(), "hash", 0)));
+
+        // checks to see if the form is shown again with the similar image,
+        // and the image is not saved
+        performAsync(multipart("/upload")
+                .file(mockImage)
+                .session(session)
+                .param("title", "someImageTitle")
+                .param("description", "description")
+                .param("tags", "tag1"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Images that look like this one")))
+                .andExpect(content().string(containsString("/images/7")))
+                .andExpect(content().string(containsString("value=\"someImageTitle\"")));
+
+        // the upload is not stored either
+        Mockito.verify(imageService, Mockito.never()).save(Mockito.any());
+        Mockito.verify(blobService, Mockito.never()).saveImage(Mockito.any());
+    }
+
+    @Test
+    public void shouldRejectUploadWithTooManyPixels() throws Exception {
+        User user = new User();
+        session = new MockHttpSession();
+        signIn(session, user);
+
+        MockMultipartFile mockImage = new MockMultipartFile("file", "image.png", "image/png", "some image".getBytes());
+        Mockito.when(similarImageService.computeHash(Mockito.any(InputStream.class)))
+                .thenThrow(new ImageTooLargeException(1000));
+
+        performAsync(multipart("/upload")
+                .file(mockImage)
+                .session(session)
+                .param("title", "someImageTitle")
+                .param("description", "description")
+                .param("tags", "tag1"))
+                .andExpect(status().isPayloadTooLarge());
+
+        Mockito.verify(blobService, Mockito.never()).saveImage(Mockito.any());
+    }
+
+    @Test
+    public void shouldReturnSimilarImages() throws Exception {
+        Mockito.when(similarImageService.findSimilarTo(1, 50))
+                .thenReturn(Collections.singletonList(new ImageCard(7, "Older copy", LocalDate.now(), "hash", 0)));
+
+        // checks to see if the limit is capped and the images are returned as JSON
+        this.mockMvc.perform(get("/images/1/similar").param("limit", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(7))
+                .andExpect(jsonPath("$[0].title").value("Older copy"));
+    }
+
     @Test
     public void shouldDeleteImageOk() throws Exception {
         // adds a user to the mock session to simulate that the user has signed in
         User user = new User();
         session = new MockHttpSession();
-        session.setAttribute("currUser", user);
+        signIn(session, user);
 
         // setup the mock imageService to return an Image when trying
         // to retrieve an image by some image title;
@@ -166,7 +350,7 @@ public class ImageControllerTest {
         // adds a user to the mock session to simulate that the user has signed in
         User user = new User();
         session = new MockHttpSession();
-        session.setAttribute("currUser", user);
+        signIn(session, user);
 
         // creates mock Tags
         List<Tag> tags = new ArrayList<Tag>();
@@ -199,11 +383,14 @@ public class ImageControllerTest {
         // adds a user to the mock session to simulate that the user has signed in
         User user = new User();
         session = new MockHttpSession();
-        session.setAttribute("currUser", user);
+        signIn(session, user);
 
         // creates a mock uploaded file
         MockMultipartFile mockImage = new MockMultipartFile("file", "image.jpg", "image/jpeg", "some image".getBytes());
 
+        // setup the mock blobService to return the stored file
+        Mockito.when(blobService.saveImage(Mockito.any())).thenReturn(new StoredBlob("hash", 10, "image/jpeg"));
+
         // create a mock tag string
         String tags = "tag1, tag2";
 
@@ -212,7 +399,7 @@ public class ImageControllerTest {
         Mockito.when(imageService.getByTitleWithJoin(Mockito.anyString())).thenReturn(new Image());
 
         // checks to see if we redirect to the URL of the edited image
-        this.mockMvc.perform(multipart("/upload")
+        performAsync(multipart("/upload")
                 .file(mockImage)
                 .session(session)
                 .param("title", "someImageTitle")
@@ -221,4 +408,21 @@ public class ImageControllerTest {
                 .andExpect(status().is(302))
                 .andExpect(redirectedUrl("/images/someImageTitle"));
     }
+
+    // the endpoint returns a CompletableFuture, so the response is written
+    // by a second (async) dispatch once the future has completed
+    private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+        MvcResult result = this.mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        return this.mockMvc.perform(asyncDispatch(result));
+    }
+
+    // stores the principal of a user in the mock session, to simulate that
+    // the user has signed in, and lets the mock userService return the user
+    private void signIn(MockHttpSession session, User user) {
+        session.setAttribute("currUser", SessionPrincipal.of(user));
+        Mockito.when(userService.getCurrentUser(Mockito.any())).thenReturn(user);
+    }
 }
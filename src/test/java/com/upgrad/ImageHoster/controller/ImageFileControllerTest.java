@@ -0,0 +1,258 @@
+package com.upgrad.ImageHoster.controller;
+
+import com.upgrad.ImageHoster.config.AsyncExecutorConfiguration;
+import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.ProfilePhoto;
+import com.upgrad.ImageHoster.service.BlobService;
+import com.upgrad.ImageHoster.service.ImageService;
+import com.upgrad.ImageHoster.service.ProfilePhotoService;
+import com.upgrad.ImageHoster.service.RenditionService;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(ImageFileController.class)
+@Import(AsyncExecutorConfiguration.class)
+public class ImageFileControllerTest {
+    private static final String HASH = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    @Qualifier("databaseExecutor")
+    private ThreadPoolExecutor databaseExecutor;
+
+    @MockBean
+    private ImageService imageService;
+
+    @MockBean
+    private ProfilePhotoService profilePhotoService;
+
+    @MockBean
+    private BlobService blobService;
+
+    @MockBean
+    private RenditionService renditionService;
+
+    @Before
+    public void setUp() throws Exception {
+        // create a mock image stored in the blob store
+        Path file = folder.newFile(HASH).toPath();
+        Files.write(file, "0123456789".getBytes());
+
+        Image image = new Image();
+        image.setImageHash(HASH);
+        image.setImageSize(10);
+        image.setMimeType("image/png");
+
+        Mockito.when(imageService.getByIdWithoutJoin(Mockito.anyInt())).thenReturn(image);
+        Mockito.when(blobService.getLocalPath(HASH)).thenReturn(file);
+        Mockito.when(renditionService.getFormats()).thenReturn(Arrays.asList("image/webp", "image/jpeg"));
+    }
+
+    @Test
+    public void shouldWriteImageFile() throws Exception {
+        // checks to see if the response contains the stored bytes and can be cached
+        performAsync(get("/images/1/raw").param("v", HASH))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/png"))
+                .andExpect(content().bytes("0123456789".getBytes()))
+                .andExpect(header().string("ETag", "\"" + HASH + "\""))
+                .andExpect(header().string("Cache-Control", "public, max-age=31536000, immutable"));
+    }
+
+    @Test
+    public void shouldRevalidateUnversionedUrl() throws Exception {
+        performAsync(get("/images/1/raw"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "public, no-cache"));
+    }
+
+    @Test
+    public void shouldReturnNotModifiedForMatchingETag() throws Exception {
+        performAsync(get("/images/1/raw").header("If-None-Match", "\"" + HASH + "\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    public void shouldWriteRequestedRange() throws Exception {
+        performAsync(get("/images/1/raw").header("Range", "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 2-5/10"))
+                .andExpect(content().bytes("2345".getBytes()));
+    }
+
+    @Test
+    public void shouldRejectUnsatisfiableRange() throws Exception {
+        performAsync(get("/images/1/raw").header("Range", "bytes=20-30"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */10"));
+    }
+
+    @Test
+    public void shouldWriteRendition() throws Exception {
+        Path rendition = folder.newFile("w256.jpg").toPath();
+        Files.write(rendition, "small".getBytes());
+        Mockito.when(renditionService.getRendition(HASH, 200, "image/jpeg")).thenReturn(rendition);
+
+        // checks to see if the resized copy is sent instead of the original
+        performAsync(get("/images/1/raw").param("size", "200").param("v", HASH))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/jpeg"))
+                .andExpect(content().bytes("small".getBytes()))
+                .andExpect(header().string("ETag", "\"" + HASH + "-w256.jpg\""))
+                .andExpect(header().string("Vary", "Accept"));
+    }
+
+    @Test
+    public void shouldWriteOptimizedCopyInAcceptedFormat() throws Exception {
+        Path webp = folder.newFile("full.webp").toPath();
+        Files.write(webp, "webp".getBytes());
+        Path jpeg = folder.newFile("full.jpg").toPath();
+        Files.write(jpeg, "jpeg".getBytes());
+        Mockito.when(renditionService.getOptimized(HASH, "image/webp")).thenReturn(webp);
+        Mockito.when(renditionService.getOptimized(HASH, "image/jpeg")).thenReturn(jpeg);
+
+        // checks to see if the preferred format is sent to a client that accepts it
+        performAsync(get("/images/1/raw").header("Accept", "image/webp,image/*;q=0.8"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/webp"))
+                .andExpect(content().bytes("webp".getBytes()))
+                .andExpect(header().string("ETag", "\"" + HASH + "-full.webp\""));
+
+        performAsync(get("/images/1/raw").header("Accept", "image/jpeg,image/png"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/jpeg"))
+                .andExpect(content().bytes("jpeg".getBytes()));
+
+        // the original is sent to a client that accepts none of the copies
+        performAsync(get("/images/1/raw").header("Accept", "image/png"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/png"))
+                .andExpect(content().bytes("0123456789".getBytes()))
+                .andExpect(header().string("Vary", "Accept"));
+    }
+
+    @Test
+    public void shouldWriteOriginalUntilRenditionExists() throws Exception {
+        Mockito.when(renditionService.getRendition(Mockito.eq(HASH), Mockito.eq(200), Mockito.anyString()))
+                .thenReturn(null);
+        Mockito.when(renditionService.isCopyPending(Mockito.eq(HASH), Mockito.eq(200), Mockito.anyString()))
+                .thenReturn(true);
+
+        // the original must not be cached forever in place of the rendition
+        performAsync(get("/images/1/raw").param("size", "200").param("v", HASH))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes("0123456789".getBytes()))
+                .andExpect(header().string("Cache-Control", "public, no-cache"));
+    }
+
+    @Test
+    public void shouldRevalidateOriginalUntilOptimizedCopyExists() throws Exception {
+        Mockito.when(renditionService.getOptimized(Mockito.eq(HASH), Mockito.anyString())).thenReturn(null);
+        Mockito.when(renditionService.isCopyPending(Mockito.eq(HASH), Mockito.isNull(Integer.class),
+                Mockito.anyString())).thenReturn(true);
+
+        performAsync(get("/images/1/raw").param("v", HASH).header("Accept", "image/webp,image/*;q=0.8"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/png"))
+                .andExpect(header().string("Cache-Control", "public, no-cache"));
+
+        // the original is the very copy that a client that accepts no other format gets
+        performAsync(get("/images/1/raw").param("v", HASH).header("Accept", "image/png"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/png"))
+                .andExpect(header().string("Cache-Control", "public, max-age=31536000, immutable"));
+    }
+
+    @Test
+    public void shouldReturnNotFoundForMissingImage() throws Exception {
+        Mockito.when(imageService.getByIdWithoutJoin(Mockito.anyInt())).thenReturn(null);
+
+        performAsync(get("/images/1/raw"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void shouldWriteDefaultAvatar() throws Exception {
+        // a profile photo without a hash is rendered as the default avatar
+        Mockito.when(profilePhotoService.getById(Mockito.anyInt())).thenReturn(new ProfilePhoto());
+
+        performAsync(get("/photos/1/raw"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/png"));
+    }
+
+    @Test
+    public void shouldAnswerServiceUnavailableWhenExecutorIsSaturated() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            Runnable blocker = () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+
+            // occupies every thread and queue slot of the database executor.
+            // A thread that has just finished a task can still take one from
+            // the queue, so this waits until all of them are blocked
+            while (databaseExecutor.getActiveCount() < databaseExecutor.getMaximumPoolSize()
+                    || databaseExecutor.getQueue().remainingCapacity() > 0) {
+                try {
+                    databaseExecutor.execute(blocker);
+                } catch (RejectedExecutionException e) {
+                    Thread.yield();
+                }
+            }
+
+            this.mockMvc.perform(get("/images/1/raw"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    // the endpoint returns a CompletableFuture, so the response is written
+    // by a second (async) dispatch once the future has completed
+    private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+        MvcResult result = this.mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        return this.mockMvc.perform(asyncDispatch(result));
+    }
+}
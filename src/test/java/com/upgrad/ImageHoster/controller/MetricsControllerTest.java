@@ -0,0 +1,41 @@
+package com.upgrad.ImageHoster.controller;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(MetricsController.class)
+public class MetricsControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void shouldShowLatencyOfPreviousRequests() throws Exception {
+        this.mockMvc.perform(get("/metrics"));
+
+        // checks to see if the first request has been recorded by its controller method
+        this.mockMvc.perform(get("/metrics"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("# TYPE imagehoster_http_request_seconds summary")))
+                .andExpect(content().string(containsString(
+                        "imagehoster_http_request_seconds_count{name=\"MetricsController.showMetrics\"}")));
+    }
+
+    @Test
+    public void shouldHideMetricsFromRemoteClients() throws Exception {
+        this.mockMvc.perform(get("/metrics").with(request -> {
+            request.setRemoteAddr("203.0.113.7");
+            return request;
+        }))
+                .andExpect(status().isNotFound());
+    }
+}
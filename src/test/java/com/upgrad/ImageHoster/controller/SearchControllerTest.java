@@ -0,0 +1,54 @@
+package com.upgrad.ImageHoster.controller;
+
+import com.upgrad.ImageHoster.common.FeedCursor;
+import com.upgrad.ImageHoster.model.FeedPage;
+import com.upgrad.ImageHoster.model.ImageCard;
+import com.upgrad.ImageHoster.service.SearchService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(SearchController.class)
+public class SearchControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private SearchService searchService;
+
+    @Test
+    public void shouldRenderSearchResultsWithLinkToMoreResults() throws Exception {
+        ImageCard image = new ImageCard(1, "Sunset at the beach", LocalDate.now(), null, 0);
+        String nextCursor = FeedCursor.encode(24);
+
+        Mockito.when(searchService.search(Mockito.eq("sunset"), Mockito.isNull(), Mockito.anyInt()))
+                .thenReturn(new FeedPage<ImageCard>(Arrays.asList(image), nextCursor));
+
+        this.mockMvc.perform(get("/search").param("q", "sunset"))
+                .andExpect(content().string(containsString("Sunset at the beach")))
+                .andExpect(content().string(containsString("cursor=" + nextCursor)));
+    }
+
+    @Test
+    public void shouldRedirectToFirstPageIfCursorIsInvalid() throws Exception {
+        Mockito.when(searchService.search(Mockito.anyString(), Mockito.eq("invalid"), Mockito.anyInt()))
+                .thenThrow(new IllegalArgumentException("invalid feed cursor: invalid"));
+
+        this.mockMvc.perform(get("/search").param("q", "sunset").param("cursor", "invalid"))
+                .andExpect(redirectedUrl("/search?q=sunset"));
+    }
+}
@@ -1,13 +1,21 @@
 package com.upgrad.ImageHoster.controller;
 
-import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.common.RenderedPageCache;
+import com.upgrad.ImageHoster.config.AsyncExecutorConfiguration;
+import com.upgrad.ImageHoster.config.PageCacheConfiguration;
+import com.upgrad.ImageHoster.model.FeedPage;
+import com.upgrad.ImageHoster.model.ImageCard;
+import com.upgrad.ImageHoster.model.TagQuery;
 import com.upgrad.ImageHoster.service.ImageService;
+import com.upgrad.ImageHoster.service.TagService;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 
@@ -17,29 +25,104 @@ import java.util.Arrays;
 import static org.hamcrest.Matchers.containsString;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(TagController.class)
+@Import({AsyncExecutorConfiguration.class, PageCacheConfiguration.class})
 public class TagControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private RenderedPageCache pageCache;
+
     @MockBean
     private ImageService imageService;
 
+    @MockBean
+    private TagService tagService;
+
+    @Before
+    public void setUp() {
+        // every test renders the pages from its own mocks
+        pageCache.invalidateAll();
+    }
+
     @Test
     public void shouldRenderTagPageWithImage() throws Exception {
         // create a mock image
-        Image image = new Image();
-        image.setTitle("This is an image");
-        image.setUploadDate(LocalDate.now());
+        ImageCard image = new ImageCard(1, "This is an image", LocalDate.now(), null, 0);
 
         // setup the mock imageService to return the mock image when retrieving
         // an image by its tag;
-        Mockito.when(imageService.getByTag(Mockito.anyString())).thenReturn(Arrays.asList(image));
+        Mockito.when(imageService.getByTag(Mockito.anyString(), Mockito.isNull(), Mockito.anyInt()))
+                .thenReturn(new FeedPage<ImageCard>(Arrays.asList(image), null));
 
         // checks to see if the returned view contains the title of the mock image
         this.mockMvc.perform(get("/tags/someTag"))
                 .andExpect(content().string(containsString("This is an image")));
     }
+
+    @Test
+    public void shouldServeTagPageFromCache() throws Exception {
+        ImageCard image = new ImageCard(1, "This is an image", LocalDate.now(), null, 0);
+
+        Mockito.when(imageService.getByTag(Mockito.eq("sometag"), Mockito.isNull(), Mockito.anyInt()))
+                .thenReturn(new FeedPage<ImageCard>(Arrays.asList(image), null));
+
+        this.mockMvc.perform(get("/tags/someTag"))
+                .andExpect(content().string(containsString("This is an image")));
+        this.mockMvc.perform(get("/tags/ SOMETAG"))
+                .andExpect(content().string(containsString("This is an image")));
+
+        // the second request names the same tag, and is answered with the
+        // page rendered by the first
+        Mockito.verify(imageService, Mockito.times(1))
+                .getByTag(Mockito.eq("sometag"), Mockito.isNull(), Mockito.anyInt());
+    }
+
+    @Test
+    public void shouldRenderTagPageWithLinkToNextPage() throws Exception {
+        ImageCard image = new ImageCard(7, "A black cat", LocalDate.now(), null, 0);
+
+        Mockito.when(imageService.getByTag(Mockito.eq("black cat"), Mockito.eq("older"), Mockito.anyInt()))
+                .thenReturn(new FeedPage<ImageCard>(Arrays.asList(image), "next"));
+
+        this.mockMvc.perform(get("/tags/Black Cat").param("cursor", "older"))
+                .andExpect(content().string(containsString("A black cat")))
+                .andExpect(content().string(containsString("/tags/black%20cat?cursor=next")));
+    }
+
+    @Test
+    public void shouldRedirectToFirstTagPageForInvalidCursor() throws Exception {
+        Mockito.when(imageService.getByTag(Mockito.eq("cat"), Mockito.eq("bogus"), Mockito.anyInt()))
+                .thenThrow(new IllegalArgumentException("invalid feed cursor"));
+
+        this.mockMvc.perform(get("/tags/cat").param("cursor", "bogus"))
+                .andExpect(redirectedUrl("/tags/cat"));
+    }
+
+    @Test
+    public void shouldReturnTagSuggestionsAsJson() throws Exception {
+        Mockito.when(tagService.suggest("ki", 10)).thenReturn(Arrays.asList("kitten", "kitty"));
+
+        this.mockMvc.perform(get("/tags/suggest").param("q", "ki"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[\"kitten\",\"kitty\"]"));
+    }
+
+    @Test
+    public void shouldRenderTagSearchWithLinkToNextPage() throws Exception {
+        ImageCard image = new ImageCard(7, "A cat that is not a dog", LocalDate.now(), null, 0);
+
+        Mockito.when(imageService.searchByTags(Mockito.any(TagQuery.class), Mockito.isNull(), Mockito.anyInt()))
+                .thenReturn(new FeedPage<ImageCard>(Arrays.asList(image), "next"));
+
+        this.mockMvc.perform(get("/tags/search").param("all", "cat").param("none", "dog"))
+                .andExpect(content().string(containsString("A cat that is not a dog")))
+                .andExpect(content().string(containsString("cat and not dog")))
+                .andExpect(content().string(containsString("cursor=next")));
+    }
 }
@@ -1,7 +1,14 @@
 package com.upgrad.ImageHoster.controller;
 
+import com.upgrad.ImageHoster.common.StoredBlob;
+import com.upgrad.ImageHoster.common.UnsupportedImageTypeException;
+import com.upgrad.ImageHoster.config.AsyncExecutorConfiguration;
 import com.upgrad.ImageHoster.model.ProfilePhoto;
+import com.upgrad.ImageHoster.model.SessionPrincipal;
 import com.upgrad.ImageHoster.model.User;
+import com.upgrad.ImageHoster.model.UserCredentials;
+import com.upgrad.ImageHoster.service.AuthenticationService;
+import com.upgrad.ImageHoster.service.BlobService;
 import com.upgrad.ImageHoster.service.ProfilePhotoService;
 import com.upgrad.ImageHoster.service.UserService;
 import org.junit.Test;
@@ -11,10 +18,14 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.mock.web.MockHttpSession;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.testng.Assert;
 
 import javax.servlet.http.HttpSession;
@@ -26,6 +37,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(UserController.class)
+@Import(AsyncExecutorConfiguration.class)
 public class UserControllerTest {
     @Autowired
     private MockMvc mockMvc;
@@ -36,6 +48,12 @@ public class UserControllerTest {
     @MockBean
     private ProfilePhotoService profilePhotoService;
 
+    @MockBean
+    private BlobService blobService;
+
+    @MockBean
+    private AuthenticationService authenticationService;
+
     protected MockHttpSession session;
 
 
@@ -51,7 +69,7 @@ public class UserControllerTest {
         // adds a user to the mock session to simulate that an user has signed in
         User user = new User();
         session = new MockHttpSession();
-        session.setAttribute("currUser", user);
+        signIn(session, user);
 
         // checks to see if the user is redirected to home page when trying to
         // access the sign in page if he or she is signed in
@@ -107,7 +125,7 @@ public class UserControllerTest {
         // adds a user to the mock session to simulate that an user has logged in
         User user = new User();
         session = new MockHttpSession();
-        session.setAttribute("currUser", user);
+        signIn(session, user);
 
         // checks to see if the user is redirected to home page when trying
         // to access the sign in page
@@ -118,11 +136,11 @@ public class UserControllerTest {
 
     @Test
     public void shouldDisplayErrorInSigninPage() throws Exception {
-        Mockito.when(userService.getByName(Mockito.anyString())).thenReturn(null);
+        Mockito.when(authenticationService.authenticate(Mockito.anyString(), Mockito.anyString())).thenReturn(null);
 
         // checks to see if the view returns an error message if trying to
         // sign in with incorrect username or password
-        this.mockMvc.perform(post("/signin")
+        performAsync(post("/signin")
                 .param("username", "username")
                 .param("password", "12345678"))
                 .andExpect(content().string(containsString("Incorrect username or password")));
@@ -130,12 +148,12 @@ public class UserControllerTest {
 
     @Test
     public void shouldDirectToHomePageIfSignin() throws Exception {
-        User user = new User();
-        Mockito.when(userService.login(Mockito.anyString(), Mockito.anyString())).thenReturn(user);
+        Mockito.when(authenticationService.authenticate("username", "12345678"))
+                .thenReturn(new UserCredentials(1, "username", "hash", 3));
 
         // checks to see if the user is redirected to the home page after
         // signing in with the correct password and username
-        HttpSession session = this.mockMvc.perform(post("/signin")
+        HttpSession session = performAsync(post("/signin")
                 .param("username", "username")
                 .param("password", "12345678"))
                 .andExpect(status().is(302))
@@ -144,7 +162,11 @@ public class UserControllerTest {
                 .getRequest()
                 .getSession();
 
-        Assert.assertEquals(user, session.getAttribute("currUser"));
+        SessionPrincipal principal = (SessionPrincipal) session.getAttribute("currUser");
+        Assert.assertEquals(principal.getUsername(), "username");
+        Assert.assertEquals(3, principal.getVersion());
+        // the principal is created from the credentials, without loading the User
+        Mockito.verify(userService, Mockito.never()).getByName(Mockito.anyString());
     }
 
     @Test
@@ -157,7 +179,7 @@ public class UserControllerTest {
         user.setUsername(username);
 
         session = new MockHttpSession();
-        session.setAttribute("currUser", user);
+        signIn(session, user);
 
 
         // checks to see if the edit user view contains the username
@@ -182,11 +204,14 @@ public class UserControllerTest {
 
         // adds a user to the mock session
         session = new MockHttpSession();
-        session.setAttribute("currUser", user);
+        signIn(session, user);
 
         // creates a mock file to simulate a new uploaded profile image
         MockMultipartFile mockImage = new MockMultipartFile("file", "image.jpg", "image/jpeg", "some image".getBytes());
 
+        // setup the mock blobService to return the stored profile image
+        Mockito.when(blobService.saveImage(Mockito.any())).thenReturn(new StoredBlob("hash", 10, "image/jpeg"));
+
         // checks to see if we are redirected to the homepage if the user's profile
         // is updated successfully
         this.mockMvc.perform(multipart("/user/edit_profile")
@@ -196,4 +221,48 @@ public class UserControllerTest {
                 .andExpect(status().is(302))
                 .andExpect(redirectedUrl("/"));
     }
+
+    @Test
+    public void shouldRejectProfilePhotoThatIsNotAnImage() throws Exception {
+        // creates a mock user
+        User user = new User();
+        user.setProfilePhoto(new ProfilePhoto());
+
+        // adds a user to the mock session
+        session = new MockHttpSession();
+        signIn(session, user);
+
+        // creates a mock file that is not an image
+        MockMultipartFile mockFile = new MockMultipartFile("file", "photo.jpg", "image/jpeg", "not an image".getBytes());
+
+        // setup the mock blobService to reject the file
+        Mockito.when(blobService.saveImage(Mockito.any())).thenThrow(new UnsupportedImageTypeException());
+
+        // checks to see if the upload is answered with 415 and an error page,
+        // and the profile photo is left unchanged
+        this.mockMvc.perform(multipart("/user/edit_profile")
+                .file(mockFile)
+                .session(session)
+                .param("description", "description"))
+                .andExpect(status().isUnsupportedMediaType())
+                .andExpect(content().string(containsString("Your upload could not be saved")));
+        Mockito.verify(profilePhotoService, Mockito.never()).update(Mockito.any());
+    }
+
+    // sign in returns a CompletableFuture, so the response is written
+    // by a second (async) dispatch once the future has completed
+    private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+        MvcResult result = this.mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        return this.mockMvc.perform(asyncDispatch(result));
+    }
+
+    // stores the principal of a user in the mock session, to simulate that
+    // the user has signed in, and lets the mock userService return the user
+    private void signIn(MockHttpSession session, User user) {
+        session.setAttribute("currUser", SessionPrincipal.of(user));
+        Mockito.when(userService.getCurrentUser(Mockito.any())).thenReturn(user);
+    }
 }
@@ -0,0 +1,59 @@
+package com.upgrad.ImageHoster.service;
+
+import com.google.common.hash.Hashing;
+import com.upgrad.ImageHoster.common.PasswordHasher;
+import com.upgrad.ImageHoster.common.UserManager;
+import com.upgrad.ImageHoster.model.UserCredentials;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class AuthenticationServiceImplTest {
+    private UserManager userManager;
+    private PasswordHasher passwordHasher;
+    private AuthenticationServiceImpl authenticationService;
+
+    @Before
+    public void setUp() {
+        userManager = Mockito.mock(UserManager.class);
+        passwordHasher = new PasswordHasher(1000);
+        authenticationService = new AuthenticationServiceImpl(userManager, passwordHasher);
+    }
+
+    @Test
+    public void shouldRehashLegacyHashOnSuccessfulSignIn() {
+        String legacyHash = Hashing.sha256().hashString("password").toString();
+        Mockito.when(userManager.getCredentials("upgrad")).thenReturn(new UserCredentials(7, "upgrad", legacyHash, 0));
+
+        assertNull(authenticationService.authenticate("upgrad", "wrong"));
+        verify(userManager, never()).updatePasswordHash(Mockito.anyInt(), Mockito.anyString());
+
+        assertEquals(7, authenticationService.authenticate("upgrad", "password").getUserId());
+
+        // checks to see if the new hash is a salted hash of the same password
+        ArgumentCaptor<String> newHash = ArgumentCaptor.forClass(String.class);
+        verify(userManager).updatePasswordHash(Mockito.eq(7), newHash.capture());
+        assertTrue(passwordHasher.verify("password", newHash.getValue()));
+        assertFalse(passwordHasher.needsRehash(newHash.getValue()));
+    }
+
+    @Test
+    public void shouldNotRehashCurrentHash() {
+        Mockito.when(userManager.getCredentials("upgrad"))
+                .thenReturn(new UserCredentials(7, "upgrad", authenticationService.hashPassword("password"), 0));
+
+        assertEquals(7, authenticationService.authenticate("upgrad", "password").getUserId());
+        verify(userManager, never()).updatePasswordHash(Mockito.anyInt(), Mockito.anyString());
+    }
+
+    @Test
+    public void shouldRejectUnknownUser() {
+        Mockito.when(userManager.getCredentials("nobody")).thenReturn(null);
+
+        assertNull(authenticationService.authenticate("nobody", "password"));
+    }
+}
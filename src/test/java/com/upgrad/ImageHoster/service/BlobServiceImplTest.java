@@ -0,0 +1,71 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.common.LocalBlobStore;
+import com.upgrad.ImageHoster.common.StoredBlob;
+import com.upgrad.ImageHoster.common.UnsupportedImageTypeException;
+import com.upgrad.ImageHoster.common.UploadTooLargeException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class BlobServiceImplTest {
+    private static final byte[] PNG_HEADER = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BlobServiceImpl blobService;
+
+    @Before
+    public void setUp() throws Exception {
+        blobService = new BlobServiceImpl(new LocalBlobStore(folder.getRoot().toPath()), 1024);
+    }
+
+    @Test
+    public void shouldStoreImageWithSniffedMimeType() throws Exception {
+        byte[] image = Arrays.copyOf(PNG_HEADER, 100);
+
+        StoredBlob blob = blobService.saveImage(new ByteArrayInputStream(image));
+
+        assertEquals("image/png", blob.getMimeType());
+        assertEquals(100, blob.getSize());
+
+        // checks to see if the bytes read to sniff the type are stored too
+        try (InputStream in = blobService.open(blob.getHash())) {
+            assertArrayEquals(image, StreamUtils.copyToByteArray(in));
+        }
+    }
+
+    @Test(expected = UnsupportedImageTypeException.class)
+    public void shouldRejectFileThatIsNotAnImage() throws Exception {
+        blobService.saveImage(new ByteArrayInputStream("<html>not an image</html>".getBytes()));
+    }
+
+    @Test
+    public void shouldRejectImageLargerThanLimitWithoutStoringIt() throws Exception {
+        byte[] image = Arrays.copyOf(PNG_HEADER, 1025);
+
+        try {
+            blobService.saveImage(new ByteArrayInputStream(image));
+            fail("expected the image to be rejected");
+        } catch (UploadTooLargeException e) {
+            assertEquals(1024, e.getMaxBytes());
+        }
+
+        // checks to see if nothing but the empty temp directory was left behind
+        try (Stream<Path> files = Files.walk(folder.getRoot().toPath())) {
+            assertFalse(files.anyMatch(Files::isRegularFile));
+        }
+    }
+}
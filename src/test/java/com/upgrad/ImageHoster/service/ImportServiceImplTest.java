@@ -0,0 +1,208 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.common.StoredBlob;
+import com.upgrad.ImageHoster.common.UnsupportedImageTypeException;
+import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.ImportResult;
+import com.upgrad.ImageHoster.model.Tag;
+import com.upgrad.ImageHoster.model.User;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class ImportServiceImplTest {
+    private static final String MANIFEST = "{\"file\": \"1.png\", \"title\": \"one\", \"tags\": [\"Cat\", \"pet\"]}\n"
+            + "{\"file\": \"2.png\", \"title\": \"two\", \"description\": \"a dog\", \"tags\": [\"dog\", \" cat \"]}\n"
+            + "\n"
+            + "{\"file\": \"3.png\"}\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ImageService imageService;
+    private TagService tagService;
+    private BlobService blobService;
+    private ImportServiceImpl importService;
+    private Path checkpoint;
+
+    @Before
+    public void setUp() throws Exception {
+        imageService = Mockito.mock(ImageService.class);
+        tagService = Mockito.mock(TagService.class);
+        blobService = Mockito.mock(BlobService.class);
+        UserService userService = Mockito.mock(UserService.class);
+
+        importService = new ImportServiceImpl(imageService, tagService, userService, blobService,
+                Mockito.mock(SimilarImageService.class), 2, 2);
+        checkpoint = temporaryFolder.getRoot().toPath().resolve("import.checkpoint");
+
+        Mockito.when(userService.getByName("customer")).thenReturn(new User("customer", "hash", null));
+
+        // the mock tag service creates the tags it is asked for
+        Mockito.when(tagService.getOrCreateTags(Mockito.anyCollection())).thenAnswer(invocation -> {
+            List<Tag> tags = new ArrayList<Tag>();
+
+            for (Object name : (Collection<?>) invocation.getArguments()[0]) {
+                String normalizedName = Tag.normalizeName((String) name);
+
+                if (tags.stream().noneMatch(tag -> tag.getName().equals(normalizedName))) {
+                    tags.add(new Tag(normalizedName));
+                }
+            }
+
+            return tags;
+        });
+
+        // the mock blob store names every blob after the content of its file
+        Mockito.when(blobService.saveImage(Mockito.any(InputStream.class))).thenAnswer(invocation -> {
+            InputStream in = (InputStream) invocation.getArguments()[0];
+            byte[] buffer = new byte[64];
+            String content = new String(buffer, 0, Math.max(0, in.read(buffer)), StandardCharsets.UTF_8);
+
+            if (content.equals("not an image")) {
+                throw new UnsupportedImageTypeException();
+            }
+
+            return new StoredBlob(content, content.length(), "image/png");
+        });
+    }
+
+    @Test
+    public void shouldImportImagesInBatchesWithTheTagsFoundOnce() throws Exception {
+        Path source = createDirectory("content 1", "content 2", "content 3");
+
+        ImportResult result = importService.importImages(source, "customer", checkpoint);
+
+        assertEquals(3, result.getImported());
+        assertEquals(0, result.getFailed());
+        assertEquals("3", readCheckpoint());
+        Mockito.verify(tagService, Mockito.times(1)).getOrCreateTags(Mockito.anyCollection());
+
+        List<Image> images = savedImages(2);
+        assertEquals(Arrays.asList("one", "two", "3.png"), titlesOf(images));
+        assertEquals("content 2", images.get(1).getImageHash());
+        assertEquals("a dog", images.get(1).getDescription());
+        assertEquals(Arrays.asList("dog", "cat"), tagNamesOf(images.get(1)));
+        // both images have the same Tag for cat
+        assertSame(images.get(0).getTags().get(0), images.get(1).getTags().get(1));
+    }
+
+    @Test
+    public void shouldContinueAfterTheCheckpoint() throws Exception {
+        Path source = createDirectory("content 1", "content 2", "content 3");
+        Files.write(checkpoint, "2".getBytes(StandardCharsets.US_ASCII));
+
+        ImportResult result = importService.importImages(source, "customer", checkpoint);
+
+        assertEquals(1, result.getImported());
+        assertEquals(2, result.getSkipped());
+        assertEquals(Arrays.asList("3.png"), titlesOf(savedImages(1)));
+        assertEquals("3", readCheckpoint());
+    }
+
+    @Test
+    public void shouldSkipFilesThatAreNotImages() throws Exception {
+        Path source = createDirectory("content 1", "not an image", "content 3");
+
+        ImportResult result = importService.importImages(source, "customer", checkpoint);
+
+        assertEquals(2, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertEquals(Arrays.asList("one", "3.png"), titlesOf(savedImages(2)));
+        assertEquals("3", readCheckpoint());
+    }
+
+    @Test
+    public void shouldImportFromZipFile() throws Exception {
+        Path source = temporaryFolder.getRoot().toPath().resolve("import.zip");
+
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(source))) {
+            addZipEntry(zip, "manifest.jsonl", MANIFEST);
+            addZipEntry(zip, "1.png", "content 1");
+            addZipEntry(zip, "2.png", "content 2");
+            addZipEntry(zip, "3.png", "content 3");
+        }
+
+        ImportResult result = importService.importImages(source, "customer", checkpoint);
+
+        assertEquals(3, result.getImported());
+        assertEquals(Arrays.asList("one", "two", "3.png"), titlesOf(savedImages(2)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownUser() throws Exception {
+        importService.importImages(createDirectory("content 1", "content 2", "content 3"), "nobody", checkpoint);
+    }
+
+    private Path createDirectory(String... contents) throws IOException {
+        Path directory = temporaryFolder.newFolder().toPath();
+        Files.write(directory.resolve("manifest.jsonl"), MANIFEST.getBytes(StandardCharsets.UTF_8));
+
+        for (int i = 0; i < contents.length; i++) {
+            Files.write(directory.resolve((i + 1) + ".png"), contents[i].getBytes(StandardCharsets.UTF_8));
+        }
+
+        return directory;
+    }
+
+    private static void addZipEntry(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    private String readCheckpoint() throws IOException {
+        return new String(Files.readAllBytes(checkpoint), StandardCharsets.US_ASCII);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Image> savedImages(int batches) {
+        ArgumentCaptor<List<Image>> captor = ArgumentCaptor.forClass((Class) List.class);
+        Mockito.verify(imageService, Mockito.times(batches)).saveAll(captor.capture());
+
+        List<Image> images = new ArrayList<Image>();
+
+        for (List<Image> batch : captor.getAllValues()) {
+            images.addAll(batch);
+        }
+
+        return images;
+    }
+
+    private static List<String> titlesOf(List<Image> images) {
+        List<String> titles = new ArrayList<String>();
+
+        for (Image image : images) {
+            titles.add(image.getTitle());
+        }
+
+        return titles;
+    }
+
+    private static List<String> tagNamesOf(Image image) {
+        List<String> names = new ArrayList<String>();
+
+        for (Tag tag : image.getTags()) {
+            names.add(tag.getName());
+        }
+
+        return names;
+    }
+}
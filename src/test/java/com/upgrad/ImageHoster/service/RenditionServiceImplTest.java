@@ -0,0 +1,144 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.common.LocalBlobStore;
+import com.upgrad.ImageHoster.common.StoredBlob;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RenditionServiceImplTest {
+    private static final String[] JPEG = {"image/jpeg"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldGenerateEveryRenditionOnce() throws Exception {
+        LocalBlobStore store = new LocalBlobStore(folder.getRoot().toPath());
+        RenditionServiceImpl renditionService = new RenditionServiceImpl(store, new int[]{64, 16}, 0.8f, JPEG, 1, 10);
+
+        // stores a 200x100 png as the original image
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(200, 100, BufferedImage.TYPE_INT_ARGB), "png", png);
+        StoredBlob original = store.put(new ByteArrayInputStream(png.toByteArray()));
+
+        // the first request for a rendition queues its generation
+        assertNull(renditionService.getRendition(original.getHash(), 10, "image/jpeg"));
+        waitForCompletedCount(renditionService, 1);
+
+        // checks to see if the renditions fit in their size
+        Path small = renditionService.getRendition(original.getHash(), 10, "image/jpeg");
+        BufferedImage smallImage = ImageIO.read(small.toFile());
+        assertEquals(16, smallImage.getWidth());
+        assertEquals(8, smallImage.getHeight());
+
+        Path large = renditionService.getRendition(original.getHash(), 50, "image/jpeg");
+        assertEquals(64, ImageIO.read(large.toFile()).getWidth());
+        assertFalse(renditionService.isCopyPending(original.getHash(), 50, "image/jpeg"));
+
+        // generating existing renditions again leaves the files untouched
+        long modified = large.toFile().lastModified();
+        renditionService.generate(original.getHash());
+        waitForCompletedCount(renditionService, 2);
+        assertEquals(modified, large.toFile().lastModified());
+
+        renditionService.shutdown();
+    }
+
+    @Test
+    public void shouldServeSmallerFullSizeCopyOfOpaqueImages() throws Exception {
+        LocalBlobStore store = new LocalBlobStore(folder.getRoot().toPath());
+        // the formats without an ImageIO writer are skipped
+        RenditionServiceImpl renditionService = new RenditionServiceImpl(store, new int[]{64}, 0.8f,
+                new String[]{"image/x-unknown", "image/jpeg"}, 1, 10);
+        assertEquals(Arrays.asList("image/jpeg"), renditionService.getFormats());
+
+        // stores a noisy 200x200 png, which png cannot compress
+        BufferedImage noise = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(1);
+
+        for (int x = 0; x < 200; x++) {
+            for (int y = 0; y < 200; y++) {
+                noise.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(noise, "png", png);
+        StoredBlob original = store.put(new ByteArrayInputStream(png.toByteArray()));
+
+        assertNull(renditionService.getOptimized(original.getHash(), "image/jpeg"));
+        waitForCompletedCount(renditionService, 1);
+
+        // checks to see if the copy has the full size and is smaller than the original
+        Path optimized = renditionService.getOptimized(original.getHash(), "image/jpeg");
+        assertEquals(200, ImageIO.read(optimized.toFile()).getWidth());
+        assertTrue(Files.size(optimized) < png.size());
+        assertEquals(1, renditionService.getOptimizedCount());
+        assertEquals(png.size() - Files.size(optimized), renditionService.getBytesSaved());
+
+        renditionService.shutdown();
+    }
+
+    @Test
+    public void shouldKeepTransparentOriginal() throws Exception {
+        LocalBlobStore store = new LocalBlobStore(folder.getRoot().toPath());
+        RenditionServiceImpl renditionService = new RenditionServiceImpl(store, new int[]{64}, 0.8f, JPEG, 1, 10);
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(200, 100, BufferedImage.TYPE_INT_ARGB), "png", png);
+        StoredBlob original = store.put(new ByteArrayInputStream(png.toByteArray()));
+        assertTrue(renditionService.isCopyPending(original.getHash(), null, "image/jpeg"));
+
+        renditionService.generate(original.getHash());
+        waitForCompletedCount(renditionService, 1);
+
+        // a jpeg copy would lose the transparency, so only the rendition is generated
+        assertNull(renditionService.getOptimized(original.getHash(), "image/jpeg"));
+        assertFalse(renditionService.isCopyPending(original.getHash(), null, "image/jpeg"));
+        assertNotNull(renditionService.getRendition(original.getHash(), 64, "image/jpeg"));
+        assertEquals(0, renditionService.getOptimizedCount());
+        assertEquals(0, renditionService.getQueueDepth());
+
+        renditionService.shutdown();
+    }
+
+    @Test
+    public void shouldSkipUnreadableImages() throws Exception {
+        LocalBlobStore store = new LocalBlobStore(folder.getRoot().toPath());
+        RenditionServiceImpl renditionService = new RenditionServiceImpl(store, new int[]{64}, 0.8f, JPEG, 1, 10);
+        StoredBlob original = store.put(new ByteArrayInputStream("not an image".getBytes()));
+
+        renditionService.generate(original.getHash());
+
+        for (int i = 0; i < 100 && renditionService.getFailedCount() == 0; i++) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(1, renditionService.getFailedCount());
+        assertNull(renditionService.getRendition(original.getHash(), 64, "image/jpeg"));
+        assertFalse(renditionService.isCopyPending(original.getHash(), 64, "image/jpeg"));
+        assertEquals(0, renditionService.getQueueDepth());
+
+        renditionService.shutdown();
+    }
+
+    private static void waitForCompletedCount(RenditionServiceImpl renditionService, long count) throws Exception {
+        for (int i = 0; i < 200 && renditionService.getCompletedCount() < count; i++) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(count, renditionService.getCompletedCount());
+    }
+}
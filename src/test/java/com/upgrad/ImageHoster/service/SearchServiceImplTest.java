@@ -0,0 +1,181 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.common.FeedCursor;
+import com.upgrad.ImageHoster.common.ImageManager;
+import com.upgrad.ImageHoster.common.ImageSearchIndex;
+import com.upgrad.ImageHoster.model.FeedPage;
+import com.upgrad.ImageHoster.model.Image;
+import com.upgrad.ImageHoster.model.ImageCard;
+import com.upgrad.ImageHoster.model.Tag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class SearchServiceImplTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ImageManager imageManager;
+    private SearchServiceImpl searchService;
+    private List<Image> images;
+
+    @Before
+    public void setUp() throws Exception {
+        imageManager = Mockito.mock(ImageManager.class);
+        searchService = new SearchServiceImpl(imageManager, new ImageSearchIndex(folder.getRoot().toPath()),
+                3, 2, 60000);
+
+        // ids with gaps, like the ids left after images have been deleted
+        images = Arrays.asList(
+                image(1, "Sunset at the beach", "beach"),
+                image(2, "Sunset over the sea", "sea"),
+                image(4, "A dog in the park", "dog"),
+                image(5, "Sunset in the mountains", "mountains"),
+                image(7, "A cat", "sunset"));
+
+        // the mock database returns the images of a range of ids and the
+        // cards of the images that exist
+        Mockito.when(imageManager.getMaxImageId()).thenReturn(7);
+        Mockito.when(imageManager.getImagesWithTagsBetween(Mockito.anyInt(), Mockito.anyInt()))
+                .thenAnswer(invocation -> {
+                    int afterId = (Integer) invocation.getArguments()[0];
+                    int lastId = (Integer) invocation.getArguments()[1];
+                    List<Image> range = new ArrayList<Image>();
+
+                    for (Image image : images) {
+                        if (image.getId() > afterId && image.getId() <= lastId) {
+                            range.add(image);
+                        }
+                    }
+
+                    return range;
+                });
+        Mockito.when(imageManager.getImageCardsByIds(Mockito.anyCollection())).thenAnswer(invocation -> {
+            List<ImageCard> cards = new ArrayList<ImageCard>();
+
+            for (Object id : (Collection<?>) invocation.getArguments()[0]) {
+                for (Image image : images) {
+                    if (image.getId() == (Integer) id) {
+                        cards.add(new ImageCard(image.getId(), image.getTitle(), LocalDate.now(), null, 0));
+                    }
+                }
+            }
+
+            return cards;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        searchService.shutdown();
+    }
+
+    @Test
+    public void shouldRebuildIndexFromRangesOfIds() throws Exception {
+        assertEquals(5, searchService.rebuild());
+        assertEquals(5, searchService.getIndexedCount());
+
+        // ranges of 2 ids up to the largest id
+        verify(imageManager).getImagesWithTagsBetween(0, 2);
+        verify(imageManager).getImagesWithTagsBetween(2, 4);
+        verify(imageManager).getImagesWithTagsBetween(4, 6);
+        verify(imageManager).getImagesWithTagsBetween(6, 7);
+    }
+
+    @Test
+    public void shouldReplaceStaleImagesWhenRebuilding() throws Exception {
+        searchService.index(image(9, "Deleted sunset", "sunset"));
+        searchService.rebuild();
+
+        assertEquals(5, searchService.getIndexedCount());
+    }
+
+    @Test
+    public void shouldReturnEveryMatchingImageOnce() throws Exception {
+        searchService.rebuild();
+
+        FeedPage<ImageCard> firstPage = searchService.search("sunset", null, 3);
+        FeedPage<ImageCard> secondPage = searchService.search("sunset", firstPage.getNextCursor(), 3);
+
+        List<Integer> ids = new ArrayList<Integer>();
+
+        for (ImageCard card : firstPage.getItems()) {
+            ids.add(card.getId());
+        }
+        for (ImageCard card : secondPage.getItems()) {
+            ids.add(card.getId());
+        }
+
+        assertEquals(3, firstPage.getItems().size());
+        assertNull(secondPage.getNextCursor());
+        assertEquals(4, ids.size());
+        assertTrue(ids.containsAll(Arrays.asList(1, 2, 5, 7)));
+    }
+
+    @Test
+    public void shouldRejectCursorBeyondMaxOffset() throws Exception {
+        searchService.rebuild();
+
+        for (int offset : new int[]{-1, SearchServiceImpl.MAX_OFFSET + 1, Integer.MAX_VALUE}) {
+            try {
+                searchService.search("sunset", FeedCursor.encode(offset), 3);
+                fail("a cursor at " + offset + " matches was accepted");
+            } catch (IllegalArgumentException e) {
+                // a forged cursor is rejected like any other invalid cursor
+            }
+        }
+
+        FeedPage<ImageCard> deepestPage = searchService.search("sunset",
+                FeedCursor.encode(SearchServiceImpl.MAX_OFFSET), 3);
+        assertTrue(deepestPage.getItems().isEmpty());
+    }
+
+    @Test
+    public void shouldSkipImagesThatNoLongerExist() throws Exception {
+        searchService.index(image(9, "Dog that was deleted", "dog"));
+
+        FeedPage<ImageCard> page = searchService.search("dog", null, 10);
+
+        assertTrue(page.getItems().isEmpty());
+    }
+
+    @Test
+    public void shouldIndexSavedImagesAndRemoveDeletedImages() {
+        searchService.index(images.get(2));
+        assertEquals(1, searchService.search("park", null, 10).getItems().size());
+
+        searchService.remove(4);
+        assertTrue(searchService.search("park", null, 10).getItems().isEmpty());
+    }
+
+    @Test
+    public void shouldReturnNothingForBlankQuery() {
+        assertTrue(searchService.search("  ", null, 10).getItems().isEmpty());
+        verify(imageManager, never()).getImageCardsByIds(Mockito.anyCollection());
+    }
+
+    private static Image image(int id, String title, String... tagNames) {
+        List<Tag> tags = new ArrayList<Tag>();
+
+        for (String tagName : tagNames) {
+            tags.add(new Tag(tagName));
+        }
+
+        Image image = new Image(title, "description", null, 0, "image/jpeg", null, tags);
+        image.setId(id);
+
+        return image;
+    }
+}
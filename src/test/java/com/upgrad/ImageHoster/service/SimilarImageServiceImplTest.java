@@ -0,0 +1,150 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.common.ImageManager;
+import com.upgrad.ImageHoster.common.ImageTooLargeException;
+import com.upgrad.ImageHoster.common.PerceptualHash;
+import com.upgrad.ImageHoster.model.ImageCard;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class SimilarImageServiceImplTest {
+    private ImageManager imageManager;
+    private BlobService blobService;
+    private SimilarImageServiceImpl similarImageService;
+
+    @Before
+    public void setUp() {
+        imageManager = Mockito.mock(ImageManager.class);
+        blobService = Mockito.mock(BlobService.class);
+        similarImageService = new SimilarImageServiceImpl(imageManager, blobService, 2, 100, 1000000);
+
+        // the mock database returns a card for every id
+        Mockito.when(imageManager.getImageCardsByIds(Mockito.anyCollection())).thenAnswer(invocation -> {
+            List<ImageCard> cards = new ArrayList<ImageCard>();
+
+            for (Object id : (Collection<?>) invocation.getArguments()[0]) {
+                cards.add(new ImageCard((Integer) id, "image " + id, LocalDate.now(), "hash", 0));
+            }
+
+            return cards;
+        });
+    }
+
+    @Test
+    public void shouldLoadStoredHashesAndHashMissingOnes() throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(32, 32, BufferedImage.TYPE_INT_RGB), "png", png);
+
+        // image 3 was uploaded before the hashes were stored
+        Map<Integer, String> unhashed = new LinkedHashMap<Integer, String>();
+        unhashed.put(3, "blob3");
+        Mockito.when(imageManager.getImagesWithoutPerceptualHash(0, 100)).thenReturn(unhashed);
+        Mockito.when(blobService.open("blob3")).thenReturn(new ByteArrayInputStream(png.toByteArray()));
+
+        Map<Integer, Long> stored = new HashMap<Integer, Long>();
+        stored.put(1, 0L);
+        stored.put(2, 0b111L);
+        stored.put(3, 0L);
+        Mockito.when(imageManager.getPerceptualHashes()).thenReturn(stored);
+
+        assertEquals(3, similarImageService.load());
+
+        // an all black image has a hash of 0
+        verify(imageManager).createPerceptualHashColumn();
+        verify(imageManager).updatePerceptualHashes(Collections.singletonMap(3, 0L));
+
+        // checks to see if the image itself and the too different image 2 are left out
+        assertEquals(Collections.singletonList(3), ids(similarImageService.findSimilarTo(1, 10)));
+        assertEquals(Arrays.asList(3, 1, 2), ids(similarImageService.findSimilar(0b1L, 10)));
+        assertEquals(Arrays.asList(3), ids(similarImageService.findSimilar(0b1L, 1)));
+        assertTrue(similarImageService.findSimilarTo(99, 10).isEmpty());
+    }
+
+    @Test
+    public void shouldMoveAndRemoveImages() {
+        similarImageService.add(1, 0L);
+        similarImageService.add(2, 0L);
+        assertEquals(Collections.singletonList(2), ids(similarImageService.findSimilarTo(1, 10)));
+
+        // an edit that replaces the file moves the image
+        similarImageService.add(2, -1L);
+        assertTrue(similarImageService.findSimilarTo(1, 10).isEmpty());
+
+        similarImageService.remove(2);
+        assertTrue(similarImageService.findSimilar(-1L, 10).isEmpty());
+        assertEquals(1, similarImageService.getIndexedCount());
+    }
+
+    @Test
+    public void shouldReturnNullHashForUnreadableImage() throws Exception {
+        Mockito.when(blobService.open("blob")).thenReturn(new ByteArrayInputStream("not an image".getBytes()));
+
+        assertNull(similarImageService.computeHash("blob"));
+    }
+
+    @Test
+    public void shouldHashLargeImageFromFewOfItsPixels() throws Exception {
+        // a 1000x800 image with a left to right gradient and a dark square
+        BufferedImage image = new BufferedImage(1000, 800, BufferedImage.TYPE_INT_RGB);
+
+        for (int x = 0; x < 1000; x++) {
+            for (int y = 0; y < 800; y++) {
+                int gray = x < 300 && y < 300 ? 20 : x * 255 / 1000;
+                image.setRGB(x, y, gray << 16 | gray << 8 | gray);
+            }
+        }
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+
+        long hash = similarImageService.computeHash(new ByteArrayInputStream(png.toByteArray()));
+
+        // decoding every 3rd pixel barely changes the hash of the whole image
+        assertTrue(PerceptualHash.distance(PerceptualHash.dHash(image), hash) <= 2);
+    }
+
+    @Test
+    public void shouldRejectImageWithTooManyPixels() throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(2000, 1000, BufferedImage.TYPE_BYTE_GRAY), "png", png);
+
+        try {
+            similarImageService.computeHash(new ByteArrayInputStream(png.toByteArray()));
+            fail("a 2 megapixel image was decoded");
+        } catch (ImageTooLargeException e) {
+            assertEquals(1000000, e.getMaxPixels());
+        }
+
+        // a stored image that is too large is left without a hash
+        Mockito.when(blobService.open("blob")).thenReturn(new ByteArrayInputStream(png.toByteArray()));
+        assertNull(similarImageService.computeHash("blob"));
+    }
+
+    private static List<Integer> ids(List<ImageCard> cards) {
+        List<Integer> ids = new ArrayList<Integer>();
+
+        for (ImageCard card : cards) {
+            ids.add(card.getId());
+        }
+
+        return ids;
+    }
+}
@@ -0,0 +1,116 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.common.LocalEntityCache;
+import com.upgrad.ImageHoster.common.TagManager;
+import com.upgrad.ImageHoster.model.OutboxEvent;
+import com.upgrad.ImageHoster.model.Tag;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class TagServiceImplTest {
+    private TagManager tagManager;
+    private TagServiceImpl tagService;
+
+    @Before
+    public void setUp() {
+        tagManager = Mockito.mock(TagManager.class);
+        tagService = new TagServiceImpl(tagManager,
+                new LocalEntityCache<String, Tag>("tagsByName", 10, 1, TimeUnit.MINUTES));
+
+        // the mock database creates every tag it is asked for
+        Mockito.when(tagManager.findOrCreateTags(Mockito.anyCollection())).thenAnswer(invocation -> {
+            List<Tag> tags = new ArrayList<Tag>();
+
+            for (Object name : (Collection<?>) invocation.getArguments()[0]) {
+                tags.add(new Tag((String) name));
+            }
+
+            return tags;
+        });
+    }
+
+    @Test
+    public void shouldNormalizeTagNames() {
+        assertEquals("black cat", Tag.normalizeName("  Black \t CAT "));
+    }
+
+    @Test
+    public void shouldResolveAllTagsWithOneCall() {
+        List<Tag> tags = tagService.getOrCreateTags(Arrays.asList("cat", " Kitty", "CAT", " ", "young"));
+
+        assertEquals(3, tags.size());
+        assertEquals("cat", tags.get(0).getName());
+        assertEquals("kitty", tags.get(1).getName());
+        assertEquals("young", tags.get(2).getName());
+        verify(tagManager, times(1)).findOrCreateTags(Arrays.asList("cat", "kitty", "young"));
+    }
+
+    @Test
+    public void shouldOnlyResolveTagsThatAreNotCached() {
+        tagService.getOrCreateTags(Arrays.asList("cat", "kitty"));
+        List<Tag> tags = tagService.getOrCreateTags(Arrays.asList("kitty", "young"));
+
+        assertEquals("kitty", tags.get(0).getName());
+        assertEquals("young", tags.get(1).getName());
+        verify(tagManager).findOrCreateTags(Arrays.asList("young"));
+    }
+
+    @Test
+    public void shouldNotQueryDatabaseWhenAllTagsAreCached() {
+        tagService.getOrCreateTags(Arrays.asList("cat"));
+        tagService.getOrCreateTags(Arrays.asList("Cat"));
+
+        verify(tagManager, times(1)).findOrCreateTags(Mockito.anyCollection());
+    }
+
+    @Test
+    public void shouldSuggestStoredAndNewTagsByPrefix() {
+        Mockito.when(tagManager.getAllTagNames()).thenReturn(Arrays.asList("kitty", "cat"));
+
+        assertEquals(Arrays.asList("kitty"), tagService.suggest(" KI", 10));
+
+        tagService.getOrCreateTags(Arrays.asList("kitten"));
+
+        assertEquals(Arrays.asList("kitten", "kitty"), tagService.suggest("ki", 10));
+        assertTrue(tagService.suggest(" ", 10).isEmpty());
+        verify(tagManager, times(1)).getAllTagNames();
+    }
+
+    @Test
+    public void shouldAddTagsCreatedElsewhereToIndex() {
+        Mockito.when(tagManager.getAllTagNames()).thenReturn(Arrays.asList("kitty"));
+        tagService.suggest("ki", 10);
+
+        tagService.handle(Arrays.asList(new OutboxEvent(OutboxEvent.Type.TAG_CREATED, 2, "kitten")));
+
+        assertEquals(Arrays.asList("kitten", "kitty"), tagService.suggest("ki", 10));
+        verify(tagManager, times(1)).getAllTagNames();
+    }
+
+    @Test
+    public void shouldReloadIndexAndCachedTagAfterRename() {
+        Tag merged = new Tag("kitty cat");
+        Tag renamed = new Tag("kitty cat");
+        Mockito.when(tagManager.getAllTagNames())
+                .thenReturn(Arrays.asList("kitty  cat"), Arrays.asList("kitty cat"));
+        Mockito.when(tagManager.findTag("kitty cat")).thenReturn(merged, renamed);
+
+        assertEquals(Arrays.asList("kitty  cat"), tagService.suggest("kitty", 10));
+        assertSame(merged, tagService.getByName("kitty cat"));
+
+        tagService.handle(Arrays.asList(new OutboxEvent(OutboxEvent.Type.TAG_RENAMED, 1, "kitty cat")));
+
+        assertEquals(Arrays.asList("kitty cat"), tagService.suggest("kitty", 10));
+        assertSame(renamed, tagService.getByName("kitty cat"));
+    }
+}
@@ -0,0 +1,71 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.common.LocalEntityCache;
+import com.upgrad.ImageHoster.common.UserManager;
+import com.upgrad.ImageHoster.model.SessionPrincipal;
+import com.upgrad.ImageHoster.model.User;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class UserServiceImplTest {
+    private UserManager userManager;
+    private UserServiceImpl userService;
+    private User user;
+
+    @Before
+    public void setUp() {
+        userManager = Mockito.mock(UserManager.class);
+        userService = new UserServiceImpl(userManager,
+                new LocalEntityCache<String, User>("usersByName", 10, 1, TimeUnit.MINUTES));
+
+        user = new User();
+        user.setUsername("upgrad");
+        Mockito.when(userManager.getUserByName("upgrad")).thenReturn(user);
+    }
+
+    @Test
+    public void shouldReadUserFromDatabaseOnce() {
+        assertSame(user, userService.getByName("upgrad"));
+        assertSame(user, userService.getByName("upgrad"));
+
+        verify(userManager, times(1)).getUserByName("upgrad");
+    }
+
+    @Test
+    public void shouldReadUserAgainAfterUpdate() {
+        userService.getByName("upgrad");
+        userService.update(user);
+        userService.getByName("upgrad");
+
+        verify(userManager, times(2)).getUserByName("upgrad");
+    }
+
+    @Test
+    public void shouldReadUserAgainAfterDelete() {
+        userService.getByName("upgrad");
+        userService.delete(user);
+        userService.getByName("upgrad");
+
+        verify(userManager, times(2)).getUserByName("upgrad");
+    }
+
+    @Test
+    public void shouldReadUserAgainIfCachedCopyIsOlderThanPrincipal() {
+        userService.getByName("upgrad");
+
+        // another instance updated the user to version 1 after it was cached here
+        assertSame(user, userService.getCurrentUser(new SessionPrincipal(user.getId(), "upgrad", 1)));
+        verify(userManager, times(2)).getUserByName("upgrad");
+    }
+
+    @Test
+    public void shouldNotReturnAnotherUserWithTheSameUsername() {
+        assertNull(userService.getCurrentUser(new SessionPrincipal(user.getId() + 1, "upgrad", 0)));
+    }
+}
@@ -0,0 +1,116 @@
+package com.upgrad.ImageHoster.service;
+
+import com.upgrad.ImageHoster.common.ImageManager;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ViewCountServiceImplTest {
+
+    /**
+     * An ImageManager that keeps the flushed view counts in memory
+     */
+    private static class RecordingImageManager extends ImageManager {
+        final List<Map<Integer, Long>> batches = new ArrayList<Map<Integer, Long>>();
+        boolean failing;
+
+        @Override
+        public synchronized void incrementViewCounts(Map<Integer, Long> views) {
+            if (failing) {
+                throw new IllegalStateException("database is down");
+            }
+
+            batches.add(new HashMap<Integer, Long>(views));
+        }
+
+        synchronized long total(int imageId) {
+            long total = 0;
+
+            for (Map<Integer, Long> batch : batches) {
+                total += batch.getOrDefault(imageId, 0L);
+            }
+
+            return total;
+        }
+    }
+
+    @Test
+    public void shouldFlushViewsInOneBatch() {
+        RecordingImageManager imageManager = new RecordingImageManager();
+        ViewCountServiceImpl viewCountService = new ViewCountServiceImpl(imageManager, 60000);
+
+        viewCountService.recordView(1);
+        viewCountService.recordView(1);
+        viewCountService.recordView(2);
+        assertEquals(2, viewCountService.getPendingViews(1));
+
+        viewCountService.flush();
+
+        assertEquals(1, imageManager.batches.size());
+        assertEquals(Long.valueOf(2), imageManager.batches.get(0).get(1));
+        assertEquals(Long.valueOf(1), imageManager.batches.get(0).get(2));
+        assertEquals(0, viewCountService.getPendingViews(1));
+
+        // nothing is written when there are no new views
+        viewCountService.flush();
+        assertEquals(1, imageManager.batches.size());
+
+        viewCountService.shutdown();
+    }
+
+    @Test
+    public void shouldKeepViewsWhenFlushFails() {
+        RecordingImageManager imageManager = new RecordingImageManager();
+        ViewCountServiceImpl viewCountService = new ViewCountServiceImpl(imageManager, 60000);
+
+        viewCountService.recordView(1);
+        imageManager.failing = true;
+
+        try {
+            viewCountService.flush();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(1, viewCountService.getPendingViews(1));
+        }
+
+        imageManager.failing = false;
+        viewCountService.flush();
+        assertEquals(1, imageManager.total(1));
+
+        viewCountService.shutdown();
+    }
+
+    @Test
+    public void shouldNotLoseConcurrentViews() throws Exception {
+        RecordingImageManager imageManager = new RecordingImageManager();
+        ViewCountServiceImpl viewCountService = new ViewCountServiceImpl(imageManager, 1);
+        ExecutorService viewers = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(8);
+
+        // 8 viewers record views while the counts are flushed every millisecond
+        for (int i = 0; i < 8; i++) {
+            viewers.execute(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    viewCountService.recordView(j % 2);
+                }
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        viewers.shutdown();
+        viewCountService.shutdown();
+
+        assertEquals(40000, imageManager.total(0));
+        assertEquals(40000, imageManager.total(1));
+    }
+}